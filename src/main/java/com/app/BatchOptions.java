@@ -0,0 +1,259 @@
+package com.app;
+
+import com.app.history.reader.MovementSources;
+import com.app.history.reader.MovementStart;
+import com.app.history.reader.SortingMovementReader;
+import com.app.stock.StockFilter;
+import com.app.stock.StockLedger;
+import com.app.utils.CsvCharsets;
+
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Options of {@code --batch}. Every option is given as {@code --name=value}; without options the legacy hardcoded
+ * file names are used. Components of optional features are {@code null} unless the feature is requested.
+ * <ul>
+ *     <li>{@code --history} takes a comma separated list for histories split over several files.</li>
+ *     <li>{@code --sort-history} and {@code --sort-cache} are flags without a value; {@code sortOptions} is
+ *     {@code null} unless the history has to be sorted before the replay.</li>
+ *     <li>{@code --charset} applies to the stock and history input and to the written stock output.</li>
+ *     <li>{@code --item}, {@code --location}, {@code --client} and {@code --stock-number} take comma separated lists
+ *     and restrict the reconstruction to the matching stocks ({@code stockFilter}).</li>
+ *     <li>{@code --from-sequence} and {@code --from-date} skip the newest movements of the history
+ *     ({@code movementStart}).</li>
+ *     <li>{@code --off-heap} keeps the stock in native memory, or with a value in memory mapped files in that
+ *     directory ({@code offHeapDirectory}).</li>
+ *     <li>{@code --spill} reconstructs the stock partition by partition from temp files within the budget of
+ *     {@code --spill-memory} ({@code spillOptions}).</li>
+ *     <li>{@code --auto-engine} leaves the choice between the heap, off-heap and spilling engine to
+ *     {@link MemoryEstimator}; the {@code --spill-*} options then apply if spilling is chosen.</li>
+ *     <li>{@code --checkpoint} writes the replay state every {@code --checkpoint-interval} seconds into the given
+ *     directory or the output directory, and {@code --resume} continues from it ({@code checkpointOptions}).</li>
+ *     <li>{@code --ledger} also writes the applied movements per stock, sorted within the budget and temp directory
+ *     of {@code --sort-memory} and {@code --sort-temp} ({@code ledgerOptions}).</li>
+ * </ul>
+ */
+record BatchOptions(
+        String stockFile,
+        List<String> movementFiles,
+        LocalDate stockDate,
+        String outputDirectory,
+        SortingMovementReader.Options sortOptions,
+        Charset charset,
+        StockFilter stockFilter,
+        MovementStart movementStart,
+        boolean offHeap,
+        Path offHeapDirectory,
+        SpillingReconstruction.Options spillOptions,
+        boolean autoEngine,
+        ReplayCheckpointer.Options checkpointOptions,
+        StockLedger.Options ledgerOptions
+) {
+    static final String DEFAULT_STOCK_FILE = "PLSTORE_ES_BESTAND_EOD.csv";
+    static final String DEFAULT_MOVEMENT_FILE = "PLSTORE_ES_BESTJOUR_EOD.csv";
+    static final String DEFAULT_OUTPUT_DIRECTORY = "/results/";
+
+    static BatchOptions parse(String[] args, int from) {
+        String stockFile = DEFAULT_STOCK_FILE;
+        List<String> movementFiles = List.of(DEFAULT_MOVEMENT_FILE);
+        LocalDate stockDate = null;
+        String outputDirectory = DEFAULT_OUTPUT_DIRECTORY;
+        boolean sortHistory = false;
+        SortingMovementReader.Options sortOptions = SortingMovementReader.Options.defaults();
+        Charset charset = CsvCharsets.DEFAULT;
+        Set<String> itemNumbers = Set.of();
+        Set<String> locations = Set.of();
+        Set<Integer> clients = Set.of();
+        Set<Integer> stockNumbers = Set.of();
+        Integer fromSequence = null;
+        LocalDate fromDate = null;
+        boolean offHeap = false;
+        Path offHeapDirectory = null;
+        boolean spill = false;
+        boolean autoEngine = false;
+        boolean checkpoint = false;
+        boolean ledger = false;
+        ReplayCheckpointer.Options checkpointOptions = ReplayCheckpointer.Options.defaults();
+        SpillingReconstruction.Options spillOptions = SpillingReconstruction.Options.defaults();
+        for (int i = from; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown batch option: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? null : arg.substring(separator + 1);
+            switch (name) {
+                case "sort-history" -> sortHistory = true;
+                case "spill" -> spill = true;
+                case "auto-engine" -> autoEngine = true;
+                case "ledger" -> ledger = true;
+                case "resume" -> {
+                    checkpoint = true;
+                    checkpointOptions = new ReplayCheckpointer.Options(checkpointOptions.directory(),
+                            checkpointOptions.interval(), true);
+                }
+                case "checkpoint" -> {
+                    checkpoint = true;
+                    checkpointOptions = new ReplayCheckpointer.Options(value == null ? null : Path.of(value),
+                            checkpointOptions.interval(), checkpointOptions.resume());
+                }
+                case "off-heap" -> {
+                    offHeap = true;
+                    offHeapDirectory = value == null ? null : Path.of(value);
+                }
+                case "sort-cache" -> {
+                    sortHistory = true;
+                    sortOptions = new SortingMovementReader.Options(sortOptions.memoryBudgetBytes(),
+                            sortOptions.parallelism(), sortOptions.tempDirectory(), true);
+                }
+                default -> {
+                    if (value == null) {
+                        throw new IllegalArgumentException("Missing value of batch option: " + arg);
+                    }
+                    switch (name) {
+                        case "stock" -> stockFile = value;
+                        case "history" -> movementFiles = List.of(value.split(","));
+                        case "date" -> stockDate = parseDate(value);
+                        case "output" -> outputDirectory = value;
+                        case "charset" -> charset = CsvCharsets.forName(value);
+                        case "item" -> itemNumbers = Set.copyOf(List.of(value.split(",")));
+                        case "location" -> locations = Set.copyOf(List.of(value.split(",")));
+                        case "client" -> clients = parseNumbers(value);
+                        case "stock-number" -> stockNumbers = parseNumbers(value);
+                        case "from-sequence" -> fromSequence = parseNumber(value);
+                        case "from-date" -> fromDate = parseDate(value);
+                        case "sort-memory" -> sortOptions = new SortingMovementReader.Options(parseMegabytes(value),
+                                sortOptions.parallelism(), sortOptions.tempDirectory(), sortOptions.cacheSortedOutput());
+                        case "sort-temp" -> sortOptions = new SortingMovementReader.Options(sortOptions.memoryBudgetBytes(),
+                                sortOptions.parallelism(), Path.of(value), sortOptions.cacheSortedOutput());
+                        case "spill-memory" -> spillOptions = new SpillingReconstruction.Options(parseMegabytes(value),
+                                spillOptions.parallelism(), spillOptions.tempDirectory());
+                        case "spill-threads" -> spillOptions = new SpillingReconstruction.Options(
+                                spillOptions.memoryBudgetBytes(), parseThreads(value), spillOptions.tempDirectory());
+                        case "checkpoint-interval" -> checkpointOptions = new ReplayCheckpointer.Options(
+                                checkpointOptions.directory(), parseSeconds(value), checkpointOptions.resume());
+                        case "spill-temp" -> spillOptions = new SpillingReconstruction.Options(
+                                spillOptions.memoryBudgetBytes(), spillOptions.parallelism(), Path.of(value));
+                        default -> throw new IllegalArgumentException("Unknown batch option: " + arg);
+                    }
+                }
+            }
+        }
+        StockFilter stockFilter = new StockFilter(itemNumbers, locations, clients, stockNumbers);
+        if (offHeap && !stockFilter.isEmpty()) {
+            throw new IllegalArgumentException("Stock filters cannot be combined with --off-heap");
+        }
+        if (spill && (offHeap || !stockFilter.isEmpty())) {
+            throw new IllegalArgumentException("--spill cannot be combined with --off-heap or stock filters");
+        }
+        if (spill && (sortHistory || movementFiles.size() != 1)) {
+            throw new IllegalArgumentException("--spill needs a single history file sorted by sequence number");
+        }
+        if (autoEngine && (offHeap || spill)) {
+            throw new IllegalArgumentException("--auto-engine cannot be combined with --off-heap or --spill");
+        }
+        if (checkpoint && (offHeap || spill || autoEngine || !stockFilter.isEmpty() || sortHistory
+                || movementFiles.size() != 1 || !MovementSources.isPlainFile(movementFiles.getFirst()))) {
+            throw new IllegalArgumentException("--checkpoint and --resume need the heap engine and a single "
+                    + "uncompressed history file, without stock filters or --sort-history");
+        }
+        if (ledger && (offHeap || spill || autoEngine || checkpoint)) {
+            throw new IllegalArgumentException("--ledger needs the heap engine and cannot be combined with "
+                    + "--off-heap, --spill, --auto-engine or --checkpoint");
+        }
+        if (checkpoint && checkpointOptions.directory() == null) {
+            checkpointOptions = new ReplayCheckpointer.Options(Path.of(outputDirectory), checkpointOptions.interval(),
+                    checkpointOptions.resume());
+        }
+        return new BatchOptions(stockFile, movementFiles, stockDate, outputDirectory, sortHistory ? sortOptions : null,
+                charset, stockFilter.isEmpty() ? null : stockFilter,
+                fromSequence == null && fromDate == null ? null : new MovementStart(fromSequence, fromDate),
+                offHeap, offHeapDirectory, spill || autoEngine ? spillOptions : null, autoEngine,
+                checkpoint ? checkpointOptions : null,
+                ledger ? new StockLedger.Options(sortOptions.memoryBudgetBytes(), sortOptions.parallelism(),
+                        sortOptions.tempDirectory()) : null);
+    }
+
+    /**
+     * The options of a reconstruction with {@code engine}, which {@code --auto-engine} has chosen.
+     */
+    BatchOptions withEngine(MemoryEstimator.Engine engine) {
+        return new BatchOptions(stockFile, movementFiles, stockDate, outputDirectory, sortOptions, charset, stockFilter,
+                movementStart, engine == MemoryEstimator.Engine.OFF_HEAP, offHeapDirectory,
+                engine == MemoryEstimator.Engine.SPILL ? spillOptions : null, false, checkpointOptions, ledgerOptions);
+    }
+
+    BatchOptions withStockDate(LocalDate date) {
+        return new BatchOptions(stockFile, movementFiles, date, outputDirectory, sortOptions, charset, stockFilter,
+                movementStart, offHeap, offHeapDirectory, spillOptions, autoEngine, checkpointOptions, ledgerOptions);
+    }
+
+    BatchOptions withFiles(String stock, List<String> movements, String output) {
+        return new BatchOptions(stock, movements, stockDate, output, sortOptions, charset, stockFilter, movementStart,
+                offHeap, offHeapDirectory, spillOptions, autoEngine, checkpointOptions, ledgerOptions);
+    }
+
+    MemoryEstimator.Engine engine() {
+        if (offHeap) {
+            return MemoryEstimator.Engine.OFF_HEAP;
+        }
+        return spillOptions == null ? MemoryEstimator.Engine.HEAP : MemoryEstimator.Engine.SPILL;
+    }
+
+    private static Set<Integer> parseNumbers(String value) {
+        return Arrays.stream(value.split(",")).map(BatchOptions::parseNumber).collect(Collectors.toSet());
+    }
+
+    private static int parseNumber(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException _) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    static int parseThreads(String value) {
+        int threads = parseNumber(value);
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + value);
+        }
+        return threads;
+    }
+
+    static long parseMegabytes(String value) {
+        try {
+            long megabytes = Long.parseLong(value);
+            if (megabytes > 0) {
+                return megabytes << 20;
+            }
+        } catch (NumberFormatException _) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid memory budget, expected megabytes: " + value);
+    }
+
+    private static Duration parseSeconds(String value) {
+        int seconds = parseNumber(value);
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid number of seconds: " + value);
+        }
+        return Duration.ofSeconds(seconds);
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException _) {
+            throw new IllegalArgumentException("Invalid date, expected YYYY-MM-DD: " + value);
+        }
+    }
+}
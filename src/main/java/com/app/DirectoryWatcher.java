@@ -0,0 +1,267 @@
+package com.app;
+
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reconstructs the stock whenever a new export has landed in a drop directory. The stock and history files of the batch
+ * options are looked up by name in the directory. An export counts as complete once the marker file exists and is not
+ * older than any file of the export, so a marker left over from the previous export does not count for the next one.
+ * Without a marker it is complete once no file of the export has changed for {@code settle} and their sizes and
+ * modification times are the same as one {@code settle} before. Bursts of events while the files are copied therefore
+ * lead to a single run, and an export that has been reconstructed is not reconstructed again until one of its files
+ * changes. A failed run is retried after {@code settle}.
+ * <p>
+ * Runs share the JVM, so the JIT stays warm and an unchanged stock file is read from its snapshot cache. The job
+ * writes into a hidden directory inside the output directory; its files are moved into the output directory only after
+ * the job has succeeded, so readers never see partial output.
+ */
+final class DirectoryWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryWatcher.class);
+    static final String PARTIAL_PREFIX = ".partial-";
+
+    private final Options options;
+    private final BatchOptions batchOptions;
+    private final List<Path> inputs;
+    private List<String> candidate;
+    private List<String> reconstructed;
+
+    DirectoryWatcher(Options options, BatchOptions batchOptions) {
+        this.options = options;
+        this.batchOptions = batchOptions.withFiles(
+                inDirectory(batchOptions.stockFile()).toString(),
+                batchOptions.movementFiles().stream().map(file -> inDirectory(file).toString()).toList(),
+                batchOptions.outputDirectory());
+        List<Path> files = new ArrayList<>();
+        files.add(Path.of(this.batchOptions.stockFile()));
+        this.batchOptions.movementFiles().forEach(file -> files.add(Path.of(file)));
+        if (options.marker() != null) {
+            files.add(inDirectory(options.marker()));
+        }
+        this.inputs = List.copyOf(files);
+    }
+
+    /**
+     * Watches until the thread is interrupted. An export that is already complete is reconstructed right away.
+     */
+    void watch() throws IOException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            options.directory().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            LOGGER.info("Watching {} for {}", options.directory(), inputs.stream().map(Path::getFileName).toList());
+            long due = System.nanoTime();
+            while (true) {
+                WatchKey key = watchService.poll(Math.max(0, due - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    boolean relevant = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || event.context() instanceof Path file && isInput(file);
+                    }
+                    if (!key.reset()) {
+                        LOGGER.error("Stopped watching {}, it is no longer accessible", options.directory());
+                        return;
+                    }
+                    if (relevant) {
+                        due = System.nanoTime() + options.settle().toNanos();
+                    }
+                    continue;
+                }
+                if (check()) {
+                    due = System.nanoTime() + options.settle().toNanos();
+                } else {
+                    due = Long.MAX_VALUE >> 1;
+                }
+            }
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("Stopped watching {}", options.directory());
+        }
+    }
+
+    /**
+     * Reconstructs the export if it is complete and new.
+     *
+     * @return whether to check again after {@code settle}, because the files may still be changing or the run failed
+     */
+    boolean check() {
+        List<String> state = state();
+        if (state == null || state.equals(reconstructed)) {
+            candidate = null;
+            return false;
+        }
+        if (options.marker() == null && !state.equals(candidate)) {
+            candidate = state;
+            return true;
+        }
+        candidate = null;
+        if (!reconstruct()) {
+            return true;
+        }
+        reconstructed = state;
+        return false;
+    }
+
+    /**
+     * @return whether the output has been published
+     */
+    private boolean reconstruct() {
+        Path output = Path.of(batchOptions.outputDirectory());
+        Path partial = output.resolve(PARTIAL_PREFIX + System.currentTimeMillis());
+        LOGGER.info("Export in {} is complete, starting reconstruction", options.directory());
+        long start = System.nanoTime();
+        try {
+            Result<ReconstructionJob.Report, StockError> report =
+                    new ReconstructionJob(batchOptions.withFiles(batchOptions.stockFile(), batchOptions.movementFiles(),
+                            partial.toString())).run();
+            if (report.isSuccessful()) {
+                List<Path> published = publish(partial, output);
+                LOGGER.info("Reconstructed export of {} in {} ms: {}", options.directory(),
+                        (System.nanoTime() - start) / 1_000_000, published);
+                return true;
+            } else {
+                LOGGER.error("Reconstruction of export in {} failed: {}", options.directory(),
+                        report.error().message());
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to publish output of {} to {}", partial, output, e);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            LOGGER.error("Reconstruction of export in {} failed", options.directory(), e);
+        } finally {
+            delete(partial);
+        }
+        return false;
+    }
+
+    /**
+     * Moves the files of the finished job into {@code output}. Every file appears complete under its final name.
+     */
+    private static List<Path> publish(Path partial, Path output) throws IOException {
+        List<Path> published = new ArrayList<>();
+        try (Stream<Path> files = Files.list(partial)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                Path target = output.resolve(file.getFileName());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                published.add(target);
+            }
+        }
+        return published;
+    }
+
+    private static void delete(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Path, size and modification time of every input file, or {@code null} while one of them is missing or the marker
+     * is older than one of the export files.
+     */
+    private List<String> state() {
+        List<String> state = new ArrayList<>(inputs.size());
+        long newestExportFile = Long.MIN_VALUE;
+        for (Path file : inputs) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                long modified = attributes.lastModifiedTime().toMillis();
+                if (options.marker() != null && file.equals(inDirectory(options.marker()))) {
+                    if (modified < newestExportFile) {
+                        return null;
+                    }
+                } else {
+                    newestExportFile = Math.max(newestExportFile, modified);
+                }
+                state.add(file + ":" + attributes.size() + ":" + modified);
+            } catch (IOException _) {
+                return null;
+            }
+        }
+        return state;
+    }
+
+    private boolean isInput(Path file) {
+        return inputs.stream().anyMatch(input -> Objects.equals(input.getFileName(), file.getFileName()));
+    }
+
+    private Path inDirectory(String file) {
+        return options.directory().resolve(Path.of(file).getFileName());
+    }
+
+    /**
+     * @param directory drop directory of the exports
+     * @param settle    time without changes after which an export without marker counts as complete
+     * @param marker    name of a file that is created once the export is complete, or {@code null}
+     */
+    record Options(Path directory, Duration settle, String marker) {
+        static Options defaults(Path directory) {
+            return new Options(directory, Duration.ofSeconds(30), null);
+        }
+
+        static boolean isWatchOption(String arg) {
+            return arg.startsWith("--settle=") || arg.startsWith("--marker=");
+        }
+
+        /**
+         * Parses {@code --settle=<s>} and {@code --marker=<name>}.
+         */
+        static Options parse(Path directory, List<String> args) {
+            Options options = defaults(directory);
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Unknown watch option: " + arg);
+                }
+                String value = arg.substring(separator + 1);
+                options = switch (arg.substring(2, separator)) {
+                    case "settle" -> new Options(directory, parseSettle(value), options.marker());
+                    case "marker" -> new Options(directory, options.settle(), value.isEmpty() ? null : value);
+                    default -> throw new IllegalArgumentException("Unknown watch option: " + arg);
+                };
+            }
+            if (!Files.isDirectory(directory)) {
+                throw new IllegalArgumentException("Not a directory: " + directory);
+            }
+            return options;
+        }
+
+        private static Duration parseSettle(String value) {
+            try {
+                long seconds = Long.parseLong(value);
+                if (seconds >= 0) {
+                    return Duration.ofSeconds(seconds);
+                }
+            } catch (NumberFormatException _) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Invalid settle time, expected seconds: " + value);
+        }
+    }
+}
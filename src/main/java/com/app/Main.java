@@ -1,69 +1,197 @@
 package com.app;
 
-import com.app.history.reader.CsvMovementReader;
-import com.app.history.reader.MovementReader;
-import com.app.history.reader.MovementStream;
-import com.app.stock.StockData;
-import com.app.stock.reader.CsvStockIO;
-import com.app.stock.reader.StockIO;
+import com.app.history.reader.MovementIndex;
+import com.app.server.StockServer;
+import com.app.stock.diff.StockDiffEngine;
+import com.app.stock.diff.StockDiffSummary;
 import com.app.tui.StockReconstructorTui;
+import com.app.utils.CsvCharsets;
 import com.app.utils.Result;
 import com.app.utils.StockError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
         ensureLogDirectory();
         if (args.length > 0 && "--batch".equalsIgnoreCase(args[0])) {
             Logger logger = LoggerFactory.getLogger(Main.class);
-            final String stockCsvFile = "PLSTORE_ES_BESTAND_EOD.csv";
-            final String movementCsvFile = "PLSTORE_ES_BESTJOUR_EOD.csv";
+            final BatchOptions options;
+            try {
+                options = BatchOptions.parse(args, 1);
+            } catch (IllegalArgumentException e) {
+                logger.error(e.getMessage());
+                return;
+            }
 
             logger.info("Starting stock reconstruction");
-            logger.info("Reading stock file: {}", stockCsvFile);
-            logger.info("Reading movement file: {}", movementCsvFile);
+            logger.info("Reading stock file: {}", options.stockFile());
+            logger.info("Reading movement files: {}", options.movementFiles());
 
-            runBatch(logger, stockCsvFile, movementCsvFile, null);
+            new ReconstructionJob(options).run();
             logger.info("Stock reconstruction complete");
             return;
         }
+        if (args.length > 0 && "--manifest".equalsIgnoreCase(args[0])) {
+            Logger logger = LoggerFactory.getLogger(Main.class);
+            if (args.length < 2) {
+                logger.error("Usage: --manifest <manifest.csv> [--threads=<n>] [--memory=<MB>] [--summary=<dir>]");
+                return;
+            }
+            runManifest(logger, Path.of(args[1]), args);
+            return;
+        }
+        if (args.length > 0 && "--watch".equalsIgnoreCase(args[0])) {
+            Logger logger = LoggerFactory.getLogger(Main.class);
+            if (args.length < 2) {
+                logger.error("Usage: --watch <directory> [--settle=<s>] [--marker=<name>] [batch options]");
+                return;
+            }
+            runWatch(logger, Path.of(args[1]), args);
+            return;
+        }
+        if (args.length > 0 && "--serve".equalsIgnoreCase(args[0])) {
+            runServer(LoggerFactory.getLogger(Main.class), args);
+            return;
+        }
+        if (args.length > 0 && "--index".equalsIgnoreCase(args[0])) {
+            Logger logger = LoggerFactory.getLogger(Main.class);
+            if (args.length < 2) {
+                logger.error("Usage: --index <history.csv> [interval]");
+                return;
+            }
+            runIndex(logger, args[1], args.length > 2 ? args[2] : null);
+            return;
+        }
+        if (args.length > 0 && "--diff".equalsIgnoreCase(args[0])) {
+            Logger logger = LoggerFactory.getLogger(Main.class);
+            List<String> files = new ArrayList<>();
+            Charset charset = CsvCharsets.DEFAULT;
+            try {
+                for (int i = 1; i < args.length; i++) {
+                    if (args[i].startsWith("--charset=")) {
+                        charset = CsvCharsets.forName(args[i].substring("--charset=".length()));
+                    } else {
+                        files.add(args[i]);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                logger.error(e.getMessage());
+                return;
+            }
+            if (files.size() < 2 || files.size() > 3) {
+                logger.error("Usage: --diff <left.csv> <right.csv> [outputDir] [--charset=<name>]");
+                return;
+            }
+            runDiff(logger, files.get(0), files.get(1), files.size() > 2 ? files.get(2) : "results", charset);
+            return;
+        }
 
         new StockReconstructorTui().start();
     }
 
-    private static void runBatch(Logger logger, String stockCsvFile, String movementCsvFile, LocalDate stockDate) {
-        StockIO stockReader = new CsvStockIO(stockCsvFile);
-        MovementReader movementReader = new CsvMovementReader(movementCsvFile);
+    private static void runManifest(Logger logger, Path manifest, String[] args) {
+        final ManifestScheduler.Options options;
+        try {
+            options = ManifestScheduler.Options.parse(args, 2);
+        } catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return;
+        }
+        Result<Path, StockError> summary = new ManifestScheduler(options).run(manifest);
+        summary.ifSuccessfulOrElse(
+                file -> logger.info("Manifest {} complete, summary in {}", manifest, file),
+                () -> logger.error("Failed to run manifest: {}", summary.error().message())
+        );
+    }
 
-        final Result<StockData, StockError> stockData = stockReader.readStocks();
-        stockData.ifSuccessfulOrElse(sd -> {
-            StockData data = stockDate == null ? sd : new StockData(sd.getStockRecords(), stockDate);
-            logger.info("Loaded {} stock records", data.getStockRecords().size());
-            final Result<MovementStream, StockError> movementRecords = movementReader.readMovements();
-            movementRecords.ifSuccessfulOrElse(ms -> {
-                try (ms) {
-                    ms.stream().forEach(data::handleMovement);
-                }
-                logger.info("Processed movements. Errors: {}, critical: {}", data.getErrors().size(), data.isCriticalErrors());
-            }, () -> logger.error("Failed to read movements: {}", movementRecords.error().message()));
+    private static void runWatch(Logger logger, Path directory, String[] args) {
+        List<String> watchArgs = new ArrayList<>();
+        List<String> batchArgs = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            (DirectoryWatcher.Options.isWatchOption(args[i]) ? watchArgs : batchArgs).add(args[i]);
+        }
+        final DirectoryWatcher watcher;
+        try {
+            watcher = new DirectoryWatcher(DirectoryWatcher.Options.parse(directory, watchArgs),
+                    BatchOptions.parse(batchArgs.toArray(String[]::new), 0));
+        } catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return;
+        }
+        try {
+            watcher.watch();
+        } catch (IOException e) {
+            logger.error("Failed to watch {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static void runServer(Logger logger, String[] args) {
+        List<String> serverArgs = new ArrayList<>();
+        List<String> batchArgs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            (StockServer.Options.isServerOption(args[i]) ? serverArgs : batchArgs).add(args[i]);
+        }
+        final StockServer.Options serverOptions;
+        final BatchOptions options;
+        try {
+            serverOptions = StockServer.Options.parse(serverArgs);
+            options = BatchOptions.parse(batchArgs.toArray(String[]::new), 0);
+        } catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return;
+        }
+        if (options.engine() != MemoryEstimator.Engine.HEAP || options.autoEngine()
+                || options.checkpointOptions() != null || options.ledgerOptions() != null) {
+            logger.error("--serve keeps the stock on the heap and cannot be combined with --off-heap, --spill, "
+                    + "--auto-engine, --checkpoint or --ledger");
+            return;
+        }
+        StockServer server = new StockServer(
+                new StockServer.Inputs(options.stockFile(), options.movementFiles(), options.charset(),
+                        options.stockDate()),
+                serverOptions,
+                cutoff -> new ReconstructionJob(options.withStockDate(cutoff)).reconstruct());
+        try {
+            server.start();
+        } catch (IOException e) {
+            logger.error("Failed to start server: {}", e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "server-shutdown"));
+    }
 
-            final int sizeBeforeCleanUp = data.getStockRecords().size();
-            data.cleanUp();
-            final int sizeAfterCleanUp = data.getStockRecords().size();
-            logger.info("Cleaned up stock records. Before: {}, After: {}", sizeBeforeCleanUp, sizeAfterCleanUp);
+    private static void runIndex(Logger logger, String movementFile, String interval) {
+        final int linesPerEntry;
+        try {
+            linesPerEntry = interval == null ? MovementIndex.DEFAULT_INTERVAL : Integer.parseInt(interval);
+        } catch (NumberFormatException e) {
+            logger.error("Invalid index interval: {}", interval);
+            return;
+        }
+        Result<MovementIndex, StockError> indexResult = MovementIndex.build(Path.of(movementFile), linesPerEntry);
+        indexResult.ifSuccessfulOrElse(
+                index -> logger.info("Indexed {} with {} entries", movementFile, index.size()),
+                () -> logger.error("Failed to index movements: {}", indexResult.error().message())
+        );
+    }
 
-            Result<Void, StockError> writeResult = stockReader.writeStocks(data, "/results/");
-            writeResult.ifSuccessfulOrElse(
-                    ignored -> logger.info("Wrote stock output to ./results/"),
-                    () -> logger.error("Failed to write stock output: {}", writeResult.error().message())
-            );
-        }, () -> logger.error("Failed to read stocks: {}", stockData.error().message()));
+    private static void runDiff(Logger logger, String leftCsvFile, String rightCsvFile, String outputDirectory,
+                                Charset charset) {
+        logger.info("Comparing stock file {} with {}", leftCsvFile, rightCsvFile);
+        Result<StockDiffSummary, StockError> diffResult = new StockDiffEngine(charset)
+                .diff(leftCsvFile, rightCsvFile, outputDirectory);
+        diffResult.ifSuccessfulOrElse(
+                summary -> logger.info("Wrote stock diff to {} and totals to {}", summary.diffFile(), summary.totalsFile()),
+                () -> logger.error("Failed to diff stock files: {}", diffResult.error().message())
+        );
     }
 
     private static void ensureLogDirectory() {
@@ -0,0 +1,255 @@
+package com.app;
+
+import com.app.utils.CsvCharsets;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static com.app.utils.CsvFieldUtils.escapeCsv;
+
+/**
+ * Runs the reconstructions of a manifest in one JVM, so all sites share a warm JIT and all cores. Every manifest line
+ * lists stock file, history, stock date (may be empty) and output directory, optionally followed by further batch
+ * options; several history files are separated by {@code ;}:
+ *
+ * <pre>PLSTORE_ES_BESTAND_EOD.csv,PLSTORE_ES_BESTJOUR_EOD.csv.gz,2026-01-31,results/site1,--charset=windows-1252</pre>
+ *
+ * <p>Jobs start in manifest order as soon as a worker is free and their estimated heap fits into the memory budget;
+ * a job estimated larger than the whole budget runs alone. A job that fails or throws does not affect the others. The
+ * outcome of every job, including the engine it ran with, is written to {@code manifest_<timestamp>.csv}. Jobs with
+ * {@code --auto-engine} are admitted with the heap estimate of the engine {@link MemoryEstimator} chooses.
+ */
+final class ManifestScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ManifestScheduler.class);
+    static final String JOB_KEY = "job";
+    private static final int MEGABYTE_SHIFT = 20;
+
+    private final Options options;
+
+    ManifestScheduler(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * @return the summary file
+     */
+    Result<Path, StockError> run(Path manifest) {
+        final List<Entry> entries;
+        try {
+            entries = readManifest(manifest);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read manifest {}", manifest, e);
+            return Result.failure(StockError.parseError(manifest.toString(), "Failed to read manifest: " + e.getMessage()));
+        }
+        LOGGER.info("Running {} jobs of {} on {} threads with a memory budget of {} MB", entries.size(), manifest,
+                options.parallelism(), options.memoryBudgetBytes() >> MEGABYTE_SHIFT);
+
+        List<Outcome> outcomes = runAll(manifest, entries);
+        long failed = outcomes.stream().filter(outcome -> outcome.result().isFailure()).count();
+        LOGGER.info("Finished {} jobs: {} succeeded, {} failed", outcomes.size(), outcomes.size() - failed, failed);
+        return writeSummary(outcomes);
+    }
+
+    static List<Entry> readManifest(Path manifest) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        List<String> lines = Files.readAllLines(manifest, CsvCharsets.DEFAULT);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#") || i == 0 && line.toUpperCase().startsWith("STOCK,")) {
+                continue;
+            }
+            entries.add(new Entry(i + 1, Arrays.stream(line.split(",", -1)).map(String::strip).toList()));
+        }
+        return entries;
+    }
+
+    private List<Outcome> runAll(Path manifest, List<Entry> entries) {
+        int budgetMegabytes = (int) Math.clamp(options.memoryBudgetBytes() >> MEGABYTE_SHIFT, 1, Integer.MAX_VALUE);
+        Semaphore budget = new Semaphore(budgetMegabytes, true);
+        ExecutorService executor = Executors.newFixedThreadPool(options.parallelism(), Thread.ofPlatform()
+                .name("manifest-", 0)
+                .daemon(true)
+                .factory());
+        List<Future<Outcome>> running = new ArrayList<>(entries.size());
+        try {
+            for (Entry entry : entries) {
+                final ReconstructionJob job;
+                try {
+                    job = new ReconstructionJob(BatchOptions.parse(entry.arguments(), 0));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.error("Invalid manifest line {}: {}", entry.line(), e.getMessage());
+                    running.add(CompletableFuture.completedFuture(new Outcome(entry, Result.failure(
+                            StockError.parseError(manifest.toString(), e.getMessage())), 0)));
+                    continue;
+                }
+                int megabytes = (int) Math.clamp(Math.ceilDiv(job.estimatedHeapBytes(), 1L << MEGABYTE_SHIFT), 1,
+                        budgetMegabytes);
+                budget.acquire(megabytes);
+                running.add(executor.submit(() -> {
+                    try {
+                        return runJob(entry, job);
+                    } finally {
+                        budget.release(megabytes);
+                    }
+                }));
+            }
+            List<Outcome> outcomes = new ArrayList<>(running.size());
+            for (Future<Outcome> outcome : running) {
+                outcomes.add(outcome.get());
+            }
+            return outcomes;
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while running manifest {}", manifest);
+            return running.stream().filter(Future::isDone).map(Future::resultNow).toList();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Manifest job failed unexpectedly", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Outcome runJob(Entry entry, ReconstructionJob job) {
+        MDC.put(JOB_KEY, entry.name());
+        long start = System.nanoTime();
+        try {
+            LOGGER.info("Starting job of manifest line {}", entry.line());
+            return new Outcome(entry, job.run(), System.nanoTime() - start);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            LOGGER.error("Job of manifest line {} failed", entry.line(), e);
+            return new Outcome(entry, Result.failure(StockError.writingError(job.options().outputDirectory(),
+                    "Job failed: " + e)), System.nanoTime() - start);
+        } finally {
+            MDC.remove(JOB_KEY);
+        }
+    }
+
+    private Result<Path, StockError> writeSummary(List<Outcome> outcomes) {
+        Path directory = Path.of(options.summaryDirectory());
+        try {
+            Files.createDirectories(directory);
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            Path summaryFile = directory.resolve("manifest_" + timestamp + ".csv");
+            try (Writer writer = CsvCharsets.newWriter(summaryFile, CsvCharsets.DEFAULT, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write("LINE,STOCK,HISTORY,DATE,OUTPUT,STATUS,STOCKS,ERRORS,CRITICAL,SECONDS,MESSAGE,ENGINE,ENGINE_REASON,REMOVED");
+                writer.write(System.lineSeparator());
+                for (Outcome outcome : outcomes) {
+                    writer.write(summaryLine(outcome));
+                    writer.write(System.lineSeparator());
+                }
+            }
+            LOGGER.info("Wrote manifest summary to {}", summaryFile);
+            return Result.success(summaryFile);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write manifest summary to {}", directory, e);
+            return Result.failure(StockError.writingError(directory.toString(),
+                    "Failed to write manifest summary: " + e.getMessage()));
+        }
+    }
+
+    private static String summaryLine(Outcome outcome) {
+        Entry entry = outcome.entry();
+        Result<ReconstructionJob.Report, StockError> result = outcome.result();
+        ReconstructionJob.Report report = result.isSuccessful() ? result.getOrThrow() : null;
+        return String.join(",",
+                String.valueOf(entry.line()),
+                escapeCsv(entry.field(0)),
+                escapeCsv(entry.field(1)),
+                escapeCsv(entry.field(2)),
+                escapeCsv(entry.field(3)),
+                report == null ? "FAILED" : "OK",
+                report == null ? "" : String.valueOf(report.stockRecords()),
+                report == null ? "" : String.valueOf(report.errors()),
+                report == null ? "" : String.valueOf(report.criticalErrors()),
+                String.format(Locale.ROOT, "%.1f", outcome.elapsedNanos() / 1e9),
+                escapeCsv(report == null ? result.error().message() : ""),
+                report == null || report.engine() == null ? "" : report.engine().engine().name(),
+                escapeCsv(report == null || report.engine() == null ? "" : report.engine().reason()),
+                report == null ? "" : String.valueOf(report.removedStocks()));
+    }
+
+    /**
+     * A manifest line; {@code fields} are stock file, history, stock date, output directory and further options.
+     */
+    record Entry(int line, List<String> fields) {
+        String field(int index) {
+            return index < fields.size() ? fields.get(index) : "";
+        }
+
+        String name() {
+            return field(3).isEmpty() ? "line " + line : field(3);
+        }
+
+        String[] arguments() {
+            if (fields.size() < 4) {
+                throw new IllegalArgumentException("Expected stock,history,date,output but got: " + String.join(",", fields));
+            }
+            List<String> arguments = new ArrayList<>();
+            arguments.add("--stock=" + field(0));
+            arguments.add("--history=" + field(1).replace(';', ','));
+            if (!field(2).isEmpty()) {
+                arguments.add("--date=" + field(2));
+            }
+            arguments.add("--output=" + field(3));
+            arguments.addAll(fields.subList(4, fields.size()));
+            return arguments.toArray(String[]::new);
+        }
+    }
+
+    private record Outcome(Entry entry, Result<ReconstructionJob.Report, StockError> result, long elapsedNanos) {
+    }
+
+    /**
+     * @param parallelism       jobs running at the same time at most
+     * @param memoryBudgetBytes heap shared by the running jobs, see {@link ReconstructionJob#estimatedHeapBytes()}
+     * @param summaryDirectory  directory of the summary file
+     */
+    record Options(int parallelism, long memoryBudgetBytes, String summaryDirectory) {
+        static Options defaults() {
+            return new Options(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() * 3 / 4,
+                    "results");
+        }
+
+        static Options parse(String[] args, int from) {
+            Options options = defaults();
+            for (int i = from; i < args.length; i++) {
+                String arg = args[i];
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Unknown manifest option: " + arg);
+                }
+                String value = arg.substring(separator + 1);
+                options = switch (arg.substring(2, separator)) {
+                    case "threads" -> new Options(BatchOptions.parseThreads(value), options.memoryBudgetBytes(),
+                            options.summaryDirectory());
+                    case "memory" -> new Options(options.parallelism(), BatchOptions.parseMegabytes(value),
+                            options.summaryDirectory());
+                    case "summary" -> new Options(options.parallelism(), options.memoryBudgetBytes(), value);
+                    default -> throw new IllegalArgumentException("Unknown manifest option: " + arg);
+                };
+            }
+            return options;
+        }
+    }
+}
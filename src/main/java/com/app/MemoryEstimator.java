@@ -0,0 +1,324 @@
+package com.app;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.model.MovementEvent;
+import com.app.history.reader.MovementSources;
+import com.app.utils.CsvFieldUtils;
+import com.app.utils.HyperLogLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Pre-flight of {@code --auto-engine}: samples the stock and history files, estimates the memory every engine needs
+ * and picks the cheapest one that fits. Plain files are sampled in blocks spread over the whole file, compressed
+ * histories by their first decompressed bytes; the number of distinct stocks is estimated with a
+ * {@link HyperLogLog} over the sampled lines.
+ */
+final class MemoryEstimator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryEstimator.class);
+    /**
+     * Heap of the JVM, the parsers and the error list that every engine needs.
+     */
+    static final long BASELINE_HEAP_BYTES = 64L << 20;
+    /**
+     * Heap of a stock created by the replay, which has no CSV line to measure.
+     */
+    static final long HEAP_BYTES_PER_CREATED_STOCK = 400;
+    /**
+     * Native bytes of an off-heap slot besides its encoded line; the store doubles its capacity, so twice that is
+     * reserved per stock.
+     */
+    static final long OFF_HEAP_SLOT_BYTES = 40;
+    static final int ASSUMED_COMPRESSION_RATIO = 8;
+    private static final int SAMPLE_BLOCKS = 16;
+    private static final int BLOCK_BYTES = 1 << 16;
+    private static final int SAMPLE_BYTES = SAMPLE_BLOCKS * BLOCK_BYTES;
+    private static final int SKETCH_PRECISION = 12;
+    private static final int MEGABYTE_SHIFT = 20;
+
+    enum Engine {
+        HEAP, OFF_HEAP, SPILL
+    }
+
+    private final long usableHeapBytes;
+    private final long usableNativeBytes;
+
+    /**
+     * @param usableHeapBytes   heap a reconstruction may fill
+     * @param usableNativeBytes native memory the off-heap store may fill
+     */
+    MemoryEstimator(long usableHeapBytes, long usableNativeBytes) {
+        this.usableHeapBytes = usableHeapBytes;
+        this.usableNativeBytes = usableNativeBytes;
+    }
+
+    /**
+     * Leaves a fifth of the maximum heap and of the physical memory outside the heap as headroom.
+     */
+    static MemoryEstimator forRuntime() {
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        long physical = ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                ? os.getTotalMemorySize() : 0;
+        return new MemoryEstimator(maxHeap / 5 * 4, Math.max(0, physical - maxHeap) / 5 * 4);
+    }
+
+    /**
+     * Chooses the engine of {@code options}; if the files cannot be sampled, the plain heap engine is chosen and the
+     * reconstruction reports the failure itself.
+     */
+    Choice choose(BatchOptions options) {
+        final Estimate estimate;
+        try {
+            estimate = estimate(options);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to sample input files: {}", e.getMessage());
+            return new Choice(Engine.HEAP, "input files could not be sampled: " + e.getMessage(), 0);
+        }
+        String described = estimate.describe() + "; ";
+        if (options.stockFilter() != null) {
+            return new Choice(Engine.HEAP, described + "stock filters need the heap engine", estimate.heapBytes());
+        }
+        if (estimate.heapBytes() <= usableHeapBytes) {
+            return new Choice(Engine.HEAP, described + String.format(Locale.ROOT, "heap needs ~%d of %d MB",
+                    megabytes(estimate.heapBytes()), megabytes(usableHeapBytes)), estimate.heapBytes());
+        }
+        String heapExceeded = String.format(Locale.ROOT, "heap would need ~%d of %d MB",
+                megabytes(estimate.heapBytes()), megabytes(usableHeapBytes));
+        long offHeapBytes = BASELINE_HEAP_BYTES + sortHeapBytes(options);
+        if (estimate.nativeBytes() <= usableNativeBytes && offHeapBytes <= usableHeapBytes) {
+            return new Choice(Engine.OFF_HEAP, described + heapExceeded + String.format(Locale.ROOT,
+                    ", off-heap needs ~%d of %d MB native memory", megabytes(estimate.nativeBytes()),
+                    megabytes(usableNativeBytes)), offHeapBytes);
+        }
+        String nativeExceeded = String.format(Locale.ROOT, ", off-heap would need ~%d of %d MB native memory",
+                megabytes(estimate.nativeBytes()), megabytes(usableNativeBytes));
+        if (options.sortOptions() == null && options.movementFiles().size() == 1) {
+            return new Choice(Engine.SPILL, described + heapExceeded + nativeExceeded + String.format(Locale.ROOT,
+                    ", spilling within %d MB", megabytes(estimate.spillHeapBytes())), estimate.spillHeapBytes());
+        }
+        return new Choice(Engine.HEAP, described + heapExceeded + nativeExceeded
+                + ", spilling needs a single history file sorted by sequence number", estimate.heapBytes());
+    }
+
+    /**
+     * Estimates of all engines from samples of the input files. A history read from stdin is not sampled and counted
+     * as empty.
+     */
+    Estimate estimate(BatchOptions options) throws IOException {
+        Sample stocks = sampleStocks(Path.of(options.stockFile()));
+        long movements = 0;
+        long createdStocks = 0;
+        for (String movementFile : options.movementFiles()) {
+            Sample history = sampleHistory(movementFile);
+            long lines = history.estimatedLines();
+            movements += lines;
+            createdStocks += Math.min(Math.round(lines * history.share(history.deletes())),
+                    Math.round(lines * history.distinctShare()));
+        }
+        long snapshotStocks = Math.round(stocks.estimatedLines() * stocks.distinctShare());
+        long stockLineBytes = stocks.averageLineBytes();
+        long heapBytes = BASELINE_HEAP_BYTES + sortHeapBytes(options)
+                + snapshotStocks * stockLineBytes * SpillingReconstruction.HEAP_BYTES_PER_STOCK_BYTE
+                + createdStocks * HEAP_BYTES_PER_CREATED_STOCK;
+        long nativeBytes = (snapshotStocks + createdStocks) * 2 * (OFF_HEAP_SLOT_BYTES + stockLineBytes);
+        SpillingReconstruction.Options spillOptions = options.spillOptions() == null
+                ? SpillingReconstruction.Options.defaults() : options.spillOptions();
+        return new Estimate(snapshotStocks, createdStocks, movements, heapBytes, nativeBytes,
+                spillOptions.memoryBudgetBytes());
+    }
+
+    /**
+     * Heap of the {@code --sort-history} runs, which every engine reading the history needs next to its own.
+     */
+    static long sortHeapBytes(BatchOptions options) {
+        return options.sortOptions() == null ? 0 : options.sortOptions().memoryBudgetBytes();
+    }
+
+    private static Sample sampleStocks(Path stockFile) throws IOException {
+        Sample sample = new Sample();
+        sample.sizeBytes = sampleFile(stockFile, (buffer, start, end) -> {
+            sample.addLine(start, end);
+            int fieldEnd = start;
+            while (fieldEnd < end && buffer[fieldEnd] != ',') {
+                fieldEnd++;
+            }
+            int trimmedStart = CsvFieldUtils.trimStart(buffer, start, fieldEnd);
+            long stockNumber = CsvFieldUtils.parseIntRange(buffer, trimmedStart,
+                    CsvFieldUtils.trimEnd(buffer, trimmedStart, fieldEnd));
+            if (stockNumber != CsvFieldUtils.NOT_FAST) {
+                sample.addStock((int) stockNumber, false);
+            }
+        });
+        return sample;
+    }
+
+    private static Sample sampleHistory(String movementFile) throws IOException {
+        Sample sample = new Sample();
+        if (MovementSources.STDIN.equals(movementFile)) {
+            return sample;
+        }
+        MovementCursor cursor = new MovementCursor();
+        LineConsumer consumer = (buffer, start, end) -> {
+            sample.addLine(start, end);
+            if (cursor.load(buffer, start, end) == null) {
+                sample.addStock(cursor.stockNumber(), cursor.event() == MovementEvent.DELETE);
+            }
+        };
+        if (MovementSources.isPlainFile(movementFile)) {
+            sample.sizeBytes = sampleFile(Path.of(movementFile), consumer);
+            return sample;
+        }
+        try (InputStream input = MovementSources.forPath(movementFile).openStream()) {
+            byte[] prefix = input.readNBytes(SAMPLE_BYTES);
+            boolean whole = prefix.length < SAMPLE_BYTES;
+            scanLines(prefix, prefix.length, true, whole, consumer);
+            sample.sizeBytes = whole ? prefix.length
+                    : Files.size(Path.of(movementFile)) * ASSUMED_COMPRESSION_RATIO;
+        }
+        return sample;
+    }
+
+    /**
+     * Feeds complete lines of up to {@link #SAMPLE_BLOCKS} blocks spread evenly over the file, or of the whole file
+     * if it is small, to {@code consumer}.
+     *
+     * @return the size of the file
+     */
+    private static long sampleFile(Path file, LineConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= SAMPLE_BYTES) {
+                byte[] buffer = new byte[(int) size];
+                readFully(channel, buffer, 0);
+                scanLines(buffer, buffer.length, true, true, consumer);
+                return size;
+            }
+            byte[] buffer = new byte[BLOCK_BYTES];
+            for (int block = 0; block < SAMPLE_BLOCKS; block++) {
+                long offset = block * (size - BLOCK_BYTES) / (SAMPLE_BLOCKS - 1);
+                readFully(channel, buffer, offset);
+                scanLines(buffer, buffer.length, offset == 0, false, consumer);
+            }
+            return size;
+        }
+    }
+
+    private static void readFully(FileChannel channel, byte[] buffer, long offset) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buffer);
+        while (target.hasRemaining() && channel.read(target, offset + target.position()) >= 0) {
+            // reads until the buffer is full or the file ends
+        }
+    }
+
+    /**
+     * @param atLineStart whether {@code buffer} starts with a line; otherwise the partial first line is skipped
+     * @param toEnd       whether {@code buffer} ends with the file; otherwise the partial last line is skipped
+     */
+    private static void scanLines(byte[] buffer, int length, boolean atLineStart, boolean toEnd, LineConsumer consumer) {
+        int start = 0;
+        if (!atLineStart) {
+            while (start < length && buffer[start] != '\n') {
+                start++;
+            }
+            start++;
+        }
+        while (start < length) {
+            int newline = start;
+            while (newline < length && buffer[newline] != '\n') {
+                newline++;
+            }
+            if (newline == length && !toEnd) {
+                return;
+            }
+            int end = newline > start && buffer[newline - 1] == '\r' ? newline - 1 : newline;
+            if (end > start) {
+                consumer.accept(buffer, start, end);
+            }
+            start = newline + 1;
+        }
+    }
+
+    private static long megabytes(long bytes) {
+        return Math.ceilDiv(bytes, 1L << MEGABYTE_SHIFT);
+    }
+
+    @FunctionalInterface
+    private interface LineConsumer {
+        void accept(byte[] buffer, int start, int end);
+    }
+
+    private static final class Sample {
+        private final HyperLogLog stocks = new HyperLogLog(SKETCH_PRECISION);
+        private long sizeBytes;
+        private int lines;
+        private long lineBytes;
+        private int keyedLines;
+        private int deletes;
+
+        void addLine(int start, int end) {
+            lines++;
+            // the line terminator is part of the file size
+            lineBytes += end - start + 1;
+        }
+
+        void addStock(int stockNumber, boolean delete) {
+            stocks.add(stockNumber);
+            keyedLines++;
+            if (delete) {
+                deletes++;
+            }
+        }
+
+        long averageLineBytes() {
+            return lines == 0 ? 0 : Math.ceilDiv(lineBytes, lines);
+        }
+
+        long estimatedLines() {
+            return lines == 0 ? 0 : sizeBytes * lines / lineBytes;
+        }
+
+        double share(long count) {
+            return keyedLines == 0 ? 0 : Math.min(1, (double) count / keyedLines);
+        }
+
+        double distinctShare() {
+            return share(stocks.estimate());
+        }
+
+        int deletes() {
+            return deletes;
+        }
+    }
+
+    /**
+     * @param stocks         distinct stocks of the snapshot
+     * @param createdStocks  stocks the replay creates at most, from the share of {@code DELETE} movements and of
+     *                       distinct stocks in the history
+     * @param heapBytes      heap of the plain engine
+     * @param nativeBytes    native memory of the off-heap engine, whose heap is {@link #BASELINE_HEAP_BYTES}
+     * @param spillHeapBytes heap of the spilling engine, its memory budget
+     */
+    record Estimate(long stocks, long createdStocks, long movements, long heapBytes, long nativeBytes,
+                    long spillHeapBytes) {
+        String describe() {
+            return String.format(Locale.ROOT, "~%d stocks, ~%d movements, up to ~%d stocks created by the replay",
+                    stocks, movements, createdStocks);
+        }
+    }
+
+    /**
+     * @param heapBytes estimated heap of the chosen engine
+     */
+    record Choice(Engine engine, String reason, long heapBytes) {
+    }
+}
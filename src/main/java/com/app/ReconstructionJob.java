@@ -0,0 +1,322 @@
+package com.app;
+
+import com.app.history.reader.MergingMovementReader;
+import com.app.history.reader.MovementCursorReader;
+import com.app.history.reader.MovementIndex;
+import com.app.history.reader.MovementReader;
+import com.app.history.reader.MovementSource;
+import com.app.history.reader.MovementSources;
+import com.app.history.reader.MovementStart;
+import com.app.history.reader.MovementStream;
+import com.app.history.reader.SortingMovementReader;
+import com.app.stock.OffHeapStockData;
+import com.app.stock.StockCheckpoint;
+import com.app.stock.OffHeapStockStore;
+import com.app.stock.StockData;
+import com.app.stock.StockLedger;
+import com.app.stock.StockReplay;
+import com.app.stock.StockSubset;
+import com.app.stock.reader.CsvStockIO;
+import com.app.stock.reader.StockIO;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.function.LongConsumer;
+
+/**
+ * One reconstruction as described by {@link BatchOptions}: reads the stock, replays the history and writes the output
+ * files. Batch mode runs a single job; {@link ManifestScheduler} runs many of them in one JVM.
+ */
+final class ReconstructionJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReconstructionJob.class);
+
+    private BatchOptions options;
+    private MemoryEstimator.Choice engine;
+
+    ReconstructionJob(BatchOptions options) {
+        this.options = options;
+    }
+
+    BatchOptions options() {
+        return options;
+    }
+
+    /**
+     * Heap the job is expected to need: the reconstructed stock or the spill budget for {@code --spill}, plus the
+     * budgets of {@code --sort-history} and {@code --ledger}; for {@code --auto-engine} the estimate of the chosen
+     * engine, which already includes the sort budget.
+     */
+    long estimatedHeapBytes() {
+        if (options.autoEngine()) {
+            return chooseEngine().heapBytes();
+        }
+        long ledgerBytes = options.ledgerOptions() == null ? 0 : options.ledgerOptions().memoryBudgetBytes();
+        return engineHeapBytes() + MemoryEstimator.sortHeapBytes(options) + ledgerBytes;
+    }
+
+    private long engineHeapBytes() {
+        if (options.spillOptions() != null) {
+            return options.spillOptions().memoryBudgetBytes();
+        }
+        try {
+            return Files.size(Path.of(options.stockFile())) * SpillingReconstruction.HEAP_BYTES_PER_STOCK_BYTE;
+        } catch (IOException _) {
+            return 0;
+        }
+    }
+
+    Result<Report, StockError> run() {
+        MemoryEstimator.Choice choice = options.autoEngine() ? chooseEngine()
+                : new MemoryEstimator.Choice(options.engine(), "chosen by options", estimatedHeapBytes());
+        options = options.withEngine(choice.engine());
+        return runEngine().map(report -> report.withEngine(choice));
+    }
+
+    private MemoryEstimator.Choice chooseEngine() {
+        if (engine == null) {
+            engine = MemoryEstimator.forRuntime().choose(options);
+            LOGGER.info("Chose engine {}: {}", engine.engine(), engine.reason());
+        }
+        return engine;
+    }
+
+    private Result<Report, StockError> runEngine() {
+        if (options.offHeap()) {
+            return runOffHeap();
+        }
+        if (options.spillOptions() != null) {
+            return runSpilling();
+        }
+        if (options.checkpointOptions() == null) {
+            return runHeap(null);
+        }
+        try (ReplayCheckpointer checkpointer = new ReplayCheckpointer(options)) {
+            Result<Report, StockError> report = runHeap(checkpointer);
+            if (report.isSuccessful()) {
+                checkpointer.complete();
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Reconstructs the stock on the heap with the options' stock filters and stock date, without writing it; for
+     * callers that keep the stock in memory, like the query server.
+     */
+    Result<StockData, StockError> reconstruct() {
+        return reconstructOnHeap(null, null).map(data -> {
+            final int sizeBeforeCleanUp = data.getStockRecords().size();
+            data.cleanUp();
+            LOGGER.info("Cleaned up stock records. Before: {}, After: {}", sizeBeforeCleanUp,
+                    data.getStockRecords().size());
+            return data;
+        });
+    }
+
+    private Result<Report, StockError> runHeap(ReplayCheckpointer checkpointer) {
+        if (options.ledgerOptions() == null) {
+            return runHeap(checkpointer, null);
+        }
+        final Result<StockLedger, StockError> opened = StockLedger.open(options.ledgerOptions());
+        if (opened.isFailure()) {
+            return Result.failure(opened.error());
+        }
+        try (StockLedger ledger = opened.getOrThrow()) {
+            return runHeap(checkpointer, ledger);
+        }
+    }
+
+    /**
+     * The clean-up is left to the export, which does it in the pass that collects the records for writing.
+     */
+    private Result<Report, StockError> runHeap(ReplayCheckpointer checkpointer, StockLedger ledger) {
+        return reconstructOnHeap(checkpointer, ledger).flatMap(data -> {
+            final Result<Integer, StockError> removed = new CsvStockIO(options.stockFile(), true, options.charset())
+                    .cleanUpAndWriteStocks(data, options.outputDirectory());
+            final Result<?, StockError> written = ledger == null ? removed
+                    : removed.flatMap(ignored -> ledger.write(options.outputDirectory(), options.charset(),
+                    data.getStockRecords()::containsKey));
+            return write(written, new Report(data.getStockRecords().size(), removed.getOrElse(0),
+                    data.getErrors().size(), data.isCriticalErrors()));
+        });
+    }
+
+    /**
+     * Loads the stock and replays the history without cleaning up the result.
+     *
+     * @param ledger records the applied movements, {@code null} without {@code --ledger}
+     */
+    private Result<StockData, StockError> reconstructOnHeap(ReplayCheckpointer checkpointer, StockLedger ledger) {
+        StockIO stockReader = new CsvStockIO(options.stockFile(), true, options.charset());
+        LocalDate stockDate = options.stockDate();
+
+        final StockCheckpoint checkpoint = checkpointer == null ? null : checkpointer.resume().orElse(null);
+        final StockSubset subset;
+        StockData data;
+        if (checkpoint != null) {
+            subset = null;
+            data = checkpoint.data();
+        } else {
+            final Result<StockData, StockError> stockData = stockReader.readStocks();
+            if (stockData.isFailure()) {
+                LOGGER.error("Failed to read stocks: {}", stockData.error().message());
+                return Result.failure(stockData.error());
+            }
+            final StockData sd = stockData.getOrThrow();
+            subset = options.stockFilter() == null ? null
+                    : StockSubset.select(sd.getStockRecords(), options.stockFilter());
+            if (subset != null) {
+                data = new StockData(subset.stockRecords(), stockDate);
+                data.addErrors(sd.getErrors());
+            } else if (stockDate != null) {
+                data = new StockData(sd.getStockRecords(), stockDate);
+                data.addErrors(sd.getErrors());
+            } else {
+                data = sd;
+            }
+        }
+        data.enableAggregates();
+        if (ledger != null) {
+            data.addMovementListener(ledger);
+        }
+        if (checkpoint != null) {
+            LOGGER.info("Resumed {} stock records", data.getStockRecords().size());
+        } else if (subset != null) {
+            LOGGER.info("Selected {} of {} stock records", data.getStockRecords().size(), subset.snapshotSize());
+        } else {
+            LOGGER.info("Loaded {} stock records", data.getStockRecords().size());
+        }
+        return replayMovements(data, subset, checkpointer, checkpoint).map(ignored -> {
+            if (subset != null) {
+                final int dropped = data.retainMatching(options.stockFilter());
+                LOGGER.info("Dropped {} replayed stock records that no longer match the filters", dropped);
+            }
+            return data;
+        });
+    }
+
+    private Result<Report, StockError> runOffHeap() {
+        CsvStockIO stockIO = new CsvStockIO(options.stockFile(), false, options.charset());
+        try (OffHeapStockStore store = options.offHeapDirectory() == null ? OffHeapStockStore.create()
+                : OffHeapStockStore.create(options.offHeapDirectory())) {
+            final Result<OffHeapStockData, StockError> stockData = stockIO.readStocks(store, options.stockDate());
+            if (stockData.isFailure()) {
+                LOGGER.error("Failed to read stocks: {}", stockData.error().message());
+                return Result.failure(stockData.error());
+            }
+            final OffHeapStockData data = stockData.getOrThrow();
+            LOGGER.info("Loaded {} stock records off-heap", store.size());
+            final Result<Void, StockError> replayed = replayMovements(data, null, null, null);
+            if (replayed.isFailure()) {
+                return Result.failure(replayed.error());
+            }
+
+            final int sizeBeforeCleanUp = store.size();
+            data.cleanUp();
+            LOGGER.info("Cleaned up stock records. Before: {}, After: {}", sizeBeforeCleanUp, store.size());
+
+            return write(stockIO.writeStocks(data, options.outputDirectory()),
+                    new Report(store.size(), sizeBeforeCleanUp - store.size(), data.getErrors().size(),
+                            data.isCriticalErrors()));
+        }
+    }
+
+    private Result<Report, StockError> runSpilling() {
+        SpillingReconstruction reconstruction = new SpillingReconstruction(options.stockFile(),
+                options.movementFiles().getFirst(), options.stockDate(), options.movementStart(), options.charset(),
+                options.spillOptions());
+        Result<Report, StockError> report = reconstruction.reconstruct(options.outputDirectory());
+        report.ifSuccessfulOrElse(
+                ignored -> LOGGER.info("Wrote stock output to {}", options.outputDirectory()),
+                () -> LOGGER.error("Failed to reconstruct stock with spilled partitions: {}", report.error().message())
+        );
+        return report;
+    }
+
+    private Result<Report, StockError> write(Result<?, StockError> writeResult, Report report) {
+        if (writeResult.isFailure()) {
+            LOGGER.error("Failed to write stock output: {}", writeResult.error().message());
+            return Result.failure(writeResult.error());
+        }
+        LOGGER.info("Wrote stock output to {}", options.outputDirectory());
+        return Result.success(report);
+    }
+
+    /**
+     * Fails if the history cannot be read, so that the job does not write the snapshot as if nothing had moved.
+     *
+     * @param checkpointer writes checkpoints of a heap replay, {@code null} without {@code --checkpoint}
+     * @param checkpoint   the checkpoint {@code data} was resumed from, {@code null} to replay the whole history
+     */
+    private Result<Void, StockError> replayMovements(StockReplay data, StockSubset subset, ReplayCheckpointer checkpointer,
+                                 StockCheckpoint checkpoint) {
+        if (options.sortOptions() == null && options.movementFiles().size() == 1) {
+            final String movementFile = options.movementFiles().getFirst();
+            final MovementStart.Gate gate = options.movementStart() == null || checkpoint != null && checkpoint.gateOpen()
+                    ? null : options.movementStart().gate();
+            final long startOffset;
+            if (checkpoint != null) {
+                startOffset = checkpoint.offset();
+            } else {
+                startOffset = gate == null ? 0 : MovementIndex.startOffset(movementFile, options.movementStart());
+            }
+            final MovementSource source = startOffset == 0 ? MovementSources.forPath(movementFile)
+                    : MovementSources.file(Path.of(movementFile), startOffset);
+            final LongConsumer lineEnds = checkpointer == null || !(data instanceof StockData stockData) ? null
+                    : offset -> checkpointer.lineEnd(stockData, startOffset + offset, gate == null || gate.isOpen());
+            final Result<Long, StockError> replayed = new MovementCursorReader(source, options.charset()).forEach(cursor -> {
+                if ((gate == null || gate.passes(cursor)) && (subset == null || subset.accepts(cursor))) {
+                    data.handleMovement(cursor);
+                }
+            }, error -> {
+                if (gate == null || gate.isOpen()) {
+                    data.handleMovementError(error);
+                }
+            }, subset == null ? stockNumber -> false : subset::skips, lineEnds);
+            replayed.ifSuccessfulOrElse(
+                    lines -> LOGGER.info("Processed {} movements. Errors: {}, critical: {}", lines, data.getErrors().size(), data.isCriticalErrors()),
+                    () -> LOGGER.error("Failed to read movements: {}", replayed.error().message())
+            );
+            return replayed.map(ignored -> null);
+        }
+        MovementReader movementReader = options.sortOptions() != null
+                ? new SortingMovementReader(options.movementFiles(), options.sortOptions(), options.charset())
+                : new MergingMovementReader(options.movementFiles(), options.charset());
+        final MovementStart.Gate gate = options.movementStart() == null ? null : options.movementStart().gate();
+        final Result<MovementStream, StockError> movementRecords = movementReader.readMovements();
+        movementRecords.ifSuccessfulOrElse(ms -> {
+            try (ms) {
+                ms.stream(StockData.MOVEMENT_PROJECTION)
+                        .filter(movement -> gate == null || gate.passes(movement))
+                        .filter(movement -> subset == null || movement.isFailure() || subset.accepts(movement.getOrThrow()))
+                        .forEach(data::handleMovement);
+            }
+            LOGGER.info("Processed movements. Errors: {}, critical: {}", data.getErrors().size(), data.isCriticalErrors());
+        }, () -> LOGGER.error("Failed to read movements: {}", movementRecords.error().message()));
+        return movementRecords.map(ignored -> null);
+    }
+
+    /**
+     * @param stockRecords   stock records written
+     * @param removedStocks  stock records dropped by the clean-up because nothing was left of them
+     * @param errors         errors written, including those of the stock file
+     * @param criticalErrors whether the replay found errors that make the result untrustworthy
+     * @param engine         the engine that ran and why, {@code null} until {@link #run()} adds it
+     */
+    record Report(int stockRecords, int removedStocks, int errors, boolean criticalErrors,
+                  MemoryEstimator.Choice engine) {
+        Report(int stockRecords, int removedStocks, int errors, boolean criticalErrors) {
+            this(stockRecords, removedStocks, errors, criticalErrors, null);
+        }
+
+        Report withEngine(MemoryEstimator.Choice engine) {
+            return new Report(stockRecords, removedStocks, errors, criticalErrors, engine);
+        }
+    }
+}
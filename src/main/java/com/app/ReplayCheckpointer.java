@@ -0,0 +1,165 @@
+package com.app;
+
+import com.app.stock.StockCheckpoint;
+import com.app.stock.StockData;
+import com.app.utils.LogContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a {@link StockCheckpoint} of a heap replay every {@code interval} and finds it again for {@code --resume}.
+ * The replay thread streams the state between two history lines into a temporary file, one record block at a time;
+ * a background thread forces it to disk and replaces the previous checkpoint with it. While a checkpoint is still
+ * being forced, the next one is skipped rather than queued.
+ */
+final class ReplayCheckpointer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayCheckpointer.class);
+    static final String FILE_NAME = "checkpoint.bin";
+    /**
+     * Lines between two looks at the clock.
+     */
+    private static final int CHECK_LINES = 4096;
+
+    private final Options options;
+    private final BatchOptions batchOptions;
+    private final Path file;
+    private final String key;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(LogContext.inheriting(Thread.ofPlatform()
+            .name("checkpoint-", 0)
+            .daemon(true)
+            .factory()));
+    private Future<?> pending;
+    private long lines;
+    private long due;
+
+    ReplayCheckpointer(BatchOptions batchOptions) {
+        this.options = batchOptions.checkpointOptions();
+        this.batchOptions = batchOptions;
+        this.file = options.directory().resolve(FILE_NAME);
+        this.key = key(batchOptions);
+        this.due = System.nanoTime() + options.interval().toNanos();
+    }
+
+    /**
+     * The checkpoint to continue from with {@code --resume}, or empty to start from the beginning.
+     */
+    Optional<StockCheckpoint> resume() {
+        if (!options.resume() || key == null) {
+            return Optional.empty();
+        }
+        Optional<StockCheckpoint> checkpoint = StockCheckpoint.read(file, key, batchOptions.stockDate());
+        checkpoint.ifPresentOrElse(found -> {
+            lines = found.lines();
+            LOGGER.info("Resuming from checkpoint {} after {} history lines at byte {}", file, found.lines(),
+                    found.offset());
+        }, () -> LOGGER.info("No checkpoint to resume from in {}, starting from the beginning", options.directory()));
+        return checkpoint;
+    }
+
+    /**
+     * Called by the replay after every history line with the offset of the next one.
+     */
+    void lineEnd(StockData data, long offset, boolean gateOpen) {
+        if (++lines % CHECK_LINES != 0 || key == null || System.nanoTime() - due < 0) {
+            return;
+        }
+        due = System.nanoTime() + options.interval().toNanos();
+        if (pending != null && !pending.isDone()) {
+            LOGGER.info("Skipping checkpoint at history line {}, the previous one is still being written", lines);
+            return;
+        }
+        final Path tempFile;
+        try {
+            Files.createDirectories(options.directory());
+            tempFile = StockCheckpoint.write(file, key, data, offset, lines, gateOpen);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write checkpoint {}: {}", file, e.getMessage());
+            return;
+        }
+        final long checkpointLines = lines;
+        pending = writer.submit(() -> {
+            try {
+                StockCheckpoint.publish(tempFile, file);
+                LOGGER.info("Wrote checkpoint {} after {} history lines", file, checkpointLines);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write checkpoint {}: {}", file, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Deletes the checkpoint after the output has been written; a later {@code --resume} starts from the beginning.
+     */
+    void complete() {
+        awaitPending();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete checkpoint {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        awaitPending();
+        writer.shutdownNow();
+    }
+
+    private void awaitPending() {
+        if (pending == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(1, TimeUnit.HOURS)) {
+                LOGGER.warn("Gave up waiting for checkpoint {}", file);
+            }
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Identifies the input files by path, size and modification time, together with the options that change the
+     * replay, so a checkpoint is never continued with different input.
+     */
+    private static String key(BatchOptions options) {
+        try {
+            return String.join("|", fileKey(options.stockFile()), fileKey(options.movementFiles().getFirst()),
+                    String.valueOf(options.stockDate()), String.valueOf(options.movementStart()),
+                    options.charset().name());
+        } catch (IOException e) {
+            LOGGER.warn("Checkpoints disabled, input files cannot be read: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String fileKey(String file) throws IOException {
+        Path path = Path.of(file);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return path.toAbsolutePath().normalize() + ":" + attributes.size() + ":"
+                + attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * @param directory directory of {@value #FILE_NAME}, by default the output directory
+     * @param interval  time between two checkpoints
+     * @param resume    whether to continue from an existing checkpoint
+     */
+    record Options(Path directory, Duration interval, boolean resume) {
+        static Options defaults() {
+            return new Options(null, Duration.ofMinutes(5), false);
+        }
+    }
+}
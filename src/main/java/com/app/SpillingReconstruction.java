@@ -0,0 +1,437 @@
+package com.app;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.reader.MovementCursorReader;
+import com.app.history.reader.MovementIndex;
+import com.app.history.reader.MovementSource;
+import com.app.history.reader.MovementSources;
+import com.app.history.reader.MovementStart;
+import com.app.stock.StockAggregates;
+import com.app.stock.StockData;
+import com.app.stock.model.StockRecord;
+import com.app.stock.reader.CsvStockIO;
+import com.app.utils.LogContext;
+import com.app.utils.Result;
+import com.app.utils.SortedLineMerger;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Batch reconstruction for snapshots that do not fit into the heap. One pass splits the stock CSV and the history by a
+ * hash of the stock number into partition files; every partition is then replayed on its own {@link StockData}, and
+ * the sorted partition outputs are merged into the usual files. A movement only changes its own stock, so the result
+ * is the same as replaying the whole snapshot. The order of the sequence numbers spans all stocks and is checked while
+ * splitting; errors are reported in history order.
+ */
+final class SpillingReconstruction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillingReconstruction.class);
+    /**
+     * Estimated heap bytes of a reconstructed stock per byte of its CSV line.
+     */
+    static final int HEAP_BYTES_PER_STOCK_BYTE = 4;
+    static final int MAX_PARTITIONS = 256;
+    private static final int BUFFER_BYTES = 1 << 15;
+
+    private final String stockFile;
+    private final String movementFile;
+    private final LocalDate stockDate;
+    private final MovementStart movementStart;
+    private final Charset charset;
+    private final Options options;
+
+    SpillingReconstruction(String stockFile, String movementFile, LocalDate stockDate, MovementStart movementStart,
+                           Charset charset, Options options) {
+        this.stockFile = stockFile;
+        this.movementFile = movementFile;
+        this.stockDate = stockDate;
+        this.movementStart = movementStart;
+        this.charset = charset;
+        this.options = options;
+    }
+
+    Result<ReconstructionJob.Report, StockError> reconstruct(String outputDirectory) {
+        final Path directory;
+        try {
+            Files.createDirectories(options.tempDirectory());
+            directory = Files.createTempDirectory(options.tempDirectory(), "spill-");
+        } catch (IOException e) {
+            LOGGER.error("Failed to create spill directory in {}", options.tempDirectory(), e);
+            return Result.failure(StockError.writingError(options.tempDirectory().toString(),
+                    "Failed to create spill directory: " + e.getMessage()));
+        }
+        try {
+            return reconstruct(directory, partitionCount(), outputDirectory);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Enough partitions that {@link Options#parallelism()} of them fit into the memory budget at the same time.
+     */
+    int partitionCount() {
+        long stockBytes;
+        try {
+            stockBytes = Files.size(Path.of(stockFile));
+        } catch (IOException _) {
+            return 1;
+        }
+        long partitionBudget = Math.max(1, options.memoryBudgetBytes() / options.parallelism());
+        long partitions = Math.ceilDiv(stockBytes * HEAP_BYTES_PER_STOCK_BYTE, partitionBudget);
+        if (partitions > MAX_PARTITIONS) {
+            LOGGER.warn("Stock file {} needs {} partitions for a memory budget of {} MB, using {}", stockFile,
+                    partitions, options.memoryBudgetBytes() >> 20, MAX_PARTITIONS);
+        }
+        return (int) Math.clamp(partitions, 1, MAX_PARTITIONS);
+    }
+
+    private Result<ReconstructionJob.Report, StockError> reconstruct(Path directory, int partitions,
+                                                                    String outputDirectory) {
+        LOGGER.info("Splitting {} and {} into {} partitions in {}", stockFile, movementFile, partitions, directory);
+        CsvStockIO stockIO = new CsvStockIO(stockFile, false, charset);
+        Result<List<StockError>, StockError> loadErrors = splitStocks(stockIO, directory, partitions);
+        if (loadErrors.isFailure()) {
+            return Result.failure(loadErrors.error());
+        }
+        Splitter splitter = new Splitter(directory, partitions);
+        Result<Long, StockError> split = splitter.split();
+        if (split.isFailure()) {
+            return Result.failure(split.error());
+        }
+
+        Result<List<Partition>, StockError> replayed = replayPartitions(directory, partitions);
+        if (replayed.isFailure()) {
+            return Result.failure(replayed.error());
+        }
+        List<Partition> results = replayed.getOrThrow();
+
+        List<StockError> errors = new ArrayList<>(loadErrors.getOrThrow());
+        List<OrderedError> movementErrors = new ArrayList<>(splitter.errors);
+        results.forEach(partition -> movementErrors.addAll(partition.errors()));
+        movementErrors.sort(Comparator.comparingLong(OrderedError::ordinal));
+        movementErrors.forEach(error -> errors.add(error.error()));
+
+        StockAggregates aggregates = new StockAggregates();
+        int recordCount = 0;
+        int sizeBeforeCleanUp = 0;
+        for (Partition partition : results) {
+            aggregates.addAll(partition.aggregates());
+            recordCount += partition.recordCount();
+            sizeBeforeCleanUp += partition.sizeBeforeCleanUp();
+        }
+        boolean criticalErrors = splitter.criticalErrors || results.stream().anyMatch(Partition::criticalErrors);
+        LOGGER.info("Processed {} movements. Errors: {}, critical: {}", split.getOrThrow(), movementErrors.size(),
+                criticalErrors);
+        LOGGER.info("Cleaned up stock records. Before: {}, After: {}", sizeBeforeCleanUp, recordCount);
+
+        List<BufferedReader> readers = new ArrayList<>(partitions);
+        try {
+            for (Partition partition : results) {
+                readers.add(Files.newBufferedReader(partition.output(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            readers.forEach(SpillingReconstruction::closeQuietly);
+            return Result.failure(StockError.parseError(directory.toString(),
+                    "Failed to read partition output: " + e.getMessage()));
+        }
+        SortedLineMerger merged = new SortedLineMerger(readers.stream().map(reader -> reader.lines().iterator()).toList(),
+                SpillingReconstruction::sequenceKey);
+        Result<Void, StockError> written = stockIO.writeStockLines(outputDirectory,
+                () -> StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                        .onClose(() -> readers.forEach(SpillingReconstruction::closeQuietly)),
+                recordCount, errors, aggregates);
+        return written.isFailure() ? Result.failure(written.error())
+                : Result.success(new ReconstructionJob.Report(recordCount, sizeBeforeCleanUp - recordCount,
+                errors.size(), criticalErrors));
+    }
+
+    private Result<List<StockError>, StockError> splitStocks(CsvStockIO stockIO, Path directory, int partitions) {
+        List<BufferedWriter> writers = new ArrayList<>(partitions);
+        try {
+            for (int partition = 0; partition < partitions; partition++) {
+                writers.add(new BufferedWriter(Files.newBufferedWriter(stocksFile(directory, partition),
+                        StandardCharsets.UTF_8), BUFFER_BYTES));
+            }
+            return stockIO.scanStocks((stockRecord, line) -> {
+                Integer sequenceNumber = stockRecord.getSequenceNumber();
+                BufferedWriter writer = writers.get(sequenceNumber == null ? 0 : partitionOf(sequenceNumber, partitions));
+                try {
+                    writer.write(line);
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.error("Failed to split stock CSV {}", stockFile, e);
+            return Result.failure(StockError.writingError(directory.toString(), "Failed to split stocks: " + e.getMessage()));
+        } finally {
+            writers.forEach(SpillingReconstruction::closeQuietly);
+        }
+    }
+
+    private Result<List<Partition>, StockError> replayPartitions(Path directory, int partitions) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.parallelism(), partitions),
+                LogContext.inheriting(Thread.ofPlatform()
+                        .name("spill-", 0)
+                        .daemon(true)
+                        .factory()));
+        try {
+            List<Future<Partition>> replayed = new ArrayList<>(partitions);
+            for (int partition = 0; partition < partitions; partition++) {
+                int index = partition;
+                replayed.add(executor.submit(() -> replayPartition(directory, index)));
+            }
+            List<Partition> results = new ArrayList<>(partitions);
+            for (Future<Partition> partition : replayed) {
+                results.add(partition.get());
+            }
+            return Result.success(results);
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            return Result.failure(StockError.parseError(directory.toString(), "Interrupted while replaying partitions"));
+        } catch (ExecutionException e) {
+            LOGGER.error("Failed to replay partitions in {}", directory, e.getCause());
+            return Result.failure(StockError.parseError(directory.toString(),
+                    "Failed to replay partition: " + e.getCause().getMessage()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Partition replayPartition(Path directory, int partition) throws IOException {
+        Path stocks = stocksFile(directory, partition);
+        Path movements = directory.resolve("movements-" + partition + ".csv");
+        Path ordinals = directory.resolve("movements-" + partition + ".ord");
+        StockData loaded = new CsvStockIO(stocks.toString(), false, StandardCharsets.UTF_8).readStocks()
+                .getOrThrow();
+        StockData data = new StockData(loaded.getStockRecords(), stockDate);
+        data.disableSequenceCheck();
+        StockAggregates aggregates = data.enableAggregates();
+
+        List<OrderedError> errors = new ArrayList<>();
+        try (DataInputStream ordinalInput = new DataInputStream(new BufferedInputStream(Files.newInputStream(ordinals),
+                BUFFER_BYTES))) {
+            new MovementCursorReader(MovementSources.forPath(movements.toString()), charset).forEach(cursor -> {
+                long ordinal = readOrdinal(ordinalInput);
+                int errorCount = data.getErrors().size();
+                data.handleMovement(cursor);
+                for (int i = errorCount; i < data.getErrors().size(); i++) {
+                    errors.add(new OrderedError(ordinal, data.getErrors().get(i)));
+                }
+            }, error -> {
+                throw new IllegalStateException("Movement line changed while splitting: " + error.message());
+            }).getOrThrow();
+        }
+        Files.delete(stocks);
+        Files.delete(movements);
+        Files.delete(ordinals);
+
+        int sizeBeforeCleanUp = data.getStockRecords().size();
+        List<StockRecord> sorted = data.cleanUpSorted();
+        Path output = directory.resolve("result-" + partition + ".csv");
+        try (BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8),
+                BUFFER_BYTES)) {
+            for (StockRecord stockRecord : sorted) {
+                writer.write(CsvStockIO.stockRecordToCsv(stockRecord));
+                writer.newLine();
+            }
+        }
+        return new Partition(errors, aggregates, output, data.getStockRecords().size(), sizeBeforeCleanUp,
+                data.isCriticalErrors());
+    }
+
+    static int partitionOf(int stockNumber, int partitions) {
+        return (int) (((stockNumber * 0x9E3779B9) & 0xFFFFFFFFL) * partitions >>> 32);
+    }
+
+    /**
+     * The stock sequence number at the start of a line written by {@link CsvStockIO#stockRecordToCsv}; records
+     * without one sort last.
+     */
+    private static long sequenceKey(String line) {
+        int end = line.indexOf(',');
+        return end <= 0 ? Long.MAX_VALUE : Long.parseLong(line, 0, end, 10);
+    }
+
+    private static Path stocksFile(Path directory, int partition) {
+        return directory.resolve("stocks-" + partition + ".csv");
+    }
+
+    private static long readOrdinal(DataInputStream input) {
+        try {
+            return input.readLong();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close spill file", e);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Iterator<Path> iterator = files.iterator(); iterator.hasNext(); ) {
+                Files.deleteIfExists(iterator.next());
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete spill directory {}", directory, e);
+        }
+    }
+
+    /**
+     * Writes every movement line to the partition of its stock, together with its position in the history, and
+     * reports out-of-order sequence numbers the way {@link StockData} would for the whole history.
+     */
+    private final class Splitter {
+        private final List<BufferedOutputStream> movementOutputs;
+        private final List<DataOutputStream> ordinalOutputs;
+        private final Path directory;
+        private final int partitions;
+        private final List<OrderedError> errors = new ArrayList<>();
+        private final BitSet finalizedStocks = new BitSet();
+        private final Set<Integer> finalizedNegativeStocks = new HashSet<>();
+        private final long stockEpochDay = stockDate == null ? 0 : stockDate.toEpochDay();
+        private int lastMovementSequenceNumber = Integer.MAX_VALUE;
+        private boolean criticalErrors;
+        private long ordinal;
+
+        private Splitter(Path directory, int partitions) {
+            this.directory = directory;
+            this.partitions = partitions;
+            this.movementOutputs = new ArrayList<>(partitions);
+            this.ordinalOutputs = new ArrayList<>(partitions);
+        }
+
+        private Result<Long, StockError> split() {
+            try {
+                for (int partition = 0; partition < partitions; partition++) {
+                    movementOutputs.add(new BufferedOutputStream(Files.newOutputStream(
+                            directory.resolve("movements-" + partition + ".csv")), BUFFER_BYTES));
+                    ordinalOutputs.add(new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                            directory.resolve("movements-" + partition + ".ord")), BUFFER_BYTES)));
+                }
+                MovementStart.Gate gate = movementStart == null ? null : movementStart.gate();
+                MovementSource source = gate == null ? MovementSources.forPath(movementFile)
+                        : MovementIndex.seek(movementFile, movementStart);
+                return new MovementCursorReader(source, charset).forEach(cursor -> {
+                    long position = ordinal++;
+                    if (gate == null || gate.passes(cursor)) {
+                        write(cursor, position);
+                    }
+                }, error -> {
+                    long position = ordinal++;
+                    if (gate == null || gate.isOpen()) {
+                        errors.add(new OrderedError(position, error));
+                        criticalErrors = true;
+                    }
+                });
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.error("Failed to split movements {}", movementFile, e);
+                return Result.failure(StockError.writingError(directory.toString(),
+                        "Failed to split movements: " + e.getMessage()));
+            } finally {
+                movementOutputs.forEach(SpillingReconstruction::closeQuietly);
+                ordinalOutputs.forEach(SpillingReconstruction::closeQuietly);
+            }
+        }
+
+        private void write(MovementCursor cursor, long position) {
+            checkSequence(cursor, position);
+            int partition = partitionOf(cursor.stockNumber(), partitions);
+            try {
+                BufferedOutputStream output = movementOutputs.get(partition);
+                cursor.writeLine(output);
+                output.write('\n');
+                ordinalOutputs.get(partition).writeLong(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * The first movement of a stock before the stock date only finalizes that stock and is not checked.
+         */
+        private void checkSequence(MovementCursor cursor, long position) {
+            if (stockDate != null && cursor.hasDate() && cursor.epochDay() < stockEpochDay
+                    && markFinalized(cursor.stockNumber())) {
+                return;
+            }
+            int sequenceNumber = cursor.sequenceNumber();
+            if (sequenceNumber >= lastMovementSequenceNumber) {
+                errors.add(new OrderedError(position, new StockError(StockError.ErrorType.MOVEMENT_ERROR,
+                        "Movement ID out of order: " + sequenceNumber, "")));
+                criticalErrors = true;
+                LOGGER.warn("Movement ID out of order: {}", sequenceNumber);
+            }
+            lastMovementSequenceNumber = sequenceNumber;
+        }
+
+        private boolean markFinalized(int stockNumber) {
+            if (stockNumber < 0) {
+                return finalizedNegativeStocks.add(stockNumber);
+            }
+            if (finalizedStocks.get(stockNumber)) {
+                return false;
+            }
+            finalizedStocks.set(stockNumber);
+            return true;
+        }
+    }
+
+    private record OrderedError(long ordinal, StockError error) {
+    }
+
+    private record Partition(List<OrderedError> errors, StockAggregates aggregates, Path output, int recordCount,
+                             int sizeBeforeCleanUp, boolean criticalErrors) {
+    }
+
+    /**
+     * @param memoryBudgetBytes heap available for the stocks of the partitions replayed at the same time
+     * @param parallelism       number of partitions replayed at the same time
+     * @param tempDirectory     directory of the partition files, which are deleted afterwards
+     */
+    record Options(long memoryBudgetBytes, int parallelism, Path tempDirectory) {
+        static Options defaults() {
+            return new Options(Runtime.getRuntime().maxMemory() / 2, 1,
+                    Path.of(System.getProperty("java.io.tmpdir")));
+        }
+    }
+}
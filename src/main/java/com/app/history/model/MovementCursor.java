@@ -0,0 +1,421 @@
+package com.app.history.model;
+
+import com.app.utils.ByteScanner;
+import com.app.utils.ByteStringPool;
+import com.app.utils.CsvCharsets;
+import com.app.utils.CsvFieldUtils;
+import com.app.utils.StockError;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+
+/**
+ * A reusable view of one movement line held as bytes, UTF-8 unless another charset is given. {@link #load} points
+ * the cursor at the next line and decodes the numeric fields, the event and the date into primitives; string fields
+ * are decoded on access through a pool, so a replay over repeated locations and items allocates almost nothing per
+ * line. The cursor is only valid until the next {@code load}.
+ *
+ * <p>The cursor checks every field like {@link MovementRecordFactory} does, including the weight and status code the
+ * replay never reads, and falls back to {@link CsvFieldUtils} for everything that is not a plain ASCII value, so
+ * results and error messages match the record path.
+ */
+public final class MovementCursor {
+    private static final int FIELD_COUNT = MovementField.values().length;
+    private static final int STRING_POOL_CAPACITY = 1 << 14;
+    private static final int DECIMAL_CACHE_CAPACITY = 1 << 10;
+
+    private final ByteStringPool strings;
+    private final DecimalCache decimals = new DecimalCache(DECIMAL_CACHE_CAPACITY);
+    private final int[] bounds = new int[FIELD_COUNT + 1];
+
+    private byte[] buffer;
+    private int lineStart;
+    private int lineEnd;
+    private boolean quoted;
+    private String quotedLine;
+    private int trimmedStart;
+    private int trimmedEnd;
+    private int parsedInt;
+
+    private int sequenceNumber;
+    private int stockNumber;
+    private MovementEvent event;
+    private boolean hasDate;
+    private int epochDay;
+    private BigDecimal quantityChange;
+    private BigDecimal quantityTotal;
+    private boolean hasClient;
+    private int client;
+
+    public MovementCursor() {
+        this(CsvCharsets.DEFAULT);
+    }
+
+    /**
+     * @param charset charset of the lines; it has to encode ASCII as ASCII, see {@link CsvCharsets#forName}
+     */
+    public MovementCursor(Charset charset) {
+        this.strings = new ByteStringPool(charset, STRING_POOL_CAPACITY);
+    }
+
+    /**
+     * Points the cursor at {@code buffer[start, end)}, a line without its line terminator.
+     *
+     * @return {@code null} if the line is a valid movement, otherwise the error the record path would report
+     */
+    public StockError load(byte[] buffer, int start, int end) {
+        this.buffer = buffer;
+        this.lineStart = start;
+        this.lineEnd = end;
+        this.quotedLine = null;
+        if (isBlank(start, end)) {
+            return StockError.parseError(line(), "CSV line is null or empty");
+        }
+        int fieldCount = scanFields();
+        if (fieldCount != FIELD_COUNT) {
+            return StockError.invalidFieldCount(line(), FIELD_COUNT, fieldCount);
+        }
+        try {
+            boolean hasSequenceNumber = intField(MovementField.SEQUENCE_NUMBER);
+            sequenceNumber = parsedInt;
+            boolean hasStockNumber = intField(MovementField.STOCK_NUMBER);
+            stockNumber = parsedInt;
+            quantityChange = decimalField(MovementField.QUANTITY_CHANGE);
+            quantityTotal = decimalField(MovementField.QUANTITY_TOTAL);
+            checkDecimal(MovementField.WEIGHT_CHANGE);
+            hasClient = intField(MovementField.CLIENT);
+            client = parsedInt;
+            event = eventField();
+            checkInt(MovementField.STATUS_CODE);
+            hasDate = loadDate();
+            if (!hasSequenceNumber || !hasStockNumber || event == null) {
+                return StockError.parseError(line(), "Movement without sequence number, stock number or event");
+            }
+            return null;
+        } catch (InvalidEventException e) {
+            return StockError.invalidEvent(line(), e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return StockError.parseError(line(), "Failed to parse MovementRecord: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes only the stock number of {@code buffer[start, end)}, so readers can skip lines of other stocks without
+     * loading them. Returns {@link CsvFieldUtils#NOT_FAST} if the column is quoted, empty or not a plain int; such
+     * lines have to be loaded.
+     */
+    public static long stockNumberOf(byte[] buffer, int start, int end) {
+        int fieldStart = start;
+        for (int field = 0; field < MovementField.STOCK_NUMBER.ordinal(); field++) {
+            while (fieldStart < end && buffer[fieldStart] != ',') {
+                if (buffer[fieldStart] == '"') {
+                    return CsvFieldUtils.NOT_FAST;
+                }
+                fieldStart++;
+            }
+            fieldStart++;
+        }
+        int fieldEnd = fieldStart;
+        while (fieldEnd < end && buffer[fieldEnd] != ',') {
+            fieldEnd++;
+        }
+        if (fieldEnd >= end) {
+            return CsvFieldUtils.NOT_FAST;
+        }
+        int trimmedStart = CsvFieldUtils.trimStart(buffer, fieldStart, fieldEnd);
+        return CsvFieldUtils.parseIntRange(buffer, trimmedStart, CsvFieldUtils.trimEnd(buffer, trimmedStart, fieldEnd));
+    }
+
+    public int sequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public int stockNumber() {
+        return stockNumber;
+    }
+
+    public MovementEvent event() {
+        return event;
+    }
+
+    public boolean hasDate() {
+        return hasDate;
+    }
+
+    /**
+     * The movement date as {@link LocalDate#toEpochDay()}; only meaningful if {@link #hasDate()}.
+     */
+    public int epochDay() {
+        return epochDay;
+    }
+
+    public LocalDate date() {
+        return hasDate ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    public BigDecimal quantityChange() {
+        return quantityChange;
+    }
+
+    public BigDecimal quantityTotal() {
+        return quantityTotal;
+    }
+
+    public Integer client() {
+        return hasClient ? client : null;
+    }
+
+    public String handlingUnitNumber() {
+        return stringField(MovementField.HANDLING_UNIT_NUMBER);
+    }
+
+    public String location() {
+        return stringField(MovementField.LOCATION);
+    }
+
+    public String itemNumber() {
+        return stringField(MovementField.ITEM_NUMBER);
+    }
+
+    public String serialNumber() {
+        return stringField(MovementField.SERIAL_NUMBER);
+    }
+
+    public String batch1() {
+        return stringField(MovementField.BATCH1);
+    }
+
+    public String batch2() {
+        return stringField(MovementField.BATCH2);
+    }
+
+    public String customerOrderNumber() {
+        return stringField(MovementField.CUSTOMER_ORDER_NUMBER);
+    }
+
+    public String customerOrderPosition() {
+        return stringField(MovementField.CUSTOMER_ORDER_POSITION);
+    }
+
+    /**
+     * The current line as a String, e.g. for error messages. Allocates.
+     */
+    public String line() {
+        return strings.decode(buffer, lineStart, lineEnd);
+    }
+
+    /**
+     * Copies the bytes of the current line, without its line break, to {@code output}.
+     */
+    public void writeLine(OutputStream output) throws IOException {
+        output.write(buffer, lineStart, lineEnd - lineStart);
+    }
+
+    /**
+     * Decodes the current line into a fully populated record. Allocates.
+     */
+    public MovementRecord toRecord() {
+        return MovementRecordFactory.createFromCsv(line()).getOrThrow();
+    }
+
+    private int scanFields() {
+        int fieldCount = 1;
+        boolean inQuotes = false;
+        quoted = false;
+        bounds[0] = lineStart;
+        for (int offset = lineStart; offset < lineEnd; offset += Long.BYTES) {
+            for (long mask = ByteScanner.delimiters(buffer, offset, lineEnd); mask != 0; mask &= mask - 1) {
+                int i = ByteScanner.next(mask, offset);
+                if (buffer[i] == '"') {
+                    inQuotes = !inQuotes;
+                    quoted = true;
+                } else if (!inQuotes) {
+                    if (fieldCount < bounds.length) {
+                        bounds[fieldCount] = i + 1;
+                    }
+                    fieldCount++;
+                }
+            }
+        }
+        if (fieldCount < bounds.length) {
+            bounds[fieldCount] = lineEnd + 1;
+        }
+        return fieldCount;
+    }
+
+    /**
+     * Parses an int field into {@code parsedInt}; returns {@code false} for an empty field.
+     */
+    private boolean intField(MovementField field) {
+        long value = fastInt(field);
+        if (value != CsvFieldUtils.NOT_FAST) {
+            parsedInt = (int) value;
+            return true;
+        }
+        Integer parsed = CsvFieldUtils.parseInt(fieldText(field));
+        parsedInt = parsed == null ? 0 : parsed;
+        return parsed != null;
+    }
+
+    private long fastInt(MovementField field) {
+        return trim(field) ? CsvFieldUtils.parseIntRange(buffer, trimmedStart, trimmedEnd) : CsvFieldUtils.NOT_FAST;
+    }
+
+    private BigDecimal decimalField(MovementField field) {
+        if (trim(field)) {
+            if (trimmedStart == trimmedEnd) {
+                return null;
+            }
+            long packed = CsvFieldUtils.parseDecimalRange(buffer, trimmedStart, trimmedEnd);
+            if (packed != CsvFieldUtils.NOT_FAST) {
+                return decimals.get(CsvFieldUtils.unscaledOf(packed), CsvFieldUtils.scaleOf(packed));
+            }
+        }
+        return CsvFieldUtils.parseBigDecimal(fieldText(field));
+    }
+
+    /**
+     * Checks an int field the replay does not read; only values that are not plain ASCII digits are decoded.
+     */
+    private void checkInt(MovementField field) {
+        if (!trim(field) || trimmedStart != trimmedEnd
+                && CsvFieldUtils.parseIntRange(buffer, trimmedStart, trimmedEnd) == CsvFieldUtils.NOT_FAST) {
+            CsvFieldUtils.parseInt(fieldText(field));
+        }
+    }
+
+    private void checkDecimal(MovementField field) {
+        if (!trim(field) || trimmedStart != trimmedEnd
+                && CsvFieldUtils.parseDecimalRange(buffer, trimmedStart, trimmedEnd) == CsvFieldUtils.NOT_FAST) {
+            CsvFieldUtils.parseBigDecimal(fieldText(field));
+        }
+    }
+
+    private MovementEvent eventField() {
+        if (trim(MovementField.EVENT)) {
+            if (trimmedStart == trimmedEnd || CsvFieldUtils.isPlaceholder(buffer, trimmedStart, trimmedEnd)) {
+                return null;
+            }
+            MovementEvent event = MovementEvent.fromCode(buffer, trimmedStart, trimmedEnd);
+            if (event != null) {
+                return event;
+            }
+        }
+        String value = fieldText(MovementField.EVENT);
+        try {
+            return MovementEvent.fromCode(value);
+        } catch (IllegalArgumentException _) {
+            throw new InvalidEventException(value);
+        }
+    }
+
+    private boolean loadDate() {
+        if (trim(MovementField.DATE)) {
+            if (trimmedStart == trimmedEnd) {
+                return false;
+            }
+            long day = CsvFieldUtils.parseEpochDayRange(buffer, trimmedStart, trimmedEnd);
+            if (day != CsvFieldUtils.NOT_FAST) {
+                epochDay = (int) day;
+                return true;
+            }
+        }
+        LocalDate date = CsvFieldUtils.parseDate(fieldText(MovementField.DATE));
+        if (date == null) {
+            return false;
+        }
+        epochDay = (int) date.toEpochDay();
+        return true;
+    }
+
+    private String stringField(MovementField field) {
+        if (!trim(field)) {
+            return CsvFieldUtils.parseString(fieldText(field));
+        }
+        if (trimmedStart == trimmedEnd || CsvFieldUtils.isPlaceholder(buffer, trimmedStart, trimmedEnd)) {
+            return null;
+        }
+        return strings.get(buffer, trimmedStart, trimmedEnd);
+    }
+
+    /**
+     * Sets the trimmed range of a field. Returns {@code false} if the field contains quotes and has to be decoded
+     * through the slow path.
+     */
+    private boolean trim(MovementField field) {
+        int start = bounds[field.ordinal()];
+        int end = bounds[field.ordinal() + 1] - 1;
+        start = CsvFieldUtils.trimStart(buffer, start, end);
+        end = CsvFieldUtils.trimEnd(buffer, start, end);
+        if (quoted) {
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == '"') {
+                    return false;
+                }
+            }
+        }
+        trimmedStart = start;
+        trimmedEnd = end;
+        return true;
+    }
+
+    private String fieldText(MovementField field) {
+        int start = bounds[field.ordinal()];
+        int end = bounds[field.ordinal() + 1] - 1;
+        if (!quoted) {
+            return strings.decode(buffer, start, end);
+        }
+        if (quotedLine == null) {
+            quotedLine = line();
+        }
+        int[] lineBounds = new int[FIELD_COUNT + 1];
+        CsvFieldUtils.fieldBounds(quotedLine, lineBounds);
+        return CsvFieldUtils.csvField(quotedLine, lineBounds, field.ordinal());
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((buffer[i] & 0xff) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class DecimalCache {
+        private final int mask;
+        private final long[] unscaledValues;
+        private final int[] scales;
+        private final BigDecimal[] values;
+
+        private DecimalCache(int capacity) {
+            this.mask = capacity - 1;
+            this.unscaledValues = new long[capacity];
+            this.scales = new int[capacity];
+            this.values = new BigDecimal[capacity];
+        }
+
+        private BigDecimal get(long unscaled, int scale) {
+            long hash = unscaled * 0x9E3779B97F4A7C15L + scale;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            BigDecimal value = values[slot];
+            if (value != null && unscaledValues[slot] == unscaled && scales[slot] == scale) {
+                return value;
+            }
+            value = BigDecimal.valueOf(unscaled, scale);
+            unscaledValues[slot] = unscaled;
+            scales[slot] = scale;
+            values[slot] = value;
+            return value;
+        }
+    }
+
+    private static final class InvalidEventException extends RuntimeException {
+        private InvalidEventException(String value) {
+            super(value, null, false, false);
+        }
+    }
+}
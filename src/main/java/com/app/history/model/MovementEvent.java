@@ -1,5 +1,7 @@
 package com.app.history.model;
 
+import com.app.utils.CsvFieldUtils;
+
 import java.util.Locale;
 
 public enum MovementEvent {
@@ -12,6 +14,24 @@ public enum MovementEvent {
     BATCH_CORRECTION_OUT("MGKOAB"),
     INVENTORY_COUNT("INVZHL");
 
+    private static final MovementEvent[] EVENTS = values();
+    private static final int MAX_CODE_LENGTH = Long.BYTES;
+    private static final int TABLE_BITS = 4;
+    private static final long[] TABLE_KEYS = new long[1 << TABLE_BITS];
+    private static final MovementEvent[] TABLE_EVENTS = new MovementEvent[1 << TABLE_BITS];
+
+    static {
+        for (MovementEvent event : EVENTS) {
+            long key = packCode(event.code, 0, event.code.length());
+            int slot = slot(key);
+            while (TABLE_KEYS[slot] != 0) {
+                slot = (slot + 1) & (TABLE_KEYS.length - 1);
+            }
+            TABLE_KEYS[slot] = key;
+            TABLE_EVENTS[slot] = event;
+        }
+    }
+
     private final String code;
 
     MovementEvent(String code) {
@@ -22,20 +42,89 @@ public enum MovementEvent {
         if (value == null) {
             return null;
         }
-        String normalized = value.trim();
-        if (normalized.isEmpty() || normalized.equals("_".repeat(20)) || normalized.equals("_".repeat(10))) {
+        int start = CsvFieldUtils.trimStart(value, 0, value.length());
+        int end = CsvFieldUtils.trimEnd(value, start, value.length());
+        if (start == end || CsvFieldUtils.isPlaceholder(value, start, end)) {
             return null;
         }
+        MovementEvent event = lookup(packCode(value, start, end));
+        if (event != null) {
+            return event;
+        }
+        String normalized = value.substring(start, end);
+        // Non-ASCII letters can still uppercase to a code, e.g. the dotless i
         String upper = normalized.toUpperCase(Locale.ROOT);
-        for (MovementEvent event : values()) {
-            if (event.code.equals(upper)) {
-                return event;
+        for (MovementEvent candidate : EVENTS) {
+            if (candidate.code.equals(upper)) {
+                return candidate;
             }
         }
         throw new IllegalArgumentException(normalized);
     }
 
+    /**
+     * Case-insensitive lookup of a trimmed code in a byte range without decoding it.
+     *
+     * @return the event, or {@code null} if the range is not a code in plain ASCII; callers fall back to
+     * {@link #fromCode(String)} for placeholders and errors
+     */
+    public static MovementEvent fromCode(byte[] value, int start, int end) {
+        if (end - start > MAX_CODE_LENGTH || start == end) {
+            return null;
+        }
+        long key = 0;
+        for (int i = start; i < end; i++) {
+            int ch = value[i];
+            if (ch >= 'a' && ch <= 'z') {
+                ch -= 'a' - 'A';
+            } else if (ch <= 0) {
+                return null;
+            }
+            key = key << Byte.SIZE | ch;
+        }
+        return lookup(key);
+    }
+
     public String code() {
         return code;
     }
+
+    /**
+     * Packs up to eight uppercased ASCII characters into a long; returns 0 for anything else.
+     */
+    private static long packCode(CharSequence value, int start, int end) {
+        if (end - start > MAX_CODE_LENGTH) {
+            return 0;
+        }
+        long key = 0;
+        for (int i = start; i < end; i++) {
+            char ch = value.charAt(i);
+            if (ch >= 'a' && ch <= 'z') {
+                ch -= 'a' - 'A';
+            } else if (ch == 0 || ch > 0x7f) {
+                return 0;
+            }
+            key = key << Byte.SIZE | ch;
+        }
+        return key;
+    }
+
+    private static MovementEvent lookup(long key) {
+        if (key == 0) {
+            return null;
+        }
+        int slot = slot(key);
+        long candidate;
+        while ((candidate = TABLE_KEYS[slot]) != 0) {
+            if (candidate == key) {
+                return TABLE_EVENTS[slot];
+            }
+            slot = (slot + 1) & (TABLE_KEYS.length - 1);
+        }
+        return null;
+    }
+
+    private static int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - TABLE_BITS));
+    }
 }
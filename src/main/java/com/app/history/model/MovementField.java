@@ -0,0 +1,29 @@
+package com.app.history.model;
+
+/**
+ * Columns of the movement CSV in file order; the ordinal is the column index.
+ */
+public enum MovementField {
+    SEQUENCE_NUMBER,
+    STOCK_NUMBER,
+    HANDLING_UNIT_NUMBER,
+    LOCATION,
+    ITEM_NUMBER,
+    SERIAL_NUMBER,
+    BATCH1,
+    BATCH2,
+    QUANTITY_CHANGE,
+    QUANTITY_TOTAL,
+    WEIGHT_CHANGE,
+    CLIENT,
+    EVENT,
+    STATUS_CODE,
+    DATE,
+    TIME,
+    USER,
+    PRINT_INDICATOR,
+    DOCUMENT1,
+    DOCUMENT2,
+    CUSTOMER_ORDER_NUMBER,
+    CUSTOMER_ORDER_POSITION
+}
@@ -0,0 +1,47 @@
+package com.app.history.model;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The movement fields a consumer reads. {@link MovementRecordFactory} only decodes these fields and leaves every
+ * other field {@code null}; {@link ProjectedMovement#decoded()} decodes them from the CSV line on demand. Sequence
+ * number, stock number and event are always decoded because they identify the movement. Fields outside the projection
+ * are still checked, so a malformed line fails the parse either way.
+ */
+public final class MovementProjection {
+    public static final MovementProjection ALL = new MovementProjection(EnumSet.allOf(MovementField.class));
+
+    private static final Set<MovementField> KEY_FIELDS =
+            EnumSet.of(MovementField.SEQUENCE_NUMBER, MovementField.STOCK_NUMBER, MovementField.EVENT);
+
+    private final Set<MovementField> fields;
+
+    private MovementProjection(Set<MovementField> fields) {
+        this.fields = fields;
+    }
+
+    public static MovementProjection of(MovementField... fields) {
+        EnumSet<MovementField> projected = EnumSet.copyOf(KEY_FIELDS);
+        projected.addAll(Arrays.asList(fields));
+        return projected.size() == MovementField.values().length ? ALL : new MovementProjection(projected);
+    }
+
+    public boolean contains(MovementField field) {
+        return fields.contains(field);
+    }
+
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    public Set<MovementField> fields() {
+        return EnumSet.copyOf(fields);
+    }
+
+    @Override
+    public String toString() {
+        return "MovementProjection" + fields;
+    }
+}
@@ -7,48 +7,50 @@ import static com.app.utils.CsvFieldUtils.*;
 
 public class MovementRecordFactory {
     private static final int EXPECTED_FIELD_COUNT = 22;
+    private static final MovementField[] FIELDS = MovementField.values();
 
     private MovementRecordFactory() {
     }
 
     public static Result<MovementRecord, StockError> createFromCsv(String csvLine) {
+        return createFromCsv(csvLine, MovementProjection.ALL);
+    }
+
+    /**
+     * Parses only the fields of {@code projection}; the others are {@code null} in the record, see
+     * {@link #project}.
+     */
+    public static Result<MovementRecord, StockError> createFromCsv(String csvLine, MovementProjection projection) {
+        return project(csvLine, projection).map(ProjectedMovement::record);
+    }
+
+    /**
+     * Decodes the fields of {@code projection} and checks all others without decoding them, so a line fails the
+     * same way as with {@link #createFromCsv(String)}. Integers and decimals in their plain form are checked without
+     * allocating; any other form is decoded once to check it.
+     */
+    public static Result<ProjectedMovement, StockError> project(String csvLine, MovementProjection projection) {
         if (csvLine == null || csvLine.trim().isEmpty()) {
             return Result.failure(StockError.parseError(csvLine, "CSV line is null or empty"));
         }
 
-        String[] fields = splitCsvLine(csvLine);
+        int[] bounds = new int[EXPECTED_FIELD_COUNT + 1];
+        int fieldCount = fieldBounds(csvLine, bounds);
 
-        if (fields.length != EXPECTED_FIELD_COUNT) {
-            return Result.failure(StockError.invalidFieldCount(csvLine, EXPECTED_FIELD_COUNT, fields.length));
+        if (fieldCount != EXPECTED_FIELD_COUNT) {
+            return Result.failure(StockError.invalidFieldCount(csvLine, EXPECTED_FIELD_COUNT, fieldCount));
         }
 
         try {
-            MovementRecord movementRecord = MovementRecord.builder()
-                    .sequenceNumber(parseInt(fields[0]))
-                    .stockNumber(parseInt(fields[1]))
-                    .handlingUnitNumber(parseString(fields[2]))
-                    .location(parseString(fields[3]))
-                    .itemNumber(parseString(fields[4]))
-                    .serialNumber(parseString(fields[5]))
-                    .batch1(parseString(fields[6]))
-                    .batch2(parseString(fields[7]))
-                    .quantityChange(parseBigDecimal(fields[8]))
-                    .quantityTotal(parseBigDecimal(fields[9]))
-                    .weightChange(parseBigDecimal(fields[10]))
-                    .client(parseInt(fields[11]))
-                    .event(parseEvent(fields[12]))
-                    .statusCode(parseInt(fields[13]))
-                    .date(parseDate(fields[14]))
-                    .time(parseString(fields[15]))
-                    .user(parseString(fields[16]))
-                    .printIndicator(parseString(fields[17]))
-                    .document1(parseString(fields[18]))
-                    .document2(parseString(fields[19]))
-                    .customerOrderNumber(parseString(fields[20]))
-                    .customerOrderPosition(parseString(fields[21]))
-                    .build();
-
-            return Result.success(movementRecord);
+            MovementRecord.MovementRecordBuilder builder = MovementRecord.builder();
+            for (MovementField field : FIELDS) {
+                if (projection.contains(field)) {
+                    set(builder, field, csvField(csvLine, bounds, field.ordinal()));
+                } else {
+                    check(csvLine, bounds, field);
+                }
+            }
+            return Result.success(new ProjectedMovement(builder.build(), projection, csvLine));
         } catch (InvalidEventException e) {
             return Result.failure(StockError.invalidEvent(csvLine, e.getMessage()));
         } catch (Exception e) {
@@ -56,6 +58,49 @@ public class MovementRecordFactory {
         }
     }
 
+    private static void check(String csvLine, int[] bounds, MovementField field) {
+        int start = trimStart(csvLine, bounds[field.ordinal()], bounds[field.ordinal() + 1] - 1);
+        int end = trimEnd(csvLine, start, bounds[field.ordinal() + 1] - 1);
+        boolean plain = switch (field) {
+            case SEQUENCE_NUMBER, STOCK_NUMBER, CLIENT, STATUS_CODE ->
+                    start == end || parseIntRange(csvLine, start, end) != NOT_FAST;
+            case QUANTITY_CHANGE, QUANTITY_TOTAL, WEIGHT_CHANGE ->
+                    start == end || parseDecimalRange(csvLine, start, end) != NOT_FAST;
+            case EVENT, DATE -> false;
+            default -> true;
+        };
+        if (!plain) {
+            set(MovementRecord.builder(), field, csvField(csvLine, bounds, field.ordinal()));
+        }
+    }
+
+    private static void set(MovementRecord.MovementRecordBuilder builder, MovementField field, String value) {
+        switch (field) {
+            case SEQUENCE_NUMBER -> builder.sequenceNumber(parseInt(value));
+            case STOCK_NUMBER -> builder.stockNumber(parseInt(value));
+            case HANDLING_UNIT_NUMBER -> builder.handlingUnitNumber(parseString(value));
+            case LOCATION -> builder.location(parseString(value));
+            case ITEM_NUMBER -> builder.itemNumber(parseString(value));
+            case SERIAL_NUMBER -> builder.serialNumber(parseString(value));
+            case BATCH1 -> builder.batch1(parseString(value));
+            case BATCH2 -> builder.batch2(parseString(value));
+            case QUANTITY_CHANGE -> builder.quantityChange(parseBigDecimal(value));
+            case QUANTITY_TOTAL -> builder.quantityTotal(parseBigDecimal(value));
+            case WEIGHT_CHANGE -> builder.weightChange(parseBigDecimal(value));
+            case CLIENT -> builder.client(parseInt(value));
+            case EVENT -> builder.event(parseEvent(value));
+            case STATUS_CODE -> builder.statusCode(parseInt(value));
+            case DATE -> builder.date(parseDate(value));
+            case TIME -> builder.time(parseString(value));
+            case USER -> builder.user(parseString(value));
+            case PRINT_INDICATOR -> builder.printIndicator(parseString(value));
+            case DOCUMENT1 -> builder.document1(parseString(value));
+            case DOCUMENT2 -> builder.document2(parseString(value));
+            case CUSTOMER_ORDER_NUMBER -> builder.customerOrderNumber(parseString(value));
+            case CUSTOMER_ORDER_POSITION -> builder.customerOrderPosition(parseString(value));
+        }
+    }
+
     private static MovementEvent parseEvent(String value) {
         try {
             return MovementEvent.fromCode(value);
@@ -0,0 +1,16 @@
+package com.app.history.model;
+
+/**
+ * A movement parsed with a {@link MovementProjection}: {@code record} holds the projected fields and {@code null} for
+ * all others, which {@link #decoded()} decodes from the retained line on demand. The line passed all field checks
+ * when it was parsed, so decoding it again cannot fail.
+ */
+public record ProjectedMovement(MovementRecord record, MovementProjection projection, String csvLine) {
+
+    /**
+     * The movement with all fields decoded; the projected record itself if nothing was left out.
+     */
+    public MovementRecord decoded() {
+        return projection.isAll() ? record : MovementRecordFactory.createFromCsv(csvLine).getOrThrow();
+    }
+}
@@ -1,5 +1,6 @@
 package com.app.history.reader;
 
+import com.app.utils.CsvCharsets;
 import com.app.utils.Result;
 import com.app.utils.StockError;
 import org.slf4j.Logger;
@@ -7,42 +8,75 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.util.stream.Stream;
 
 public class CsvMovementReader implements MovementReader {
-    private final String csvFile;
+    private final MovementSource source;
+    private final Charset charset;
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvMovementReader.class);
 
     public CsvMovementReader(String csvFile) {
-        this.csvFile = csvFile;
+        this(csvFile, CsvCharsets.DEFAULT);
+    }
+
+    public CsvMovementReader(String csvFile, Charset charset) {
+        this(MovementSources.forPath(csvFile), charset);
+    }
+
+    public CsvMovementReader(MovementSource source) {
+        this(source, CsvCharsets.DEFAULT);
+    }
+
+    public CsvMovementReader(MovementSource source, Charset charset) {
+        this.source = source;
+        this.charset = charset;
     }
 
     @Override
     public Result<MovementStream, StockError> readMovements() {
-        LOGGER.info("Reading movement CSV: {}", csvFile);
-        Path filePath = Path.of(csvFile);
+        return readLines().map(MovementStream::new);
+    }
+
+    /**
+     * Opens the source and returns its data lines without the header line. The stream has to be closed.
+     */
+    public Result<Stream<String>, StockError> readLines() {
+        LOGGER.info("Reading movement CSV: {}", source.name());
         try {
-            BufferedReader reader = Files.newBufferedReader(filePath);
+            BufferedReader reader = source.openReader(charset);
+            try {
                 String firstLine = reader.readLine();
                 if (firstLine == null) {
                     reader.close();
-                    LOGGER.info("Movement CSV {} is empty", csvFile);
-                    return Result.success(new MovementStream(Stream.empty()));
+                    LOGGER.info("Movement CSV {} is empty", source.name());
+                    return Result.success(Stream.empty());
                 }
-                Stream<String> lines = reader.lines();
+                Stream<String> lines = reader.lines().onClose(() -> closeReader(reader));
                 if (!isHeaderLine(firstLine)) {
                     lines = Stream.concat(Stream.of(firstLine), lines);
                 }
-                return Result.success(new MovementStream(lines));
+                return Result.success(lines);
+            } catch (IOException | RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to read movement CSV: {}", source.name(), e);
+            return Result.failure(StockError.parseError(source.name(), "Failed to read CSV file: " + e.getMessage()));
+        }
+    }
+
+    private static void closeReader(BufferedReader reader) {
+        try {
+            reader.close();
         } catch (IOException e) {
-            LOGGER.error("Failed to read movement CSV: {}", csvFile, e);
-            return Result.failure(StockError.parseError(csvFile, "Failed to read CSV file: " + e.getMessage()));
+            throw new UncheckedIOException(e);
         }
     }
 
-    private boolean isHeaderLine(String line) {
+    static boolean isHeaderLine(String line) {
         String[] fields = line.split(",", -1);
         if (fields.length == 0) {
             return false;
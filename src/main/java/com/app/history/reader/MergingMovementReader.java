@@ -0,0 +1,206 @@
+package com.app.history.reader;
+
+import com.app.utils.CsvCharsets;
+import com.app.utils.Result;
+import com.app.utils.SortedLineMerger;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a movement history that was exported as several files (e.g. one per day) as a single stream ordered by
+ * sequence number descending. Each file has to be sorted descending on its own; the files are merged lazily, so
+ * nothing is concatenated or re-sorted on disk. Lines that appear identically in two shards are emitted once; repeated
+ * lines within a shard are kept, so that the replay reports them like any other movement out of order. Shards that are
+ * not sorted are logged as they are read.
+ */
+public class MergingMovementReader implements MovementReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MergingMovementReader.class);
+
+    private final List<String> csvFiles;
+    private final List<CsvMovementReader> readers;
+
+    public MergingMovementReader(List<String> csvFiles) {
+        this(csvFiles, CsvCharsets.DEFAULT);
+    }
+
+    public MergingMovementReader(List<String> csvFiles, Charset charset) {
+        this.csvFiles = List.copyOf(csvFiles);
+        this.readers = csvFiles.stream()
+                .map(file -> new CsvMovementReader(MovementSources.prefetched(MovementSources.forPath(file)), charset))
+                .toList();
+    }
+
+    @Override
+    public Result<MovementStream, StockError> readMovements() {
+        List<Stream<String>> shards = new ArrayList<>(readers.size());
+        for (CsvMovementReader reader : readers) {
+            Result<Stream<String>, StockError> lines = reader.readLines();
+            if (lines.isFailure()) {
+                shards.forEach(Stream::close);
+                return Result.failure(lines.error());
+            }
+            shards.add(lines.getOrThrow());
+        }
+        LOGGER.info("Merging {} movement files by sequence number", shards.size());
+
+        List<Iterator<String>> ordered = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            ordered.add(new OrderCheckingLines(shards.get(i).iterator(), csvFiles.get(i)));
+        }
+        Iterator<String> merged = new DistinctLines(new SortedLineMerger(ordered,
+                MergingMovementReader::descendingSequenceKey));
+        Stream<String> lines = StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeAll(shards));
+        return Result.success(new MovementStream(lines));
+    }
+
+    /**
+     * Merge key ordering lines by sequence number descending. Lines without a readable sequence number sort first,
+     * so that their parse error is reported right away instead of being held back by the merge.
+     */
+    static long descendingSequenceKey(String line) {
+        int end = line.indexOf(',');
+        if (end < 0) {
+            end = line.length();
+        }
+        int start = 0;
+        while (start < end && line.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        try {
+            return -(long) Integer.parseInt(line, start, end, 10);
+        } catch (NumberFormatException _) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static void closeAll(List<Stream<String>> shards) {
+        RuntimeException failure = null;
+        for (Stream<String> shard : shards) {
+            try {
+                shard.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Passes the lines of a shard through and logs where its sequence numbers stop descending. Lines without a
+     * readable sequence number are not checked.
+     */
+    private static final class OrderCheckingLines implements Iterator<String> {
+        private final Iterator<String> lines;
+        private final String name;
+        private long previousKey = Long.MIN_VALUE;
+        private long outOfOrder;
+
+        private OrderCheckingLines(Iterator<String> lines, String name) {
+            this.lines = lines;
+            this.name = name;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = lines.hasNext();
+            if (!hasNext && outOfOrder > 0) {
+                LOGGER.warn("Movement file {} has {} lines out of sequence number order", name, outOfOrder);
+                outOfOrder = 0;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public String next() {
+            String line = lines.next();
+            long key = descendingSequenceKey(line);
+            if (key != Long.MIN_VALUE) {
+                if (key <= previousKey && outOfOrder++ == 0) {
+                    LOGGER.warn("Movement file {} is not sorted by sequence number descending at: {}", name, line);
+                }
+                previousKey = key;
+            }
+            return line;
+        }
+    }
+
+    /**
+     * Drops a line if another shard already contained it as often. A line repeated within one shard is emitted as often
+     * as it is repeated there. The merge emits the lines of equal sequence numbers one after the other, shard by shard,
+     * so only those of the current sequence number are kept: per line, {@code [emitted, seen in the current shard,
+     * current shard]}.
+     */
+    private static final class DistinctLines implements Iterator<String> {
+        private final SortedLineMerger lines;
+        private final Map<String, int[]> sequenceLines = new HashMap<>();
+        private long sequenceKey;
+        private String next;
+        private long duplicates;
+
+        private DistinctLines(SortedLineMerger lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && lines.hasNext()) {
+                String candidate = lines.next();
+                long key = descendingSequenceKey(candidate);
+                if (key != sequenceKey) {
+                    sequenceLines.clear();
+                    sequenceKey = key;
+                }
+                int[] counts = sequenceLines.computeIfAbsent(candidate, ignored -> new int[]{0, 0, -1});
+                if (counts[2] != lines.sourceIndex()) {
+                    counts[1] = 0;
+                    counts[2] = lines.sourceIndex();
+                }
+                if (++counts[1] <= counts[0]) {
+                    duplicates++;
+                    continue;
+                }
+                counts[0] = counts[1];
+                next = candidate;
+            }
+            if (next == null && duplicates > 0) {
+                LOGGER.info("Skipped {} movement lines contained in more than one file", duplicates);
+                duplicates = 0;
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            next = null;
+            return line;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.app.history.reader;
+
+import com.app.history.model.MovementCursor;
+import com.app.utils.ByteScanner;
+import com.app.utils.CsvCharsets;
+import com.app.utils.CsvFieldUtils;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.LongConsumer;
+
+/**
+ * Allocation-free alternative to {@link CsvMovementReader}: the source is read as bytes and a single
+ * {@link MovementCursor} is moved over its lines. Valid movements are passed to the handler, invalid lines to the
+ * error sink, both in file order.
+ */
+public class MovementCursorReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MovementCursorReader.class);
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final MovementSource source;
+    private final Charset charset;
+
+    public MovementCursorReader(String csvFile) {
+        this(csvFile, CsvCharsets.DEFAULT);
+    }
+
+    public MovementCursorReader(String csvFile, Charset charset) {
+        this(MovementSources.forPath(csvFile), charset);
+    }
+
+    public MovementCursorReader(MovementSource source) {
+        this(source, CsvCharsets.DEFAULT);
+    }
+
+    public MovementCursorReader(MovementSource source, Charset charset) {
+        this.source = source;
+        this.charset = charset;
+    }
+
+    /**
+     * Replays all movements of the source. The cursor passed to {@code handler} is reused for the next line.
+     *
+     * @return the number of data lines read, or a failure if the source could not be read
+     */
+    public Result<Long, StockError> forEach(Consumer<MovementCursor> handler, MovementErrorSink errorSink) {
+        return forEach(handler, errorSink, stockNumber -> false);
+    }
+
+    /**
+     * Like {@link #forEach(Consumer, MovementErrorSink)}, but lines whose stock number matches {@code skipStock} are
+     * dropped after decoding only that column; they are neither loaded nor validated. Lines whose stock number cannot
+     * be read that cheaply are loaded as usual.
+     */
+    public Result<Long, StockError> forEach(Consumer<MovementCursor> handler, MovementErrorSink errorSink,
+                                            IntPredicate skipStock) {
+        return forEach(handler, errorSink, skipStock, null);
+    }
+
+    /**
+     * Like {@link #forEach(Consumer, MovementErrorSink, IntPredicate)}, and after every line, including skipped ones,
+     * {@code lineEnds} receives the byte offset of the next line in the source. Everything before that offset has been
+     * passed to {@code handler} or {@code errorSink}, so a replay can continue there.
+     */
+    public Result<Long, StockError> forEach(Consumer<MovementCursor> handler, MovementErrorSink errorSink,
+                                            IntPredicate skipStock, LongConsumer lineEnds) {
+        LOGGER.info("Reading movement CSV with cursor: {}", source.name());
+        MovementCursor cursor = new MovementCursor(charset);
+        byte[] buffer = new byte[BUFFER_BYTES];
+        long lines = 0;
+        boolean firstLine = true;
+        try (InputStream input = source.openStream()) {
+            long base = 0;
+            int start = 0;
+            int limit = 0;
+            boolean endOfInput = false;
+            while (true) {
+                // Lines end at \n, \r or \r\n, like BufferedReader.readLine()
+                int lineEnd = ByteScanner.indexOfLineBreak(buffer, start, limit);
+                if (lineEnd < 0 || lineEnd == limit - 1 && buffer[lineEnd] == '\r' && !endOfInput) {
+                    if (endOfInput) {
+                        if (start < limit && (!firstLine || !isHeaderLine(buffer, start, limit))) {
+                            accept(cursor, buffer, start, limit, handler, errorSink, skipStock);
+                            lines++;
+                        }
+                        if (lineEnds != null && start < limit) {
+                            lineEnds.accept(base + limit);
+                        }
+                        break;
+                    }
+                    if (start > 0) {
+                        System.arraycopy(buffer, start, buffer, 0, limit - start);
+                        base += start;
+                        limit -= start;
+                        start = 0;
+                    } else if (limit == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    int read = input.read(buffer, limit, buffer.length - limit);
+                    if (read < 0) {
+                        endOfInput = true;
+                    } else {
+                        limit += read;
+                    }
+                    continue;
+                }
+                if (!firstLine || !isHeaderLine(buffer, start, lineEnd)) {
+                    accept(cursor, buffer, start, lineEnd, handler, errorSink, skipStock);
+                    lines++;
+                }
+                firstLine = false;
+                start = lineEnd + 1;
+                if (buffer[lineEnd] == '\r' && start < limit && buffer[start] == '\n') {
+                    start++;
+                }
+                if (lineEnds != null) {
+                    lineEnds.accept(base + start);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to read movement CSV: {}", source.name(), e);
+            return Result.failure(StockError.parseError(source.name(), "Failed to read CSV file: " + e.getMessage()));
+        }
+        return Result.success(lines);
+    }
+
+    private static void accept(MovementCursor cursor, byte[] buffer, int start, int end,
+                               Consumer<MovementCursor> handler, MovementErrorSink errorSink,
+                               IntPredicate skipStock) {
+        long stockNumber = MovementCursor.stockNumberOf(buffer, start, end);
+        if (stockNumber != CsvFieldUtils.NOT_FAST && skipStock.test((int) stockNumber)) {
+            return;
+        }
+        StockError error = cursor.load(buffer, start, end);
+        if (error == null) {
+            handler.accept(cursor);
+        } else {
+            errorSink.error(error);
+        }
+    }
+
+    private boolean isHeaderLine(byte[] buffer, int start, int end) {
+        return CsvMovementReader.isHeaderLine(new String(buffer, start, end - start, charset));
+    }
+}
@@ -0,0 +1,12 @@
+package com.app.history.reader;
+
+import com.app.utils.StockError;
+
+/**
+ * Receives the lines a {@link MovementCursorReader} could not parse, instead of wrapping every line in a
+ * {@link com.app.utils.Result}.
+ */
+@FunctionalInterface
+public interface MovementErrorSink {
+    void error(StockError error);
+}
@@ -0,0 +1,265 @@
+package com.app.history.reader;
+
+import com.app.history.model.MovementCursor;
+import com.app.utils.ByteScanner;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Sparse index of a plain history CSV ({@code <history>.idx}): the byte offset, sequence number and date of every
+ * {@code interval}-th line. A replay that starts at a {@link MovementStart} seeks close to it instead of reading the
+ * history from the first byte. The index is only used while the size and modification time of the history still
+ * match the values recorded when it was built.
+ * <p>
+ * Layout: {@code [int magic][int version][long size][long modified][int interval][int count]} followed by
+ * {@code count} entries of {@code [long offset][int sequenceNumber][int epochDay]}.
+ */
+public final class MovementIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MovementIndex.class);
+    public static final int DEFAULT_INTERVAL = 4096;
+    private static final int MAGIC = 0x4D494458;
+    private static final int VERSION = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final String SUFFIX = ".idx";
+
+    private final int interval;
+    private final int count;
+    private final long[] offsets;
+    private final int[] sequenceNumbers;
+    private final int[] epochDays;
+
+    private MovementIndex(int interval, int count, long[] offsets, int[] sequenceNumbers, int[] epochDays) {
+        this.interval = interval;
+        this.count = count;
+        this.offsets = offsets;
+        this.sequenceNumbers = sequenceNumbers;
+        this.epochDays = epochDays;
+    }
+
+    public static Path indexFile(Path history) {
+        return history.resolveSibling(history.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Scans the history once and writes its index next to it.
+     */
+    public static Result<MovementIndex, StockError> build(Path history, int interval) {
+        LOGGER.info("Indexing movement CSV {} every {} lines", history, interval);
+        try {
+            BasicFileAttributes before = Files.readAttributes(history, BasicFileAttributes.class);
+            MovementIndex index = scan(history, interval);
+            BasicFileAttributes after = Files.readAttributes(history, BasicFileAttributes.class);
+            if (before.size() != after.size() || !before.lastModifiedTime().equals(after.lastModifiedTime())) {
+                return Result.failure(StockError.parseError(history.toString(), "History changed while indexing"));
+            }
+            index.write(indexFile(history), after);
+            LOGGER.info("Wrote {} index entries to {}", index.count, indexFile(history));
+            return Result.success(index);
+        } catch (IOException e) {
+            LOGGER.error("Failed to index movement CSV: {}", history, e);
+            return Result.failure(StockError.parseError(history.toString(), "Failed to index CSV file: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * The index of {@code history}, or empty if there is none or it no longer matches the history.
+     */
+    public static Optional<MovementIndex> load(Path history) {
+        Path indexFile = indexFile(history);
+        if (!Files.isRegularFile(indexFile)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring movement index {} with unknown format", indexFile);
+                return Optional.empty();
+            }
+            BasicFileAttributes attributes = Files.readAttributes(history, BasicFileAttributes.class);
+            if (in.readLong() != attributes.size() || in.readLong() != attributes.lastModifiedTime().toMillis()) {
+                LOGGER.info("Movement index {} is stale, history has changed", indexFile);
+                return Optional.empty();
+            }
+            int interval = in.readInt();
+            int count = in.readInt();
+            long[] offsets = new long[count];
+            int[] sequenceNumbers = new int[count];
+            int[] epochDays = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                sequenceNumbers[i] = in.readInt();
+                epochDays[i] = in.readInt();
+            }
+            return Optional.of(new MovementIndex(interval, count, offsets, sequenceNumbers, epochDays));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read movement index {}: {}", indexFile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The source of {@code movementFile} positioned shortly before {@code start}, if the file is a plain file with a
+     * valid index. Otherwise the whole file is read.
+     */
+    public static MovementSource seek(String movementFile, MovementStart start) {
+        long offset = startOffset(movementFile, start);
+        return offset == 0 ? MovementSources.forPath(movementFile) : MovementSources.file(Path.of(movementFile), offset);
+    }
+
+    /**
+     * The byte offset {@link #seek} starts {@code movementFile} at, 0 without a valid index.
+     */
+    public static long startOffset(String movementFile, MovementStart start) {
+        if (!MovementSources.isPlainFile(movementFile)) {
+            return 0;
+        }
+        Optional<MovementIndex> index = load(Path.of(movementFile));
+        if (index.isEmpty()) {
+            LOGGER.info("No valid index for {}, reading from the start; create one with --index", movementFile);
+            return 0;
+        }
+        long offset = index.get().offsetOf(start);
+        LOGGER.info("Starting movement CSV {} at byte {}", movementFile, offset);
+        return offset;
+    }
+
+    /**
+     * Offset of the indexed line before the first one that reaches {@code start}, so no line between that reaches
+     * the start is missed. Assumes the history is sorted by sequence number descending.
+     */
+    public long offsetOf(MovementStart start) {
+        for (int i = 0; i < count; i++) {
+            if (start.isReachedBy(sequenceNumbers[i], epochDays[i] != NO_DATE, epochDays[i])) {
+                return i == 0 ? 0 : offsets[i - 1];
+            }
+        }
+        return count == 0 ? 0 : offsets[count - 1];
+    }
+
+    public int interval() {
+        return interval;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private static MovementIndex scan(Path history, int interval) throws IOException {
+        Builder builder = new Builder(interval);
+        byte[] buffer = new byte[BUFFER_BYTES];
+        try (InputStream input = Files.newInputStream(history)) {
+            long base = 0;
+            int start = 0;
+            int limit = 0;
+            boolean endOfInput = false;
+            while (true) {
+                // Lines end at \n, \r or \r\n, like in MovementCursorReader
+                int lineEnd = ByteScanner.indexOfLineBreak(buffer, start, limit);
+                if (lineEnd < 0 || lineEnd == limit - 1 && buffer[lineEnd] == '\r' && !endOfInput) {
+                    if (endOfInput) {
+                        if (start < limit) {
+                            builder.line(buffer, base + start, start, limit);
+                        }
+                        break;
+                    }
+                    if (start > 0) {
+                        System.arraycopy(buffer, start, buffer, 0, limit - start);
+                        base += start;
+                        limit -= start;
+                        start = 0;
+                    } else if (limit == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    int read = input.read(buffer, limit, buffer.length - limit);
+                    if (read < 0) {
+                        endOfInput = true;
+                    } else {
+                        limit += read;
+                    }
+                    continue;
+                }
+                builder.line(buffer, base + start, start, lineEnd);
+                start = lineEnd + 1;
+                if (buffer[lineEnd] == '\r' && start < limit && buffer[start] == '\n') {
+                    start++;
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private void write(Path indexFile, BasicFileAttributes attributes) throws IOException {
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(attributes.size());
+            out.writeLong(attributes.lastModifiedTime().toMillis());
+            out.writeInt(interval);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(sequenceNumbers[i]);
+                out.writeInt(epochDays[i]);
+            }
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Collects an entry every {@code interval} lines. If that line is not a valid movement, e.g. the header, the
+     * entry goes to the next valid line instead.
+     */
+    private static final class Builder {
+        private final int interval;
+        private final MovementCursor cursor = new MovementCursor();
+        private long[] offsets = new long[64];
+        private int[] sequenceNumbers = new int[64];
+        private int[] epochDays = new int[64];
+        private int count;
+        private long lines;
+        private boolean pending;
+
+        private Builder(int interval) {
+            this.interval = Math.max(1, interval);
+        }
+
+        private void line(byte[] buffer, long offset, int start, int end) {
+            if (lines++ % interval == 0) {
+                pending = true;
+            }
+            if (!pending || cursor.load(buffer, start, end) != null) {
+                return;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                sequenceNumbers = Arrays.copyOf(sequenceNumbers, count * 2);
+                epochDays = Arrays.copyOf(epochDays, count * 2);
+            }
+            offsets[count] = offset;
+            sequenceNumbers[count] = cursor.sequenceNumber();
+            epochDays[count] = cursor.hasDate() ? cursor.epochDay() : NO_DATE;
+            count++;
+            pending = false;
+        }
+
+        private MovementIndex build() {
+            return new MovementIndex(interval, count, offsets, sequenceNumbers, epochDays);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.app.history.reader;
+
+import com.app.utils.CsvCharsets;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Where movement CSV lines come from. Sources are opened once per read and closed by the caller.
+ */
+public interface MovementSource {
+    String name();
+
+    InputStream openStream() throws IOException;
+
+    default BufferedReader openReader() throws IOException {
+        return openReader(CsvCharsets.DEFAULT);
+    }
+
+    default BufferedReader openReader(Charset charset) throws IOException {
+        return CsvCharsets.newReader(openStream(), charset);
+    }
+}
@@ -0,0 +1,222 @@
+package com.app.history.reader;
+
+import com.app.utils.CsvCharsets;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+public final class MovementSources {
+    public static final String STDIN = "-";
+    private static final int INFLATE_BUFFER_BYTES = 1 << 16;
+
+    private MovementSources() {
+    }
+
+    /**
+     * Picks the source for a path: {@code -} reads stdin, {@code .gz} is inflated with the JDK, {@code .zst} is
+     * decompressed by the external {@code zstd} binary and everything else is read as a plain file.
+     */
+    public static MovementSource forPath(String path) {
+        if (STDIN.equals(path)) {
+            return stdin();
+        }
+        String lowerCase = path.toLowerCase(Locale.ROOT);
+        if (lowerCase.endsWith(".gz")) {
+            return gzip(Path.of(path));
+        }
+        if (lowerCase.endsWith(".zst")) {
+            return command(path, List.of("zstd", "-dc", "--", path));
+        }
+        return file(Path.of(path));
+    }
+
+    /**
+     * Whether {@link #forPath} reads {@code path} as a plain file, which can be read from an offset.
+     */
+    public static boolean isPlainFile(String path) {
+        String lowerCase = path.toLowerCase(Locale.ROOT);
+        return !STDIN.equals(path) && !lowerCase.endsWith(".gz") && !lowerCase.endsWith(".zst");
+    }
+
+    public static MovementSource file(Path path) {
+        return new MovementSource() {
+            @Override
+            public String name() {
+                return path.toString();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return Files.newInputStream(path);
+            }
+
+            @Override
+            public BufferedReader openReader(Charset charset) throws IOException {
+                return CsvCharsets.newReader(path, charset);
+            }
+        };
+    }
+
+    /**
+     * Reads a plain file from byte {@code offset} on, which has to be the start of a line.
+     */
+    public static MovementSource file(Path path, long offset) {
+        return new MovementSource() {
+            @Override
+            public String name() {
+                return path.toString();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                InputStream input = Files.newInputStream(path);
+                try {
+                    input.skipNBytes(offset);
+                    return input;
+                } catch (IOException | RuntimeException e) {
+                    input.close();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    public static MovementSource gzip(Path path) {
+        return new MovementSource() {
+            @Override
+            public String name() {
+                return path.toString();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                InputStream compressed = Files.newInputStream(path);
+                try {
+                    return new PrefetchingInputStream(new GZIPInputStream(compressed, INFLATE_BUFFER_BYTES), name());
+                } catch (IOException | RuntimeException e) {
+                    compressed.close();
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the standard output of an external decompressor, e.g. {@code zstd -dc file}. A non-zero exit code is
+     * reported as an {@link IOException} when the stream is closed.
+     */
+    public static MovementSource command(String name, List<String> command) {
+        return new MovementSource() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                Process process = new ProcessBuilder(command)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                return new PrefetchingInputStream(new ProcessInputStream(process, command.getFirst()), name);
+            }
+        };
+    }
+
+    /**
+     * Reads the source through its own background prefetch buffer, unless it already has one.
+     */
+    public static MovementSource prefetched(MovementSource source) {
+        return new MovementSource() {
+            @Override
+            public String name() {
+                return source.name();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                InputStream stream = source.openStream();
+                return stream instanceof PrefetchingInputStream ? stream : new PrefetchingInputStream(stream, name());
+            }
+        };
+    }
+
+    /**
+     * Reads {@code System.in}. Closing the stream leaves {@code System.in} open for the rest of the process.
+     */
+    public static MovementSource stdin() {
+        return new MovementSource() {
+            @Override
+            public String name() {
+                return "stdin";
+            }
+
+            @Override
+            public InputStream openStream() {
+                return new PrefetchingInputStream(new FilterInputStream(System.in) {
+                    @Override
+                    public void close() {
+                        // System.in belongs to the process
+                    }
+                }, name());
+            }
+        };
+    }
+
+    private static final class ProcessInputStream extends FilterInputStream {
+        private final Process process;
+        private final String program;
+        // Set by the prefetch thread that reads, checked by the thread that closes
+        private volatile boolean endOfStream;
+
+        private ProcessInputStream(Process process, String program) {
+            super(process.getInputStream());
+            this.process = process;
+            this.program = program;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value < 0) {
+                endOfStream = true;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read < 0) {
+                endOfStream = true;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (!endOfStream) {
+                process.destroy();
+                return;
+            }
+            try {
+                int exitCode = process.waitFor();
+                if (exitCode != 0) {
+                    throw new IOException(program + " exited with code " + exitCode);
+                }
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + program, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.app.history.reader;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.model.MovementRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+
+import java.time.LocalDate;
+
+/**
+ * Where the replay of a history sorted by sequence number descending starts: at the first movement with a sequence
+ * number of at most {@code sequenceNumber} and a date on or before {@code date}. Either bound may be {@code null}.
+ * Newer movements, e.g. ones the stock snapshot does not contain yet, are skipped.
+ */
+public record MovementStart(Integer sequenceNumber, LocalDate date) {
+
+    public boolean isReachedBy(int movementSequenceNumber, boolean hasDate, long epochDay) {
+        return (sequenceNumber == null || movementSequenceNumber <= sequenceNumber)
+                && (date == null || hasDate && epochDay <= date.toEpochDay());
+    }
+
+    /**
+     * A fresh gate for one replay. It opens at the first movement that reaches the start and stays open.
+     */
+    public Gate gate() {
+        return new Gate(this);
+    }
+
+    public static final class Gate {
+        private final MovementStart start;
+        private boolean open;
+
+        private Gate(MovementStart start) {
+            this.start = start;
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        public boolean passes(MovementCursor cursor) {
+            if (!open) {
+                open = start.isReachedBy(cursor.sequenceNumber(), cursor.hasDate(), cursor.epochDay());
+            }
+            return open;
+        }
+
+        /**
+         * Failed lines pass once the gate is open; lines before the start are not reported.
+         */
+        public boolean passes(Result<MovementRecord, StockError> movement) {
+            if (!open && movement.isSuccessful()) {
+                MovementRecord movementRecord = movement.getOrThrow();
+                LocalDate movementDate = movementRecord.date();
+                open = movementRecord.sequenceNumber() != null && start.isReachedBy(movementRecord.sequenceNumber(),
+                        movementDate != null, movementDate == null ? 0 : movementDate.toEpochDay());
+            }
+            return open;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.app.history.reader;
 
+import com.app.history.model.MovementProjection;
 import com.app.history.model.MovementRecord;
 import com.app.history.model.MovementRecordFactory;
 import com.app.utils.Result;
@@ -9,15 +10,20 @@ import java.util.stream.Stream;
 
 public class MovementStream implements AutoCloseable {
     private final Stream<String> source;
-    private final Stream<Result<MovementRecord, StockError>> stream;
 
     public MovementStream(Stream<String> source) {
         this.source = source;
-        this.stream = source.map(MovementRecordFactory::createFromCsv);
     }
 
     public Stream<Result<MovementRecord, StockError>> stream() {
-        return stream;
+        return stream(MovementProjection.ALL);
+    }
+
+    /**
+     * Parses only the fields of {@code projection}, see {@link MovementProjection}. The movements can be streamed once.
+     */
+    public Stream<Result<MovementRecord, StockError>> stream(MovementProjection projection) {
+        return source.map(line -> MovementRecordFactory.createFromCsv(line, projection));
     }
 
     @Override
@@ -0,0 +1,135 @@
+package com.app.history.reader;
+
+import com.app.utils.LogContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads its delegate on a background thread into a small queue of large chunks, so that decompression or pipe reads
+ * overlap with CSV parsing on the consuming thread.
+ */
+class PrefetchingInputStream extends InputStream {
+    static final int CHUNK_BYTES = 1 << 20;
+    private static final int QUEUED_CHUNKS = 4;
+    private static final Chunk END = new Chunk(new byte[0], 0, null);
+
+    private final InputStream delegate;
+    private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private final Thread reader;
+    private Chunk current;
+    private int position;
+    private volatile boolean closed;
+
+    PrefetchingInputStream(InputStream delegate, String name) {
+        this.delegate = delegate;
+        this.reader = LogContext.inheriting(Thread.ofPlatform()
+                .name("movement-prefetch-" + name)
+                .daemon(true)
+                .factory()).newThread(this::fill);
+        reader.start();
+    }
+
+    private void fill() {
+        try {
+            while (!closed) {
+                byte[] buffer = new byte[CHUNK_BYTES];
+                int length = readFully(buffer);
+                if (length > 0) {
+                    chunks.put(new Chunk(buffer, length, null));
+                }
+                if (length < buffer.length) {
+                    chunks.put(END);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            offerFailure(e);
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int readFully(byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = delegate.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private void offerFailure(IOException e) {
+        try {
+            chunks.put(new Chunk(null, 0, e));
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.data, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (current == null || position >= current.length) {
+            if (current == END) {
+                return false;
+            }
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for input");
+            }
+            position = 0;
+            if (current.failure != null) {
+                IOException failure = current.failure;
+                current = END;
+                throw failure;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        chunks.clear();
+        delegate.close();
+    }
+
+    private record Chunk(byte[] data, int length, IOException failure) {
+    }
+}
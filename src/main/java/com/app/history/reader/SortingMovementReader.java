@@ -0,0 +1,180 @@
+package com.app.history.reader;
+
+import com.app.utils.CsvCharsets;
+import com.app.utils.ExternalLineSorter;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads movement histories whose sequence numbers are out of order. All lines are external-sorted by sequence number
+ * descending before the replay sees them, so the whole input never has to fit into memory. The sorted output can be
+ * cached next to the first input file and is reused as long as the inputs keep their size and modification time.
+ */
+public class SortingMovementReader implements MovementReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SortingMovementReader.class);
+    private static final String CACHE_SUFFIX = ".sorted.csv";
+    private static final String SOURCES_SUFFIX = ".sources";
+
+    private final List<String> csvFiles;
+    private final Options options;
+    private final Charset charset;
+
+    public SortingMovementReader(List<String> csvFiles, Options options) {
+        this(csvFiles, options, CsvCharsets.DEFAULT);
+    }
+
+    /**
+     * @param charset charset of the input files; sorted runs and the cache are always written as UTF-8
+     */
+    public SortingMovementReader(List<String> csvFiles, Options options, Charset charset) {
+        this.csvFiles = List.copyOf(csvFiles);
+        this.options = options;
+        this.charset = charset;
+    }
+
+    @Override
+    public Result<MovementStream, StockError> readMovements() {
+        Path cacheFile = cacheFile();
+        List<String> sources = cacheFile == null ? List.of() : describeSources();
+        if (cacheFile != null && isCacheValid(cacheFile, sources)) {
+            LOGGER.info("Reading sorted movements from cache {}", cacheFile);
+            return new CsvMovementReader(MovementSources.file(cacheFile)).readMovements();
+        }
+
+        List<Stream<String>> inputs = new ArrayList<>(csvFiles.size());
+        for (String csvFile : csvFiles) {
+            Result<Stream<String>, StockError> lines = new CsvMovementReader(csvFile, charset).readLines();
+            if (lines.isFailure()) {
+                inputs.forEach(Stream::close);
+                return Result.failure(lines.error());
+            }
+            inputs.add(lines.getOrThrow());
+        }
+
+        LOGGER.info("Sorting movement files {} with a memory budget of {} MB", csvFiles,
+                options.memoryBudgetBytes() >> 20);
+        ExternalLineSorter sorter = new ExternalLineSorter(options.memoryBudgetBytes(), options.parallelism(),
+                options.tempDirectory(), MergingMovementReader::descendingSequenceKey);
+        Stream<String> sorted;
+        try (Stream<String> lines = inputs.stream()
+                .flatMap(input -> input)
+                .onClose(() -> inputs.forEach(Stream::close))) {
+            sorted = sorter.sort(lines);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to sort movement files {}", csvFiles, e);
+            return Result.failure(StockError.parseError(String.join(",", csvFiles),
+                    "Failed to sort movement files: " + e.getMessage()));
+        }
+
+        if (cacheFile == null) {
+            return Result.success(new MovementStream(sorted));
+        }
+        try (sorted) {
+            writeCache(cacheFile, sources, sorted.iterator());
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to write sorted movement cache {}", cacheFile, e);
+            return Result.failure(StockError.writingError(cacheFile.toString(),
+                    "Failed to write sorted movements: " + e.getMessage()));
+        }
+        return new CsvMovementReader(MovementSources.file(cacheFile)).readMovements();
+    }
+
+    private Path cacheFile() {
+        if (!options.cacheSortedOutput()) {
+            return null;
+        }
+        if (csvFiles.contains(MovementSources.STDIN)) {
+            LOGGER.warn("Sorted movements read from stdin are not cached");
+            return null;
+        }
+        return Path.of(csvFiles.getFirst() + CACHE_SUFFIX);
+    }
+
+    /**
+     * The input charset and one line per input file with size, modification time and path; the cache is only valid
+     * for identical lines.
+     */
+    private List<String> describeSources() {
+        List<String> sources = new ArrayList<>(csvFiles.size() + 1);
+        sources.add("charset," + charset.name());
+        for (String csvFile : csvFiles) {
+            Path path = Path.of(csvFile);
+            try {
+                sources.add(Files.size(path) + "," + Files.getLastModifiedTime(path).toMillis() + ","
+                        + path.toAbsolutePath().normalize());
+            } catch (IOException _) {
+                sources.add("missing," + path.toAbsolutePath().normalize());
+            }
+        }
+        return sources;
+    }
+
+    private static boolean isCacheValid(Path cacheFile, List<String> sources) {
+        Path sourcesFile = sourcesFile(cacheFile);
+        if (!Files.isRegularFile(cacheFile) || !Files.isRegularFile(sourcesFile)) {
+            return false;
+        }
+        try {
+            if (Files.readAllLines(sourcesFile, StandardCharsets.UTF_8).equals(sources)) {
+                return true;
+            }
+            LOGGER.info("Sorted movement cache {} is stale", cacheFile);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read sorted movement cache sources {}", sourcesFile, e);
+        }
+        return false;
+    }
+
+    private void writeCache(Path cacheFile, List<String> sources, Iterator<String> lines) throws IOException {
+        Path sourcesFile = sourcesFile(cacheFile);
+        Files.deleteIfExists(sourcesFile);
+        Path temp = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                while (lines.hasNext()) {
+                    writer.write(lines.next());
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Files.write(sourcesFile, sources, StandardCharsets.UTF_8);
+        LOGGER.info("Cached sorted movements in {}", cacheFile);
+    }
+
+    private static Path sourcesFile(Path cacheFile) {
+        return cacheFile.resolveSibling(cacheFile.getFileName() + SOURCES_SUFFIX);
+    }
+
+    /**
+     * @param memoryBudgetBytes heap used for sorted runs, including the runs being written in the background
+     * @param parallelism       number of runs sorted and written concurrently
+     * @param tempDirectory     directory of the temporary run files
+     * @param cacheSortedOutput keep the sorted history next to the first input file for later runs
+     */
+    public record Options(long memoryBudgetBytes, int parallelism, Path tempDirectory, boolean cacheSortedOutput) {
+        public static Options defaults() {
+            return new Options(Runtime.getRuntime().maxMemory() / 4,
+                    Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                    Path.of(System.getProperty("java.io.tmpdir")),
+                    false);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.app.server;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.reader.MovementCursorReader;
+import com.app.history.reader.MovementSources;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Per-stock index of the history lines for movement queries: the byte offset and length of every valid line of the
+ * plain history files, grouped by stock number in file order. It is built with one pass over the history, so a query
+ * reads only the lines of its stock. Compressed files and stdin cannot be read from an offset; they are still scanned
+ * for every query.
+ */
+final class MovementLines {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MovementLines.class);
+    private static final int OFFSET_BITS = 48;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final List<String> movementFiles;
+    private final Charset charset;
+    private final int[] stockNumbers;
+    private final int[] starts;
+    private final long[] lines;
+    private final int[] lengths;
+
+    private MovementLines(List<String> movementFiles, Charset charset, int[] stockNumbers, int[] starts, long[] lines,
+                          int[] lengths) {
+        this.movementFiles = movementFiles;
+        this.charset = charset;
+        this.stockNumbers = stockNumbers;
+        this.starts = starts;
+        this.lines = lines;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Reads the plain history files once. Lines that are not valid movements are counted and logged, never served.
+     */
+    static Result<MovementLines, StockError> build(List<String> movementFiles, Charset charset) {
+        long start = System.nanoTime();
+        Builder builder = new Builder();
+        for (int file = 0; file < movementFiles.size(); file++) {
+            String movementFile = movementFiles.get(file);
+            if (!MovementSources.isPlainFile(movementFile)) {
+                continue;
+            }
+            Result<Long, StockError> read = builder.read(file, movementFile, charset);
+            if (!read.isSuccessful()) {
+                return Result.failure(read.error());
+            }
+        }
+        MovementLines movementLines = builder.build(movementFiles, charset);
+        LOGGER.info("Indexed {} movement lines of {} stocks in {} ms", movementLines.lines.length,
+                movementLines.stockNumbers.length, (System.nanoTime() - start) / 1_000_000);
+        return Result.success(movementLines);
+    }
+
+    /**
+     * Passes the valid history lines of {@code stockNumber} to {@code handler} in file order. The cursor is reused for
+     * the next line.
+     *
+     * @return the number of lines passed, or a failure if a history file could not be read
+     */
+    Result<Long, StockError> forEach(int stockNumber, Consumer<MovementCursor> handler) {
+        int position = Arrays.binarySearch(stockNumbers, stockNumber);
+        int first = position < 0 ? 0 : starts[position];
+        int end = position < 0 ? 0 : starts[position + 1];
+        MovementCursor cursor = new MovementCursor(charset);
+        long count = 0;
+        for (int file = 0; file < movementFiles.size(); file++) {
+            String movementFile = movementFiles.get(file);
+            if (!MovementSources.isPlainFile(movementFile)) {
+                long[] scanned = {0, 0};
+                Result<Long, StockError> read = new MovementCursorReader(movementFile, charset).forEach(
+                        movement -> {
+                            scanned[0]++;
+                            handler.accept(movement);
+                        },
+                        error -> scanned[1]++,
+                        number -> number != stockNumber);
+                if (!read.isSuccessful()) {
+                    return Result.failure(read.error());
+                }
+                if (scanned[1] > 0) {
+                    LOGGER.warn("Skipped {} invalid lines of {} for the movements of stock {}", scanned[1],
+                            movementFile, stockNumber);
+                }
+                count += scanned[0];
+                continue;
+            }
+            while (first < end && (int) (lines[first] >>> OFFSET_BITS) < file) {
+                first++;
+            }
+            if (first == end || (int) (lines[first] >>> OFFSET_BITS) != file) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(Path.of(movementFile), StandardOpenOption.READ)) {
+                for (; first < end && (int) (lines[first] >>> OFFSET_BITS) == file; first++) {
+                    byte[] line = read(channel, lines[first] & OFFSET_MASK, lengths[first]);
+                    if (cursor.load(line, 0, withoutLineBreak(line)) == null) {
+                        handler.accept(cursor);
+                        count++;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("Failed to read movement CSV: {}", movementFile, e);
+                return Result.failure(StockError.parseError(movementFile, "Failed to read CSV file: " + e.getMessage()));
+            }
+        }
+        return Result.success(count);
+    }
+
+    /**
+     * The indexed length runs up to the next line, so it includes the line break.
+     */
+    private static int withoutLineBreak(byte[] line) {
+        int end = line.length;
+        while (end > 0 && (line[end - 1] == '\n' || line[end - 1] == '\r')) {
+            end--;
+        }
+        return end;
+    }
+
+    private static byte[] read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("History ended before byte " + (offset + length));
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Collects the lines of all files and sorts them by stock number; within a stock they stay in the order they were
+     * read, which is file order.
+     */
+    private static final class Builder {
+        private long[] keys = new long[1024];
+        private long[] lines = new long[1024];
+        private int[] lengths = new int[1024];
+        private int count;
+        private long skipped;
+
+        private Result<Long, StockError> read(int file, String movementFile, Charset charset) {
+            long[] lineStart = {0};
+            int[] stockNumber = new int[1];
+            boolean[] valid = new boolean[1];
+            Result<Long, StockError> read = new MovementCursorReader(movementFile, charset).forEach(
+                    cursor -> {
+                        stockNumber[0] = cursor.stockNumber();
+                        valid[0] = true;
+                    },
+                    error -> skipped++,
+                    number -> false,
+                    lineEnd -> {
+                        if (valid[0]) {
+                            add(stockNumber[0], file, lineStart[0], lineEnd);
+                            valid[0] = false;
+                        }
+                        lineStart[0] = lineEnd;
+                    });
+            if (skipped > 0) {
+                LOGGER.warn("Skipped {} invalid lines of {} in the movement index", skipped, movementFile);
+                skipped = 0;
+            }
+            return read;
+        }
+
+        private void add(int stockNumber, int file, long start, long end) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            keys[count] = ((long) stockNumber << 32) | count;
+            lines[count] = ((long) file << OFFSET_BITS) | start;
+            lengths[count] = (int) (end - start);
+            count++;
+        }
+
+        private MovementLines build(List<String> movementFiles, Charset charset) {
+            long[] sortedKeys = Arrays.copyOf(keys, count);
+            Arrays.sort(sortedKeys);
+            long[] sortedLines = new long[count];
+            int[] sortedLengths = new int[count];
+            int[] stockNumbers = new int[count];
+            int[] starts = new int[count + 1];
+            int stocks = 0;
+            for (int i = 0; i < count; i++) {
+                int line = (int) sortedKeys[i];
+                int stockNumber = (int) (sortedKeys[i] >>> 32);
+                sortedLines[i] = lines[line];
+                sortedLengths[i] = lengths[line];
+                if (stocks == 0 || stockNumbers[stocks - 1] != stockNumber) {
+                    stockNumbers[stocks] = stockNumber;
+                    starts[stocks++] = i;
+                }
+            }
+            starts[stocks] = count;
+            return new MovementLines(List.copyOf(movementFiles), charset, Arrays.copyOf(stockNumbers, stocks),
+                    Arrays.copyOf(starts, stocks + 1), sortedLines, sortedLengths);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.app.server;
+
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Snapshots by key, evicting the least recently used ones once their estimated size exceeds {@code capacityBytes}. The
+ * most recent snapshot is always kept, even if it alone is larger. Requests for a key that is being loaded wait for
+ * that load instead of starting another one; failed loads are not cached.
+ */
+final class SnapshotCache<K> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotCache.class);
+
+    private final long capacityBytes;
+    private final Function<K, Result<StockSnapshot, StockError>> loader;
+    private final LinkedHashMap<K, StockSnapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, CompletableFuture<Result<StockSnapshot, StockError>>> loading = new HashMap<>();
+    private long usedBytes;
+
+    SnapshotCache(long capacityBytes, Function<K, Result<StockSnapshot, StockError>> loader) {
+        this.capacityBytes = capacityBytes;
+        this.loader = loader;
+    }
+
+    Result<StockSnapshot, StockError> get(K key) {
+        CompletableFuture<Result<StockSnapshot, StockError>> load;
+        boolean owner = false;
+        synchronized (this) {
+            StockSnapshot snapshot = snapshots.get(key);
+            if (snapshot != null) {
+                return Result.success(snapshot);
+            }
+            load = loading.get(key);
+            if (load == null) {
+                load = new CompletableFuture<>();
+                loading.put(key, load);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            return load.join();
+        }
+        Result<StockSnapshot, StockError> result = load(key);
+        synchronized (this) {
+            loading.remove(key);
+            result.ifSuccessful(snapshot -> put(key, snapshot));
+        }
+        load.complete(result);
+        return result;
+    }
+
+    synchronized int size() {
+        return snapshots.size();
+    }
+
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    private Result<StockSnapshot, StockError> load(K key) {
+        try {
+            return loader.apply(key);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            LOGGER.error("Failed to load snapshot {}", key, e);
+            return Result.failure(StockError.parseError(String.valueOf(key), "Reconstruction failed: " + e));
+        }
+    }
+
+    private void put(K key, StockSnapshot snapshot) {
+        StockSnapshot previous = snapshots.put(key, snapshot);
+        if (previous != null) {
+            usedBytes -= previous.estimatedBytes();
+        }
+        usedBytes += snapshot.estimatedBytes();
+        Iterator<Map.Entry<K, StockSnapshot>> eldest = snapshots.entrySet().iterator();
+        while (usedBytes > capacityBytes && snapshots.size() > 1) {
+            Map.Entry<K, StockSnapshot> entry = eldest.next();
+            usedBytes -= entry.getValue().estimatedBytes();
+            eldest.remove();
+            LOGGER.info("Evicted snapshot {} of {} stocks", entry.getKey(), entry.getValue().size());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.app.server;
+
+import com.app.history.model.MovementCursor;
+import com.app.stock.model.StockRecord;
+import com.app.stock.reader.CsvStockIO;
+
+import java.math.BigDecimal;
+
+/**
+ * The JSON objects of the query server. Besides the fields that are usually queried, every object carries its complete
+ * CSV line, so that clients do not depend on a second format of all columns.
+ */
+final class StockJson {
+    private StockJson() {
+    }
+
+    static String stock(StockRecord stockRecord) {
+        StringBuilder json = new StringBuilder(512).append('{');
+        number(json, "stockNumber", stockRecord.getSequenceNumber()).append(',');
+        string(json, "itemNumber", stockRecord.getItemNumber()).append(',');
+        number(json, "client", stockRecord.getClient()).append(',');
+        string(json, "location", stockRecord.getLocation()).append(',');
+        string(json, "handlingUnitNumber", stockRecord.getHandlingUnitNumber()).append(',');
+        number(json, "quantityOnHand", stockRecord.getQuantityOnHand()).append(',');
+        number(json, "quantityReserved", stockRecord.getQuantityReserved()).append(',');
+        string(json, "movementDate", stockRecord.getMovementDate() == null ? null
+                : stockRecord.getMovementDate().toString()).append(',');
+        return string(json, "csv", CsvStockIO.stockRecordToCsv(stockRecord)).append('}').toString();
+    }
+
+    static String movement(MovementCursor cursor) {
+        StringBuilder json = new StringBuilder(512).append('{');
+        number(json, "sequenceNumber", cursor.sequenceNumber()).append(',');
+        number(json, "stockNumber", cursor.stockNumber()).append(',');
+        string(json, "event", cursor.event() == null ? null : cursor.event().name()).append(',');
+        string(json, "date", cursor.hasDate() ? cursor.date().toString() : null).append(',');
+        number(json, "quantityChange", cursor.quantityChange()).append(',');
+        number(json, "quantityTotal", cursor.quantityTotal()).append(',');
+        string(json, "location", cursor.location()).append(',');
+        string(json, "handlingUnitNumber", cursor.handlingUnitNumber()).append(',');
+        string(json, "itemNumber", cursor.itemNumber()).append(',');
+        number(json, "client", cursor.client()).append(',');
+        return string(json, "csv", cursor.line()).append('}').toString();
+    }
+
+    private static StringBuilder number(StringBuilder json, String name, Number value) {
+        quote(json, name).append(':');
+        if (value == null) {
+            return json.append("null");
+        }
+        return json.append(value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString());
+    }
+
+    private static StringBuilder string(StringBuilder json, String name, String value) {
+        quote(json, name).append(':');
+        return value == null ? json.append("null") : quote(json, value);
+    }
+
+    static StringBuilder quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -0,0 +1,428 @@
+package com.app.server;
+
+import com.app.stock.StockData;
+import com.app.stock.StockFilter;
+import com.app.stock.model.StockRecord;
+import com.app.stock.reader.CsvStockIO;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Answers queries about reconstructed stocks over HTTP on the loopback interface, so that repeated lookups do not pay
+ * for a reconstruction each. Every cutoff date is reconstructed once and kept as a {@link StockSnapshot} in a
+ * {@link SnapshotCache}; the cache key includes size and modification time of the input files, so changed inputs are
+ * reconstructed again.
+ * <ul>
+ *     <li>{@code GET /stocks?item=&location=&client=&stock-number=} lists the matching stocks, all of them without
+ *     filters; each filter takes a comma-separated list like the batch options</li>
+ *     <li>{@code GET /stocks/{stockNumber}} returns a single stock</li>
+ *     <li>{@code GET /stocks/{stockNumber}/movements} lists the history lines of a stock dated before the cutoff,
+ *     the movements the reconstruction for that cutoff keeps. A {@link MovementLines} index of the history files is
+ *     built on the first such request; the lines themselves are read from the files rather than kept in memory.</li>
+ * </ul>
+ * All requests take {@code date=YYYY-MM-DD} as cutoff, the stock date of the server by default, and
+ * {@code format=json|csv}. Lists are streamed as they are written; CSV lines are those of the batch output and the
+ * history files.
+ */
+public final class StockServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockServer.class);
+    private static final String CONTEXT = "/stocks";
+
+    private final Inputs inputs;
+    private final Options options;
+    private final SnapshotCache<SnapshotKey> cache;
+    private final Object movementLinesLock = new Object();
+    private MovementLines movementLines;
+    private String movementLinesInputs;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public StockServer(Inputs inputs, Options options, Reconstructor reconstructor) {
+        this.inputs = inputs;
+        this.options = options;
+        this.cache = new SnapshotCache<>(options.cacheBytes(), key -> reconstruct(reconstructor, key));
+    }
+
+    /**
+     * Reconstructs the stock at the default cutoff and starts to accept requests.
+     *
+     * @return the port the server listens on, which is chosen by the system for port 0
+     */
+    public int start() throws IOException {
+        Result<StockSnapshot, StockError> initial = cache.get(key(inputs.defaultCutoff()));
+        if (!initial.isSuccessful()) {
+            LOGGER.warn("Initial reconstruction failed, retrying on request: {}", initial.error().message());
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.port()), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(CONTEXT, this::handle);
+        server.start();
+        int port = server.getAddress().getPort();
+        LOGGER.info("Serving stock queries on http://{}:{}{}", server.getAddress().getHostString(), port, CONTEXT);
+        return port;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            answer(exchange);
+        }
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendText(exchange, 405, "Only GET is supported");
+                return;
+            }
+            List<String> path = Arrays.stream(exchange.getRequestURI().getPath().substring(CONTEXT.length())
+                    .split("/")).filter(segment -> !segment.isEmpty()).toList();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            boolean csv = "csv".equals(query.getOrDefault("format", "json"));
+            if (!csv && !"json".equals(query.getOrDefault("format", "json"))) {
+                throw new IllegalArgumentException("Unknown format: " + query.get("format"));
+            }
+            LocalDate cutoff = query.containsKey("date") ? parseDate(query.get("date")) : inputs.defaultCutoff();
+            if (path.isEmpty()) {
+                listStocks(exchange, snapshot(exchange, cutoff), filter(query), csv);
+            } else if (path.size() == 1) {
+                getStock(exchange, snapshot(exchange, cutoff), parseNumber(path.getFirst()), csv);
+            } else if (path.size() == 2 && "movements".equals(path.get(1))) {
+                listMovements(exchange, parseNumber(path.getFirst()), cutoff, csv);
+            } else {
+                sendText(exchange, 404, "Unknown path: " + exchange.getRequestURI().getPath());
+            }
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+        } catch (SnapshotUnavailable e) {
+            sendText(exchange, 500, e.getMessage());
+        } catch (UncheckedIOException e) {
+            LOGGER.info("Response to {} aborted: {}", exchange.getRequestURI(), e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to answer {}", exchange.getRequestURI(), e);
+            sendText(exchange, 500, "Internal error");
+        }
+    }
+
+    private StockSnapshot snapshot(HttpExchange exchange, LocalDate cutoff) {
+        Result<StockSnapshot, StockError> snapshot = cache.get(key(cutoff));
+        if (!snapshot.isSuccessful()) {
+            LOGGER.error("Failed to reconstruct stock for {}: {}", exchange.getRequestURI(),
+                    snapshot.error().message());
+            throw new SnapshotUnavailable("Reconstruction failed: " + snapshot.error().message());
+        }
+        return snapshot.getOrThrow();
+    }
+
+    private static void getStock(HttpExchange exchange, StockSnapshot snapshot, int stockNumber, boolean csv)
+            throws IOException {
+        StockRecord stockRecord = snapshot.get(stockNumber).orElse(null);
+        if (stockRecord == null) {
+            sendText(exchange, 404, "Unknown stock: " + stockNumber);
+            return;
+        }
+        byte[] body = (csv ? CsvStockIO.stockRecordToCsv(stockRecord) + "\n" : StockJson.stock(stockRecord))
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType(csv));
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void listStocks(HttpExchange exchange, StockSnapshot snapshot, StockFilter filter, boolean csv)
+            throws IOException {
+        try (Writer writer = streamResponse(exchange, csv); Stream<StockRecord> stockRecords = snapshot.query(filter)) {
+            ListWriter list = new ListWriter(writer, csv);
+            stockRecords.forEach(stockRecord -> list.add(csv ? CsvStockIO.stockRecordToCsv(stockRecord)
+                    : StockJson.stock(stockRecord)));
+            list.close();
+        }
+    }
+
+    private void listMovements(HttpExchange exchange, int stockNumber, LocalDate cutoff, boolean csv)
+            throws IOException {
+        MovementLines lines = movementLines(exchange);
+        try (Writer writer = streamResponse(exchange, csv)) {
+            ListWriter list = new ListWriter(writer, csv);
+            Result<Long, StockError> read = lines.forEach(stockNumber, cursor -> {
+                if (cutoff == null || !cursor.hasDate() || cursor.date().isBefore(cutoff)) {
+                    list.add(csv ? cursor.line() : StockJson.movement(cursor));
+                }
+            });
+            if (!read.isSuccessful()) {
+                // The status has been sent already; a truncated list is all that is left to signal the failure
+                throw new UncheckedIOException(new IOException(read.error().message()));
+            }
+            list.close();
+        }
+    }
+
+    /**
+     * The movement index of the current history files, built on the first movement query after they changed.
+     */
+    private MovementLines movementLines(HttpExchange exchange) {
+        String inputsKey = key(null).inputs();
+        synchronized (movementLinesLock) {
+            if (!inputsKey.equals(movementLinesInputs)) {
+                Result<MovementLines, StockError> built = MovementLines.build(inputs.movementFiles(), inputs.charset());
+                if (!built.isSuccessful()) {
+                    LOGGER.error("Failed to index the history for {}: {}", exchange.getRequestURI(),
+                            built.error().message());
+                    throw new SnapshotUnavailable("Indexing the history failed: " + built.error().message());
+                }
+                movementLines = built.getOrThrow();
+                movementLinesInputs = inputsKey;
+            }
+            return movementLines;
+        }
+    }
+
+    private static Writer streamResponse(HttpExchange exchange, boolean csv) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType(csv));
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        return new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static String contentType(boolean csv) {
+        return csv ? "text/csv; charset=utf-8" : "application/json; charset=utf-8";
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private Result<StockSnapshot, StockError> reconstruct(Reconstructor reconstructor, SnapshotKey key) {
+        LOGGER.info("Reconstructing stock for cutoff {}", key.cutoff() == null ? "none" : key.cutoff());
+        long start = System.nanoTime();
+        return reconstructor.reconstruct(key.cutoff()).map(data -> {
+            StockSnapshot snapshot = StockSnapshot.of(data);
+            LOGGER.info("Reconstructed {} stocks for cutoff {} in {} ms", snapshot.size(),
+                    key.cutoff() == null ? "none" : key.cutoff(), (System.nanoTime() - start) / 1_000_000);
+            return snapshot;
+        });
+    }
+
+    private SnapshotKey key(LocalDate cutoff) {
+        List<String> files = new ArrayList<>(inputs.movementFiles().size() + 1);
+        files.add(inputs.stockFile());
+        files.addAll(inputs.movementFiles());
+        return new SnapshotKey(files.stream().map(StockServer::fileKey).collect(Collectors.joining("|")), cutoff);
+    }
+
+    private static String fileKey(String file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Path.of(file), BasicFileAttributes.class);
+            return file + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException _) {
+            return file + ":missing";
+        }
+    }
+
+    private static StockFilter filter(Map<String, String> query) {
+        return new StockFilter(strings(query.get("item")), strings(query.get("location")),
+                numbers(query.get("client")), numbers(query.get("stock-number")));
+    }
+
+    private static Set<String> strings(String value) {
+        return value == null ? Set.of() : Arrays.stream(value.split(",")).collect(Collectors.toSet());
+    }
+
+    private static Set<Integer> numbers(String value) {
+        return value == null ? Set.of()
+                : Arrays.stream(value.split(",")).map(StockServer::parseNumber).collect(Collectors.toSet());
+    }
+
+    private static int parseNumber(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException _) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException _) {
+            throw new IllegalArgumentException("Invalid date, expected YYYY-MM-DD: " + value);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = URLDecoder.decode(separator < 0 ? parameter : parameter.substring(0, separator),
+                    StandardCharsets.UTF_8);
+            String value = separator < 0 ? "" : URLDecoder.decode(parameter.substring(separator + 1),
+                    StandardCharsets.UTF_8);
+            if (!Set.of("date", "format", "item", "location", "client", "stock-number").contains(name)) {
+                throw new IllegalArgumentException("Unknown query parameter: " + name);
+            }
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    /**
+     * Writes a JSON array or CSV lines; write failures, usually a client that went away, end the response.
+     */
+    private static final class ListWriter {
+        private final Writer writer;
+        private final boolean csv;
+        private boolean first = true;
+
+        private ListWriter(Writer writer, boolean csv) {
+            this.writer = writer;
+            this.csv = csv;
+        }
+
+        void add(String element) {
+            try {
+                if (csv) {
+                    writer.write(element);
+                    writer.write('\n');
+                    return;
+                }
+                writer.write(first ? "[\n" : ",\n");
+                writer.write(element);
+                first = false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() throws IOException {
+            if (!csv) {
+                writer.write(first ? "[]\n" : "\n]\n");
+            }
+        }
+    }
+
+    private static final class SnapshotUnavailable extends RuntimeException {
+        private SnapshotUnavailable(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Reconstructs the stock at {@code cutoff}, or without cutoff for {@code null}.
+     */
+    @FunctionalInterface
+    public interface Reconstructor {
+        Result<StockData, StockError> reconstruct(LocalDate cutoff);
+    }
+
+    /**
+     * The files the {@link Reconstructor} reads; they identify cached snapshots and the movement index, and the history
+     * is read again for movement queries.
+     */
+    public record Inputs(String stockFile, List<String> movementFiles, Charset charset, LocalDate defaultCutoff) {
+        public Inputs {
+            movementFiles = List.copyOf(movementFiles);
+        }
+    }
+
+    /**
+     * @param port       port on the loopback interface, 0 to let the system choose
+     * @param cacheBytes estimated heap of the cached snapshots before the least recently used ones are dropped
+     */
+    public record Options(int port, long cacheBytes) {
+        public static Options defaults() {
+            return new Options(8080, Runtime.getRuntime().maxMemory() * 3 / 4);
+        }
+
+        /**
+         * Parses {@code --port=<n>} and {@code --cache-memory=<MB>}.
+         */
+        public static Options parse(List<String> args) {
+            Options options = defaults();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Unknown server option: " + arg);
+                }
+                String value = arg.substring(separator + 1);
+                options = switch (arg.substring(2, separator)) {
+                    case "port" -> new Options(parsePort(value), options.cacheBytes());
+                    case "cache-memory" -> new Options(options.port(), parseMegabytes(value));
+                    default -> throw new IllegalArgumentException("Unknown server option: " + arg);
+                };
+            }
+            return options;
+        }
+
+        public static boolean isServerOption(String arg) {
+            return arg.startsWith("--port=") || arg.startsWith("--cache-memory=");
+        }
+
+        private static int parsePort(String value) {
+            int port = parseNumber(value);
+            if (port < 0 || port > 0xFFFF) {
+                throw new IllegalArgumentException("Invalid port: " + value);
+            }
+            return port;
+        }
+
+        private static long parseMegabytes(String value) {
+            try {
+                long megabytes = Long.parseLong(value);
+                if (megabytes > 0) {
+                    return megabytes << 20;
+                }
+            } catch (NumberFormatException _) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Invalid cache memory, expected megabytes: " + value);
+        }
+    }
+
+    private record SnapshotKey(String inputs, LocalDate cutoff) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.app.server;
+
+import com.app.stock.StockData;
+import com.app.stock.StockFilter;
+import com.app.stock.model.StockRecord;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Read-only view of a reconstructed stock for queries: the records sorted by stock number, and indexes from item
+ * number, location and client to the positions of their records. It is built once after the reconstruction and never
+ * changes, so any number of requests can read it without locking.
+ */
+public final class StockSnapshot {
+    /**
+     * Heap of a reconstructed record with its share of the indexes, measured for snapshots of the production files.
+     */
+    static final long ESTIMATED_BYTES_PER_RECORD = 1_600;
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final StockRecord[] records;
+    private final int[] stockNumbers;
+    private final Map<String, int[]> byItemNumber;
+    private final Map<String, int[]> byLocation;
+    private final Map<Integer, int[]> byClient;
+
+    private StockSnapshot(StockRecord[] records) {
+        this.records = records;
+        this.stockNumbers = Arrays.stream(records).mapToInt(StockRecord::getSequenceNumber).toArray();
+        this.byItemNumber = index(records, StockRecord::getItemNumber);
+        this.byLocation = index(records, StockRecord::getLocation);
+        this.byClient = index(records, StockRecord::getClient);
+    }
+
+    /**
+     * Takes over the records of {@code data}, which must not be changed afterwards.
+     */
+    public static StockSnapshot of(StockData data) {
+        return new StockSnapshot(data.getStockRecords().values().stream()
+                .filter(stockRecord -> stockRecord.getSequenceNumber() != null)
+                .sorted(Comparator.comparing(StockRecord::getSequenceNumber))
+                .toArray(StockRecord[]::new));
+    }
+
+    public int size() {
+        return records.length;
+    }
+
+    public long estimatedBytes() {
+        return records.length * ESTIMATED_BYTES_PER_RECORD;
+    }
+
+    public Optional<StockRecord> get(int stockNumber) {
+        int position = Arrays.binarySearch(stockNumbers, stockNumber);
+        return position < 0 ? Optional.empty() : Optional.of(records[position]);
+    }
+
+    /**
+     * The records matching {@code filter} ordered by stock number. Only the records of the most selective index are
+     * looked at.
+     */
+    public Stream<StockRecord> query(StockFilter filter) {
+        return IntStream.of(candidates(filter)).mapToObj(position -> records[position]).filter(filter::matches);
+    }
+
+    private int[] candidates(StockFilter filter) {
+        int[] best = null;
+        if (!filter.stockNumbers().isEmpty()) {
+            best = filter.stockNumbers().stream()
+                    .mapToInt(stockNumber -> Arrays.binarySearch(stockNumbers, stockNumber))
+                    .filter(position -> position >= 0)
+                    .toArray();
+        }
+        best = smaller(best, filter.itemNumbers(), byItemNumber);
+        best = smaller(best, filter.locations(), byLocation);
+        best = smaller(best, filter.clients(), byClient);
+        if (best == null) {
+            return IntStream.range(0, records.length).toArray();
+        }
+        Arrays.sort(best);
+        return best;
+    }
+
+    private static <K> int[] smaller(int[] best, Set<K> keys, Map<K, int[]> index) {
+        if (keys.isEmpty()) {
+            return best;
+        }
+        int size = 0;
+        for (K key : keys) {
+            size += index.getOrDefault(key, NO_POSITIONS).length;
+        }
+        if (best != null && best.length <= size) {
+            return best;
+        }
+        int[] positions = new int[size];
+        int filled = 0;
+        for (K key : keys) {
+            int[] keyPositions = index.getOrDefault(key, NO_POSITIONS);
+            System.arraycopy(keyPositions, 0, positions, filled, keyPositions.length);
+            filled += keyPositions.length;
+        }
+        return positions;
+    }
+
+    /**
+     * Positions of the records per key in ascending order; records without a key are not indexed.
+     */
+    private static <K> Map<K, int[]> index(StockRecord[] records, Function<StockRecord, K> key) {
+        Map<K, int[]> counts = new HashMap<>();
+        for (StockRecord stockRecord : records) {
+            K value = key.apply(stockRecord);
+            if (value != null) {
+                counts.computeIfAbsent(value, ignored -> new int[1])[0]++;
+            }
+        }
+        Map<K, int[]> index = HashMap.newHashMap(counts.size());
+        counts.forEach((value, count) -> index.put(value, new int[count[0]]));
+        counts.values().forEach(count -> count[0] = 0);
+        for (int position = 0; position < records.length; position++) {
+            K value = key.apply(records[position]);
+            if (value != null) {
+                int[] filled = counts.get(value);
+                index.get(value)[filled[0]++] = position;
+            }
+        }
+        return index;
+    }
+}
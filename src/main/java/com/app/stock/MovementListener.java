@@ -0,0 +1,18 @@
+package com.app.stock;
+
+import com.app.history.model.MovementEvent;
+
+import java.math.BigDecimal;
+
+/**
+ * Notified by {@link StockData} of every movement the replay applies to a stock, in replay order, i.e. newest first.
+ * Movements that the stock date skips are not reported.
+ */
+public interface MovementListener {
+    /**
+     * @param quantityAfter the quantity of the stock right after the movement: the reconstructed quantity before the
+     *                      replay reverts it, or the movement's quantity total for a stock the replay does not know yet
+     */
+    void movementApplied(int stockNumber, int sequenceNumber, MovementEvent event, BigDecimal quantityChange,
+                         BigDecimal quantityAfter, String location);
+}
@@ -0,0 +1,202 @@
+package com.app.stock;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.model.MovementEvent;
+import com.app.history.model.MovementRecord;
+import com.app.stock.model.StockRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The replay of {@link StockData} on top of an {@link OffHeapStockStore}: movements have the same effect and produce
+ * the same errors, but no stock lives on the heap. Change listeners are not supported; {@link #aggregates()} computes
+ * the totals in one pass over the store instead.
+ */
+public class OffHeapStockData implements StockReplay {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapStockData.class);
+    @Getter
+    private final OffHeapStockStore store;
+    @Getter
+    private final List<StockError> errors = new ArrayList<>();
+    @Getter
+    private boolean criticalErrors = false;
+    private int lastMovementSequenceNumber = Integer.MAX_VALUE;
+    private final LocalDate stockDate;
+    private final long stockEpochDay;
+    private final QuantityArithmetic quantities = new QuantityArithmetic();
+
+    public OffHeapStockData(OffHeapStockStore store, LocalDate stockDate) {
+        this.store = store;
+        this.stockDate = stockDate;
+        this.stockEpochDay = stockDate == null ? 0 : stockDate.toEpochDay();
+    }
+
+    @Override
+    public void handleMovement(Result<MovementRecord, StockError> movement) {
+        if (movement == null) {
+            errors.add(new StockError(StockError.ErrorType.PARSE_ERROR, "Null movement", ""));
+            criticalErrors = true;
+            LOGGER.warn("Received null movement result");
+            return;
+        }
+        if (movement.isFailure()) {
+            handleMovementError(movement.error());
+            return;
+        }
+        final MovementRecord movementRecord = movement.getOrThrow();
+
+        if (stockDate != null && movementRecord.date().isBefore(stockDate)
+                && finalizeStock(movementRecord.stockNumber(), movementRecord.location())) {
+            return;
+        }
+
+        checkSequence(movementRecord.sequenceNumber());
+        switch (movementRecord.event()) {
+            case DELETE -> createStock(StockData.newStockRecord(movementRecord), movementRecord.quantityChange());
+            case MOVEMENT_OUT, BATCH_CORRECTION_OUT, BATCH_CORRECTION_IN, INVENTORY_COUNT, MOVEMENT_IN,
+                 MOVEMENT_NEUTRAL -> {
+                final int slot = liveSlot(movementRecord.stockNumber());
+                if (slot < 0) {
+                    createStock(StockData.newStockRecord(movementRecord), movementRecord.quantityChange());
+                } else {
+                    changeStock(slot, movementRecord.sequenceNumber(), movementRecord.event(),
+                            movementRecord.quantityChange(), movementRecord.quantityTotal(),
+                            movementRecord.location(), movementRecord.handlingUnitNumber());
+                }
+            }
+            case GOODS_RECEIPT -> removeStock(movementRecord.stockNumber());
+        }
+    }
+
+    @Override
+    public void handleMovement(MovementCursor cursor) {
+        final int stockNumber = cursor.stockNumber();
+        if (stockDate != null && cursor.hasDate() && cursor.epochDay() < stockEpochDay
+                && finalizeStock(stockNumber, cursor.location())) {
+            return;
+        }
+
+        checkSequence(cursor.sequenceNumber());
+        switch (cursor.event()) {
+            case DELETE -> createStock(StockData.newStockRecord(cursor), cursor.quantityChange());
+            case MOVEMENT_OUT, BATCH_CORRECTION_OUT, BATCH_CORRECTION_IN, INVENTORY_COUNT, MOVEMENT_IN,
+                 MOVEMENT_NEUTRAL -> {
+                final int slot = liveSlot(stockNumber);
+                if (slot < 0) {
+                    createStock(StockData.newStockRecord(cursor), cursor.quantityChange());
+                } else {
+                    changeStock(slot, cursor.sequenceNumber(), cursor.event(), cursor.quantityChange(),
+                            cursor.quantityTotal(), cursor.location(), cursor.handlingUnitNumber());
+                }
+            }
+            case GOODS_RECEIPT -> removeStock(stockNumber);
+        }
+    }
+
+    @Override
+    public void handleMovementError(StockError error) {
+        errors.add(error);
+        criticalErrors = true;
+        LOGGER.warn("Movement parse error: {}", error.message());
+    }
+
+    public void addErrors(Collection<StockError> loadErrors) {
+        errors.addAll(loadErrors);
+    }
+
+    public void cleanUp() {
+        for (int slot : store.liveSlots()) {
+            if (store.quantityOnHand(slot).compareTo(BigDecimal.ZERO) <= 0) {
+                store.remove(slot);
+            }
+        }
+    }
+
+    /**
+     * The live stock records ordered by sequence number, decoded one at a time.
+     */
+    public Stream<StockRecord> records() {
+        return store.records();
+    }
+
+    /**
+     * Totals per item, location and client/batch of the current stock, computed in one pass over the store.
+     */
+    public StockAggregates aggregates() {
+        StockAggregates aggregates = new StockAggregates();
+        for (int slot : store.liveSlots()) {
+            aggregates.stockAdded(store.toRecord(slot));
+        }
+        return aggregates;
+    }
+
+    private int liveSlot(int stockNumber) {
+        final int slot = store.find(stockNumber);
+        return slot >= 0 && store.isLive(slot) ? slot : -1;
+    }
+
+    private boolean finalizeStock(int stockNumber, String location) {
+        final int slot = store.slotOf(stockNumber);
+        if (store.isFinalized(slot)) {
+            return false;
+        }
+        store.setFinalized(slot);
+        if (store.isLive(slot)) {
+            store.setLocation(slot, location);
+        }
+        LOGGER.info("Movement for finalized stock: {}", stockNumber);
+        return true;
+    }
+
+    private void checkSequence(int sequenceNumber) {
+        if (sequenceNumber >= lastMovementSequenceNumber) {
+            errors.add(new StockError(StockError.ErrorType.MOVEMENT_ERROR, "Movement ID out of order: " + sequenceNumber, ""));
+            criticalErrors = true;
+            LOGGER.warn("Movement ID out of order: {}", sequenceNumber);
+        }
+        lastMovementSequenceNumber = sequenceNumber;
+    }
+
+    private void createStock(StockRecord newStockRecord, BigDecimal quantityChange) {
+        final BigDecimal change = quantityChange == null ? BigDecimal.ZERO : quantityChange;
+        newStockRecord.setQuantityOnHand(quantities.subtract(newStockRecord.getQuantityOnHand(), change));
+        store.put(newStockRecord);
+    }
+
+    private void changeStock(int slot, int sequenceNumber, MovementEvent event, BigDecimal quantityChange,
+                             BigDecimal quantityTotal, String location, String handlingUnitNumber) {
+        final BigDecimal change = quantityChange == null ? BigDecimal.ZERO : quantityChange;
+        final BigDecimal quantityOnHand = store.quantityOnHand(slot);
+        final BigDecimal newValue = quantities.subtract(quantityOnHand, change);
+        if (quantityOnHand.compareTo(quantityTotal) != 0 && !StockData.UNCHECKED_TOTAL_EVENTS.contains(event)) {
+            final int stockNumber = store.stockNumber(slot);
+            errors.add(new StockError(StockError.ErrorType.MOVEMENT_ERROR,
+                    "Stock record " + stockNumber + " quantity mismatch: " + sequenceNumber
+                            + " (current=" + quantityOnHand + ", movement=" + quantityTotal
+                            + ", change=" + change + ")", ""));
+            LOGGER.warn("Stock record {} quantity mismatch for movement: {}, current: {}, movement: {}, change: {}",
+                    stockNumber, sequenceNumber, quantityOnHand, quantityTotal, change);
+        }
+        store.setQuantityOnHand(slot, newValue);
+        store.setLocation(slot, location);
+        store.setHandlingUnitNumber(slot, handlingUnitNumber);
+        store.setPalletNumber(slot, handlingUnitNumber);
+    }
+
+    private void removeStock(int stockNumber) {
+        final int slot = store.find(stockNumber);
+        if (slot >= 0) {
+            store.remove(slot);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.app.stock;
+
+import com.app.stock.model.StockRecord;
+import com.app.stock.model.StockRecordCodec;
+import com.app.utils.GrowableSegment;
+import com.app.utils.OffHeapStringDictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Stock records kept off the heap. Every stock number gets a fixed-width slot with the fields the replay changes
+ * (quantity on hand, location, handling unit, pallet) next to the offset of its full record, which is encoded once
+ * with {@link StockRecordCodec} into an append-only area. Strings go through an {@link OffHeapStringDictionary}. The
+ * heap holds no per-stock objects, so its size does not grow with the number of stocks; records are only
+ * materialized for the export.
+ * <p>
+ * A store created in a directory maps its slots, records and strings from files there, so after {@link #close()} the
+ * directory holds the stock state and can be {@link #open(Path) opened} again. Slots of removed stocks are kept
+ * (without their live flag), so a stock number always maps to the same slot.
+ */
+public final class OffHeapStockStore implements AutoCloseable {
+    private static final int MAGIC = 0x4F485353;
+    private static final int VERSION = 1;
+    private static final long SLOT_BYTES = 40;
+    private static final long STOCK_NUMBER = 0;
+    private static final long FLAGS = 4;
+    private static final long UNSCALED = 8;
+    private static final long SCALE = 16;
+    private static final long LOCATION = 20;
+    private static final long HANDLING_UNIT = 24;
+    private static final long PALLET = 28;
+    private static final long RECORD = 32;
+    private static final int LIVE = 1;
+    private static final int FINALIZED = 2;
+    private static final int NULL_QUANTITY = 4;
+    private static final int TEXT_QUANTITY = 8;
+    private static final int NULL_STRING = -1;
+    private static final int INITIAL_SLOTS = 1 << 12;
+    private static final int INITIAL_INDEX_SLOTS = 1 << 13;
+    private static final long INITIAL_RECORD_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final GrowableSegment slots;
+    private final GrowableSegment records;
+    private final OffHeapStringDictionary strings;
+    private final StockRecordCodec codec;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final DataOutputStream encodedOut = new DataOutputStream(encoded);
+    private GrowableSegment index;
+    private int indexMask;
+    private int slotCount;
+    private int liveCount;
+    private long recordBytes;
+
+    private OffHeapStockStore(Path directory, GrowableSegment slots, GrowableSegment records,
+                              OffHeapStringDictionary strings, int slotCount, int liveCount, long recordBytes) {
+        this.directory = directory;
+        this.slots = slots;
+        this.records = records;
+        this.strings = strings;
+        this.codec = new StockRecordCodec(strings::id);
+        this.slotCount = slotCount;
+        this.liveCount = liveCount;
+        this.recordBytes = recordBytes;
+        rebuildIndex(Math.max(INITIAL_INDEX_SLOTS, Integer.highestOneBit(Math.max(1, slotCount)) * 4));
+    }
+
+    /**
+     * A store in native memory that is gone after {@link #close()}.
+     */
+    public static OffHeapStockStore create() {
+        return new OffHeapStockStore(null, GrowableSegment.allocate(INITIAL_SLOTS * SLOT_BYTES),
+                GrowableSegment.allocate(INITIAL_RECORD_BYTES), OffHeapStringDictionary.create(), 0, 0, 0);
+    }
+
+    /**
+     * A new, empty store in memory mapped files in {@code directory}; files of an earlier store there are replaced.
+     */
+    public static OffHeapStockStore create(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            for (String name : new String[]{"slots", "records", "strings.chars", "strings.ends", "meta"}) {
+                Files.deleteIfExists(directory.resolve(name));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create stock store in " + directory, e);
+        }
+        return mapped(directory, 0, 0, 0, 0);
+    }
+
+    /**
+     * Reopens a store that was created in {@code directory} and closed.
+     */
+    public static OffHeapStockStore open(Path directory) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve("meta")))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown stock store format");
+            }
+            int slotCount = in.readInt();
+            int liveCount = in.readInt();
+            long recordBytes = in.readLong();
+            int stringCount = in.readInt();
+            return mapped(directory, slotCount, liveCount, recordBytes, stringCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open stock store in " + directory, e);
+        }
+    }
+
+    private static OffHeapStockStore mapped(Path directory, int slotCount, int liveCount, long recordBytes,
+                                            int stringCount) {
+        return new OffHeapStockStore(directory,
+                GrowableSegment.mapped(directory.resolve("slots"), INITIAL_SLOTS * SLOT_BYTES),
+                GrowableSegment.mapped(directory.resolve("records"), INITIAL_RECORD_BYTES),
+                OffHeapStringDictionary.mapped(directory.resolve("strings"), stringCount),
+                slotCount, liveCount, recordBytes);
+    }
+
+    /**
+     * Number of live stocks.
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * The slot of {@code stockNumber}, or {@code -1} if the stock number was never seen.
+     */
+    public int find(int stockNumber) {
+        MemorySegment entries = index.segment();
+        for (int i = mix(stockNumber) & indexMask; ; i = i + 1 & indexMask) {
+            int entry = entries.getAtIndex(ValueLayout.JAVA_INT, i);
+            if (entry == 0) {
+                return -1;
+            }
+            if (stockNumber(entry - 1) == stockNumber) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * The slot of {@code stockNumber}; a new slot without a live stock is added if the stock number was never seen.
+     */
+    public int slotOf(int stockNumber) {
+        int slot = find(stockNumber);
+        if (slot >= 0) {
+            return slot;
+        }
+        slot = slotCount++;
+        MemorySegment segment = slots.ensureCapacity(slotCount * SLOT_BYTES);
+        long base = slot * SLOT_BYTES;
+        segment.set(ValueLayout.JAVA_INT, base + STOCK_NUMBER, stockNumber);
+        segment.set(ValueLayout.JAVA_INT, base + FLAGS, 0);
+        segment.set(ValueLayout.JAVA_INT, base + LOCATION, NULL_STRING);
+        segment.set(ValueLayout.JAVA_INT, base + HANDLING_UNIT, NULL_STRING);
+        segment.set(ValueLayout.JAVA_INT, base + PALLET, NULL_STRING);
+        segment.set(ValueLayout.JAVA_LONG, base + RECORD, -1);
+        addToIndex(stockNumber, slot);
+        if (slotCount * 2L > indexMask) {
+            rebuildIndex((indexMask + 1) * 2);
+        }
+        return slot;
+    }
+
+    /**
+     * Stores {@code stockRecord} as the live stock of its sequence number, replacing a live stock with that number.
+     */
+    public int put(StockRecord stockRecord) {
+        int slot = slotOf(stockRecord.getSequenceNumber());
+        long offset = appendRecord(stockRecord);
+        if (!isLive(slot)) {
+            liveCount++;
+        }
+        long base = slot * SLOT_BYTES;
+        slots.segment().set(ValueLayout.JAVA_LONG, base + RECORD, offset);
+        setFlag(slot, LIVE, true);
+        setQuantityOnHand(slot, stockRecord.getQuantityOnHand());
+        setLocation(slot, stockRecord.getLocation());
+        setHandlingUnitNumber(slot, stockRecord.getHandlingUnitNumber());
+        setPalletNumber(slot, stockRecord.getPalletNumber());
+        return slot;
+    }
+
+    /**
+     * Stores {@code stockRecord} unless a live stock with its sequence number exists.
+     */
+    public boolean putIfAbsent(StockRecord stockRecord) {
+        int slot = find(stockRecord.getSequenceNumber());
+        if (slot >= 0 && isLive(slot)) {
+            return false;
+        }
+        put(stockRecord);
+        return true;
+    }
+
+    public void remove(int slot) {
+        if (isLive(slot)) {
+            setFlag(slot, LIVE, false);
+            liveCount--;
+        }
+    }
+
+    public boolean isLive(int slot) {
+        return (flags(slot) & LIVE) != 0;
+    }
+
+    public boolean isFinalized(int slot) {
+        return (flags(slot) & FINALIZED) != 0;
+    }
+
+    public void setFinalized(int slot) {
+        setFlag(slot, FINALIZED, true);
+    }
+
+    public int stockNumber(int slot) {
+        return slots.segment().get(ValueLayout.JAVA_INT, slot * SLOT_BYTES + STOCK_NUMBER);
+    }
+
+    public BigDecimal quantityOnHand(int slot) {
+        int flags = flags(slot);
+        long base = slot * SLOT_BYTES;
+        long unscaled = slots.segment().get(ValueLayout.JAVA_LONG, base + UNSCALED);
+        if ((flags & NULL_QUANTITY) != 0) {
+            return null;
+        }
+        if ((flags & TEXT_QUANTITY) != 0) {
+            return new BigDecimal(strings.get((int) unscaled));
+        }
+        return BigDecimal.valueOf(unscaled, slots.segment().get(ValueLayout.JAVA_INT, base + SCALE));
+    }
+
+    public void setQuantityOnHand(int slot, BigDecimal quantity) {
+        long base = slot * SLOT_BYTES;
+        MemorySegment segment = slots.segment();
+        setFlag(slot, NULL_QUANTITY, quantity == null);
+        if (quantity == null) {
+            setFlag(slot, TEXT_QUANTITY, false);
+            return;
+        }
+        BigInteger unscaled = quantity.unscaledValue();
+        boolean compact = unscaled.bitLength() < Long.SIZE;
+        setFlag(slot, TEXT_QUANTITY, !compact);
+        segment.set(ValueLayout.JAVA_LONG, base + UNSCALED, compact ? unscaled.longValue() : strings.id(quantity.toString()));
+        segment.set(ValueLayout.JAVA_INT, base + SCALE, quantity.scale());
+    }
+
+    public String location(int slot) {
+        return string(slot, LOCATION);
+    }
+
+    public void setLocation(int slot, String location) {
+        setString(slot, LOCATION, location);
+    }
+
+    public void setHandlingUnitNumber(int slot, String handlingUnitNumber) {
+        setString(slot, HANDLING_UNIT, handlingUnitNumber);
+    }
+
+    public void setPalletNumber(int slot, String palletNumber) {
+        setString(slot, PALLET, palletNumber);
+    }
+
+    /**
+     * Decodes the full record of a live slot with its current quantity, location, handling unit and pallet. Allocates.
+     */
+    public StockRecord toRecord(int slot) {
+        long offset = slots.segment().get(ValueLayout.JAVA_LONG, slot * SLOT_BYTES + RECORD);
+        MemorySegment segment = records.segment();
+        int length = segment.get(ValueLayout.JAVA_INT_UNALIGNED, offset);
+        ByteBuffer encodedRecord = segment.asSlice(offset + Integer.BYTES, length).asByteBuffer();
+        StockRecord stockRecord = StockRecordCodec.decode(encodedRecord, strings::get);
+        stockRecord.setQuantityOnHand(quantityOnHand(slot));
+        stockRecord.setLocation(location(slot));
+        stockRecord.setHandlingUnitNumber(string(slot, HANDLING_UNIT));
+        stockRecord.setPalletNumber(string(slot, PALLET));
+        return stockRecord;
+    }
+
+    /**
+     * The live slots ordered by stock number.
+     */
+    public int[] liveSlots() {
+        long[] keyed = new long[liveCount];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (isLive(slot)) {
+                keyed[count++] = (long) stockNumber(slot) << Integer.SIZE | slot;
+            }
+        }
+        Arrays.sort(keyed, 0, count);
+        int[] live = new int[count];
+        for (int i = 0; i < count; i++) {
+            live[i] = (int) keyed[i];
+        }
+        return live;
+    }
+
+    /**
+     * The live records ordered by stock number, decoded one at a time.
+     */
+    public Stream<StockRecord> records() {
+        return Arrays.stream(liveSlots()).mapToObj(this::toRecord);
+    }
+
+    /**
+     * Writes a file-backed store to disk; does nothing for a store in native memory.
+     */
+    public void flush() {
+        if (directory == null) {
+            return;
+        }
+        slots.force();
+        records.force();
+        strings.force();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(directory.resolve("meta")))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(slotCount);
+            out.writeInt(liveCount);
+            out.writeLong(recordBytes);
+            out.writeInt(strings.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write stock store in " + directory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        index.close();
+        slots.close();
+        records.close();
+        strings.close();
+    }
+
+    private long appendRecord(StockRecord stockRecord) {
+        encoded.reset();
+        try {
+            codec.encode(stockRecord, encodedOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long offset = recordBytes;
+        int length = encoded.size();
+        MemorySegment segment = records.ensureCapacity(offset + Integer.BYTES + length);
+        segment.set(ValueLayout.JAVA_INT_UNALIGNED, offset, length);
+        MemorySegment.copy(encoded.toByteArray(), 0, segment, ValueLayout.JAVA_BYTE, offset + Integer.BYTES, length);
+        recordBytes = offset + Integer.BYTES + length;
+        return offset;
+    }
+
+    private String string(int slot, long field) {
+        int id = slots.segment().get(ValueLayout.JAVA_INT, slot * SLOT_BYTES + field);
+        return id == NULL_STRING ? null : strings.get(id);
+    }
+
+    private void setString(int slot, long field, String value) {
+        slots.segment().set(ValueLayout.JAVA_INT, slot * SLOT_BYTES + field, value == null ? NULL_STRING : strings.id(value));
+    }
+
+    private int flags(int slot) {
+        return slots.segment().get(ValueLayout.JAVA_INT, slot * SLOT_BYTES + FLAGS);
+    }
+
+    private void setFlag(int slot, int flag, boolean set) {
+        int flags = flags(slot);
+        slots.segment().set(ValueLayout.JAVA_INT, slot * SLOT_BYTES + FLAGS, set ? flags | flag : flags & ~flag);
+    }
+
+    private void addToIndex(int stockNumber, int slot) {
+        MemorySegment entries = index.segment();
+        int i = mix(stockNumber) & indexMask;
+        while (entries.getAtIndex(ValueLayout.JAVA_INT, i) != 0) {
+            i = i + 1 & indexMask;
+        }
+        entries.setAtIndex(ValueLayout.JAVA_INT, i, slot + 1);
+    }
+
+    private void rebuildIndex(int indexSlots) {
+        if (index != null) {
+            index.close();
+        }
+        index = GrowableSegment.allocate(indexSlots * (long) Integer.BYTES);
+        indexMask = indexSlots - 1;
+        for (int slot = 0; slot < slotCount; slot++) {
+            addToIndex(stockNumber(slot), slot);
+        }
+    }
+
+    private static int mix(int stockNumber) {
+        int mixed = stockNumber * 0x9E3779B9;
+        return mixed ^ mixed >>> 16;
+    }
+}
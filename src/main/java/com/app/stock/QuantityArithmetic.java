@@ -0,0 +1,29 @@
+package com.app.stock;
+
+import java.math.BigDecimal;
+
+/**
+ * Memoizes stock quantity subtractions. Quantities repeat a lot (a pallet of 5.000 minus 1.000), so most results are
+ * found in this small direct-mapped table instead of being allocated again. Results are equal, including the scale,
+ * to {@link BigDecimal#subtract(BigDecimal)}.
+ */
+final class QuantityArithmetic {
+    private static final int CAPACITY = 1 << 12;
+
+    private final BigDecimal[] minuends = new BigDecimal[CAPACITY];
+    private final BigDecimal[] subtrahends = new BigDecimal[CAPACITY];
+    private final BigDecimal[] differences = new BigDecimal[CAPACITY];
+
+    BigDecimal subtract(BigDecimal minuend, BigDecimal subtrahend) {
+        int hash = minuend.hashCode() * 31 + subtrahend.hashCode();
+        int slot = (hash ^ hash >>> 16) & (CAPACITY - 1);
+        if (minuend.equals(minuends[slot]) && subtrahend.equals(subtrahends[slot])) {
+            return differences[slot];
+        }
+        BigDecimal difference = minuend.subtract(subtrahend);
+        minuends[slot] = minuend;
+        subtrahends[slot] = subtrahend;
+        differences[slot] = difference;
+        return difference;
+    }
+}
@@ -0,0 +1,87 @@
+package com.app.stock;
+
+import com.app.stock.model.StockRecord;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quantity totals per item, location and client/batch, kept up to date by {@link StockData} while movements are
+ * replayed.
+ */
+public class StockAggregates implements StockChangeListener {
+    private final Map<String, Total> byItem = new HashMap<>();
+    private final Map<String, Total> byLocation = new HashMap<>();
+    private final Map<ClientBatch, Total> byClientBatch = new HashMap<>();
+
+    @Override
+    public void stockAdded(StockRecord stockRecord) {
+        BigDecimal quantity = quantityOf(stockRecord);
+        add(byItem, stockRecord.getItemNumber(), quantity);
+        add(byLocation, stockRecord.getLocation(), quantity);
+        add(byClientBatch, new ClientBatch(stockRecord.getClient(), stockRecord.getBatch1()), quantity);
+    }
+
+    @Override
+    public void stockRemoved(StockRecord stockRecord) {
+        BigDecimal quantity = quantityOf(stockRecord);
+        remove(byItem, stockRecord.getItemNumber(), quantity);
+        remove(byLocation, stockRecord.getLocation(), quantity);
+        remove(byClientBatch, new ClientBatch(stockRecord.getClient(), stockRecord.getBatch1()), quantity);
+    }
+
+    /**
+     * Adds the totals of {@code other}, e.g. of a replay over a disjoint set of stocks.
+     */
+    public void addAll(StockAggregates other) {
+        other.byItem.forEach((key, total) -> merge(byItem, key, total));
+        other.byLocation.forEach((key, total) -> merge(byLocation, key, total));
+        other.byClientBatch.forEach((key, total) -> merge(byClientBatch, key, total));
+    }
+
+    public Map<String, Total> byItem() {
+        return Collections.unmodifiableMap(byItem);
+    }
+
+    public Map<String, Total> byLocation() {
+        return Collections.unmodifiableMap(byLocation);
+    }
+
+    public Map<ClientBatch, Total> byClientBatch() {
+        return Collections.unmodifiableMap(byClientBatch);
+    }
+
+    private static <K> void add(Map<K, Total> totals, K key, BigDecimal quantity) {
+        Total total = totals.get(key);
+        totals.put(key, total == null ? new Total(quantity, 1) : new Total(total.quantity().add(quantity), total.stocks() + 1));
+    }
+
+    private static <K> void merge(Map<K, Total> totals, K key, Total other) {
+        totals.merge(key, other, (total, added) ->
+                new Total(total.quantity().add(added.quantity()), total.stocks() + added.stocks()));
+    }
+
+    private static <K> void remove(Map<K, Total> totals, K key, BigDecimal quantity) {
+        Total total = totals.get(key);
+        if (total == null) {
+            return;
+        }
+        if (total.stocks() <= 1) {
+            totals.remove(key);
+            return;
+        }
+        totals.put(key, new Total(total.quantity().subtract(quantity), total.stocks() - 1));
+    }
+
+    private static BigDecimal quantityOf(StockRecord stockRecord) {
+        return stockRecord.getQuantityOnHand() == null ? BigDecimal.ZERO : stockRecord.getQuantityOnHand();
+    }
+
+    public record ClientBatch(Integer client, String batch1) {
+    }
+
+    public record Total(BigDecimal quantity, int stocks) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.app.stock;
+
+import com.app.stock.model.StockRecord;
+
+/**
+ * Notified by {@link StockData} whenever a stock record enters or leaves the stock. Changes to an existing record are
+ * reported as a removal of the old state followed by an addition of the new state.
+ */
+public interface StockChangeListener {
+    void stockAdded(StockRecord stockRecord);
+
+    void stockRemoved(StockRecord stockRecord);
+}
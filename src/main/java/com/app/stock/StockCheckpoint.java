@@ -0,0 +1,254 @@
+package com.app.stock;
+
+import com.app.stock.model.StockRecord;
+import com.app.stock.model.StockRecordCodec;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Replay state of a {@link StockData} at a line boundary of the history: the records, finalized stocks, the last
+ * sequence number and the errors so far, together with the byte offset of the next history line. A reconstruction
+ * that died continues from there instead of replaying the whole history again. A checkpoint is only used by a run
+ * with the same {@code key}, which describes the input files and options.
+ * <p>
+ * Layout: {@code [int magic][int version][long stateOffset][key]} followed by record blocks
+ * {@code [int count][int byteLength][payload]} up to a block with count 0, and at {@code stateOffset}
+ * {@code [long offset][long lines][int lastSequenceNumber][boolean criticalErrors][boolean gateOpen]
+ * [int count][int finalizedStock...][int count][error...][int count][string...]}. The string table comes last
+ * because it is collected while the records are written. Strings are {@code [int byteLength][UTF-8]} with length -1
+ * for {@code null}; records are encoded by {@link StockRecordCodec} against the string table.
+ */
+public final class StockCheckpoint {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockCheckpoint.class);
+    private static final int MAGIC = 0x53434B50;
+    private static final int VERSION = 1;
+    private static final long STATE_OFFSET_POSITION = Integer.BYTES * 2;
+    private static final int BLOCK_BYTES = 1 << 22;
+    private static final int NULL_STRING = -1;
+
+    private final long offset;
+    private final long lines;
+    private final boolean gateOpen;
+    private final StockData data;
+
+    private StockCheckpoint(long offset, long lines, boolean gateOpen, StockData data) {
+        this.offset = offset;
+        this.lines = lines;
+        this.gateOpen = gateOpen;
+        this.data = data;
+    }
+
+    /**
+     * Byte offset of the first history line the checkpoint does not contain.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * History lines replayed before {@link #offset()}.
+     */
+    public long lines() {
+        return lines;
+    }
+
+    /**
+     * Whether the replay had reached its {@code MovementStart}.
+     */
+    public boolean gateOpen() {
+        return gateOpen;
+    }
+
+    public StockData data() {
+        return data;
+    }
+
+    /**
+     * Streams the state of {@code data} into a temporary file next to {@code file}, one record block at a time, so the
+     * records are never held in memory as a whole. The file is not forced to disk; {@link #publish} does that.
+     *
+     * @return the temporary file, to be passed to {@link #publish}
+     */
+    public static Path write(Path file, String key, StockData data, long offset, long lines, boolean gateOpen)
+            throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0);
+            writeString(out, key);
+
+            StockRecordCodec codec = new StockRecordCodec();
+            ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_BYTES + (BLOCK_BYTES >> 3));
+            DataOutputStream blockOut = new DataOutputStream(block);
+            int count = 0;
+            for (StockRecord stockRecord : data.getStockRecords().values()) {
+                codec.encode(stockRecord, blockOut);
+                count++;
+                if (block.size() >= BLOCK_BYTES) {
+                    writeBlock(out, count, block);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                writeBlock(out, count, block);
+            }
+            writeBlock(out, 0, block);
+            out.flush();
+
+            long stateOffset = channel.position();
+            out.writeLong(offset);
+            out.writeLong(lines);
+            out.writeInt(data.lastMovementSequenceNumber());
+            out.writeBoolean(data.isCriticalErrors());
+            out.writeBoolean(gateOpen);
+            out.writeInt(data.finalizedStocks().size());
+            for (Integer stockNumber : data.finalizedStocks()) {
+                out.writeInt(stockNumber);
+            }
+            out.writeInt(data.getErrors().size());
+            for (StockError error : data.getErrors()) {
+                out.writeInt(error.type() == null ? -1 : error.type().ordinal());
+                writeString(out, error.message());
+                writeString(out, error.csvLine());
+            }
+            out.writeInt(codec.strings().size());
+            for (String string : codec.strings()) {
+                writeString(out, string);
+            }
+            out.flush();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(stateOffset).flip(), STATE_OFFSET_POSITION);
+        }
+        return tempFile;
+    }
+
+    /**
+     * Forces {@code tempFile} of {@link #write} to disk before it replaces the previous checkpoint in {@code file}, so
+     * a crash while writing leaves the previous checkpoint intact.
+     */
+    public static void publish(Path tempFile, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The checkpoint in {@code file}, or empty if there is none, it belongs to another {@code key} or cannot be read.
+     */
+    public static Optional<StockCheckpoint> read(Path file, String key, LocalDate stockDate) {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            DataInputStream in = input(channel);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring checkpoint {} with unknown format", file);
+                return Optional.empty();
+            }
+            long stateOffset = in.readLong();
+            if (!key.equals(readString(in))) {
+                LOGGER.info("Ignoring checkpoint {} of other input files or options", file);
+                return Optional.empty();
+            }
+            long recordsOffset = STATE_OFFSET_POSITION + Long.BYTES + Integer.BYTES
+                    + key.getBytes(StandardCharsets.UTF_8).length;
+
+            in = input(channel.position(stateOffset));
+            long offset = in.readLong();
+            long lines = in.readLong();
+            int lastSequenceNumber = in.readInt();
+            boolean criticalErrors = in.readBoolean();
+            boolean gateOpen = in.readBoolean();
+            List<Integer> finalized = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                finalized.add(in.readInt());
+            }
+            StockError.ErrorType[] types = StockError.ErrorType.values();
+            List<StockError> errors = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                int type = in.readInt();
+                errors.add(new StockError(type < 0 ? null : types[type], readString(in), readString(in)));
+            }
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+
+            in = input(channel.position(recordsOffset));
+            Map<Integer, StockRecord> stockRecords = new HashMap<>();
+            for (int count = in.readInt(); count > 0; count = in.readInt()) {
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                ByteBuffer block = ByteBuffer.wrap(payload);
+                for (int i = 0; i < count; i++) {
+                    StockRecord stockRecord = StockRecordCodec.decode(block, strings);
+                    stockRecords.put(stockRecord.getSequenceNumber(), stockRecord);
+                }
+            }
+            StockData data = new StockData(stockRecords, stockDate);
+            data.restore(finalized, lastSequenceNumber, errors, criticalErrors);
+            return Optional.of(new StockCheckpoint(offset, lines, gateOpen, data));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read checkpoint {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static DataInputStream input(FileChannel channel) {
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+    }
+
+    private static void writeBlock(DataOutputStream out, int count, ByteArrayOutputStream payload)
+            throws IOException {
+        out.writeInt(count);
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+        payload.reset();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
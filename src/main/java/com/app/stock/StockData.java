@@ -1,8 +1,12 @@
 package com.app.stock;
 
+import com.app.history.model.MovementCursor;
 import com.app.history.model.MovementEvent;
+import com.app.history.model.MovementField;
+import com.app.history.model.MovementProjection;
 import com.app.history.model.MovementRecord;
 import com.app.stock.model.StockRecord;
+import com.app.utils.IntegerPool;
 import com.app.utils.Result;
 import com.app.utils.StockError;
 import lombok.Getter;
@@ -13,38 +17,70 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
 
-public class StockData {
+public class StockData implements StockReplay {
     private static final Logger LOGGER = LoggerFactory.getLogger(StockData.class);
+    /**
+     * The movement fields read by {@link #handleMovement(Result)}; parsers can skip everything else.
+     */
+    public static final MovementProjection MOVEMENT_PROJECTION = MovementProjection.of(
+            MovementField.HANDLING_UNIT_NUMBER,
+            MovementField.LOCATION,
+            MovementField.ITEM_NUMBER,
+            MovementField.SERIAL_NUMBER,
+            MovementField.BATCH1,
+            MovementField.BATCH2,
+            MovementField.QUANTITY_CHANGE,
+            MovementField.QUANTITY_TOTAL,
+            MovementField.CLIENT,
+            MovementField.DATE,
+            MovementField.CUSTOMER_ORDER_NUMBER,
+            MovementField.CUSTOMER_ORDER_POSITION);
+    private static final int STOCK_NUMBER_POOL_CAPACITY = 1 << 16;
+    static final Set<MovementEvent> UNCHECKED_TOTAL_EVENTS =
+            EnumSet.of(MovementEvent.MOVEMENT_OUT, MovementEvent.MOVEMENT_IN, MovementEvent.MOVEMENT_NEUTRAL);
     @Getter
     private final Map<Integer, StockRecord> stockRecords;
     private final Set<Integer> finalizedStocks = new HashSet<>();
     @Getter
     private final List<StockError> errors = new ArrayList<>();
-    private Integer lastMovementSequenceNumber = Integer.MAX_VALUE;
+    private int lastMovementSequenceNumber = Integer.MAX_VALUE;
+    private boolean sequenceChecked = true;
     @Getter
     private boolean criticalErrors = false;
     private final LocalDate stockDate;
+    private final long stockEpochDay;
+    private final List<StockChangeListener> changeListeners = new ArrayList<>();
+    private final List<MovementListener> movementListeners = new ArrayList<>();
+    private StockAggregates aggregates;
+    private StockIndexes indexes;
+    private final QuantityArithmetic quantities = new QuantityArithmetic();
+    private final IntegerPool stockNumbers = new IntegerPool(STOCK_NUMBER_POOL_CAPACITY);
 
     public StockData(List<StockRecord> stockRecords, LocalDate stockDate) {
         this.stockRecords = stockRecords.stream().collect(HashMap::new, (map, stockRecord) -> map.put(stockRecord.getSequenceNumber(), stockRecord), HashMap::putAll);
         this.stockDate = stockDate;
+        this.stockEpochDay = stockDate == null ? 0 : stockDate.toEpochDay();
     }
 
     public StockData(List<StockRecord> stockRecords) {
         this.stockRecords = stockRecords.stream().collect(HashMap::new, (map, stockRecord) -> map.put(stockRecord.getSequenceNumber(), stockRecord), HashMap::putAll);
         this.stockDate = null;
+        this.stockEpochDay = 0;
     }
 
     public StockData(Map<Integer, StockRecord> stockRecords, LocalDate stockDate) {
         this.stockRecords = stockRecords;
         this.stockDate = stockDate;
+        this.stockEpochDay = stockDate == null ? 0 : stockDate.toEpochDay();
     }
 
     public StockData(Map<Integer, StockRecord> stockRecords) {
         this.stockRecords = stockRecords;
         this.stockDate = null;
+        this.stockEpochDay = 0;
     }
 
+    @Override
     public void handleMovement(Result<MovementRecord, StockError> movement) {
 
         if (movement == null) {
@@ -54,48 +90,280 @@ public class StockData {
             return;
         }
         if (movement.isFailure()) {
-            errors.add(movement.error());
-            criticalErrors = true;
-            LOGGER.warn("Movement parse error: {}", movement.error().message());
+            handleMovementError(movement.error());
             return;
         }
         final MovementRecord movementRecord = movement.getOrThrow();
 
-        if (stockDate != null && movementRecord.date().isBefore(stockDate) && !finalizedStocks.contains(movementRecord.stockNumber())) {
-            finalizedStocks.add(movementRecord.stockNumber());
-            Optional.ofNullable(stockRecords.get(movementRecord.stockNumber())).ifPresent(s -> s.setLocation(movementRecord.location()));
-            LOGGER.info("Movement for finalized stock: {}", movementRecord.stockNumber());
+        if (stockDate != null && movementRecord.date().isBefore(stockDate)
+                && finalizeStock(movementRecord.stockNumber(), movementRecord.location())) {
             return;
         }
 
-
-        if (movementRecord.sequenceNumber() >= lastMovementSequenceNumber) {
-            errors.add(new StockError(StockError.ErrorType.MOVEMENT_ERROR, "Movement ID out of order: " + movementRecord.sequenceNumber(), ""));
-            criticalErrors = true;
-            LOGGER.warn("Movement ID out of order: {}", movementRecord.sequenceNumber());
-        }
-        lastMovementSequenceNumber = movementRecord.sequenceNumber();
+        checkSequence(movementRecord.sequenceNumber());
         final StockRecord stockRecord = stockRecords.get(movementRecord.stockNumber());
+        if (!movementListeners.isEmpty()) {
+            notifyApplied(movementRecord.stockNumber(), movementRecord.sequenceNumber(), movementRecord.event(),
+                    movementRecord.quantityChange(), stockRecord == null ? movementRecord.quantityTotal()
+                            : stockRecord.getQuantityOnHand(), movementRecord.location());
+        }
         switch (movementRecord.event()) {
-            case DELETE -> createStock(movementRecord);
+            case DELETE -> createStock(newStockRecord(movementRecord), movementRecord.quantityChange());
+            case MOVEMENT_OUT, BATCH_CORRECTION_OUT, BATCH_CORRECTION_IN, INVENTORY_COUNT, MOVEMENT_IN,
+                 MOVEMENT_NEUTRAL -> {
+                if (stockRecord == null) {
+                    createStock(newStockRecord(movementRecord), movementRecord.quantityChange());
+                } else {
+                    changeStockRecord(stockRecord, movementRecord.sequenceNumber(), movementRecord.event(),
+                            movementRecord.quantityChange(), movementRecord.quantityTotal(),
+                            movementRecord.location(), movementRecord.handlingUnitNumber());
+                }
+            }
+            case GOODS_RECEIPT -> removeStock(movementRecord.stockNumber());
+        }
+    }
+
+    /**
+     * Cursor variant of {@link #handleMovement(Result)} with the same effect. It allocates nothing for movements on
+     * known stocks apart from the new quantity; parse errors arrive through {@link #handleMovementError}.
+     */
+    @Override
+    public void handleMovement(MovementCursor cursor) {
+        final Integer stockNumber = stockNumbers.valueOf(cursor.stockNumber());
+        if (stockDate != null && cursor.hasDate() && cursor.epochDay() < stockEpochDay
+                && finalizeStock(stockNumber, cursor.location())) {
+            return;
+        }
+
+        checkSequence(cursor.sequenceNumber());
+        final StockRecord stockRecord = stockRecords.get(stockNumber);
+        if (!movementListeners.isEmpty()) {
+            notifyApplied(stockNumber, cursor.sequenceNumber(), cursor.event(), cursor.quantityChange(),
+                    stockRecord == null ? cursor.quantityTotal() : stockRecord.getQuantityOnHand(), cursor.location());
+        }
+        switch (cursor.event()) {
+            case DELETE -> createStock(newStockRecord(cursor), cursor.quantityChange());
             case MOVEMENT_OUT, BATCH_CORRECTION_OUT, BATCH_CORRECTION_IN, INVENTORY_COUNT, MOVEMENT_IN,
                  MOVEMENT_NEUTRAL -> {
                 if (stockRecord == null) {
-                    createStock(movementRecord);
+                    createStock(newStockRecord(cursor), cursor.quantityChange());
                 } else {
-                    changeStockRecord(stockRecord, movementRecord);
+                    changeStockRecord(stockRecord, cursor.sequenceNumber(), cursor.event(), cursor.quantityChange(),
+                            cursor.quantityTotal(), cursor.location(), cursor.handlingUnitNumber());
                 }
             }
-            case GOODS_RECEIPT -> stockRecords.remove(movementRecord.stockNumber());
+            case GOODS_RECEIPT -> removeStock(stockNumber);
         }
     }
 
+    /**
+     * Records a movement line that could not be parsed. Such a run is not trustworthy, so it is marked critical.
+     */
+    @Override
+    public void handleMovementError(StockError error) {
+        errors.add(error);
+        criticalErrors = true;
+        LOGGER.warn("Movement parse error: {}", error.message());
+    }
+
+    /**
+     * Records errors found while loading the stock snapshot, e.g. stock lines that could not be parsed.
+     */
+    public void addErrors(Collection<StockError> loadErrors) {
+        errors.addAll(loadErrors);
+    }
+
     public void cleanUp() {
-        stockRecords.values().removeIf(stockRecord -> stockRecord.getQuantityOnHand().compareTo(BigDecimal.ZERO) <= 0);
+        stockRecords.values().removeIf(stockRecord -> {
+            if (isInStock(stockRecord)) {
+                return false;
+            }
+            notifyRemoved(stockRecord);
+            return true;
+        });
+    }
+
+    /**
+     * Removes the stocks {@code filter} does not match with their reconstructed values, e.g. those that were at a
+     * filtered location only before the cutoff.
+     *
+     * @return the number of removed stocks
+     */
+    public int retainMatching(StockFilter filter) {
+        int before = stockRecords.size();
+        stockRecords.values().removeIf(stockRecord -> {
+            if (filter.matches(stockRecord)) {
+                return false;
+            }
+            notifyRemoved(stockRecord);
+            return true;
+        });
+        return before - stockRecords.size();
+    }
+
+    /**
+     * Removes the same stocks as {@link #cleanUp()} and returns the remaining ones ordered by stock number, for an
+     * export. Both happen in one pass over the records instead of one for the clean-up and another for the export.
+     */
+    public List<StockRecord> cleanUpSorted() {
+        StockRecord[] kept = new StockRecord[stockRecords.size()];
+        int count = 0;
+        for (Iterator<StockRecord> iterator = stockRecords.values().iterator(); iterator.hasNext(); ) {
+            StockRecord stockRecord = iterator.next();
+            if (isInStock(stockRecord)) {
+                kept[count++] = stockRecord;
+            } else {
+                iterator.remove();
+                notifyRemoved(stockRecord);
+            }
+        }
+        Arrays.sort(kept, 0, count, Comparator.comparing(StockRecord::getSequenceNumber,
+                Comparator.nullsLast(Integer::compareTo)));
+        return Arrays.asList(kept).subList(0, count);
+    }
+
+    private static boolean isInStock(StockRecord stockRecord) {
+        return stockRecord.getQuantityOnHand().compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    /**
+     * Registers a listener and reports all current stock records to it as added.
+     */
+    public void addChangeListener(StockChangeListener listener) {
+        stockRecords.values().forEach(listener::stockAdded);
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener for the movements applied from now on.
+     */
+    public void addMovementListener(MovementListener listener) {
+        movementListeners.add(listener);
+    }
+
+    /**
+     * Starts maintaining quantity totals per item, location and client/batch. Calling this again returns the
+     * aggregates that are already maintained.
+     */
+    public StockAggregates enableAggregates() {
+        if (aggregates == null) {
+            aggregates = new StockAggregates();
+            addChangeListener(aggregates);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Starts maintaining the stock numbers per location, handling unit and item number. Calling this again returns the
+     * indexes that are already maintained. Enabling them before the replay keeps them current without a scan of the
+     * stock afterwards.
+     */
+    public StockIndexes enableIndexes() {
+        if (indexes == null) {
+            indexes = new StockIndexes();
+            addChangeListener(indexes);
+        }
+        return indexes;
+    }
+
+    /**
+     * The stocks in {@code location}, ignoring case, ordered by stock number. Enables the indexes.
+     */
+    public List<StockRecord> findByLocation(String location) {
+        return stockRecords(enableIndexes().stockNumbers(StockIndexes.Key.LOCATION, location));
     }
 
-    private void createStock(MovementRecord movementRecord) {
-        final StockRecord newStockRecord = StockRecord.builder()
+    /**
+     * The stocks on handling unit {@code handlingUnitNumber}, ignoring case, ordered by stock number. Enables the
+     * indexes.
+     */
+    public List<StockRecord> findByHandlingUnit(String handlingUnitNumber) {
+        return stockRecords(enableIndexes().stockNumbers(StockIndexes.Key.HANDLING_UNIT, handlingUnitNumber));
+    }
+
+    /**
+     * The stocks of item {@code itemNumber}, ignoring case, ordered by stock number. Enables the indexes.
+     */
+    public List<StockRecord> findByItemNumber(String itemNumber) {
+        return stockRecords(enableIndexes().stockNumbers(StockIndexes.Key.ITEM_NUMBER, itemNumber));
+    }
+
+    /**
+     * The stocks whose {@code key} starts with {@code prefix}, ignoring case, ordered by stock number. Enables the
+     * indexes.
+     */
+    public List<StockRecord> findByPrefix(StockIndexes.Key key, String prefix) {
+        return stockRecords(enableIndexes().stockNumbersWithPrefix(key, prefix));
+    }
+
+    private List<StockRecord> stockRecords(Set<Integer> numbers) {
+        return numbers.stream()
+                .sorted(Comparator.nullsLast(Integer::compareTo))
+                .map(stockRecords::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Stops reporting movements whose sequence number is not below the previous one. For replays of a part of the
+     * history whose order is checked by the caller.
+     */
+    public void disableSequenceCheck() {
+        sequenceChecked = false;
+    }
+
+    public Optional<StockAggregates> getAggregates() {
+        return Optional.ofNullable(aggregates);
+    }
+
+    Set<Integer> finalizedStocks() {
+        return finalizedStocks;
+    }
+
+    int lastMovementSequenceNumber() {
+        return lastMovementSequenceNumber;
+    }
+
+    /**
+     * Continues the replay state of a {@link StockCheckpoint}; the records are passed to the constructor.
+     */
+    void restore(Collection<Integer> finalized, int lastSequenceNumber, List<StockError> restoredErrors,
+                 boolean critical) {
+        finalizedStocks.addAll(finalized);
+        lastMovementSequenceNumber = lastSequenceNumber;
+        errors.addAll(restoredErrors);
+        criticalErrors = critical;
+    }
+
+    /**
+     * Movements older than the stock date only move a stock from the snapshot to the location of its first such
+     * movement. Returns {@code false} if the stock was already finalized.
+     */
+    private boolean finalizeStock(Integer stockNumber, String location) {
+        if (!finalizedStocks.add(stockNumber)) {
+            return false;
+        }
+        final StockRecord stockRecord = stockRecords.get(stockNumber);
+        if (stockRecord != null) {
+            notifyRemoved(stockRecord);
+            stockRecord.setLocation(location);
+            notifyAdded(stockRecord);
+        }
+        LOGGER.info("Movement for finalized stock: {}", stockNumber);
+        return true;
+    }
+
+    private void checkSequence(int sequenceNumber) {
+        if (sequenceChecked && sequenceNumber >= lastMovementSequenceNumber) {
+            errors.add(new StockError(StockError.ErrorType.MOVEMENT_ERROR, "Movement ID out of order: " + sequenceNumber, ""));
+            criticalErrors = true;
+            LOGGER.warn("Movement ID out of order: {}", sequenceNumber);
+        }
+        lastMovementSequenceNumber = sequenceNumber;
+    }
+
+    static StockRecord newStockRecord(MovementRecord movementRecord) {
+        return StockRecord.builder()
                 .sequenceNumber(movementRecord.stockNumber())
                 .itemNumber(movementRecord.itemNumber())
                 .client(movementRecord.client())
@@ -109,28 +377,81 @@ public class StockData {
                 .location(movementRecord.location())
                 .quantityOnHand(movementRecord.quantityTotal())
                 .build();
-        stockRecords.put(movementRecord.stockNumber(), newStockRecord);
-        final BigDecimal change = Optional.ofNullable(movementRecord.quantityChange()).orElse(BigDecimal.ZERO);
-        final BigDecimal newValue = newStockRecord.getQuantityOnHand().add(change.multiply(BigDecimal.valueOf(-1)));
-        newStockRecord.setQuantityOnHand(newValue);
     }
 
-    private void changeStockRecord(StockRecord stockRecord, MovementRecord movementRecord) {
-        final BigDecimal change = Optional.ofNullable(movementRecord.quantityChange()).orElse(BigDecimal.ZERO);
-        final BigDecimal newValue = stockRecord.getQuantityOnHand().add(change.multiply(BigDecimal.valueOf(-1)));
-        if (stockRecord.getQuantityOnHand().compareTo(movementRecord.quantityTotal()) != 0
-                && !List.of(MovementEvent.MOVEMENT_OUT, MovementEvent.MOVEMENT_IN, MovementEvent.MOVEMENT_NEUTRAL).contains(movementRecord.event())) {
+    static StockRecord newStockRecord(MovementCursor cursor) {
+        return StockRecord.builder()
+                .sequenceNumber(cursor.stockNumber())
+                .itemNumber(cursor.itemNumber())
+                .client(cursor.client())
+                .batch1(cursor.batch1())
+                .batch2(cursor.batch2())
+                .serialNumber(cursor.serialNumber())
+                .customerOrderNumber(cursor.customerOrderNumber())
+                .customerOrderPosition(cursor.customerOrderPosition())
+                .palletNumber(cursor.handlingUnitNumber())
+                .handlingUnitNumber(cursor.handlingUnitNumber())
+                .location(cursor.location())
+                .quantityOnHand(cursor.quantityTotal())
+                .build();
+    }
+
+    private void createStock(StockRecord newStockRecord, BigDecimal quantityChange) {
+        final StockRecord replaced = stockRecords.put(newStockRecord.getSequenceNumber(), newStockRecord);
+        if (replaced != null) {
+            notifyRemoved(replaced);
+        }
+        final BigDecimal change = quantityChange == null ? BigDecimal.ZERO : quantityChange;
+        newStockRecord.setQuantityOnHand(quantities.subtract(newStockRecord.getQuantityOnHand(), change));
+        notifyAdded(newStockRecord);
+    }
+
+    private void changeStockRecord(StockRecord stockRecord, int sequenceNumber, MovementEvent event,
+                                   BigDecimal quantityChange, BigDecimal quantityTotal, String location,
+                                   String handlingUnitNumber) {
+        final BigDecimal change = quantityChange == null ? BigDecimal.ZERO : quantityChange;
+        final BigDecimal newValue = quantities.subtract(stockRecord.getQuantityOnHand(), change);
+        if (stockRecord.getQuantityOnHand().compareTo(quantityTotal) != 0 && !UNCHECKED_TOTAL_EVENTS.contains(event)) {
             errors.add(new StockError(StockError.ErrorType.MOVEMENT_ERROR,
-                    "Stock record " + stockRecord.getSequenceNumber() + " quantity mismatch: " + movementRecord.sequenceNumber()
-                            + " (current=" + stockRecord.getQuantityOnHand() + ", movement=" + movementRecord.quantityTotal()
+                    "Stock record " + stockRecord.getSequenceNumber() + " quantity mismatch: " + sequenceNumber
+                            + " (current=" + stockRecord.getQuantityOnHand() + ", movement=" + quantityTotal
                             + ", change=" + change + ")", ""));
             LOGGER.warn("Stock record {} quantity mismatch for movement: {}, current: {}, movement: {}, change: {}",
-                    stockRecord.getSequenceNumber(), movementRecord.sequenceNumber(), stockRecord.getQuantityOnHand(), movementRecord.quantityTotal(), change);
+                    stockRecord.getSequenceNumber(), sequenceNumber, stockRecord.getQuantityOnHand(), quantityTotal, change);
         }
+        notifyRemoved(stockRecord);
         stockRecord.setQuantityOnHand(newValue);
-        stockRecord.setLocation(movementRecord.location());
-        stockRecord.setHandlingUnitNumber(movementRecord.handlingUnitNumber());
-        stockRecord.setPalletNumber(movementRecord.handlingUnitNumber());
+        stockRecord.setLocation(location);
+        stockRecord.setHandlingUnitNumber(handlingUnitNumber);
+        stockRecord.setPalletNumber(handlingUnitNumber);
+        notifyAdded(stockRecord);
+    }
+
+    private void removeStock(Integer stockNumber) {
+        final StockRecord removed = stockRecords.remove(stockNumber);
+        if (removed != null) {
+            notifyRemoved(removed);
+        }
+    }
+
+    private void notifyAdded(StockRecord stockRecord) {
+        for (int i = 0; i < changeListeners.size(); i++) {
+            changeListeners.get(i).stockAdded(stockRecord);
+        }
+    }
+
+    private void notifyApplied(int stockNumber, int sequenceNumber, MovementEvent event, BigDecimal quantityChange,
+                               BigDecimal quantityAfter, String location) {
+        for (int i = 0; i < movementListeners.size(); i++) {
+            movementListeners.get(i).movementApplied(stockNumber, sequenceNumber, event, quantityChange, quantityAfter,
+                    location);
+        }
+    }
+
+    private void notifyRemoved(StockRecord stockRecord) {
+        for (int i = 0; i < changeListeners.size(); i++) {
+            changeListeners.get(i).stockRemoved(stockRecord);
+        }
     }
 
     public StockRecord getStockRecord(int sequenceNumber) {
@@ -0,0 +1,39 @@
+package com.app.stock;
+
+import com.app.stock.model.StockRecord;
+
+import java.util.Set;
+
+/**
+ * Selects stocks by item number, location, client and stock number. A stock matches if it matches every criterion
+ * that is not empty; within a criterion any of the values may match.
+ */
+public record StockFilter(
+        Set<String> itemNumbers,
+        Set<String> locations,
+        Set<Integer> clients,
+        Set<Integer> stockNumbers
+) {
+    public StockFilter {
+        itemNumbers = Set.copyOf(itemNumbers);
+        locations = Set.copyOf(locations);
+        clients = Set.copyOf(clients);
+        stockNumbers = Set.copyOf(stockNumbers);
+    }
+
+    public boolean isEmpty() {
+        return itemNumbers.isEmpty() && locations.isEmpty() && clients.isEmpty() && stockNumbers.isEmpty();
+    }
+
+    public boolean matches(StockRecord stockRecord) {
+        return matches(stockRecord.getSequenceNumber(), stockRecord.getItemNumber(), stockRecord.getLocation(),
+                stockRecord.getClient());
+    }
+
+    public boolean matches(Integer stockNumber, String itemNumber, String location, Integer client) {
+        return (stockNumbers.isEmpty() || stockNumber != null && stockNumbers.contains(stockNumber))
+                && (itemNumbers.isEmpty() || itemNumber != null && itemNumbers.contains(itemNumber))
+                && (locations.isEmpty() || location != null && locations.contains(location))
+                && (clients.isEmpty() || client != null && clients.contains(client));
+    }
+}
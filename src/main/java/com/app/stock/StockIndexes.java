@@ -0,0 +1,103 @@
+package com.app.stock;
+
+import com.app.stock.model.StockRecord;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Stock numbers per location, handling unit and item number, kept up to date by {@link StockData} while movements
+ * are replayed. Keys are compared ignoring case, and the sorted keys allow lookups by prefix as well. Records
+ * without a value for a key are not indexed by it, so a lookup of {@code null} finds nothing.
+ */
+public class StockIndexes implements StockChangeListener {
+    private final Map<Key, NavigableMap<String, Set<Integer>>> indexes = new EnumMap<>(Key.class);
+
+    public StockIndexes() {
+        for (Key key : Key.values()) {
+            indexes.put(key, new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
+        }
+    }
+
+    @Override
+    public void stockAdded(StockRecord stockRecord) {
+        for (Key key : Key.values()) {
+            String value = key.valueOf(stockRecord);
+            if (value != null) {
+                indexes.get(key).computeIfAbsent(value, ignored -> new HashSet<>(2))
+                        .add(stockRecord.getSequenceNumber());
+            }
+        }
+    }
+
+    @Override
+    public void stockRemoved(StockRecord stockRecord) {
+        for (Key key : Key.values()) {
+            String value = key.valueOf(stockRecord);
+            if (value == null) {
+                continue;
+            }
+            NavigableMap<String, Set<Integer>> index = indexes.get(key);
+            Set<Integer> stockNumbers = index.get(value);
+            if (stockNumbers != null && stockNumbers.remove(stockRecord.getSequenceNumber()) && stockNumbers.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    /**
+     * The stock numbers whose {@code key} equals {@code value}.
+     */
+    public Set<Integer> stockNumbers(Key key, String value) {
+        Set<Integer> stockNumbers = value == null ? null : indexes.get(key).get(value);
+        return stockNumbers == null ? Set.of() : Set.copyOf(stockNumbers);
+    }
+
+    /**
+     * The stock numbers whose {@code key} starts with {@code prefix}.
+     */
+    public Set<Integer> stockNumbersWithPrefix(Key key, String prefix) {
+        Set<Integer> stockNumbers = new HashSet<>();
+        withPrefix(key, prefix).forEach(stockNumbers::addAll);
+        return stockNumbers;
+    }
+
+    /**
+     * The number of distinct values of {@code key}.
+     */
+    public int size(Key key) {
+        return indexes.get(key).size();
+    }
+
+    private Stream<Set<Integer>> withPrefix(Key key, String prefix) {
+        if (prefix == null) {
+            return Stream.empty();
+        }
+        Collection<Set<Integer>> matches = prefix.isEmpty() ? indexes.get(key).values()
+                : indexes.get(key).subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+        return matches.stream();
+    }
+
+    public enum Key {
+        LOCATION(StockRecord::getLocation),
+        HANDLING_UNIT(StockRecord::getHandlingUnitNumber),
+        ITEM_NUMBER(StockRecord::getItemNumber);
+
+        private final Function<StockRecord, String> value;
+
+        Key(Function<StockRecord, String> value) {
+            this.value = value;
+        }
+
+        String valueOf(StockRecord stockRecord) {
+            return value.apply(stockRecord);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.app.stock;
+
+import com.app.history.model.MovementEvent;
+import com.app.utils.CsvCharsets;
+import com.app.utils.CsvFieldUtils;
+import com.app.utils.ExternalLineSorter;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Per-stock ledger of the applied movements with the quantity after each of them, what the TUI shows for a single
+ * stock. Rows are appended to a temp file in replay order while the history is replayed. {@link #write} groups them by
+ * stock with an {@link ExternalLineSorter}, so memory stays within the sort budget however long the history is. Only
+ * rows of exported stocks are written, so a stock removed by the clean-up or the filters has no ledger rows either.
+ */
+public final class StockLedger implements MovementListener, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockLedger.class);
+    static final String HEADER = "STOCK_NUMBER,SEQUENCE_NUMBER,EVENT,QUANTITY_CHANGE,QUANTITY_AFTER,LOCATION";
+    private static final int IO_BUFFER_CHARS = 1 << 16;
+
+    private final Options options;
+    private final Path rows;
+    private final BufferedWriter writer;
+    private long rowCount;
+    private IOException failure;
+    private boolean closed;
+
+    private StockLedger(Options options, Path rows, BufferedWriter writer) {
+        this.options = options;
+        this.rows = rows;
+        this.writer = writer;
+    }
+
+    /**
+     * Creates the temp file of the rows in the options' temp directory.
+     */
+    public static Result<StockLedger, StockError> open(Options options) {
+        try {
+            Files.createDirectories(options.tempDirectory());
+            Path rows = Files.createTempFile(options.tempDirectory(), "ledger-", ".csv");
+            return Result.success(new StockLedger(options, rows,
+                    new BufferedWriter(Files.newBufferedWriter(rows, StandardCharsets.UTF_8), IO_BUFFER_CHARS)));
+        } catch (IOException e) {
+            LOGGER.error("Failed to create ledger in {}", options.tempDirectory(), e);
+            return Result.failure(StockError.writingError(options.tempDirectory().toString(),
+                    "Failed to create ledger: " + e.getMessage()));
+        }
+    }
+
+    @Override
+    public void movementApplied(int stockNumber, int sequenceNumber, MovementEvent event, BigDecimal quantityChange,
+                                BigDecimal quantityAfter, String location) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            writer.write(Integer.toString(stockNumber));
+            writer.write(',');
+            writer.write(Integer.toString(sequenceNumber));
+            writer.write(',');
+            writer.write(event == null ? "" : event.name());
+            writer.write(',');
+            writer.write(CsvFieldUtils.formatBigDecimal(quantityChange));
+            writer.write(',');
+            writer.write(CsvFieldUtils.formatBigDecimal(quantityAfter));
+            writer.write(',');
+            writer.write(CsvFieldUtils.escapeCsv(location));
+            writer.write('\n');
+            rowCount++;
+        } catch (IOException e) {
+            failure = e;
+            LOGGER.error("Failed to write ledger row to {}", rows, e);
+        }
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Writes {@code ledger_<timestamp>.csv} into {@code directory}: the rows of the {@code exported} stock numbers
+     * ordered by stock number and, within a stock, by sequence number, so the quantities read from the oldest
+     * movement to the newest.
+     */
+    public Result<Path, StockError> write(String directory, Charset charset, IntPredicate exported) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        Path ledgerFile = Path.of(directory).resolve("ledger_" + timestamp + ".csv");
+        try {
+            writer.close();
+            if (failure != null) {
+                throw failure;
+            }
+            Files.createDirectories(ledgerFile.getParent());
+            ExternalLineSorter sorter = new ExternalLineSorter(options.memoryBudgetBytes(), options.parallelism(),
+                    options.tempDirectory(), StockLedger::stockSequenceKey);
+            long written = 0;
+            try (Stream<String> lines = Files.lines(rows, StandardCharsets.UTF_8);
+                 Stream<String> sorted = sorter.sort(lines.filter(row -> exported.test(stockNumber(row))));
+                 Writer ledgerWriter = CsvCharsets.newWriter(ledgerFile, charset, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                ledgerWriter.write(HEADER);
+                ledgerWriter.write('\n');
+                for (Iterator<String> iterator = sorted.iterator(); iterator.hasNext(); ) {
+                    ledgerWriter.write(iterator.next());
+                    ledgerWriter.write('\n');
+                    written++;
+                }
+            }
+            LOGGER.info("Wrote {} of {} ledger rows to {}", written, rowCount, ledgerFile);
+            return Result.success(ledgerFile);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to write ledger to {}", ledgerFile, e);
+            return Result.failure(StockError.writingError(ledgerFile.toString(),
+                    "Failed to write ledger: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Deletes the temp file of the rows.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.close();
+            Files.deleteIfExists(rows);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete ledger rows {}: {}", rows, e.getMessage());
+        }
+    }
+
+    private static int stockNumber(String row) {
+        return Integer.parseInt(row, 0, row.indexOf(','), 10);
+    }
+
+    /**
+     * Sort key of a row: the stock number in the high and the sequence number in the low half. The sequence number is
+     * offset by {@code 2^31}, so negative numbers sort before positive ones as they do in the high half.
+     */
+    static long stockSequenceKey(String row) {
+        int stockEnd = row.indexOf(',');
+        int sequenceEnd = row.indexOf(',', stockEnd + 1);
+        long stockNumber = Integer.parseInt(row, 0, stockEnd, 10);
+        long sequenceNumber = Integer.parseInt(row, stockEnd + 1, sequenceEnd, 10);
+        return (stockNumber << 32) | (sequenceNumber - Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param memoryBudgetBytes heap used to sort the rows by stock
+     * @param parallelism       number of sorted runs written concurrently
+     * @param tempDirectory     directory of the rows and the sorted runs
+     */
+    public record Options(long memoryBudgetBytes, int parallelism, Path tempDirectory) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.app.stock;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.model.MovementRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+
+import java.util.List;
+
+/**
+ * Replays movements onto a stock, either held as {@link StockData} on the heap or in an {@link OffHeapStockStore}.
+ */
+public interface StockReplay {
+    void handleMovement(Result<MovementRecord, StockError> movement);
+
+    void handleMovement(MovementCursor cursor);
+
+    void handleMovementError(StockError error);
+
+    List<StockError> getErrors();
+
+    boolean isCriticalErrors();
+}
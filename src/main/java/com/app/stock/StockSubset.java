@@ -0,0 +1,91 @@
+package com.app.stock;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.model.MovementRecord;
+import com.app.stock.model.StockRecord;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The stocks a {@link StockFilter} may select, kept as bit sets of stock numbers so the movement replay can skip the
+ * lines of all other stocks. Stocks are selected by item number, client and stock number only: the location of a stock
+ * changes with its movements, and the one at the cutoff is only known after the replay. The replayed records are
+ * narrowed to the full filter with {@link StockData#retainMatching}. Snapshot stocks are decided up front. A stock
+ * that is not in the snapshot, e.g. one the replay recreates from a {@code DELETE} event, is decided by the first
+ * movement seen for it, which is its newest one.
+ */
+public final class StockSubset {
+    private final StockFilter selection;
+    private final Map<Integer, StockRecord> stockRecords = new HashMap<>();
+    private final BitSet decided = new BitSet();
+    private final BitSet selected = new BitSet();
+    private final int snapshotSize;
+
+    private StockSubset(StockFilter filter, Map<Integer, StockRecord> snapshot) {
+        this.selection = new StockFilter(filter.itemNumbers(), Set.of(), filter.clients(), filter.stockNumbers());
+        this.snapshotSize = snapshot.size();
+        snapshot.forEach((stockNumber, stockRecord) -> {
+            boolean matches = selection.matches(stockRecord);
+            if (matches) {
+                stockRecords.put(stockNumber, stockRecord);
+            }
+            if (stockNumber >= 0) {
+                decided.set(stockNumber);
+                selected.set(stockNumber, matches);
+            }
+        });
+    }
+
+    public static StockSubset select(Map<Integer, StockRecord> snapshot, StockFilter filter) {
+        return new StockSubset(filter, snapshot);
+    }
+
+    /**
+     * The selected snapshot records, as a new map the replay may modify.
+     */
+    public Map<Integer, StockRecord> stockRecords() {
+        return stockRecords;
+    }
+
+    public int snapshotSize() {
+        return snapshotSize;
+    }
+
+    /**
+     * Whether all movements of {@code stockNumber} can be skipped without looking at anything but the stock number.
+     */
+    public boolean skips(int stockNumber) {
+        return stockNumber >= 0 && decided.get(stockNumber) && !selected.get(stockNumber);
+    }
+
+    public boolean accepts(MovementCursor cursor) {
+        int stockNumber = cursor.stockNumber();
+        if (stockNumber < 0 || !decided.get(stockNumber)) {
+            return decide(stockNumber, selection.matches(stockNumber, cursor.itemNumber(), cursor.location(), cursor.client()));
+        }
+        return selected.get(stockNumber);
+    }
+
+    public boolean accepts(MovementRecord movementRecord) {
+        Integer stockNumber = movementRecord.stockNumber();
+        if (stockNumber == null) {
+            return true;
+        }
+        if (stockNumber < 0 || !decided.get(stockNumber)) {
+            return decide(stockNumber, selection.matches(stockNumber, movementRecord.itemNumber(),
+                    movementRecord.location(), movementRecord.client()));
+        }
+        return selected.get(stockNumber);
+    }
+
+    private boolean decide(int stockNumber, boolean matches) {
+        if (stockNumber >= 0) {
+            decided.set(stockNumber);
+            selected.set(stockNumber, matches);
+        }
+        return matches;
+    }
+}
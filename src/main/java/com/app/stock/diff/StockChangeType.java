@@ -0,0 +1,7 @@
+package com.app.stock.diff;
+
+public enum StockChangeType {
+    ADDED,
+    REMOVED,
+    CHANGED
+}
@@ -0,0 +1,351 @@
+package com.app.stock.diff;
+
+import com.app.stock.StockData;
+import com.app.stock.model.StockRecord;
+import com.app.stock.reader.CsvStockIO;
+import com.app.utils.CsvCharsets;
+import com.app.utils.ExternalLineSorter;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import static com.app.utils.CsvFieldUtils.*;
+
+/**
+ * Compares two stock states with a sorted merge on the stock sequence number. Both sides are consumed as
+ * ascending streams, so only the per item/location totals are kept in memory.
+ */
+public class StockDiffEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockDiffEngine.class);
+    private static final Comparator<Integer> SEQUENCE_ORDER = Comparator.nullsLast(Integer::compareTo);
+    private static final String DIFF_HEADER = "SEQ,CHANGE,FIELD,LEFT,RIGHT";
+    private static final String TOTALS_HEADER = "ITEM_NUMBER,LOCATION,LEFT_QUANTITY,RIGHT_QUANTITY,DIFFERENCE";
+    private static final long SORT_MEMORY_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+    private final Charset charset;
+
+    public StockDiffEngine() {
+        this(CsvCharsets.DEFAULT);
+    }
+
+    /**
+     * @param charset charset of the compared stock files and of the diff output
+     */
+    public StockDiffEngine(Charset charset) {
+        this.charset = charset;
+    }
+
+    public Result<StockDiffSummary, StockError> diff(StockData left, StockData right, String outputDirectory) {
+        if (left == null || right == null) {
+            return Result.failure(StockError.writingError(outputDirectory, "Stock data is null"));
+        }
+        return write(outputDirectory, sortedRecords(left), sortedRecords(right), () -> 0);
+    }
+
+    /**
+     * Compares two stock CSV files, typically two exports of {@code writeStocks}. Files sorted by sequence number are
+     * merged as they are read; a file found out of order, like a live {@code stock.csv}, is sorted externally and the
+     * diff starts over. Unparsable lines are skipped and counted, duplicate sequence numbers keep the first line.
+     */
+    public Result<StockDiffSummary, StockError> diff(String leftCsv, String rightCsv, String outputDirectory) {
+        boolean sortLeft = false;
+        boolean sortRight = false;
+        while (true) {
+            try {
+                return diff(leftCsv, sortLeft, rightCsv, sortRight, outputDirectory);
+            } catch (UnsortedInputException e) {
+                if (!sortLeft && e.source.equals(leftCsv)) {
+                    sortLeft = true;
+                } else if (!sortRight && e.source.equals(rightCsv)) {
+                    sortRight = true;
+                } else {
+                    return Result.failure(StockError.parseError(e.source, e.getMessage()));
+                }
+                LOGGER.info("{}, sorting it before comparing", e.getMessage());
+            }
+        }
+    }
+
+    private Result<StockDiffSummary, StockError> diff(String leftCsv, boolean sortLeft, String rightCsv,
+                                                      boolean sortRight, String outputDirectory) {
+        Result<Stream<Result<StockRecord, StockError>>, StockError> leftStocks = stream(leftCsv, sortLeft);
+        if (leftStocks.isFailure()) {
+            return Result.failure(leftStocks.error());
+        }
+        Result<Stream<Result<StockRecord, StockError>>, StockError> rightStocks = stream(rightCsv, sortRight);
+        if (rightStocks.isFailure()) {
+            leftStocks.getOrThrow().close();
+            return Result.failure(rightStocks.error());
+        }
+        try (Stream<Result<StockRecord, StockError>> leftStream = leftStocks.getOrThrow();
+             Stream<Result<StockRecord, StockError>> rightStream = rightStocks.getOrThrow()) {
+            SortedStockIterator leftRecords = new SortedStockIterator(leftCsv, leftStream.iterator());
+            SortedStockIterator rightRecords = new SortedStockIterator(rightCsv, rightStream.iterator());
+            return write(outputDirectory, leftRecords, rightRecords,
+                    () -> leftRecords.skippedLines + rightRecords.skippedLines);
+        }
+    }
+
+    private Result<Stream<Result<StockRecord, StockError>>, StockError> stream(String csvFile, boolean sort) {
+        CsvStockIO stockIO = new CsvStockIO(csvFile, false, charset);
+        if (!sort) {
+            return stockIO.streamStocks();
+        }
+        return stockIO.streamStocks(new ExternalLineSorter(SORT_MEMORY_BYTES, 1,
+                Path.of(System.getProperty("java.io.tmpdir")), StockDiffEngine::sequenceKey));
+    }
+
+    /**
+     * Sort key of a stock line: its sequence number, unreadable ones last like records without a sequence number.
+     */
+    static long sequenceKey(String line) {
+        int end = line.indexOf(',');
+        try {
+            return Integer.parseInt(line, 0, end < 0 ? line.length() : end, 10);
+        } catch (NumberFormatException _) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private Result<StockDiffSummary, StockError> write(String outputDirectory, Iterator<StockRecord> left,
+                                                       Iterator<StockRecord> right, LongSupplier skippedLines) {
+        Path diffFile = null;
+        try {
+            LOGGER.info("Writing stock diff to {}", outputDirectory);
+            Path directory = Path.of(outputDirectory);
+            Files.createDirectories(directory);
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            diffFile = directory.resolve("diff_" + timestamp + ".csv");
+            Path totalsFile = directory.resolve("diff_totals_" + timestamp + ".csv");
+
+            StockTotals totals = new StockTotals();
+            Counts counts;
+            try (Writer writer = CsvCharsets.newWriter(diffFile, charset)) {
+                writer.write(DIFF_HEADER);
+                writer.write(System.lineSeparator());
+                counts = compare(left, right, difference -> writeDifference(writer, difference), totals);
+            }
+            try (Writer writer = CsvCharsets.newWriter(totalsFile, charset)) {
+                writer.write(TOTALS_HEADER);
+                writer.write(System.lineSeparator());
+                totals.forEach((key, quantities) -> writeTotal(writer, key, quantities));
+            }
+
+            StockDiffSummary summary = new StockDiffSummary(counts.added, counts.removed, counts.changed,
+                    counts.unchanged, skippedLines.getAsLong(), diffFile, totalsFile);
+            LOGGER.info("Stock diff complete. Added: {}, removed: {}, changed: {}, unchanged: {}, skipped lines: {}",
+                    summary.added(), summary.removed(), summary.changed(), summary.unchanged(), summary.skippedLines());
+            return Result.success(summary);
+        } catch (UnsortedInputException e) {
+            deletePartialOutput(diffFile);
+            throw e;
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to write stock diff to {}", outputDirectory, e);
+            return Result.failure(StockError.writingError(outputDirectory, "Failed to write diff files: " + e.getMessage()));
+        }
+    }
+
+    Counts compare(Iterator<StockRecord> left, Iterator<StockRecord> right, Consumer<StockDifference> differences,
+                   StockTotals totals) {
+        Counts counts = new Counts();
+        StockRecord leftRecord = next(left);
+        StockRecord rightRecord = next(right);
+        while (leftRecord != null || rightRecord != null) {
+            int order;
+            if (leftRecord == null) {
+                order = 1;
+            } else if (rightRecord == null) {
+                order = -1;
+            } else {
+                order = SEQUENCE_ORDER.compare(leftRecord.getSequenceNumber(), rightRecord.getSequenceNumber());
+            }
+
+            if (order < 0) {
+                differences.accept(new StockDifference(leftRecord.getSequenceNumber(), StockChangeType.REMOVED, "",
+                        formatBigDecimal(leftRecord.getQuantityOnHand()), ""));
+                totals.addLeft(leftRecord);
+                counts.removed++;
+                leftRecord = next(left);
+            } else if (order > 0) {
+                differences.accept(new StockDifference(rightRecord.getSequenceNumber(), StockChangeType.ADDED, "",
+                        "", formatBigDecimal(rightRecord.getQuantityOnHand())));
+                totals.addRight(rightRecord);
+                counts.added++;
+                rightRecord = next(right);
+            } else {
+                if (compareFields(leftRecord, rightRecord, differences)) {
+                    counts.changed++;
+                } else {
+                    counts.unchanged++;
+                }
+                totals.addLeft(leftRecord);
+                totals.addRight(rightRecord);
+                leftRecord = next(left);
+                rightRecord = next(right);
+            }
+        }
+        return counts;
+    }
+
+    private boolean compareFields(StockRecord left, StockRecord right, Consumer<StockDifference> differences) {
+        boolean changed = false;
+        if (!sameQuantity(left.getQuantityOnHand(), right.getQuantityOnHand())) {
+            differences.accept(changed(left, "QUANTITY", formatBigDecimal(left.getQuantityOnHand()),
+                    formatBigDecimal(right.getQuantityOnHand())));
+            changed = true;
+        }
+        if (!Objects.equals(left.getLocation(), right.getLocation())) {
+            differences.accept(changed(left, "LOCATION", formatString(left.getLocation()), formatString(right.getLocation())));
+            changed = true;
+        }
+        if (!Objects.equals(left.getHandlingUnitNumber(), right.getHandlingUnitNumber())) {
+            differences.accept(changed(left, "HANDLING_UNIT", formatString(left.getHandlingUnitNumber()),
+                    formatString(right.getHandlingUnitNumber())));
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static StockDifference changed(StockRecord stockRecord, String field, String leftValue, String rightValue) {
+        return new StockDifference(stockRecord.getSequenceNumber(), StockChangeType.CHANGED, field, leftValue, rightValue);
+    }
+
+    private static boolean sameQuantity(BigDecimal left, BigDecimal right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        return left.compareTo(right) == 0;
+    }
+
+    private static StockRecord next(Iterator<StockRecord> records) {
+        return records.hasNext() ? records.next() : null;
+    }
+
+    private static Iterator<StockRecord> sortedRecords(StockData stockData) {
+        Map<Integer, StockRecord> stockRecords = stockData.getStockRecords();
+        Integer[] keys = stockRecords.keySet().toArray(new Integer[0]);
+        Arrays.sort(keys, SEQUENCE_ORDER);
+        return Arrays.stream(keys).map(stockRecords::get).iterator();
+    }
+
+    private static void writeDifference(Writer writer, StockDifference difference) {
+        writeRow(writer, String.join(",",
+                formatInteger(difference.sequenceNumber()),
+                difference.type().name(),
+                escapeCsv(difference.field()),
+                escapeCsv(difference.leftValue()),
+                escapeCsv(difference.rightValue())));
+    }
+
+    private static void writeTotal(Writer writer, StockTotals.Key key, BigDecimal[] quantities) {
+        writeRow(writer, String.join(",",
+                escapeCsv(key.itemNumber()),
+                escapeCsv(key.location()),
+                formatBigDecimal(quantities[0]),
+                formatBigDecimal(quantities[1]),
+                formatBigDecimal(quantities[1].subtract(quantities[0]))));
+    }
+
+    private static void writeRow(Writer writer, String line) {
+        try {
+            writer.write(line);
+            writer.write(System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deletePartialOutput(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete partial diff file {}", file, e);
+        }
+    }
+
+    static final class Counts {
+        long added;
+        long removed;
+        long changed;
+        long unchanged;
+    }
+
+    private static final class SortedStockIterator implements Iterator<StockRecord> {
+        private final String source;
+        private final Iterator<Result<StockRecord, StockError>> results;
+        private StockRecord next;
+        private StockRecord previous;
+        private long skippedLines;
+
+        private SortedStockIterator(String source, Iterator<Result<StockRecord, StockError>> results) {
+            this.source = source;
+            this.results = results;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && results.hasNext()) {
+                Result<StockRecord, StockError> result = results.next();
+                if (result.isFailure()) {
+                    skippedLines++;
+                    continue;
+                }
+                StockRecord candidate = result.getOrThrow();
+                if (previous != null) {
+                    int order = SEQUENCE_ORDER.compare(previous.getSequenceNumber(), candidate.getSequenceNumber());
+                    if (order == 0) {
+                        continue;
+                    }
+                    if (order > 0) {
+                        throw new UnsortedInputException(source, "Stock file " + source + " is not sorted by sequence number at "
+                                + formatInteger(candidate.getSequenceNumber()));
+                    }
+                }
+                next = candidate;
+            }
+            return next != null;
+        }
+
+        @Override
+        public StockRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            previous = next;
+            next = null;
+            return previous;
+        }
+    }
+
+    private static final class UnsortedInputException extends RuntimeException {
+        private final String source;
+
+        private UnsortedInputException(String source, String message) {
+            super(message);
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.app.stock.diff;
+
+import java.nio.file.Path;
+
+public record StockDiffSummary(
+        long added,
+        long removed,
+        long changed,
+        long unchanged,
+        long skippedLines,
+        Path diffFile,
+        Path totalsFile
+) {
+}
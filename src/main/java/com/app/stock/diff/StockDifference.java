@@ -0,0 +1,10 @@
+package com.app.stock.diff;
+
+public record StockDifference(
+        Integer sequenceNumber,
+        StockChangeType type,
+        String field,
+        String leftValue,
+        String rightValue
+) {
+}
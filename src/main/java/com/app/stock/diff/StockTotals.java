@@ -0,0 +1,40 @@
+package com.app.stock.diff;
+
+import com.app.stock.model.StockRecord;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+class StockTotals {
+    private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(String::compareTo);
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::itemNumber, NULLS_FIRST)
+            .thenComparing(Key::location, NULLS_FIRST);
+
+    private final Map<Key, BigDecimal[]> totals = new TreeMap<>(KEY_ORDER);
+
+    void addLeft(StockRecord stockRecord) {
+        add(stockRecord, 0);
+    }
+
+    void addRight(StockRecord stockRecord) {
+        add(stockRecord, 1);
+    }
+
+    void forEach(BiConsumer<Key, BigDecimal[]> consumer) {
+        totals.forEach(consumer);
+    }
+
+    private void add(StockRecord stockRecord, int side) {
+        BigDecimal[] quantities = totals.computeIfAbsent(new Key(stockRecord.getItemNumber(), stockRecord.getLocation()),
+                ignored -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+        if (stockRecord.getQuantityOnHand() != null) {
+            quantities[side] = quantities[side].add(stockRecord.getQuantityOnHand());
+        }
+    }
+
+    record Key(String itemNumber, String location) {
+    }
+}
@@ -0,0 +1,276 @@
+package com.app.stock.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compact binary encoding of {@link StockRecord}. Strings are written as ids into a string table that is
+ * collected while encoding and has to be stored alongside the records; decoding reads straight from a
+ * {@link ByteBuffer}, so a memory mapped file can be decoded without copying it onto the heap first.
+ */
+public final class StockRecordCodec {
+    private static final int NULL_STRING = -1;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+    private static final byte NULL_VALUE = 0;
+    private static final byte COMPACT_VALUE = 1;
+    private static final byte TEXT_VALUE = 2;
+
+    private final List<String> strings = new ArrayList<>();
+    private final ToIntFunction<String> stringIds;
+
+    public StockRecordCodec() {
+        Map<String, Integer> ids = new HashMap<>();
+        this.stringIds = value -> ids.computeIfAbsent(value, newValue -> {
+            strings.add(newValue);
+            return strings.size() - 1;
+        });
+    }
+
+    /**
+     * Writes strings as ids of an external string table, e.g. an off-heap dictionary; {@link #strings()} stays empty.
+     */
+    public StockRecordCodec(ToIntFunction<String> stringIds) {
+        this.stringIds = stringIds;
+    }
+
+    public List<String> strings() {
+        return strings;
+    }
+
+    public void encode(StockRecord stockRecord, DataOutput out) throws IOException {
+        writeInteger(out, stockRecord.getSequenceNumber());
+        writeString(out, stockRecord.getItemNumber());
+        writeInteger(out, stockRecord.getClient());
+        writeString(out, stockRecord.getBatch1());
+        writeString(out, stockRecord.getBatch2());
+        writeString(out, stockRecord.getSerialNumber());
+        writeString(out, stockRecord.getCustomerOrderNumber());
+        writeString(out, stockRecord.getCustomerOrderPosition());
+        writeString(out, stockRecord.getPalletNumber());
+        writeString(out, stockRecord.getHandlingUnitNumber());
+        writeString(out, stockRecord.getLocation());
+        writeInteger(out, stockRecord.getCondition());
+        writeInteger(out, stockRecord.getLockIndicator());
+        writeInteger(out, stockRecord.getHandlingUnitType());
+        writeDecimal(out, stockRecord.getWeight());
+        writeDecimal(out, stockRecord.getQuantityAdded());
+        writeDecimal(out, stockRecord.getQuantityOnHand());
+        writeDecimal(out, stockRecord.getQuantityReserved());
+        writeString(out, stockRecord.getOrderNumber());
+        writeString(out, stockRecord.getOrderPosition());
+        writeDate(out, stockRecord.getStrategyDate());
+        writeDate(out, stockRecord.getInventoryDate());
+        writeString(out, stockRecord.getInventoryTime());
+        writeString(out, stockRecord.getInventoryUser());
+        writeDate(out, stockRecord.getMovementDate());
+        writeString(out, stockRecord.getMovementTime());
+        writeString(out, stockRecord.getInventoryIndicator());
+        writeInteger(out, stockRecord.getPositionOnPallet());
+        writeString(out, stockRecord.getBestBeforeDate());
+        writeString(out, stockRecord.getInstabilityFlag());
+        writeInteger(out, stockRecord.getInboundStrategy());
+        writeDate(out, stockRecord.getInboundDate());
+        writeString(out, stockRecord.getInboundNumber());
+        writeInteger(out, stockRecord.getInboundPositionNumber());
+        writeString(out, stockRecord.getOpenedIndicator());
+        writeString(out, stockRecord.getQualitySwapFlag());
+        writeDecimal(out, stockRecord.getQualitySwapDifference());
+        writeDecimal(out, stockRecord.getQuantityDecimal());
+        writeInteger(out, stockRecord.getConversionNumerator());
+        writeInteger(out, stockRecord.getConversionDenominator());
+        writeDecimal(out, stockRecord.getNetWeight());
+        writeDecimal(out, stockRecord.getGrossWeight());
+        writeInteger(out, stockRecord.getReferenceBme());
+        writeInteger(out, stockRecord.getReferenceZeh());
+        writeInteger(out, stockRecord.getReferenceLfe());
+        writeInteger(out, stockRecord.getReferenceVke());
+        writeInteger(out, stockRecord.getReferencePallet());
+        writeDate(out, stockRecord.getCreatedDate());
+        writeString(out, stockRecord.getCreatedTime());
+        writeString(out, stockRecord.getCreatedUser());
+        writeDate(out, stockRecord.getModifiedDate());
+        writeString(out, stockRecord.getModifiedTime());
+        writeString(out, stockRecord.getModifiedUser());
+        writeString(out, stockRecord.getLabelUser());
+        writeString(out, stockRecord.getLabelTime());
+        writeDate(out, stockRecord.getLabelDate());
+        writeInteger(out, stockRecord.getPickSequenceNumber());
+        writeString(out, stockRecord.getPurchaseOrderNumber());
+        writeString(out, stockRecord.getPurchaseOrderPosition());
+        writeDate(out, stockRecord.getFeedbackDate());
+        writeString(out, stockRecord.getFeedbackTime());
+        writeInteger(out, stockRecord.getFeedbackSequenceNumber());
+        writeString(out, stockRecord.getFeedbackIndicator());
+        writeString(out, stockRecord.getPlantNumber());
+        writeString(out, stockRecord.getMiscText1());
+        writeString(out, stockRecord.getMiscText2());
+        writeString(out, stockRecord.getQualitySwapChecked());
+        writeString(out, stockRecord.getBypassIndicator());
+        writeString(out, stockRecord.getInspectionFlag());
+        writeString(out, stockRecord.getAklKomIndicator());
+        writeString(out, stockRecord.getAklCapableIndicator());
+        writeDecimal(out, stockRecord.getAklWeightToleranceLot());
+        writeString(out, stockRecord.getStorageLocation());
+        writeInteger(out, stockRecord.getReferenceIu());
+        writeInteger(out, stockRecord.getReferenceMu());
+        writeInteger(out, stockRecord.getFeedbackSequenceNumberOriginal());
+    }
+
+    public static StockRecord decode(ByteBuffer in, String[] strings) {
+        return decode(in, id -> strings[id]);
+    }
+
+    public static StockRecord decode(ByteBuffer in, IntFunction<String> strings) {
+        return StockRecord.builder()
+                .sequenceNumber(readInteger(in))
+                .itemNumber(readString(in, strings))
+                .client(readInteger(in))
+                .batch1(readString(in, strings))
+                .batch2(readString(in, strings))
+                .serialNumber(readString(in, strings))
+                .customerOrderNumber(readString(in, strings))
+                .customerOrderPosition(readString(in, strings))
+                .palletNumber(readString(in, strings))
+                .handlingUnitNumber(readString(in, strings))
+                .location(readString(in, strings))
+                .condition(readInteger(in))
+                .lockIndicator(readInteger(in))
+                .handlingUnitType(readInteger(in))
+                .weight(readDecimal(in, strings))
+                .quantityAdded(readDecimal(in, strings))
+                .quantityOnHand(readDecimal(in, strings))
+                .quantityReserved(readDecimal(in, strings))
+                .orderNumber(readString(in, strings))
+                .orderPosition(readString(in, strings))
+                .strategyDate(readDate(in))
+                .inventoryDate(readDate(in))
+                .inventoryTime(readString(in, strings))
+                .inventoryUser(readString(in, strings))
+                .movementDate(readDate(in))
+                .movementTime(readString(in, strings))
+                .inventoryIndicator(readString(in, strings))
+                .positionOnPallet(readInteger(in))
+                .bestBeforeDate(readString(in, strings))
+                .instabilityFlag(readString(in, strings))
+                .inboundStrategy(readInteger(in))
+                .inboundDate(readDate(in))
+                .inboundNumber(readString(in, strings))
+                .inboundPositionNumber(readInteger(in))
+                .openedIndicator(readString(in, strings))
+                .qualitySwapFlag(readString(in, strings))
+                .qualitySwapDifference(readDecimal(in, strings))
+                .quantityDecimal(readDecimal(in, strings))
+                .conversionNumerator(readInteger(in))
+                .conversionDenominator(readInteger(in))
+                .netWeight(readDecimal(in, strings))
+                .grossWeight(readDecimal(in, strings))
+                .referenceBme(readInteger(in))
+                .referenceZeh(readInteger(in))
+                .referenceLfe(readInteger(in))
+                .referenceVke(readInteger(in))
+                .referencePallet(readInteger(in))
+                .createdDate(readDate(in))
+                .createdTime(readString(in, strings))
+                .createdUser(readString(in, strings))
+                .modifiedDate(readDate(in))
+                .modifiedTime(readString(in, strings))
+                .modifiedUser(readString(in, strings))
+                .labelUser(readString(in, strings))
+                .labelTime(readString(in, strings))
+                .labelDate(readDate(in))
+                .pickSequenceNumber(readInteger(in))
+                .purchaseOrderNumber(readString(in, strings))
+                .purchaseOrderPosition(readString(in, strings))
+                .feedbackDate(readDate(in))
+                .feedbackTime(readString(in, strings))
+                .feedbackSequenceNumber(readInteger(in))
+                .feedbackIndicator(readString(in, strings))
+                .plantNumber(readString(in, strings))
+                .miscText1(readString(in, strings))
+                .miscText2(readString(in, strings))
+                .qualitySwapChecked(readString(in, strings))
+                .bypassIndicator(readString(in, strings))
+                .inspectionFlag(readString(in, strings))
+                .aklKomIndicator(readString(in, strings))
+                .aklCapableIndicator(readString(in, strings))
+                .aklWeightToleranceLot(readDecimal(in, strings))
+                .storageLocation(readString(in, strings))
+                .referenceIu(readInteger(in))
+                .referenceMu(readInteger(in))
+                .feedbackSequenceNumberOriginal(readInteger(in))
+                .build();
+    }
+
+    private void writeInteger(DataOutput out, Integer value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+            return;
+        }
+        out.writeByte(COMPACT_VALUE);
+        out.writeInt(value);
+    }
+
+    private void writeString(DataOutput out, String value) throws IOException {
+        out.writeInt(value == null ? NULL_STRING : stringId(value));
+    }
+
+    private void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+            return;
+        }
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            out.writeByte(COMPACT_VALUE);
+            out.writeLong(unscaled.longValue());
+            out.writeInt(value.scale());
+            return;
+        }
+        out.writeByte(TEXT_VALUE);
+        out.writeInt(stringId(value.toString()));
+    }
+
+    private void writeDate(DataOutput out, LocalDate value) throws IOException {
+        out.writeInt(value == null ? NULL_DATE : Math.toIntExact(value.toEpochDay()));
+    }
+
+    private int stringId(String value) {
+        return stringIds.applyAsInt(value);
+    }
+
+    private static Integer readInteger(ByteBuffer in) {
+        return in.get() == NULL_VALUE ? null : in.getInt();
+    }
+
+    private static String readString(ByteBuffer in, IntFunction<String> strings) {
+        int id = in.getInt();
+        return id == NULL_STRING ? null : strings.apply(id);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in, IntFunction<String> strings) {
+        byte tag = in.get();
+        if (tag == NULL_VALUE) {
+            return null;
+        }
+        if (tag == COMPACT_VALUE) {
+            long unscaled = in.getLong();
+            return BigDecimal.valueOf(unscaled, in.getInt());
+        }
+        return new BigDecimal(strings.apply(in.getInt()));
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        int epochDay = in.getInt();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
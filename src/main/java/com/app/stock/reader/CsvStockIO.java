@@ -1,8 +1,13 @@
 package com.app.stock.reader;
 
+import com.app.stock.OffHeapStockData;
+import com.app.stock.OffHeapStockStore;
+import com.app.stock.StockAggregates;
 import com.app.stock.StockData;
 import com.app.stock.model.StockRecord;
 import com.app.stock.model.StockRecordFactory;
+import com.app.utils.CsvCharsets;
+import com.app.utils.ExternalLineSorter;
 import com.app.utils.Result;
 import com.app.utils.StockError;
 import org.slf4j.Logger;
@@ -10,15 +15,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -26,10 +39,34 @@ import static com.app.utils.CsvFieldUtils.*;
 
 public class CsvStockIO implements StockIO {
     private final String csvFile;
+    private final boolean snapshotCacheEnabled;
+    private final int parallelism;
+    private final int chunkBytes;
+    private final Charset charset;
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvStockIO.class);
 
     public CsvStockIO(String csvFile) {
+        this(csvFile, false);
+    }
+
+    public CsvStockIO(String csvFile, boolean snapshotCacheEnabled) {
+        this(csvFile, snapshotCacheEnabled, CsvCharsets.DEFAULT);
+    }
+
+    /**
+     * @param charset charset of the stock CSV and of the written output files
+     */
+    public CsvStockIO(String csvFile, boolean snapshotCacheEnabled, Charset charset) {
+        this(csvFile, snapshotCacheEnabled, charset, Runtime.getRuntime().availableProcessors(),
+                ParallelStockLoader.DEFAULT_CHUNK_BYTES);
+    }
+
+    CsvStockIO(String csvFile, boolean snapshotCacheEnabled, Charset charset, int parallelism, int chunkBytes) {
         this.csvFile = csvFile;
+        this.snapshotCacheEnabled = snapshotCacheEnabled;
+        this.charset = charset;
+        this.parallelism = parallelism;
+        this.chunkBytes = chunkBytes;
     }
 
     private static void writeLine(java.io.Writer writer, String line) {
@@ -41,44 +78,27 @@ public class CsvStockIO implements StockIO {
         }
     }
 
-    private static String csvEscape(String value) {
-        if (value == null) {
-            return "";
-        }
-        boolean needsQuotes = value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r");
-        if (!needsQuotes) {
-            return value;
-        }
-        String escaped = value.replace("\"", "\"\"");
-        return "\"" + escaped + "\"";
-    }
-
     @Override
     public Result<StockData, StockError> readStocks() {
         LOGGER.info("Reading stock CSV: {}", csvFile);
         Path filePath = Path.of(csvFile);
         try {
-            try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-                String firstLine = reader.readLine();
-                if (firstLine == null) {
-                    LOGGER.info("Stock CSV {} is empty", csvFile);
-                    return Result.success(new StockData(Map.of()));
-                }
-                Stream<String> stream = reader.lines();
-                if (!isHeaderLine(firstLine)) {
-                    stream = Stream.concat(Stream.of(firstLine), stream);
-                }
-                final Map<Integer, StockRecord> stockRecordMap = stream
-                        .map(StockRecordFactory::createFromCsv)
-                        .filter(Result::isSuccessful)
-                        .collect(Collectors.toMap(
-                                result -> result.getOrThrow().getSequenceNumber(),
-                                Result::getOrThrow,
-                                (existing, replacement) -> existing
-                        ));
-                LOGGER.info("Loaded {} stock records from {}", stockRecordMap.size(), csvFile);
-                return Result.success(new StockData(stockRecordMap));
+            if (!snapshotCacheEnabled) {
+                return Result.success(toStockData(parseStocks(filePath)));
+            }
+            StockSnapshotCache cache = new StockSnapshotCache(filePath, charset);
+            StockSnapshotCache.SourceFingerprint fingerprint = cache.fingerprint();
+            Optional<Map<Integer, StockRecord>> cached = cache.load(fingerprint);
+            if (cached.isPresent()) {
+                return Result.success(new StockData(cached.get()));
+            }
+            ParallelStockLoader.Loaded loaded = parseStocks(filePath);
+            if (loaded.errors().isEmpty()) {
+                cache.store(fingerprint, loaded.stocks());
+            } else {
+                LOGGER.info("Not caching stock CSV {} because some lines failed to parse", csvFile);
             }
+            return Result.success(toStockData(loaded));
         } catch (IOException e) {
             LOGGER.error("Failed to read stock CSV: {}", csvFile, e);
             return Result.failure(StockError.parseError(csvFile, "Failed to read CSV file: " + e.getMessage()));
@@ -88,11 +108,195 @@ public class CsvStockIO implements StockIO {
         }
     }
 
+    public Result<Stream<Result<StockRecord, StockError>>, StockError> streamStocks() {
+        try {
+            return Result.success(openStocks(Path.of(csvFile)));
+        } catch (IOException e) {
+            LOGGER.error("Failed to read stock CSV: {}", csvFile, e);
+            return Result.failure(StockError.parseError(csvFile, "Failed to read CSV file: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Like {@link #streamStocks()}, but the lines are sorted by {@code sorter} first, e.g. for a live stock file that is
+     * not in sequence order. The whole file is read before the stream is returned.
+     */
+    public Result<Stream<Result<StockRecord, StockError>>, StockError> streamStocks(ExternalLineSorter sorter) {
+        try (Stream<String> lines = openLines(Path.of(csvFile))) {
+            return Result.success(sorter.sort(lines).map(StockRecordFactory::createFromCsv));
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to sort stock CSV: {}", csvFile, e);
+            return Result.failure(StockError.parseError(csvFile, "Failed to sort CSV file: " + e.getMessage()));
+        }
+    }
+
+    private ParallelStockLoader.Loaded parseStocks(Path filePath) throws IOException {
+        ParallelStockLoader.Loaded loaded = new ParallelStockLoader(filePath, charset, parallelism, chunkBytes).load();
+        LOGGER.info("Loaded {} stock records from {}", loaded.stocks().size(), csvFile);
+        return loaded;
+    }
+
+    /**
+     * Keeps the errors of unparsable lines and adds a summary with the number of skipped lines per error type.
+     */
+    private StockData toStockData(ParallelStockLoader.Loaded loaded) {
+        StockData stockData = new StockData(loaded.stocks());
+        stockData.addErrors(withSummary(loaded.errors(), loaded.lines()));
+        return stockData;
+    }
+
+    private List<StockError> withSummary(List<StockError> errors, long lines) {
+        if (errors.isEmpty()) {
+            return errors;
+        }
+        Map<StockError.ErrorType, Long> counts = errors.stream()
+                .collect(Collectors.groupingBy(StockError::type, TreeMap::new, Collectors.counting()));
+        String summary = "Skipped %d of %d stock lines: %s".formatted(errors.size(), lines,
+                counts.entrySet().stream()
+                        .map(entry -> entry.getKey() + "=" + entry.getValue())
+                        .collect(Collectors.joining(", ")));
+        LOGGER.warn("{} in {}", summary, csvFile);
+        List<StockError> withSummary = new ArrayList<>(errors);
+        withSummary.add(StockError.parseError(csvFile, summary));
+        return withSummary;
+    }
+
+    /**
+     * Streams the stock CSV into {@code store} without holding the records on the heap. As with {@link #readStocks()},
+     * the first record of a duplicated sequence number wins and unparsable lines are reported with a summary. The
+     * snapshot cache is not used.
+     */
+    public Result<OffHeapStockData, StockError> readStocks(OffHeapStockStore store, LocalDate stockDate) {
+        LOGGER.info("Reading stock CSV off-heap: {}", csvFile);
+        List<StockError> errors = new ArrayList<>();
+        long lines = 0;
+        try (Stream<Result<StockRecord, StockError>> stocks = openStocks(Path.of(csvFile))) {
+            for (Iterator<Result<StockRecord, StockError>> iterator = stocks.iterator(); iterator.hasNext(); lines++) {
+                Result<StockRecord, StockError> stockRecord = iterator.next();
+                if (stockRecord.isSuccessful()) {
+                    store.putIfAbsent(stockRecord.getOrThrow());
+                } else {
+                    errors.add(stockRecord.error());
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to read stock CSV: {}", csvFile, e);
+            return Result.failure(StockError.parseError(csvFile, "Failed to read CSV file: " + e.getMessage()));
+        }
+        LOGGER.info("Loaded {} stock records from {}", store.size(), csvFile);
+        OffHeapStockData stockData = new OffHeapStockData(store, stockDate);
+        stockData.addErrors(withSummary(errors, lines));
+        return Result.success(stockData);
+    }
+
+    /**
+     * Passes every parsable stock line to {@code handler} together with its record, in file order and without holding
+     * the records. Returns the errors of the unparsable lines with the same summary as {@link #readStocks()}.
+     */
+    public Result<List<StockError>, StockError> scanStocks(BiConsumer<StockRecord, String> handler) {
+        List<StockError> errors = new ArrayList<>();
+        long lines = 0;
+        try (Stream<String> stockLines = openLines(Path.of(csvFile))) {
+            for (Iterator<String> iterator = stockLines.iterator(); iterator.hasNext(); lines++) {
+                String line = iterator.next();
+                Result<StockRecord, StockError> stockRecord = StockRecordFactory.createFromCsv(line);
+                if (stockRecord.isSuccessful()) {
+                    handler.accept(stockRecord.getOrThrow(), line);
+                } else {
+                    errors.add(stockRecord.error());
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to read stock CSV: {}", csvFile, e);
+            return Result.failure(StockError.parseError(csvFile, "Failed to read CSV file: " + e.getMessage()));
+        }
+        return Result.success(withSummary(errors, lines));
+    }
+
+    private Stream<Result<StockRecord, StockError>> openStocks(Path filePath) throws IOException {
+        return openLines(filePath).map(StockRecordFactory::createFromCsv);
+    }
+
+    private Stream<String> openLines(Path filePath) throws IOException {
+        BufferedReader reader = CsvCharsets.newReader(filePath, charset);
+        try {
+            String firstLine = reader.readLine();
+            if (firstLine == null) {
+                LOGGER.info("Stock CSV {} is empty", csvFile);
+                reader.close();
+                return Stream.empty();
+            }
+            Stream<String> stream = reader.lines().onClose(() -> closeReader(reader));
+            if (!isHeaderLine(firstLine)) {
+                stream = Stream.concat(Stream.of(firstLine), stream);
+            }
+            return stream;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    private static void closeReader(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public Result<Void, StockError> writeStocks(StockData stockData, String path) {
         if (stockData == null) {
             return Result.failure(StockError.writingError(path, "Stock data is null"));
         }
+        return writeStocks(path, () -> stockData.getStockRecords().values().stream()
+                        .sorted(Comparator.comparing(StockRecord::getSequenceNumber, Comparator.nullsLast(Integer::compareTo)))
+                        .map(CsvStockIO::stockRecordToCsv),
+                stockData.getStockRecords().size(), stockData.getErrors(), stockData.getAggregates().orElse(null));
+    }
+
+    /**
+     * {@link StockData#cleanUp() Cleans up} {@code stockData} and writes the same files as
+     * {@link #writeStocks(StockData, String)}, collecting the remaining records for the export in the same pass.
+     *
+     * @return the number of stock records the clean-up removed
+     */
+    public Result<Integer, StockError> cleanUpAndWriteStocks(StockData stockData, String path) {
+        if (stockData == null) {
+            return Result.failure(StockError.writingError(path, "Stock data is null"));
+        }
+        final int sizeBeforeCleanUp = stockData.getStockRecords().size();
+        final List<StockRecord> sorted = stockData.cleanUpSorted();
+        LOGGER.info("Cleaned up stock records. Before: {}, After: {}", sizeBeforeCleanUp, sorted.size());
+        return writeStocks(path, () -> sorted.stream().map(CsvStockIO::stockRecordToCsv), sorted.size(),
+                stockData.getErrors(), stockData.getAggregates().orElse(null))
+                .map(ignored -> sizeBeforeCleanUp - sorted.size());
+    }
+
+    /**
+     * Writes the same files as {@link #writeStocks(StockData, String)}; records are decoded from the store one at a
+     * time and the aggregates are computed in an extra pass over it.
+     */
+    public Result<Void, StockError> writeStocks(OffHeapStockData stockData, String path) {
+        if (stockData == null) {
+            return Result.failure(StockError.writingError(path, "Stock data is null"));
+        }
+        return writeStocks(path, () -> stockData.records().map(CsvStockIO::stockRecordToCsv),
+                stockData.getStore().size(), stockData.getErrors(), stockData.aggregates());
+    }
+
+    /**
+     * Writes the same files as {@link #writeStocks(StockData, String)} from stock lines that are already formatted by
+     * {@link #stockRecordToCsv(StockRecord)} and sorted by sequence number.
+     */
+    public Result<Void, StockError> writeStockLines(String path, Supplier<Stream<String>> sortedLines, int recordCount,
+                                                    List<StockError> errors, StockAggregates aggregates) {
+        return writeStocks(path, sortedLines, recordCount, errors, aggregates);
+    }
+
+    private Result<Void, StockError> writeStocks(String path, Supplier<Stream<String>> sortedLines, int recordCount,
+                                                 List<StockError> errors, StockAggregates aggregates) {
         try {
             LOGGER.info("Writing stock output to {}", path);
             Path directory = Path.of(path);
@@ -101,27 +305,33 @@ public class CsvStockIO implements StockIO {
             Path stockFile = directory.resolve("stocks_" + timestamp + ".csv");
             Path errorFile = directory.resolve("errors_" + timestamp + ".csv");
 
-            try (var stockWriter = Files.newBufferedWriter(stockFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                stockData.getStockRecords().values().stream()
-                        .sorted(Comparator.comparing(StockRecord::getSequenceNumber, Comparator.nullsLast(Integer::compareTo)))
-                        .map(this::stockRecordToCsv)
-                        .forEach(line -> writeLine(stockWriter, line));
+            try (var stockWriter = CsvCharsets.newWriter(stockFile, charset, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Stream<String> lines = sortedLines.get()) {
+                lines.forEach(line -> writeLine(stockWriter, line));
             }
 
-            try (var errorWriter = Files.newBufferedWriter(errorFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                for (StockError error : stockData.getErrors()) {
+            try (var errorWriter = CsvCharsets.newWriter(errorFile, charset, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (StockError error : errors) {
                     String line = String.join(",",
-                            csvEscape(error.type().name()),
-                            csvEscape(error.message()),
-                            csvEscape(error.csvLine())
+                            escapeCsv(error.type().name()),
+                            escapeCsv(error.message()),
+                            escapeCsv(error.csvLine())
                     );
                     writeLine(errorWriter, line);
                 }
             }
 
-            LOGGER.info("Wrote {} stock records to {}", stockData.getStockRecords().size(), stockFile);
-            if (!stockData.getErrors().isEmpty()) {
-                LOGGER.warn("Wrote {} error records to {}", stockData.getErrors().size(), errorFile);
+            if (aggregates != null) {
+                Path aggregateFile = directory.resolve("aggregates_" + timestamp + ".csv");
+                try (var aggregateWriter = CsvCharsets.newWriter(aggregateFile, charset, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeAggregates(aggregateWriter, aggregates);
+                }
+                LOGGER.info("Wrote stock aggregates to {}", aggregateFile);
+            }
+
+            LOGGER.info("Wrote {} stock records to {}", recordCount, stockFile);
+            if (!errors.isEmpty()) {
+                LOGGER.warn("Wrote {} error records to {}", errors.size(), errorFile);
             }
             return Result.success(null);
         } catch (IOException e) {
@@ -133,7 +343,36 @@ public class CsvStockIO implements StockIO {
         }
     }
 
-    private String stockRecordToCsv(StockRecord stockRecord) {
+    private void writeAggregates(java.io.Writer writer, StockAggregates aggregates) {
+        Comparator<String> keyOrder = Comparator.nullsFirst(String::compareTo);
+        writeLine(writer, "DIMENSION,ITEM_NUMBER,LOCATION,CLIENT,BATCH1,QUANTITY,STOCKS");
+        aggregates.byItem().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(keyOrder))
+                .forEach(entry -> writeLine(writer, aggregateLine("ITEM", entry.getKey(), "", null, "", entry.getValue())));
+        aggregates.byLocation().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(keyOrder))
+                .forEach(entry -> writeLine(writer, aggregateLine("LOCATION", "", entry.getKey(), null, "", entry.getValue())));
+        aggregates.byClientBatch().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator
+                        .comparing(StockAggregates.ClientBatch::client, Comparator.nullsFirst(Integer::compareTo))
+                        .thenComparing(StockAggregates.ClientBatch::batch1, keyOrder)))
+                .forEach(entry -> writeLine(writer, aggregateLine("CLIENT_BATCH", "", "", entry.getKey().client(),
+                        entry.getKey().batch1(), entry.getValue())));
+    }
+
+    private static String aggregateLine(String dimension, String itemNumber, String location, Integer client, String batch1,
+                                        StockAggregates.Total total) {
+        return String.join(",",
+                dimension,
+                escapeCsv(itemNumber),
+                escapeCsv(location),
+                formatInteger(client),
+                escapeCsv(batch1),
+                formatBigDecimal(total.quantity()),
+                String.valueOf(total.stocks()));
+    }
+
+    public static String stockRecordToCsv(StockRecord stockRecord) {
         List<String> fields = new ArrayList<>();
         fields.add(formatInteger(stockRecord.getSequenceNumber()));
         fields.add(formatString(stockRecord.getItemNumber()));
@@ -214,7 +453,7 @@ public class CsvStockIO implements StockIO {
         return String.join(",", fields);
     }
 
-    private boolean isHeaderLine(String line) {
+    static boolean isHeaderLine(String line) {
         String[] fields = line.split(",", -1);
         if (fields.length == 0) {
             return false;
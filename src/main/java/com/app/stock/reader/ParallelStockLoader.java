@@ -0,0 +1,233 @@
+package com.app.stock.reader;
+
+import com.app.stock.model.StockRecord;
+import com.app.stock.model.StockRecordFactory;
+import com.app.utils.ByteScanner;
+import com.app.utils.LogContext;
+import com.app.utils.SingleByteCharset;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a stock CSV on several threads. The file is cut into chunks that end after a newline, every chunk is
+ * decoded and parsed on its own, and the chunks are merged in file order so the first record of a duplicated
+ * sequence number wins, as with the sequential reader. Lines that fail to parse are returned instead of dropped.
+ */
+final class ParallelStockLoader {
+    static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+    private static final int SCAN_BUFFER_BYTES = 8 * 1024;
+    private static final SingleByteCharset LATIN1 = SingleByteCharset.of(StandardCharsets.ISO_8859_1).orElseThrow();
+
+    private final Path file;
+    private final Charset charset;
+    private final SingleByteCharset singleByte;
+    private final int parallelism;
+    private final int chunkBytes;
+
+    ParallelStockLoader(Path file, Charset charset, int parallelism, int chunkBytes) {
+        this.file = file;
+        this.charset = charset;
+        this.singleByte = SingleByteCharset.of(charset).orElse(null);
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkBytes = chunkBytes;
+    }
+
+    Loaded load() throws IOException {
+        List<long[]> chunks = chunks();
+        Loaded loaded = new Loaded(new HashMap<>(), new ArrayList<>(), 0);
+        if (chunks.size() <= 1 || parallelism == 1) {
+            for (int i = 0; i < chunks.size(); i++) {
+                loaded = loaded.merge(parseChunk(chunks.get(i), i == 0));
+            }
+            return loaded;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks.size()),
+                LogContext.inheriting(Thread.ofPlatform()
+                        .name("stock-loader-", 0)
+                        .daemon(true)
+                        .factory()));
+        try {
+            List<Future<Chunk>> parsed = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                long[] chunk = chunks.get(i);
+                boolean first = i == 0;
+                parsed.add(executor.submit(() -> parseChunk(chunk, first)));
+            }
+            for (Future<Chunk> chunk : parsed) {
+                loaded = loaded.merge(chunk.get());
+            }
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading " + file);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to parse " + file, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Start and end offsets of the chunks; every chunk but the last ends right after a {@code '\n'}.
+     */
+    private List<long[]> chunks() throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long end = start + chunkBytes >= size ? size : nextLineStart(channel, start + chunkBytes, size);
+                chunks.add(new long[]{start, end});
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int newline = ByteScanner.indexOfNewline(buffer.array(), 0, read);
+            if (newline >= 0) {
+                return position + newline + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private Chunk parseChunk(long[] range, boolean first) throws IOException {
+        byte[] bytes = read(range[0], range[1]);
+        ChunkParser parser = new ChunkParser(first);
+        if (singleByte != null) {
+            return parseLines(bytes, singleByte, parser);
+        }
+        if (charset.equals(StandardCharsets.UTF_8) && ByteScanner.isAscii(bytes, 0, bytes.length)) {
+            // ASCII decodes the same in UTF-8 and Latin-1, so lines are cut on bytes and copied without decoding
+            return parseLines(bytes, LATIN1, parser);
+        }
+        CharBuffer text = charset.newDecoder().decode(ByteBuffer.wrap(bytes));
+        int position = 0;
+        int length = text.length();
+        while (position < length) {
+            int end = position;
+            while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            parser.accept(text.subSequence(position, end).toString());
+            position = end;
+            if (position < length && text.charAt(position++) == '\r' && position < length && text.charAt(position) == '\n') {
+                position++;
+            }
+        }
+        return parser.chunk();
+    }
+
+    private static Chunk parseLines(byte[] bytes, SingleByteCharset decoder, ChunkParser parser)
+            throws UnmappableCharacterException {
+        int position = 0;
+        while (position < bytes.length) {
+            int end = ByteScanner.indexOfLineBreak(bytes, position, bytes.length);
+            end = end < 0 ? bytes.length : end;
+            parser.accept(decoder.decodeReporting(bytes, position, end - position));
+            position = end + 1;
+            if (end < bytes.length && bytes[end] == '\r' && position < bytes.length && bytes[position] == '\n') {
+                position++;
+            }
+        }
+        return parser.chunk();
+    }
+
+    private byte[] read(long start, long end) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(end - start));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+        }
+        return bytes.array();
+    }
+
+    /**
+     * Parses the lines of one chunk; the first line of the file is skipped if it is a header. Multi-byte charsets are
+     * decoded strictly, like {@link java.nio.file.Files#newBufferedReader(Path)}, so malformed input fails the read.
+     */
+    private static final class ChunkParser {
+        private final List<StockRecord> records = new ArrayList<>();
+        private final List<StockError> errors = new ArrayList<>();
+        private boolean first;
+        private int lines;
+
+        private ChunkParser(boolean first) {
+            this.first = first;
+        }
+
+        private void accept(String line) {
+            if (first) {
+                first = false;
+                if (CsvStockIO.isHeaderLine(line)) {
+                    return;
+                }
+            }
+            lines++;
+            Result<StockRecord, StockError> result = StockRecordFactory.createFromCsv(line);
+            if (result.isSuccessful()) {
+                records.add(result.getOrThrow());
+            } else {
+                errors.add(result.error());
+            }
+        }
+
+        private Chunk chunk() {
+            return new Chunk(records, errors, lines);
+        }
+    }
+
+    private record Chunk(List<StockRecord> records, List<StockError> errors, int lines) {
+    }
+
+    /**
+     * @param stocks stock records by sequence number
+     * @param errors errors of the lines that could not be parsed, in file order
+     * @param lines  number of stock lines read, excluding the header
+     */
+    record Loaded(Map<Integer, StockRecord> stocks, List<StockError> errors, long lines) {
+        private Loaded merge(Chunk chunk) {
+            for (StockRecord stockRecord : chunk.records()) {
+                stocks.putIfAbsent(stockRecord.getSequenceNumber(), stockRecord);
+            }
+            errors.addAll(chunk.errors());
+            return new Loaded(stocks, errors, lines + chunk.lines());
+        }
+    }
+}
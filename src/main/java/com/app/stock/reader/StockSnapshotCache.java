@@ -0,0 +1,250 @@
+package com.app.stock.reader;
+
+import com.app.stock.model.StockRecord;
+import com.app.stock.model.StockRecordCodec;
+import com.app.utils.CsvCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary sidecar of a parsed stock CSV ({@code <csv>.bin}). The cache is only used while the size and CRC32C
+ * checksum of the CSV still match the values recorded when it was written.
+ * <p>
+ * Layout: a fixed header, a run of record blocks and a run of string table blocks. Every block is
+ * {@code [int count][int byteLength][payload]} and is mapped on its own, so the file may exceed 2 GB.
+ */
+public class StockSnapshotCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockSnapshotCache.class);
+    private static final int MAGIC = 0x53544B43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int BLOCK_BYTES = 32 * 1024 * 1024;
+    private static final int CHECKSUM_BUFFER = 1024 * 1024;
+    private static final String SUFFIX = ".bin";
+
+    private final Path sourceFile;
+    private final Path cacheFile;
+
+    public StockSnapshotCache(Path sourceFile) {
+        this(sourceFile, CsvCharsets.DEFAULT);
+    }
+
+    /**
+     * The decoded strings depend on the charset, so every charset but the default one gets its own cache file
+     * ({@code <csv>.<charset>.bin}).
+     */
+    public StockSnapshotCache(Path sourceFile, Charset charset) {
+        this.sourceFile = sourceFile;
+        String charsetSuffix = charset.equals(CsvCharsets.DEFAULT) ? "" : "." + charset.name();
+        this.cacheFile = sourceFile.resolveSibling(sourceFile.getFileName() + charsetSuffix + SUFFIX);
+    }
+
+    public Path cacheFile() {
+        return cacheFile;
+    }
+
+    public SourceFingerprint fingerprint() throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER);
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(sourceFile, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                size += buffer.remaining();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return new SourceFingerprint(size, crc.getValue());
+    }
+
+    public Optional<Map<Integer, StockRecord>> load(SourceFingerprint fingerprint) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                LOGGER.info("Ignoring truncated stock cache {}", cacheFile);
+                return Optional.empty();
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                LOGGER.info("Ignoring stock cache {} with unknown format", cacheFile);
+                return Optional.empty();
+            }
+            long sourceSize = header.getLong();
+            long checksum = header.getLong();
+            int recordCount = header.getInt();
+            int stringCount = header.getInt();
+            long stringsOffset = header.getLong();
+            if (sourceSize != fingerprint.size() || checksum != fingerprint.checksum()) {
+                LOGGER.info("Stock cache {} is stale, source has changed", cacheFile);
+                return Optional.empty();
+            }
+
+            String[] strings = new String[stringCount];
+            int stringIndex = 0;
+            long position = HEADER_SIZE + stringsOffset;
+            while (position < fileSize) {
+                MappedByteBuffer block = mapBlock(channel, position);
+                int count = block.getInt(0);
+                block.position(BLOCK_HEADER_SIZE);
+                for (int i = 0; i < count; i++) {
+                    byte[] bytes = new byte[block.getInt()];
+                    block.get(bytes);
+                    strings[stringIndex++] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                position += block.capacity();
+            }
+
+            Map<Integer, StockRecord> stockRecords = HashMap.newHashMap(recordCount);
+            position = HEADER_SIZE;
+            long recordsEnd = HEADER_SIZE + stringsOffset;
+            while (position < recordsEnd) {
+                MappedByteBuffer block = mapBlock(channel, position);
+                int count = block.getInt(0);
+                block.position(BLOCK_HEADER_SIZE);
+                for (int i = 0; i < count; i++) {
+                    StockRecord stockRecord = StockRecordCodec.decode(block, strings);
+                    stockRecords.putIfAbsent(stockRecord.getSequenceNumber(), stockRecord);
+                }
+                position += block.capacity();
+            }
+            LOGGER.info("Loaded {} stock records from cache {}", stockRecords.size(), cacheFile);
+            return Optional.of(stockRecords);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to read stock cache {}, falling back to CSV: {}", cacheFile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void store(SourceFingerprint fingerprint, Map<Integer, StockRecord> stockRecords) {
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StockRecordCodec codec = new StockRecordCodec();
+            BlockWriter blocks = new BlockWriter(channel, HEADER_SIZE);
+            for (StockRecord stockRecord : stockRecords.values()) {
+                codec.encode(stockRecord, blocks.out());
+                blocks.next();
+            }
+            blocks.flush();
+            long stringsOffset = blocks.position() - HEADER_SIZE;
+            List<String> strings = codec.strings();
+            for (String value : strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                blocks.out().writeInt(bytes.length);
+                blocks.out().write(bytes);
+                blocks.next();
+            }
+            blocks.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(fingerprint.size())
+                    .putLong(fingerprint.checksum())
+                    .putInt(stockRecords.size())
+                    .putInt(strings.size())
+                    .putLong(stringsOffset)
+                    .flip();
+            channel.write(header, 0);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to write stock cache {}: {}", cacheFile, e.getMessage());
+            deleteQuietly(tempFile);
+            return;
+        }
+        try {
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("Wrote stock cache {}", cacheFile);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to replace stock cache {}: {}", cacheFile, e.getMessage());
+            deleteQuietly(tempFile);
+        }
+    }
+
+    private static MappedByteBuffer mapBlock(FileChannel channel, long position) throws IOException {
+        ByteBuffer blockHeader = channel.map(FileChannel.MapMode.READ_ONLY, position, BLOCK_HEADER_SIZE);
+        blockHeader.getInt();
+        int byteLength = blockHeader.getInt();
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, BLOCK_HEADER_SIZE + (long) byteLength);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException _) {
+            // best effort, a leftover temp file is overwritten by the next run
+        }
+    }
+
+    public record SourceFingerprint(long size, long checksum) {
+    }
+
+    private static final class BlockWriter {
+        private final FileChannel channel;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buffer);
+        private long position;
+        private int count;
+
+        private BlockWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        private DataOutputStream out() {
+            return out;
+        }
+
+        private long position() {
+            return position;
+        }
+
+        private void next() throws IOException {
+            count++;
+            if (buffer.size() >= BLOCK_BYTES) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE).putInt(count).putInt(buffer.size()).flip();
+            position += writeFully(blockHeader, position);
+            position += writeFully(ByteBuffer.wrap(buffer.toByteArray()), position);
+            buffer.reset();
+            count = 0;
+        }
+
+        private int writeFully(ByteBuffer source, long at) throws IOException {
+            int written = 0;
+            while (source.hasRemaining()) {
+                written += channel.write(source, at + written);
+            }
+            return written;
+        }
+    }
+}
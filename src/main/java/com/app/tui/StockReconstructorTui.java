@@ -4,7 +4,9 @@ import com.app.history.model.MovementRecord;
 import com.app.history.reader.CsvMovementReader;
 import com.app.history.reader.MovementReader;
 import com.app.history.reader.MovementStream;
+import com.app.stock.StockAggregates;
 import com.app.stock.StockData;
+import com.app.stock.StockIndexes;
 import com.app.stock.model.StockRecord;
 import com.app.stock.reader.CsvStockIO;
 import com.app.stock.reader.StockIO;
@@ -28,9 +30,18 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class StockReconstructorTui {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+    /**
+     * Search prefixes that look up the indexes: {@code loc:001AK} finds locations starting with {@code 001AK},
+     * {@code loc=001AK0100000} the location itself; likewise {@code hu} and {@code item}.
+     */
+    private static final Map<String, StockIndexes.Key> INDEXED_SEARCHES = Map.of(
+            "loc", StockIndexes.Key.LOCATION,
+            "hu", StockIndexes.Key.HANDLING_UNIT,
+            "item", StockIndexes.Key.ITEM_NUMBER);
 
     public void start() {
         DefaultTerminalFactory terminalFactory = new DefaultTerminalFactory();
@@ -125,6 +136,8 @@ public class StockReconstructorTui {
         }
 
         StockData stockData = stockResult.getOrThrow();
+        stockData.enableAggregates();
+        stockData.enableIndexes();
         LocalDate finalStockDate = stockDate;
         Map<Integer, List<MovementRecord>> appliedMovements = new HashMap<>();
         Set<Integer> finalizedStocks = new HashSet<>();
@@ -151,13 +164,15 @@ public class StockReconstructorTui {
     }
 
     private Result<StockData, StockError> readStocks(String stockPath, LocalDate stockDate) {
-        StockIO stockReader = new CsvStockIO(stockPath);
+        StockIO stockReader = new CsvStockIO(stockPath, true);
         Result<StockData, StockError> result = stockReader.readStocks();
         if (result.isFailure() || stockDate == null) {
             return result;
         }
         StockData original = result.getOrThrow();
-        return Result.success(new StockData(original.getStockRecords(), stockDate));
+        StockData data = new StockData(original.getStockRecords(), stockDate);
+        data.addErrors(original.getErrors());
+        return Result.success(data);
     }
 
     private Result<MovementStream, StockError> readMovements(String movementPath) {
@@ -209,6 +224,10 @@ public class StockReconstructorTui {
                         showErrors(gui, stockData);
                         return true;
                     }
+                    if (keyChar == 't') {
+                        showTotals(gui, stockData);
+                        return true;
+                    }
                     if (keyChar == 'q') {
                         close();
                         return true;
@@ -223,11 +242,12 @@ public class StockReconstructorTui {
         panel.addComponent(new Label("Errors: " + stockData.getErrors().size() + ", critical: " + stockData.isCriticalErrors()));
         panel.addComponent(buildSearchPanel(searchBox, table, countLabel, stockData));
         panel.addComponent(table.withBorder(Borders.singleLine("Stocks")));
-        panel.addComponent(new Label("Enter=Movements, Alt+E=Export, Alt+S=Search, Alt+F=Filter, Alt+C=Clear, Alt+R=Errors, Alt+Q=Close"));
+        panel.addComponent(new Label("Enter=Movements, Alt+E=Export, Alt+S=Search, Alt+F=Filter, Alt+C=Clear, Alt+R=Errors, Alt+T=Totals, Alt+Q=Close"));
 
         Panel actions = new Panel(new LinearLayout(Direction.HORIZONTAL));
         actions.addComponent(new Button("Export", () -> exportStocks(gui, stockPath, stockData)));
         actions.addComponent(new Button("Errors", () -> showErrors(gui, stockData)));
+        actions.addComponent(new Button("Totals", () -> showTotals(gui, stockData)));
         actions.addComponent(new Button("Close", resultsWindow::close));
         panel.addComponent(actions);
 
@@ -264,9 +284,7 @@ public class StockReconstructorTui {
         model.clear();
 
         long total = stockData.getStockRecords().size();
-        long filtered = stockData.getStockRecords().values().stream()
-                .filter(record -> matchesFilter(record, normalized))
-                .sorted(Comparator.comparing(StockRecord::getSequenceNumber, Comparator.nullsLast(Integer::compareTo)))
+        long filtered = search(stockData, filter == null ? "" : filter.trim(), normalized)
                 .peek(record -> model.addRow(
                         formatInt(record.getSequenceNumber()),
                         formatString(record.getItemNumber()),
@@ -284,6 +302,40 @@ public class StockReconstructorTui {
         }
     }
 
+    /**
+     * The records matching the search ordered by stock number; an indexed search is answered from the indexes, any
+     * other text is searched in all shown columns.
+     */
+    private Stream<StockRecord> search(StockData stockData, String filter, String normalized) {
+        int separator = indexOfSeparator(filter);
+        StockIndexes.Key key = separator < 0 ? null
+                : INDEXED_SEARCHES.get(filter.substring(0, separator).trim().toLowerCase());
+        if (key != null) {
+            String value = filter.substring(separator + 1).trim();
+            if (filter.charAt(separator) == ':') {
+                return stockData.findByPrefix(key, value).stream();
+            }
+            return switch (key) {
+                case LOCATION -> stockData.findByLocation(value).stream();
+                case HANDLING_UNIT -> stockData.findByHandlingUnit(value).stream();
+                case ITEM_NUMBER -> stockData.findByItemNumber(value).stream();
+            };
+        }
+        return stockData.getStockRecords().values().stream()
+                .filter(record -> matchesFilter(record, normalized))
+                .sorted(Comparator.comparing(StockRecord::getSequenceNumber, Comparator.nullsLast(Integer::compareTo)));
+    }
+
+    private static int indexOfSeparator(String filter) {
+        for (int i = 0; i < filter.length(); i++) {
+            char c = filter.charAt(i);
+            if (c == ':' || c == '=') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private boolean matchesFilter(StockRecord record, String normalized) {
         if (normalized == null || normalized.isEmpty()) {
             return true;
@@ -393,6 +445,51 @@ public class StockReconstructorTui {
         gui.addWindowAndWait(errorWindow);
     }
 
+    private void showTotals(MultiWindowTextGUI gui, StockData stockData) {
+        Optional<StockAggregates> aggregates = stockData.getAggregates();
+        if (aggregates.isEmpty()) {
+            MessageDialog.showMessageDialog(gui, "Totals", "No totals maintained for this reconstruction.");
+            return;
+        }
+
+        BasicWindow totalsWindow = new BasicWindow("Totals") {
+            @Override
+            public boolean handleInput(KeyStroke key) {
+                if (key.getKeyType() == KeyType.Character && key.isAltDown()
+                        && Character.toLowerCase(key.getCharacter()) == 'q') {
+                    close();
+                    return true;
+                }
+                return super.handleInput(key);
+            }
+        };
+        Panel panel = new Panel(new LinearLayout(Direction.VERTICAL));
+        Table<String> table = new Table<>("DIMENSION", "KEY", "QUANTITY", "STOCKS");
+        Comparator<String> keyOrder = Comparator.nullsFirst(String::compareTo);
+        aggregates.get().byItem().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(keyOrder))
+                .forEach(entry -> addTotalRow(table, "ITEM", entry.getKey(), entry.getValue()));
+        aggregates.get().byLocation().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(keyOrder))
+                .forEach(entry -> addTotalRow(table, "LOCATION", entry.getKey(), entry.getValue()));
+        aggregates.get().byClientBatch().entrySet().stream()
+                .map(entry -> Map.entry(formatInt(entry.getKey().client()) + " / " + formatString(entry.getKey().batch1()), entry.getValue()))
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> addTotalRow(table, "CLIENT_BATCH", entry.getKey(), entry.getValue()));
+        table.setVisibleRows(20);
+        panel.addComponent(table.withBorder(Borders.singleLine("Totals")));
+        panel.addComponent(new Label("Shortcuts: Alt+Q=Close"));
+        panel.addComponent(new Button("Close", totalsWindow::close));
+        totalsWindow.setComponent(panel);
+        totalsWindow.setHints(java.util.List.of(Window.Hint.FULL_SCREEN));
+        totalsWindow.setCloseWindowWithEscape(true);
+        gui.addWindowAndWait(totalsWindow);
+    }
+
+    private void addTotalRow(Table<String> table, String dimension, String key, StockAggregates.Total total) {
+        table.getTableModel().addRow(dimension, formatString(key), formatDecimal(total.quantity()), String.valueOf(total.stocks()));
+    }
+
     private void exportStocks(MultiWindowTextGUI gui, String stockPath, StockData stockData) {
         String outputDir = TextInputDialog.showDialog(gui, "Export", "Output directory", "results");
         if (outputDir == null || outputDir.trim().isEmpty()) {
@@ -0,0 +1,109 @@
+package com.app.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Finds CSV delimiters eight bytes at a time (SWAR). Each bitmap method reads one little-endian {@code long} word of
+ * the buffer and returns a mask with the high bit set in every byte that matches, so byte {@code i} of the word is a
+ * match if bit {@code 8 * i + 7} is set; {@link #next} turns the lowest set bit back into a buffer offset. Words
+ * that would run past {@code end} are padded with zero bytes, which match nothing.
+ */
+public final class ByteScanner {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long COMMAS = pattern(',');
+    private static final long QUOTES = pattern('"');
+    private static final long NEWLINES = pattern('\n');
+    private static final long RETURNS = pattern('\r');
+    private static final long HIGH_BITS = ~LOW_BITS;
+
+    private ByteScanner() {
+    }
+
+    /**
+     * Commas and quotes in the word at {@code offset}.
+     */
+    public static long delimiters(byte[] buffer, int offset, int end) {
+        long word = word(buffer, offset, end);
+        return matches(word, COMMAS) | matches(word, QUOTES);
+    }
+
+    /**
+     * {@code \n} and {@code \r} in the word at {@code offset}.
+     */
+    public static long lineBreaks(byte[] buffer, int offset, int end) {
+        long word = word(buffer, offset, end);
+        return matches(word, NEWLINES) | matches(word, RETURNS);
+    }
+
+    /**
+     * Offset of the lowest match in a bitmap of the word at {@code offset}; the mask must not be zero.
+     */
+    public static int next(long mask, int offset) {
+        return offset + (Long.numberOfTrailingZeros(mask) >>> 3);
+    }
+
+    /**
+     * Index of the first {@code \n} or {@code \r} in {@code [from, to)}, or -1.
+     */
+    public static int indexOfLineBreak(byte[] buffer, int from, int to) {
+        for (int offset = from; offset < to; offset += Long.BYTES) {
+            long mask = lineBreaks(buffer, offset, to);
+            if (mask != 0) {
+                return next(mask, offset);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the first {@code \n} in {@code [from, to)}, or -1.
+     */
+    public static int indexOfNewline(byte[] buffer, int from, int to) {
+        for (int offset = from; offset < to; offset += Long.BYTES) {
+            long mask = matches(word(buffer, offset, to), NEWLINES);
+            if (mask != 0) {
+                return next(mask, offset);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether {@code [from, to)} only holds 7-bit ASCII, i.e. decodes to the same chars in UTF-8 and Latin-1.
+     */
+    public static boolean isAscii(byte[] buffer, int from, int to) {
+        for (int offset = from; offset < to; offset += Long.BYTES) {
+            if ((word(buffer, offset, to) & HIGH_BITS) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long word(byte[] buffer, int offset, int end) {
+        if (end - offset >= Long.BYTES) {
+            return (long) LONGS.get(buffer, offset);
+        }
+        long word = 0;
+        for (int i = end - 1; i >= offset; i--) {
+            word = word << Byte.SIZE | (buffer[i] & 0xFF);
+        }
+        return word;
+    }
+
+    /**
+     * Sets the high bit of every byte of {@code word} that equals the byte repeated in {@code pattern}. Unlike the
+     * common {@code (x - 0x01..) & ~x & 0x80..} trick this has no false positives, because no carry crosses bytes.
+     */
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    private static long pattern(char ch) {
+        return 0x0101010101010101L * ch;
+    }
+}
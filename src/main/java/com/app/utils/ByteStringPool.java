@@ -0,0 +1,57 @@
+package com.app.utils;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Direct-mapped cache from byte ranges to decoded Strings. Repeated values such as locations or item numbers are
+ * decoded once and then returned without allocating; a slot that collides is simply overwritten, so the pool never
+ * grows beyond its capacity.
+ */
+public final class ByteStringPool {
+    private final Charset charset;
+    private final SingleByteCharset singleByte;
+    private final int mask;
+    private final byte[][] keys;
+    private final String[] values;
+    private final int[] hashes;
+
+    public ByteStringPool(Charset charset, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.charset = charset;
+        this.singleByte = SingleByteCharset.of(charset).orElse(null);
+        this.mask = capacity - 1;
+        this.keys = new byte[capacity][];
+        this.values = new String[capacity];
+        this.hashes = new int[capacity];
+    }
+
+    public String get(byte[] buffer, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        hash ^= hash >>> 16;
+        int slot = hash & mask;
+        byte[] key = keys[slot];
+        if (key != null && hashes[slot] == hash && Arrays.equals(key, 0, key.length, buffer, start, end)) {
+            return values[slot];
+        }
+        String value = decode(buffer, start, end);
+        keys[slot] = Arrays.copyOfRange(buffer, start, end);
+        values[slot] = value;
+        hashes[slot] = hash;
+        return value;
+    }
+
+    /**
+     * Decodes without pooling.
+     */
+    public String decode(byte[] buffer, int start, int end) {
+        return singleByte != null
+                ? singleByte.decode(buffer, start, end - start)
+                : new String(buffer, start, end - start, charset);
+    }
+}
@@ -0,0 +1,78 @@
+package com.app.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Opens CSV readers and writers for a configurable charset. Single-byte charsets such as ISO-8859-1 or Windows-1252,
+ * the usual encodings of the PLSTORE exports, take the {@link SingleByteCharset} fast path; everything else uses the
+ * JDK decoders as before.
+ */
+public final class CsvCharsets {
+    public static final Charset DEFAULT = StandardCharsets.UTF_8;
+    private static final int READ_BUFFER_CHARS = 1 << 16;
+    private static final String ASCII_SAMPLE = "LFDNR,\"0123456789-.:_ \r\n";
+
+    private CsvCharsets() {
+    }
+
+    /**
+     * Looks up a charset by name. The parsers scan for ASCII delimiters on raw bytes, so the charset has to encode
+     * ASCII as ASCII; UTF-16 and friends are rejected.
+     */
+    public static Charset forName(String name) {
+        Charset charset;
+        try {
+            charset = Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException _) {
+            throw new IllegalArgumentException("Unsupported charset: " + name);
+        }
+        if (!Arrays.equals(ASCII_SAMPLE.getBytes(charset), ASCII_SAMPLE.getBytes(StandardCharsets.US_ASCII))) {
+            throw new IllegalArgumentException("Charset is not ASCII compatible: " + name);
+        }
+        return charset;
+    }
+
+    /**
+     * Like {@link #newReader(Path, Charset)} for a stream: malformed input and undefined bytes fail the read.
+     */
+    public static BufferedReader newReader(InputStream input, Charset charset) {
+        Optional<SingleByteCharset> singleByte = SingleByteCharset.of(charset);
+        if (singleByte.isPresent()) {
+            return new SingleByteLineReader(input, singleByte.get());
+        }
+        return new BufferedReader(new InputStreamReader(input, charset.newDecoder()), READ_BUFFER_CHARS);
+    }
+
+    /**
+     * Like {@link Files#newBufferedReader(Path, Charset)}, which reports malformed input instead of replacing it. The
+     * single-byte path reports bytes the charset leaves undefined, e.g. 0x81 in Windows-1252, the same way.
+     */
+    public static BufferedReader newReader(Path path, Charset charset) throws IOException {
+        Optional<SingleByteCharset> singleByte = SingleByteCharset.of(charset);
+        if (singleByte.isPresent()) {
+            return new SingleByteLineReader(Files.newInputStream(path), singleByte.get());
+        }
+        return Files.newBufferedReader(path, charset);
+    }
+
+    public static Writer newWriter(Path path, Charset charset, OpenOption... options) throws IOException {
+        Optional<SingleByteCharset> singleByte = SingleByteCharset.of(charset);
+        if (singleByte.isPresent()) {
+            return singleByte.get().newWriter(Files.newOutputStream(path, options));
+        }
+        return Files.newBufferedWriter(path, charset, options);
+    }
+}
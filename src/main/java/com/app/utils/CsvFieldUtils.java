@@ -7,62 +7,418 @@ import java.util.ArrayList;
 import java.util.List;
 
 public final class CsvFieldUtils {
+    /**
+     * Returned by the range parsers when a value is not in their fast format; the caller falls back to the String
+     * parsers, which also produce the error message.
+     */
+    public static final long NOT_FAST = Long.MIN_VALUE;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int MAX_FAST_INT_DIGITS = 9;
+    private static final int MAX_FAST_LONG_DIGITS = 18;
+    private static final int MAX_FAST_DECIMAL_DIGITS = 17;
+    private static final int SCALE_BITS = 5;
+    private static final int DATE_CACHE_SIZE = 1 << 9;
+    private static final LocalDate[] DATE_CACHE = new LocalDate[DATE_CACHE_SIZE];
 
     private CsvFieldUtils() {
     }
 
     public static Integer parseInt(String value) {
-        if (value == null || value.trim().isEmpty() || value.trim().equals("_".repeat(20)) || value.trim().equals("_".repeat(10))) {
+        if (value == null) {
+            return null;
+        }
+        int start = trimStart(value, 0, value.length());
+        int end = trimEnd(value, start, value.length());
+        if (start == end || isPlaceholder(value, start, end)) {
             return null;
         }
+        long fast = parseIntRange(value, start, end);
+        if (fast != NOT_FAST) {
+            return (int) fast;
+        }
         try {
-            return Integer.parseInt(value.trim());
+            return Integer.parseInt(value, start, end, 10);
         } catch (NumberFormatException _) {
             throw new IllegalArgumentException("Invalid number format: " + value);
         }
     }
 
     public static Long parseLong(String value) {
-        if (value == null || value.trim().isEmpty() || value.trim().equals("_".repeat(20)) || value.trim().equals("_".repeat(10))) {
+        if (value == null) {
             return null;
         }
+        int start = trimStart(value, 0, value.length());
+        int end = trimEnd(value, start, value.length());
+        if (start == end || isPlaceholder(value, start, end)) {
+            return null;
+        }
+        long fast = parseDigits(value, start, end, MAX_FAST_LONG_DIGITS);
+        if (fast != NOT_FAST) {
+            return fast;
+        }
         try {
-            return Long.parseLong(value.trim());
+            return Long.parseLong(value, start, end, 10);
         } catch (NumberFormatException _) {
             throw new IllegalArgumentException("Invalid number format: " + value);
         }
     }
 
     public static BigDecimal parseBigDecimal(String value) {
-        if (value == null || value.trim().isEmpty()) {
+        if (value == null) {
+            return null;
+        }
+        int start = trimStart(value, 0, value.length());
+        int end = trimEnd(value, start, value.length());
+        if (start == end) {
             return null;
         }
+        long packed = parseDecimalRange(value, start, end);
+        if (packed != NOT_FAST) {
+            return decimalOf(packed);
+        }
         try {
-            return new BigDecimal(value.trim());
+            return new BigDecimal(value.substring(start, end));
         } catch (NumberFormatException _) {
             throw new IllegalArgumentException("Invalid decimal format: " + value);
         }
     }
 
     public static String parseString(String value) {
-        if (value == null || value.trim().isEmpty() || value.trim().equals("_".repeat(20)) || value.trim().equals("_".repeat(10))) {
+        if (value == null) {
+            return null;
+        }
+        int start = trimStart(value, 0, value.length());
+        int end = trimEnd(value, start, value.length());
+        if (start == end || isPlaceholder(value, start, end)) {
             return null;
         }
-        return value.trim();
+        return start == 0 && end == value.length() ? value : value.substring(start, end);
     }
 
     public static LocalDate parseDate(String value) {
-        if (value == null || value.trim().isEmpty()) {
+        if (value == null) {
             return null;
         }
+        int start = trimStart(value, 0, value.length());
+        int end = trimEnd(value, start, value.length());
+        if (start == end) {
+            return null;
+        }
+        int yearMonthDay = parseYearMonthDay(value, start, end);
+        if (yearMonthDay >= 0) {
+            return cachedDate(yearMonthDay);
+        }
         try {
-            return LocalDate.parse(value.trim(), DATE_FORMATTER);
+            return LocalDate.parse(value.substring(start, end), DATE_FORMATTER);
         } catch (Exception _) {
             throw new IllegalArgumentException("Invalid date format: " + value);
         }
     }
 
+    /**
+     * Parses a trimmed range holding an optionally signed int of at most nine ASCII digits.
+     *
+     * @return the value, or {@link #NOT_FAST} for anything else
+     */
+    public static long parseIntRange(CharSequence value, int start, int end) {
+        return parseDigits(value, start, end, MAX_FAST_INT_DIGITS);
+    }
+
+    public static long parseIntRange(byte[] value, int start, int end) {
+        if (start == end) {
+            return NOT_FAST;
+        }
+        int i = start;
+        boolean negative = value[i] == '-';
+        if (negative || value[i] == '+') {
+            i++;
+        }
+        if (i == end || end - i > MAX_FAST_INT_DIGITS) {
+            return NOT_FAST;
+        }
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = value[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_FAST;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parses a trimmed range holding a plain decimal ({@code -12.500}, {@code .5}, {@code 3.}) of at most 17 digits
+     * into an unscaled value and a scale, packed into one long; see {@link #unscaledOf} and {@link #scaleOf}.
+     *
+     * @return the packed decimal, or {@link #NOT_FAST} for anything else, e.g. exponents
+     */
+    public static long parseDecimalRange(CharSequence value, int start, int end) {
+        if (start == end) {
+            return NOT_FAST;
+        }
+        int i = start;
+        boolean negative = value.charAt(i) == '-';
+        if (negative || value.charAt(i) == '+') {
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char ch = value.charAt(i);
+            if (ch == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (ch < '0' || ch > '9' || ++digits > MAX_FAST_DECIMAL_DIGITS) {
+                return NOT_FAST;
+            }
+            unscaled = unscaled * 10 + (ch - '0');
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        return packDecimal(negative, unscaled, digits, scale);
+    }
+
+    public static long parseDecimalRange(byte[] value, int start, int end) {
+        if (start == end) {
+            return NOT_FAST;
+        }
+        int i = start;
+        boolean negative = value[i] == '-';
+        if (negative || value[i] == '+') {
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = value[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (b < '0' || b > '9' || ++digits > MAX_FAST_DECIMAL_DIGITS) {
+                return NOT_FAST;
+            }
+            unscaled = unscaled * 10 + (b - '0');
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        return packDecimal(negative, unscaled, digits, scale);
+    }
+
+    public static long unscaledOf(long packedDecimal) {
+        return packedDecimal >> SCALE_BITS;
+    }
+
+    public static int scaleOf(long packedDecimal) {
+        return (int) (packedDecimal & ((1 << SCALE_BITS) - 1));
+    }
+
+    public static BigDecimal decimalOf(long packedDecimal) {
+        return BigDecimal.valueOf(unscaledOf(packedDecimal), scaleOf(packedDecimal));
+    }
+
+    /**
+     * Parses a trimmed {@code yyyy-MM-dd} range that names an existing date.
+     *
+     * @return the {@link LocalDate#toEpochDay() epoch day}, or {@link #NOT_FAST} for anything else; invalid days
+     * such as February 30 are left to {@link #parseDate}, which resolves them like before
+     */
+    public static long parseEpochDayRange(byte[] value, int start, int end) {
+        if (end - start != 10 || value[start + 4] != '-' || value[start + 7] != '-') {
+            return NOT_FAST;
+        }
+        int year = digits(value, start, 4);
+        int month = digits(value, start + 5, 2);
+        int day = digits(value, start + 8, 2);
+        if (!isValidDate(year, month, day)) {
+            return NOT_FAST;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Whether the trimmed range is one of the export's placeholders for a missing value (10 or 20 underscores).
+     */
+    public static boolean isPlaceholder(CharSequence value, int start, int end) {
+        int length = end - start;
+        if (length != 10 && length != 20) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isPlaceholder(byte[] value, int start, int end) {
+        int length = end - start;
+        if (length != 10 && length != 20) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value[i] != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * First index of the range that {@link String#trim()} would keep.
+     */
+    public static int trimStart(CharSequence value, int start, int end) {
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    public static int trimEnd(CharSequence value, int start, int end) {
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    public static int trimStart(byte[] value, int start, int end) {
+        while (start < end && (value[start] & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    public static int trimEnd(byte[] value, int start, int end) {
+        while (end > start && (value[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static long parseDigits(CharSequence value, int start, int end, int maxDigits) {
+        if (start == end) {
+            return NOT_FAST;
+        }
+        int i = start;
+        boolean negative = value.charAt(i) == '-';
+        if (negative || value.charAt(i) == '+') {
+            i++;
+        }
+        if (i == end || end - i > maxDigits) {
+            return NOT_FAST;
+        }
+        long result = 0;
+        for (; i < end; i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return NOT_FAST;
+            }
+            result = result * 10 + (ch - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    private static long packDecimal(boolean negative, long unscaled, int digits, int scale) {
+        if (digits == 0) {
+            return NOT_FAST;
+        }
+        return (negative ? -unscaled : unscaled) << SCALE_BITS | Math.max(scale, 0);
+    }
+
+    /**
+     * Returns {@code yyyyMMdd} of a valid {@code yyyy-MM-dd} range, or -1.
+     */
+    private static int parseYearMonthDay(CharSequence value, int start, int end) {
+        if (end - start != 10 || value.charAt(start + 4) != '-' || value.charAt(start + 7) != '-') {
+            return -1;
+        }
+        int year = digits(value, start, 4);
+        int month = digits(value, start + 5, 2);
+        int day = digits(value, start + 8, 2);
+        return isValidDate(year, month, day) ? year * 10_000 + month * 100 + day : -1;
+    }
+
+    /**
+     * Dates repeat on consecutive lines, so recently parsed dates are kept in a small direct-mapped cache. Entries
+     * are immutable and compared by value, so concurrent readers at worst parse a date again.
+     */
+    private static LocalDate cachedDate(int yearMonthDay) {
+        int slot = (yearMonthDay ^ yearMonthDay >>> 9) & (DATE_CACHE_SIZE - 1);
+        int year = yearMonthDay / 10_000;
+        int month = yearMonthDay / 100 % 100;
+        int day = yearMonthDay % 100;
+        LocalDate date = DATE_CACHE[slot];
+        if (date == null || date.getDayOfMonth() != day || date.getMonthValue() != month || date.getYear() != year) {
+            date = LocalDate.of(year, month, day);
+            DATE_CACHE[slot] = date;
+        }
+        return date;
+    }
+
+    private static int digits(CharSequence value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            result = result * 10 + (ch - '0');
+        }
+        return result;
+    }
+
+    private static int digits(byte[] value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            byte b = value[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            result = result * 10 + (b - '0');
+        }
+        return result;
+    }
+
+    private static boolean isValidDate(int year, int month, int day) {
+        return year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Same arithmetic as {@link LocalDate#toEpochDay()} for positive years.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - 719_528;
+    }
+
     public static String formatString(String value) {
         return value == null ? "" : value;
     }
@@ -83,6 +439,18 @@ public final class CsvFieldUtils {
         return value == null ? "" : value.toString();
     }
 
+    public static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        boolean needsQuotes = value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r");
+        if (!needsQuotes) {
+            return value;
+        }
+        String escaped = value.replace("\"", "\"\"");
+        return "\"" + escaped + "\"";
+    }
+
     public static String[] splitCsvLine(String csvLine) {
         List<String> fields = new ArrayList<>();
         StringBuilder current = new StringBuilder();
@@ -108,4 +476,46 @@ public final class CsvFieldUtils {
         fields.add(current.toString());
         return fields.toArray(new String[0]);
     }
+
+    /**
+     * Locates the fields of a CSV line without copying them. Field {@code i} spans from {@code bounds[i]} to
+     * {@code bounds[i + 1] - 1}; boundaries beyond the array length are not recorded, but all fields are counted.
+     *
+     * @return the number of fields in the line
+     */
+    public static int fieldBounds(String csvLine, int[] bounds) {
+        int fieldCount = 1;
+        boolean inQuotes = false;
+        if (bounds.length > 0) {
+            bounds[0] = 0;
+        }
+        for (int i = 0; i < csvLine.length(); i++) {
+            char ch = csvLine.charAt(i);
+            if (ch == '"') {
+                inQuotes = !inQuotes;
+            } else if (ch == ',' && !inQuotes) {
+                if (fieldCount < bounds.length) {
+                    bounds[fieldCount] = i + 1;
+                }
+                fieldCount++;
+            }
+        }
+        if (fieldCount < bounds.length) {
+            bounds[fieldCount] = csvLine.length() + 1;
+        }
+        return fieldCount;
+    }
+
+    /**
+     * Returns field {@code index} located by {@link #fieldBounds}, unquoted the same way as {@link #splitCsvLine}.
+     */
+    public static String csvField(String csvLine, int[] bounds, int index) {
+        int start = bounds[index];
+        int end = bounds[index + 1] - 1;
+        int quote = csvLine.indexOf('"', start);
+        if (quote < 0 || quote >= end) {
+            return csvLine.substring(start, end);
+        }
+        return splitCsvLine(csvLine.substring(start, end))[0];
+    }
 }
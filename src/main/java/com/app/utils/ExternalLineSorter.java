@@ -0,0 +1,212 @@
+package com.app.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sorts lines ascending by a {@code long} key within a memory budget. Input is cut into runs that are sorted and
+ * written to temp files on worker threads while the next run is read; the runs are then merged lazily with
+ * {@link SortedLineMerger}. Input that fits into a single run is sorted in memory. The sort is stable.
+ */
+public final class ExternalLineSorter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExternalLineSorter.class);
+    private static final int LINE_OVERHEAD_BYTES = 64;
+    private static final int IO_BUFFER_CHARS = 1 << 16;
+    private static final Comparator<KeyedLine> KEY_ORDER = Comparator.comparingLong(KeyedLine::key);
+
+    private final long memoryBudgetBytes;
+    private final int parallelism;
+    private final Path tempDirectory;
+    private final ToLongFunction<String> key;
+
+    public ExternalLineSorter(long memoryBudgetBytes, int parallelism, Path tempDirectory, ToLongFunction<String> key) {
+        if (memoryBudgetBytes <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Memory budget and parallelism must be positive");
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.parallelism = parallelism;
+        this.tempDirectory = tempDirectory;
+        this.key = key;
+    }
+
+    /**
+     * Consumes {@code lines} completely and returns them sorted. The returned stream holds the run files open and
+     * deletes them when it is closed.
+     */
+    public Stream<String> sort(Stream<String> lines) throws IOException {
+        long runBudget = Math.max(1, memoryBudgetBytes / (parallelism + 1));
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<Path>> runs = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, LogContext.inheriting(Thread.ofPlatform()
+                .name("external-sort-", 0)
+                .daemon(true)
+                .factory()));
+        boolean merged = false;
+        try {
+            List<KeyedLine> chunk = new ArrayList<>();
+            long chunkBytes = 0;
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                chunk.add(new KeyedLine(key.applyAsLong(line), line));
+                chunkBytes += LINE_OVERHEAD_BYTES + line.length();
+                if (chunkBytes >= runBudget) {
+                    runs.add(submitRun(executor, inFlight, chunk));
+                    chunk = new ArrayList<>();
+                    chunkBytes = 0;
+                }
+            }
+            if (runs.isEmpty()) {
+                chunk.sort(KEY_ORDER);
+                return chunk.stream().map(KeyedLine::line);
+            }
+            if (!chunk.isEmpty()) {
+                runs.add(submitRun(executor, inFlight, chunk));
+            }
+            List<Path> runFiles = new ArrayList<>(runs.size());
+            for (Future<Path> run : runs) {
+                runFiles.add(run.get());
+            }
+            LOGGER.info("Merging {} sorted runs", runFiles.size());
+            Stream<String> sorted = merge(runFiles);
+            merged = true;
+            return sorted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sorting");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Failed to write sorted run", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (!merged) {
+                awaitTermination(executor);
+                runs.forEach(ExternalLineSorter::deleteRun);
+            }
+        }
+    }
+
+    /**
+     * Waits for runs that are still being written, so that their files exist by the time they are deleted. An
+     * interrupt is kept for the caller.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+                LOGGER.warn("Still waiting for sorted runs to be written");
+            } catch (InterruptedException _) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Future<Path> submitRun(ExecutorService executor, Semaphore inFlight, List<KeyedLine> chunk) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            return executor.submit(() -> {
+                try {
+                    return writeRun(chunk);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private Path writeRun(List<KeyedLine> chunk) throws IOException {
+        chunk.sort(KEY_ORDER);
+        Path run = Files.createTempFile(tempDirectory, "sort-run-", ".csv");
+        try (BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(run, StandardCharsets.UTF_8), IO_BUFFER_CHARS)) {
+            for (KeyedLine keyedLine : chunk) {
+                writer.write(keyedLine.line());
+                writer.write('\n');
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    private Stream<String> merge(List<Path> runFiles) throws IOException {
+        List<BufferedReader> readers = new ArrayList<>(runFiles.size());
+        try {
+            for (Path runFile : runFiles) {
+                readers.add(new BufferedReader(Files.newBufferedReader(runFile, StandardCharsets.UTF_8), IO_BUFFER_CHARS));
+            }
+        } catch (IOException e) {
+            closeRuns(readers, runFiles);
+            throw e;
+        }
+        SortedLineMerger merger = new SortedLineMerger(readers.stream().map(reader -> reader.lines().iterator()).toList(), key);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merger, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeRuns(readers, runFiles));
+    }
+
+    private static void closeRuns(List<BufferedReader> readers, List<Path> runFiles) {
+        for (BufferedReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        runFiles.forEach(ExternalLineSorter::deleteRun);
+    }
+
+    private static void deleteRun(Future<Path> run) {
+        if (run.isDone() && !run.isCancelled()) {
+            try {
+                deleteRun(run.get());
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException _) {
+                // the run was never written
+            }
+        }
+    }
+
+    private static void deleteRun(Path run) {
+        try {
+            Files.deleteIfExists(run);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete sort run {}", run, e);
+        }
+    }
+
+    private record KeyedLine(long key, String line) {
+    }
+}
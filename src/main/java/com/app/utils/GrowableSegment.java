@@ -0,0 +1,90 @@
+package com.app.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An off-heap memory region that grows on demand, either plain native memory or a memory mapped file. Native memory
+ * is copied into a region twice the size; a file is extended and mapped again, so its content stays on disk and can be
+ * reopened later. New memory is zeroed. Segments are confined to the thread that created the region.
+ */
+public final class GrowableSegment implements AutoCloseable {
+    private static final long ALIGNMENT = Long.BYTES;
+
+    private final Path file;
+    private Arena arena;
+    private MemorySegment segment;
+
+    private GrowableSegment(Path file, long initialBytes) {
+        this.file = file;
+        this.arena = Arena.ofConfined();
+        this.segment = file == null ? arena.allocate(initialBytes, ALIGNMENT) : map(arena, file, initialBytes);
+    }
+
+    public static GrowableSegment allocate(long initialBytes) {
+        return new GrowableSegment(null, initialBytes);
+    }
+
+    /**
+     * Maps {@code file}, creating it if needed; an existing file is mapped with its full size.
+     */
+    public static GrowableSegment mapped(Path file, long initialBytes) {
+        return new GrowableSegment(file, initialBytes);
+    }
+
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    /**
+     * Makes the region at least {@code bytes} long. Segments returned earlier must not be used afterwards.
+     */
+    public MemorySegment ensureCapacity(long bytes) {
+        if (bytes <= segment.byteSize()) {
+            return segment;
+        }
+        long newSize = Math.max(bytes, segment.byteSize() * 2);
+        Arena newArena = Arena.ofConfined();
+        if (file == null) {
+            MemorySegment grown = newArena.allocate(newSize, ALIGNMENT);
+            grown.copyFrom(segment);
+            segment = grown;
+        } else {
+            segment.force();
+            segment = map(newArena, file, newSize);
+        }
+        arena.close();
+        arena = newArena;
+        return segment;
+    }
+
+    /**
+     * Writes a mapped region back to its file; does nothing for native memory.
+     */
+    public void force() {
+        if (file != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        arena.close();
+    }
+
+    private static MemorySegment map(Arena arena, Path file, long minimumBytes) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = Math.max(minimumBytes, channel.size());
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map " + file, e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.app.utils;
+
+/**
+ * Direct-mapped cache of boxed integers, for map lookups with keys outside the {@link Integer#valueOf} cache.
+ * Colliding values overwrite each other, so the pool never grows beyond its capacity.
+ */
+public final class IntegerPool {
+    private final int mask;
+    private final Integer[] values;
+
+    public IntegerPool(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.values = new Integer[capacity];
+    }
+
+    public Integer valueOf(int value) {
+        int slot = (value ^ value >>> 16) & mask;
+        Integer boxed = values[slot];
+        if (boxed == null || boxed != value) {
+            boxed = value;
+            values[slot] = boxed;
+        }
+        return boxed;
+    }
+}
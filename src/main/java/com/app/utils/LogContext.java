@@ -0,0 +1,35 @@
+package com.app.utils;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Carries the logging context ({@link MDC}) of a thread over to the worker threads it starts, so that the log lines of
+ * a job's thread pools keep the tags of the job, like the {@code job} key of a manifest run.
+ */
+public final class LogContext {
+
+    private LogContext() {
+    }
+
+    /**
+     * Wraps {@code factory} so that its threads run with the MDC of the thread calling this method. The context is
+     * copied once: the pools of a job are created on the job's thread, and later changes there do not reach them.
+     */
+    public static ThreadFactory inheriting(ThreadFactory factory) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        if (context == null || context.isEmpty()) {
+            return factory;
+        }
+        return task -> factory.newThread(() -> {
+            MDC.setContextMap(context);
+            try {
+                task.run();
+            } finally {
+                MDC.clear();
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package com.app.utils;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Path;
+
+/**
+ * Interns strings into off-heap memory and hands out dense int ids. The characters and the end offset of every string
+ * live in {@link GrowableSegment}s, optionally file-backed; the hash table is rebuilt when a mapped dictionary is
+ * reopened. Looking up a known string neither allocates nor touches the heap beyond the String itself.
+ */
+public final class OffHeapStringDictionary implements AutoCloseable {
+    private static final int INITIAL_TABLE_SLOTS = 1 << 12;
+    private static final long INITIAL_CHARS = 1 << 16;
+
+    private final GrowableSegment chars;
+    private final GrowableSegment ends;
+    private GrowableSegment table;
+    private int tableMask;
+    private int count;
+    private long charCount;
+
+    private OffHeapStringDictionary(GrowableSegment chars, GrowableSegment ends, int count) {
+        this.chars = chars;
+        this.ends = ends;
+        this.count = count;
+        this.charCount = count == 0 ? 0 : ends.segment().getAtIndex(ValueLayout.JAVA_LONG, count - 1);
+        rehash(Math.max(INITIAL_TABLE_SLOTS, Integer.highestOneBit(Math.max(1, count)) * 4));
+    }
+
+    public static OffHeapStringDictionary create() {
+        return new OffHeapStringDictionary(GrowableSegment.allocate(INITIAL_CHARS * Character.BYTES),
+                GrowableSegment.allocate(INITIAL_TABLE_SLOTS * (long) Long.BYTES), 0);
+    }
+
+    /**
+     * A dictionary kept in {@code <prefix>.chars} and {@code <prefix>.ends}; {@code count} strings are already there.
+     */
+    public static OffHeapStringDictionary mapped(Path prefix, int count) {
+        return new OffHeapStringDictionary(
+                GrowableSegment.mapped(prefix.resolveSibling(prefix.getFileName() + ".chars"), INITIAL_CHARS * Character.BYTES),
+                GrowableSegment.mapped(prefix.resolveSibling(prefix.getFileName() + ".ends"), INITIAL_TABLE_SLOTS * (long) Long.BYTES),
+                count);
+    }
+
+    public int id(String value) {
+        int hash = value.hashCode();
+        MemorySegment slots = table.segment();
+        for (int slot = mix(hash) & tableMask; ; slot = slot + 1 & tableMask) {
+            int entry = slots.getAtIndex(ValueLayout.JAVA_INT, slot);
+            if (entry == 0) {
+                int id = append(value);
+                slots.setAtIndex(ValueLayout.JAVA_INT, slot, id + 1);
+                if (count * 2L > tableMask) {
+                    rehash((tableMask + 1) * 2);
+                }
+                return id;
+            }
+            if (matches(entry - 1, value)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public String get(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        long start = start(id);
+        char[] value = new char[Math.toIntExact(end(id) - start)];
+        MemorySegment.copy(chars.segment(), ValueLayout.JAVA_CHAR, start * Character.BYTES, value, 0, value.length);
+        return new String(value);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void force() {
+        chars.force();
+        ends.force();
+    }
+
+    @Override
+    public void close() {
+        table.close();
+        chars.close();
+        ends.close();
+    }
+
+    private int append(String value) {
+        MemorySegment target = chars.ensureCapacity((charCount + value.length()) * Character.BYTES);
+        for (int i = 0; i < value.length(); i++) {
+            target.setAtIndex(ValueLayout.JAVA_CHAR, charCount + i, value.charAt(i));
+        }
+        charCount += value.length();
+        ends.ensureCapacity((count + 1L) * Long.BYTES).setAtIndex(ValueLayout.JAVA_LONG, count, charCount);
+        return count++;
+    }
+
+    private boolean matches(int id, String value) {
+        long start = start(id);
+        if (end(id) - start != value.length()) {
+            return false;
+        }
+        MemorySegment segment = chars.segment();
+        for (int i = 0; i < value.length(); i++) {
+            if (segment.getAtIndex(ValueLayout.JAVA_CHAR, start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long start(int id) {
+        return id == 0 ? 0 : ends.segment().getAtIndex(ValueLayout.JAVA_LONG, id - 1);
+    }
+
+    private long end(int id) {
+        return ends.segment().getAtIndex(ValueLayout.JAVA_LONG, id);
+    }
+
+    private void rehash(int slotCount) {
+        GrowableSegment rehashed = GrowableSegment.allocate(slotCount * (long) Integer.BYTES);
+        MemorySegment slots = rehashed.segment();
+        int mask = slotCount - 1;
+        MemorySegment segment = chars.segment();
+        for (int id = 0; id < count; id++) {
+            int hash = 0;
+            for (long i = start(id), end = end(id); i < end; i++) {
+                hash = 31 * hash + segment.getAtIndex(ValueLayout.JAVA_CHAR, i);
+            }
+            int slot = mix(hash) & mask;
+            while (slots.getAtIndex(ValueLayout.JAVA_INT, slot) != 0) {
+                slot = slot + 1 & mask;
+            }
+            slots.setAtIndex(ValueLayout.JAVA_INT, slot, id + 1);
+        }
+        if (table != null) {
+            table.close();
+        }
+        table = rehashed;
+        tableMask = mask;
+    }
+
+    private static int mix(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ mixed >>> 16;
+    }
+}
@@ -0,0 +1,170 @@
+package com.app.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Optional;
+
+/**
+ * Table-driven decoding and encoding for single-byte charsets such as ISO-8859-1 and Windows-1252. Bytes that mean
+ * the same code point as in Latin-1 are copied straight into compact Strings; only lines containing one of the few
+ * bytes that differ (e.g. the Euro sign in Windows-1252) go through the lookup table. No {@code CharsetDecoder} or
+ * {@code CharsetEncoder} is involved after construction.
+ */
+public final class SingleByteCharset {
+    private static final int BYTE_VALUES = 256;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final Charset charset;
+    private final char[] chars = new char[BYTE_VALUES];
+    private final boolean[] latin1 = new boolean[BYTE_VALUES];
+    private final boolean allLatin1;
+    private final boolean allDefined;
+
+    private SingleByteCharset(Charset charset, String decoded) {
+        this.charset = charset;
+        boolean identity = true;
+        boolean defined = true;
+        for (int b = 0; b < BYTE_VALUES; b++) {
+            chars[b] = decoded.charAt(b);
+            latin1[b] = chars[b] == b;
+            identity &= latin1[b];
+            defined &= chars[b] != REPLACEMENT;
+        }
+        this.allLatin1 = identity;
+        this.allDefined = defined;
+    }
+
+    /**
+     * The single-byte view of {@code charset}, or empty for multi-byte charsets like UTF-8.
+     */
+    public static Optional<SingleByteCharset> of(Charset charset) {
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return Optional.empty();
+        }
+        byte[] allBytes = new byte[BYTE_VALUES];
+        for (int b = 0; b < BYTE_VALUES; b++) {
+            allBytes[b] = (byte) b;
+        }
+        String decoded = new String(allBytes, charset);
+        return decoded.length() == BYTE_VALUES ? Optional.of(new SingleByteCharset(charset, decoded)) : Optional.empty();
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * Decodes like {@code new String(bytes, offset, length, charset)}: bytes the charset leaves undefined, e.g. 0x81 in
+     * Windows-1252, become U+FFFD.
+     */
+    public String decode(byte[] bytes, int offset, int length) {
+        if (!allLatin1) {
+            for (int i = offset; i < offset + length; i++) {
+                if (!latin1[bytes[i] & 0xFF]) {
+                    return decodeMapped(bytes, offset, length);
+                }
+            }
+        }
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Like {@link #decode}, but reports bytes the charset leaves undefined with an
+     * {@link UnmappableCharacterException}, as a reader from {@code Files.newBufferedReader} does.
+     */
+    public String decodeReporting(byte[] bytes, int offset, int length) throws UnmappableCharacterException {
+        String decoded = decode(bytes, offset, length);
+        if (!allDefined && decoded.indexOf(REPLACEMENT) >= 0) {
+            throw new UnmappableCharacterException(1);
+        }
+        return decoded;
+    }
+
+    /**
+     * A buffered writer that encodes through the table. Characters the charset cannot represent fail the write with
+     * an {@link UnmappableCharacterException}, as a writer from {@code Files.newBufferedWriter} does.
+     */
+    public Writer newWriter(OutputStream output) {
+        return new TableWriter(output);
+    }
+
+    private String decodeMapped(byte[] bytes, int offset, int length) {
+        char[] decoded = new char[length];
+        for (int i = 0; i < length; i++) {
+            decoded[i] = chars[bytes[offset + i] & 0xFF];
+        }
+        return new String(decoded);
+    }
+
+    private int encode(char ch) {
+        if (ch < BYTE_VALUES && latin1[ch]) {
+            return ch;
+        }
+        for (int b = 0; b < BYTE_VALUES; b++) {
+            if (!latin1[b] && chars[b] == ch && ch != REPLACEMENT) {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    private final class TableWriter extends Writer {
+        private final OutputStream output;
+        private final byte[] buffer = new byte[WRITE_BUFFER_BYTES];
+        private int size;
+
+        private TableWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(char[] text, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                put(text[i]);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                put(text.charAt(i));
+            }
+        }
+
+        @Override
+        public void write(int ch) throws IOException {
+            put((char) ch);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            output.write(buffer, 0, size);
+            size = 0;
+            output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (output) {
+                flush();
+            }
+        }
+
+        private void put(char ch) throws IOException {
+            int encoded = encode(ch);
+            if (encoded < 0) {
+                throw new UnmappableCharacterException(1);
+            }
+            if (size == buffer.length) {
+                output.write(buffer, 0, size);
+                size = 0;
+            }
+            buffer[size++] = (byte) encoded;
+        }
+    }
+}
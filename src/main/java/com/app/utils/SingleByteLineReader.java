@@ -0,0 +1,153 @@
+package com.app.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A {@link BufferedReader} for single-byte charsets. Lines are cut on the raw bytes and decoded through
+ * {@link SingleByteCharset}, so callers that use {@link #readLine()} or {@link #lines()} get the same lines as from a
+ * decoding reader, including the handling of {@code \r} and {@code \r\n}. Bytes the charset leaves undefined fail the read,
+ * as with the reader of {@code Files.newBufferedReader}. The reader keeps its own byte buffer: every method that reads
+ * or skips is overridden, and {@link #lines()} reads through {@link #readLine()}. Mark and reset are not supported.
+ */
+public final class SingleByteLineReader extends BufferedReader {
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final InputStream input;
+    private final SingleByteCharset charset;
+    private byte[] buffer = new byte[BUFFER_BYTES];
+    private int position;
+    private int limit;
+    private boolean skipNewline;
+
+    public SingleByteLineReader(InputStream input, SingleByteCharset charset) {
+        super(Reader.nullReader(), 1);
+        this.input = input;
+        this.charset = charset;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (!skipPendingNewline()) {
+            return null;
+        }
+        int scanned = 0;
+        while (true) {
+            int end = ByteScanner.indexOfLineBreak(buffer, position + scanned, limit);
+            if (end >= 0) {
+                String line = charset.decodeReporting(buffer, position, end - position);
+                position = end + 1;
+                skipNewline = buffer[end] == '\r';
+                return line;
+            }
+            scanned = limit - position;
+            if (!fill()) {
+                if (position == limit) {
+                    return null;
+                }
+                String line = charset.decodeReporting(buffer, position, limit - position);
+                position = limit;
+                return line;
+            }
+        }
+    }
+
+    @Override
+    public int read(char[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!skipPendingNewline() || position == limit && !fill()) {
+            return -1;
+        }
+        int count = Math.min(length, limit - position);
+        charset.decodeReporting(buffer, position, count).getChars(0, count, target, offset);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] single = new char[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0];
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+        long skipped = 0;
+        while (skipped < count && skipPendingNewline()) {
+            int skip = (int) Math.min(count - skipped, limit - position);
+            position += skip;
+            skipped += skip;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() {
+        return position < limit;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Drops the {@code \n} of a {@code \r\n} whose {@code \r} ended the previous line; returns {@code false} at the
+     * end of the input.
+     */
+    private boolean skipPendingNewline() throws IOException {
+        if (position == limit && !fill()) {
+            return false;
+        }
+        if (skipNewline) {
+            skipNewline = false;
+            if (buffer[position] == '\n') {
+                position++;
+                return position < limit || fill();
+            }
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read;
+        do {
+            read = input.read(buffer, limit, buffer.length - limit);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
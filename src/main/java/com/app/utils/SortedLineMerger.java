@@ -0,0 +1,80 @@
+package com.app.utils;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * K-way merge of line iterators that are each sorted ascending by a {@code long} key. The key of the current line of
+ * every source is computed once and kept in a heap of cursors; ties are broken by source order.
+ */
+public final class SortedLineMerger implements Iterator<String> {
+    private static final Comparator<Cursor> CURSOR_ORDER = Comparator.<Cursor>comparingLong(cursor -> cursor.key)
+            .thenComparingInt(cursor -> cursor.sourceIndex);
+
+    private final PriorityQueue<Cursor> heap;
+    private final ToLongFunction<String> key;
+    private int sourceIndex = -1;
+
+    public SortedLineMerger(List<? extends Iterator<String>> sources, ToLongFunction<String> key) {
+        this.key = key;
+        this.heap = new PriorityQueue<>(Math.max(1, sources.size()), CURSOR_ORDER);
+        for (int i = 0; i < sources.size(); i++) {
+            Cursor cursor = new Cursor(sources.get(i), i);
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        Cursor cursor = heap.poll();
+        if (cursor == null) {
+            throw new NoSuchElementException();
+        }
+        String line = cursor.line;
+        sourceIndex = cursor.sourceIndex;
+        if (cursor.advance()) {
+            heap.add(cursor);
+        }
+        return line;
+    }
+
+    /**
+     * The index of the source the line last returned by {@link #next()} came from, -1 before the first line.
+     */
+    public int sourceIndex() {
+        return sourceIndex;
+    }
+
+    private final class Cursor {
+        private final Iterator<String> lines;
+        private final int sourceIndex;
+        private String line;
+        private long key;
+
+        private Cursor(Iterator<String> lines, int sourceIndex) {
+            this.lines = lines;
+            this.sourceIndex = sourceIndex;
+        }
+
+        private boolean advance() {
+            if (!lines.hasNext()) {
+                line = null;
+                return false;
+            }
+            line = lines.next();
+            key = SortedLineMerger.this.key.applyAsLong(line);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestStocks.stock;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReconstructOnceTheExportIsStable() throws IOException {
+        Path drop = Files.createDirectory(tempDir.resolve("drop"));
+        Path output = tempDir.resolve("output");
+        DirectoryWatcher watcher = watcher(drop, output, null);
+
+        assertThat(watcher.check()).isFalse();
+        writeExport(drop);
+        assertThat(watcher.check()).isTrue();
+        assertThat(output).doesNotExist();
+
+        assertThat(watcher.check()).isFalse();
+        assertThat(names(output)).hasSize(3).allMatch(name -> name.endsWith(".csv"));
+        assertThat(stockLines(output)).hasSize(1).allMatch(line -> line.startsWith("9737,100773,250,"));
+
+        names(output).forEach(name -> delete(output.resolve(name)));
+        assertThat(watcher.check()).isFalse();
+        assertThat(names(output)).isEmpty();
+    }
+
+    @Test
+    void shouldWaitForTheMarker() throws IOException {
+        Path drop = Files.createDirectory(tempDir.resolve("drop"));
+        Path output = tempDir.resolve("output");
+        DirectoryWatcher watcher = watcher(drop, output, "export.done");
+        writeExport(drop);
+
+        assertThat(watcher.check()).isFalse();
+        assertThat(output).doesNotExist();
+
+        Files.writeString(drop.resolve("export.done"), "");
+        assertThat(watcher.check()).isFalse();
+        assertThat(names(output)).hasSize(3);
+    }
+
+    @Test
+    void shouldIgnoreTheMarkerOfThePreviousExport() throws IOException {
+        Path drop = Files.createDirectory(tempDir.resolve("drop"));
+        Path output = tempDir.resolve("output");
+        DirectoryWatcher watcher = watcher(drop, output, "export.done");
+        writeExport(drop);
+        Path marker = Files.writeString(drop.resolve("export.done"), "");
+        assertThat(watcher.check()).isFalse();
+        names(output).forEach(name -> delete(output.resolve(name)));
+
+        Path stockFile = Files.writeString(drop.resolve(BatchOptions.DEFAULT_STOCK_FILE),
+                TestStocks.HEADER + "\n" + stock(9738) + "\n");
+        FileTime copied = FileTime.fromMillis(Files.getLastModifiedTime(marker).toMillis() + 2000);
+        Files.setLastModifiedTime(stockFile, copied);
+        assertThat(watcher.check()).isFalse();
+        assertThat(names(output)).isEmpty();
+
+        Files.setLastModifiedTime(marker, FileTime.fromMillis(copied.toMillis() + 1000));
+        assertThat(watcher.check()).isFalse();
+        assertThat(names(output)).hasSize(3);
+        assertThat(stockLines(output)).hasSize(2).anyMatch(line -> line.startsWith("9738,100773,250,"));
+    }
+
+    @Test
+    void shouldRetryAFailedReconstruction() throws IOException {
+        Path drop = Files.createDirectory(tempDir.resolve("drop"));
+        Path output = tempDir.resolve("output");
+        DirectoryWatcher watcher = watcher(drop, output, "export.done");
+        Files.writeString(drop.resolve(BatchOptions.DEFAULT_STOCK_FILE),
+                TestStocks.HEADER + "\n" + TestStocks.LINE + "\n");
+        Path history = Files.createDirectory(drop.resolve(BatchOptions.DEFAULT_MOVEMENT_FILE));
+        Files.writeString(drop.resolve("export.done"), "");
+
+        assertThat(watcher.check()).isTrue();
+        assertThat(watcher.check()).isTrue();
+        assertThat(names(output)).isEmpty();
+
+        Files.delete(history);
+        writeExport(drop);
+        Files.writeString(drop.resolve("export.done"), "");
+        assertThat(watcher.check()).isFalse();
+        assertThat(names(output)).hasSize(3);
+    }
+
+    @Test
+    void shouldReconstructExportsDroppedWhileWatching() throws Exception {
+        Path drop = Files.createDirectory(tempDir.resolve("drop"));
+        Path output = tempDir.resolve("output");
+        DirectoryWatcher watcher = watcher(drop, output, null);
+        Thread thread = Thread.ofPlatform().start(() -> {
+            try {
+                watcher.watch();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            writeExport(drop);
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (names(output).size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(names(output)).hasSize(3);
+            assertThat(stockLines(output)).hasSize(1);
+        } finally {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private static DirectoryWatcher watcher(Path drop, Path output, String marker) {
+        return new DirectoryWatcher(new DirectoryWatcher.Options(drop, Duration.ZERO, marker),
+                BatchOptions.parse(new String[]{"--output=" + output}, 0));
+    }
+
+    private static void writeExport(Path drop) throws IOException {
+        Files.writeString(drop.resolve(BatchOptions.DEFAULT_STOCK_FILE),
+                TestStocks.HEADER + "\n" + TestStocks.LINE + "\n");
+        Files.writeString(drop.resolve(BatchOptions.DEFAULT_MOVEMENT_FILE),
+                TestMovements.HEADER + "\n" + movement(1710707, 9737) + "\n");
+    }
+
+    private static List<String> names(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static List<String> stockLines(Path output) throws IOException {
+        Path stockFile = output.resolve(names(output).stream().filter(name -> name.startsWith("stocks_"))
+                .findFirst().orElseThrow());
+        return Files.readAllLines(stockFile);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.app.TestMovements.movement;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ManifestSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldTranslateManifestLinesIntoBatchOptions() throws IOException {
+        Path manifest = Files.writeString(tempDir.resolve("manifest.csv"), """
+                STOCK,HISTORY,DATE,OUTPUT
+                # site 1
+                stock.csv, day1.csv;day2.csv.gz ,2026-01-31,results/site1,--charset=windows-1252
+
+                stock2.csv,history2.csv,,results/site2
+                """);
+
+        List<ManifestScheduler.Entry> entries = ManifestScheduler.readManifest(manifest);
+        BatchOptions first = BatchOptions.parse(entries.getFirst().arguments(), 0);
+        BatchOptions second = BatchOptions.parse(entries.get(1).arguments(), 0);
+
+        assertThat(entries).extracting(ManifestScheduler.Entry::line).containsExactly(3, 5);
+        assertThat(first.movementFiles()).containsExactly("day1.csv", "day2.csv.gz");
+        assertThat(first.stockDate()).hasToString("2026-01-31");
+        assertThat(first.charset().name()).isEqualTo("windows-1252");
+        assertThat(second.stockDate()).isNull();
+        assertThat(second.outputDirectory()).isEqualTo("results/site2");
+    }
+
+    @Test
+    void shouldReportEveryJobAndKeepFailuresIsolated() throws IOException {
+        Files.writeString(tempDir.resolve("stock.csv"), TestStocks.LINE + "\n");
+        Files.writeString(tempDir.resolve("history.csv"), movement(10, 9737) + "\n");
+        Path manifest = Files.writeString(tempDir.resolve("manifest.csv"), String.join("\n",
+                tempDir.resolve("stock.csv") + "," + tempDir.resolve("history.csv") + ",," + tempDir.resolve("site1"),
+                tempDir.resolve("missing.csv") + "," + tempDir.resolve("history.csv") + ",," + tempDir.resolve("site2"),
+                "stock.csv,history.csv",
+                tempDir.resolve("stock.csv") + "," + tempDir.resolve("history.csv") + ",," + tempDir.resolve("site3")));
+
+        Path summary = new ManifestScheduler(new ManifestScheduler.Options(2, 64L << 20, tempDir.resolve("summary").toString()))
+                .run(manifest).getOrThrow();
+
+        List<String> lines = Files.readAllLines(summary);
+        assertThat(lines).hasSize(5);
+        assertThat(lines.get(1)).contains(",OK,1,0,false,");
+        assertThat(lines.get(2)).contains(",FAILED,").contains("missing.csv");
+        assertThat(lines.get(3)).contains(",FAILED,").contains("Expected stock,history,date,output");
+        assertThat(lines.get(4)).contains(",OK,1,0,false,");
+        try (var files = Files.list(tempDir.resolve("site3"))) {
+            assertThat(files.map(file -> file.getFileName().toString())).anyMatch(name -> name.startsWith("stocks_"));
+        }
+    }
+
+    @Test
+    void shouldFailJobsWhoseHistoryCannotBeRead() throws IOException {
+        Files.writeString(tempDir.resolve("stock.csv"), TestStocks.LINE + "\n");
+        Path manifest = Files.writeString(tempDir.resolve("manifest.csv"), String.join("\n",
+                tempDir.resolve("stock.csv") + "," + tempDir.resolve("missing.csv") + ",," + tempDir.resolve("site1"),
+                tempDir.resolve("stock.csv") + "," + tempDir.resolve("missing.csv") + ",," + tempDir.resolve("site2")
+                        + ",--sort-history"));
+
+        Path summary = new ManifestScheduler(new ManifestScheduler.Options(1, 64L << 20, tempDir.resolve("summary").toString()))
+                .run(manifest).getOrThrow();
+
+        List<String> lines = Files.readAllLines(summary);
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(1)).contains(",FAILED,").contains("missing.csv");
+        assertThat(lines.get(2)).contains(",FAILED,").contains("missing.csv");
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.map(file -> file.getFileName().toString()).toList()).allMatch(name -> !name.startsWith("site"));
+        }
+    }
+}
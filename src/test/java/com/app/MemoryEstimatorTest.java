@@ -0,0 +1,97 @@
+package com.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestStocks.stock;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class MemoryEstimatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldEstimateStocksAndMovementsFromSamples() throws IOException {
+        BatchOptions options = options(20_000, 30_000);
+
+        MemoryEstimator.Estimate estimate = new MemoryEstimator(1L << 30, 1L << 30).estimate(options);
+
+        assertThat(estimate.stocks()).isBetween(19_000L, 21_000L);
+        assertThat(estimate.movements()).isBetween(29_000L, 31_000L);
+        // every fifth movement is a DELETE
+        assertThat(estimate.createdStocks()).isBetween(5_500L, 6_500L);
+        assertThat(estimate.heapBytes()).isGreaterThan(Files.size(Path.of(options.stockFile())) * 4);
+        assertThat(estimate.spillHeapBytes()).isEqualTo(50L << 20);
+    }
+
+    @Test
+    void shouldChooseTheCheapestEngineThatFits() throws IOException {
+        BatchOptions options = options(2_000, 1_000);
+
+        assertThat(new MemoryEstimator(1L << 30, 1L << 30).choose(options).engine())
+                .isEqualTo(MemoryEstimator.Engine.HEAP);
+        MemoryEstimator.Choice offHeap = new MemoryEstimator(66L << 20, 1L << 30).choose(options);
+        assertThat(offHeap.engine()).isEqualTo(MemoryEstimator.Engine.OFF_HEAP);
+        assertThat(offHeap.heapBytes()).isEqualTo(MemoryEstimator.BASELINE_HEAP_BYTES);
+        MemoryEstimator.Choice spill = new MemoryEstimator(66L << 20, 1L << 10).choose(options);
+        assertThat(spill.engine()).isEqualTo(MemoryEstimator.Engine.SPILL);
+        assertThat(spill.reason()).contains("heap would need").contains("native memory").contains("spilling within 50 MB");
+
+        BatchOptions filtered = BatchOptions.parse(new String[]{"--stock=" + options.stockFile(),
+                "--history=" + options.movementFiles().getFirst(), "--auto-engine", "--item=100773"}, 0);
+        assertThat(new MemoryEstimator(66L << 20, 1L << 10).choose(filtered).engine())
+                .isEqualTo(MemoryEstimator.Engine.HEAP);
+    }
+
+    @Test
+    void shouldAddTheSortAndLedgerBudgetsToTheJobEstimate() throws IOException {
+        BatchOptions options = options(2_000, 1_000);
+        long stockBytes = Files.size(Path.of(options.stockFile())) * SpillingReconstruction.HEAP_BYTES_PER_STOCK_BYTE;
+        String stockFile = "--stock=" + options.stockFile();
+        String historyFile = "--history=" + options.movementFiles().getFirst();
+
+        assertThat(new ReconstructionJob(BatchOptions.parse(new String[]{stockFile, historyFile}, 0))
+                .estimatedHeapBytes()).isEqualTo(stockBytes);
+        assertThat(new ReconstructionJob(BatchOptions.parse(new String[]{stockFile, historyFile, "--sort-history",
+                "--sort-memory=64"}, 0)).estimatedHeapBytes()).isEqualTo(stockBytes + (64L << 20));
+        assertThat(new ReconstructionJob(BatchOptions.parse(new String[]{stockFile, historyFile, "--sort-history",
+                "--sort-memory=64", "--ledger"}, 0)).estimatedHeapBytes()).isEqualTo(stockBytes + (128L << 20));
+        assertThat(new ReconstructionJob(BatchOptions.parse(new String[]{stockFile, historyFile, "--sort-memory=64",
+                "--spill", "--spill-memory=50"}, 0)).estimatedHeapBytes()).isEqualTo(50L << 20);
+    }
+
+    @Test
+    void shouldResolveAutoEngineOptions() {
+        BatchOptions options = BatchOptions.parse(new String[]{"--auto-engine", "--spill-memory=50"}, 0);
+
+        assertThat(options.autoEngine()).isTrue();
+        assertThat(options.withEngine(MemoryEstimator.Engine.SPILL).spillOptions().memoryBudgetBytes())
+                .isEqualTo(50L << 20);
+        assertThat(options.withEngine(MemoryEstimator.Engine.OFF_HEAP).offHeap()).isTrue();
+        assertThat(options.withEngine(MemoryEstimator.Engine.HEAP).engine()).isEqualTo(MemoryEstimator.Engine.HEAP);
+        assertThatIllegalArgumentException().isThrownBy(() -> BatchOptions.parse(new String[]{"--auto-engine", "--spill"}, 0));
+    }
+
+    private BatchOptions options(int stocks, int movements) throws IOException {
+        StringBuilder stockLines = new StringBuilder(TestStocks.HEADER + "\n");
+        for (int stockNumber = 1; stockNumber <= stocks; stockNumber++) {
+            stockLines.append(stock(stockNumber)).append('\n');
+        }
+        Path stockFile = Files.writeString(tempDir.resolve("stock-" + stocks + ".csv"), stockLines);
+        StringBuilder history = new StringBuilder(TestMovements.HEADER + "\n");
+        for (int sequenceNumber = movements; sequenceNumber > 0; sequenceNumber--) {
+            history.append(movement(sequenceNumber, stocks + sequenceNumber)
+                    .replace("BEWGZU", sequenceNumber % 5 == 0 ? "LOESCH" : "BEWGZU")).append('\n');
+        }
+        Path historyFile = Files.writeString(tempDir.resolve("history-" + movements + ".csv"), history);
+        return BatchOptions.parse(new String[]{"--stock=" + stockFile, "--history=" + historyFile, "--auto-engine",
+                "--spill-memory=50"}, 0);
+    }
+}
@@ -0,0 +1,118 @@
+package com.app;
+
+import com.app.history.reader.MovementCursorReader;
+import com.app.stock.StockData;
+import com.app.stock.reader.CsvStockIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestStocks.stock;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ReplayCheckpointerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldResumeWithTheSameResultAsAnUninterruptedRun() throws IOException {
+        StringBuilder stocks = new StringBuilder(TestStocks.HEADER + "\n");
+        for (int stockNumber = 1; stockNumber <= 40; stockNumber++) {
+            stocks.append(stock(stockNumber)).append('\n');
+        }
+        stocks.append("broken,line\n");
+        Path stockFile = Files.writeString(tempDir.resolve("stock.csv"), stocks);
+        StringBuilder history = new StringBuilder(TestMovements.HEADER + "\r\n");
+        for (int sequenceNumber = 12_000; sequenceNumber > 0; sequenceNumber--) {
+            String date = sequenceNumber > 6_000 ? "2026-02-19" : "2026-02-01";
+            history.append(sequenceNumber % 1000 == 0 ? "99,broken" : movement(sequenceNumber,
+                    sequenceNumber * 7 % 50 + 1, date).replace("BEWGZU", sequenceNumber % 5 == 0 ? "BEWGAB" : "BEWGZU"))
+                    .append("\r\n");
+        }
+        Path historyFile = Files.writeString(tempDir.resolve("history.csv"), history);
+
+        for (String stockDate : new String[]{null, "2026-02-10"}) {
+            List<String> arguments = new ArrayList<>(List.of("--stock=" + stockFile, "--history=" + historyFile));
+            if (stockDate != null) {
+                arguments.add("--date=" + stockDate);
+            }
+            Path complete = tempDir.resolve("complete-" + stockDate);
+            Path resumed = tempDir.resolve("resumed-" + stockDate);
+            new ReconstructionJob(parse(arguments, "--output=" + complete)).run().getOrThrow();
+
+            BatchOptions checkpointed = parse(arguments, "--output=" + resumed, "--checkpoint", "--checkpoint-interval=0");
+            try (ReplayCheckpointer checkpointer = new ReplayCheckpointer(checkpointed)) {
+                assertThatIllegalStateException().isThrownBy(() -> replayUntilCrash(checkpointed, checkpointer, 1_500));
+            }
+            Path checkpointFile = resumed.resolve(ReplayCheckpointer.FILE_NAME);
+            assertThat(checkpointFile).exists();
+
+            BatchOptions resume = parse(arguments, "--output=" + resumed, "--resume");
+            try (ReplayCheckpointer checkpointer = new ReplayCheckpointer(resume)) {
+                assertThat(checkpointer.resume().orElseThrow().offset()).isBetween(1L, Files.size(historyFile) - 1);
+            }
+            new ReconstructionJob(resume).run().getOrThrow();
+
+            assertThat(checkpointFile).doesNotExist();
+            assertThat(outputs(resumed)).isEqualTo(outputs(complete)).hasSize(3);
+        }
+    }
+
+    @Test
+    void shouldParseCheckpointOptions() {
+        assertThat(BatchOptions.parse(new String[]{"--checkpoint=cp", "--checkpoint-interval=60"}, 0).checkpointOptions())
+                .isEqualTo(new ReplayCheckpointer.Options(Path.of("cp"), Duration.ofMinutes(1), false));
+        assertThat(BatchOptions.parse(new String[]{"--resume", "--output=out"}, 0).checkpointOptions())
+                .isEqualTo(new ReplayCheckpointer.Options(Path.of("out"), Duration.ofMinutes(5), true));
+        assertThatIllegalArgumentException().isThrownBy(() ->
+                BatchOptions.parse(new String[]{"--checkpoint", "--history=history.csv.gz"}, 0));
+        assertThatIllegalArgumentException().isThrownBy(() ->
+                BatchOptions.parse(new String[]{"--resume", "--off-heap"}, 0));
+    }
+
+    /**
+     * Replays like the heap engine until the movement {@code crashAt}, then fails like a run that ran out of memory.
+     */
+    private static void replayUntilCrash(BatchOptions options, ReplayCheckpointer checkpointer, int crashAt) {
+        StockData loaded = new CsvStockIO(options.stockFile()).readStocks().getOrThrow();
+        StockData data = options.stockDate() == null ? loaded : new StockData(loaded.getStockRecords(), options.stockDate());
+        if (data != loaded) {
+            data.addErrors(loaded.getErrors());
+        }
+        new MovementCursorReader(options.movementFiles().getFirst()).forEach(cursor -> {
+            if (cursor.sequenceNumber() == crashAt) {
+                throw new IllegalStateException("Crashed at movement " + crashAt);
+            }
+            data.handleMovement(cursor);
+        }, data::handleMovementError, stockNumber -> false, offset -> checkpointer.lineEnd(data, offset, true));
+    }
+
+    private static BatchOptions parse(List<String> arguments, String... more) {
+        List<String> all = new ArrayList<>(arguments);
+        all.addAll(List.of(more));
+        return BatchOptions.parse(all.toArray(String[]::new), 0);
+    }
+
+    private static Map<String, List<String>> outputs(Path directory) throws IOException {
+        Map<String, List<String>> outputs = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                outputs.put(file.getFileName().toString().replaceAll("_\\d{8}_\\d{6}", ""), Files.readAllLines(file));
+            }
+        }
+        return outputs;
+    }
+}
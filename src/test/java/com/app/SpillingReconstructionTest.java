@@ -0,0 +1,93 @@
+package com.app;
+
+import com.app.utils.CsvCharsets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestStocks.stock;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class SpillingReconstructionTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldWriteTheSameFilesAsAReplayInMemory() throws IOException {
+        StringBuilder stocks = new StringBuilder(TestStocks.HEADER + "\n");
+        for (int stockNumber = 1; stockNumber <= 40; stockNumber++) {
+            stocks.append(stock(stockNumber)).append('\n');
+        }
+        stocks.append("broken,line\n");
+        Path stockFile = Files.writeString(tempDir.resolve("stock.csv"), stocks);
+        StringBuilder history = new StringBuilder(TestMovements.HEADER + "\n");
+        for (int sequenceNumber = 200; sequenceNumber > 0; sequenceNumber--) {
+            int stockNumber = sequenceNumber * 7 % 50 + 1;
+            history.append(movement(sequenceNumber == 120 ? 150 : sequenceNumber, stockNumber,
+                    sequenceNumber % 5 == 0 ? "BEWGAB" : "BEWGZU", "1.000",
+                    sequenceNumber % 3 == 0 ? "5.000" : "4.000",
+                    sequenceNumber > 100 ? "2026-02-19" : "2026-02-01")).append('\n');
+        }
+        history.append("99,broken\n");
+        Path historyFile = Files.writeString(tempDir.resolve("history.csv"), history);
+
+        for (LocalDate stockDate : new LocalDate[]{null, LocalDate.of(2026, 2, 10)}) {
+            SpillingReconstruction reconstruction = new SpillingReconstruction(stockFile.toString(),
+                    historyFile.toString(), stockDate, null, CsvCharsets.DEFAULT,
+                    new SpillingReconstruction.Options(Files.size(stockFile) * 2, 2, tempDir.resolve("spill")));
+            Path spilled = tempDir.resolve("spilled-" + stockDate);
+            Path inMemory = tempDir.resolve("in-memory-" + stockDate);
+
+            reconstruction.reconstruct(spilled.toString()).getOrThrow();
+            replayInMemory(stockFile, historyFile, stockDate, inMemory);
+
+            assertThat(reconstruction.partitionCount()).isEqualTo(4);
+            assertThat(outputs(spilled)).isEqualTo(outputs(inMemory)).hasSize(3);
+            assertThat(outputs(spilled).get("errors.csv")).anyMatch(line -> line.contains("broken,line"));
+            try (Stream<Path> files = Files.list(tempDir.resolve("spill"))) {
+                assertThat(files).isEmpty();
+            }
+        }
+    }
+
+    @Test
+    void shouldParseSpillOptions() {
+        assertThat(BatchOptions.parse(new String[]{"--spill", "--spill-memory=64", "--spill-threads=2"}, 0)
+                .spillOptions().memoryBudgetBytes()).isEqualTo(64L << 20);
+        assertThatIllegalArgumentException().isThrownBy(() ->
+                BatchOptions.parse(new String[]{"--spill", "--history=a.csv,b.csv"}, 0));
+        assertThatIllegalArgumentException().isThrownBy(() ->
+                BatchOptions.parse(new String[]{"--spill", "--off-heap"}, 0));
+    }
+
+    private static void replayInMemory(Path stockFile, Path historyFile, LocalDate stockDate, Path output) {
+        List<String> args = new ArrayList<>(List.of("--stock=" + stockFile, "--history=" + historyFile,
+                "--output=" + output));
+        if (stockDate != null) {
+            args.add("--date=" + stockDate);
+        }
+        new ReconstructionJob(BatchOptions.parse(args.toArray(String[]::new), 0)).run().getOrThrow();
+    }
+
+    private static Map<String, List<String>> outputs(Path directory) throws IOException {
+        Map<String, List<String>> outputs = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                outputs.put(file.getFileName().toString().replaceAll("_\\d{8}_\\d{6}", ""), Files.readAllLines(file));
+            }
+        }
+        return outputs;
+    }
+}
@@ -0,0 +1,77 @@
+package com.app;
+
+import com.app.history.model.MovementEvent;
+import com.app.history.model.MovementRecord;
+import com.app.history.reader.MovementSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * History lines for tests: a valid 22-column movement line and variants of it.
+ */
+public final class TestMovements {
+    public static final String HEADER = "LFDNR,BESTNR";
+    /**
+     * Sequence number 1710707 of stock 11005744: {@code BEWGZU} of 1.000 to a total of 5.000 for client 250 on
+     * 2026-02-19 at location 001AK0100000.
+     */
+    public static final String LINE = "1710707,11005744,4000046303,001AK0100000,103098,,R65127,____________________,1.000,5.000,1.200,250,BEWGZU,25,2026-02-19,16:45:17,KAAC,N,ELU0002984,38,____________________,__________";
+
+    private TestMovements() {
+    }
+
+    public static String movement(int sequenceNumber, int stockNumber) {
+        return LINE.replace("1710707,11005744", sequenceNumber + "," + stockNumber);
+    }
+
+    public static String movement(int sequenceNumber, int stockNumber, String date) {
+        return movement(sequenceNumber, stockNumber).replace("2026-02-19", date);
+    }
+
+    public static String movement(int sequenceNumber, int stockNumber, String event, String change, String total,
+                                  String date) {
+        return movement(sequenceNumber, stockNumber, 250, event, change, total).replace("2026-02-19", date);
+    }
+
+    public static String movement(int sequenceNumber, int stockNumber, int client, String event, String change,
+                                  String total) {
+        return movement(sequenceNumber, stockNumber)
+                .replace("1.000,5.000,1.200,250,BEWGZU", change + "," + total + ",1.200," + client + "," + event);
+    }
+
+    /**
+     * A record builder for client 250 with the given fields set.
+     */
+    public static MovementRecord.MovementRecordBuilder movementRecordBuilder(int sequenceNumber, int stockNumber,
+                                                                             MovementEvent event, String change,
+                                                                             String total) {
+        return MovementRecord.builder()
+                .sequenceNumber(sequenceNumber)
+                .stockNumber(stockNumber)
+                .client(250)
+                .quantityChange(new BigDecimal(change))
+                .quantityTotal(new BigDecimal(total))
+                .event(event);
+    }
+
+    public static MovementSource source(String csv) {
+        return source(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MovementSource source(byte[] history) {
+        return new MovementSource() {
+            @Override
+            public String name() {
+                return "memory";
+            }
+
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(history);
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.app;
+
+import com.app.stock.model.StockRecord;
+
+import java.math.BigDecimal;
+
+/**
+ * Stock snapshot lines and records for tests: a valid 76-column stock line and variants of it.
+ */
+public final class TestStocks {
+    public static final String HEADER = "LFDNR,ARTNR";
+    /**
+     * Stock 9737 of item 100773 for client 250 at location 001020200807 with 5.000 on hand.
+     */
+    public static final String LINE = "9737,100773,250,1908165,____________________,,____________________,__________,38280223,38280223,001020200807,401,0,0,58.100,0.000,5.000,0.000,____________________,__________,2023-08-31,2025-10-22,11:23:44,GuZo,2023-09-01,08:32:28,J,0,,N,3,2023-09-01,2023-09-01,0,J,N,0.000,5.000,1,1,290.500,290.500,1,4,1,2,3,2023-09-01,08:32:28,IMP,2024-04-30,10:30:00,plsu,,,,,,,,,,N,,,,N,N,,,,,0,,,";
+
+    private TestStocks() {
+    }
+
+    public static String stock(int stockNumber) {
+        return LINE.replaceFirst("9737", String.valueOf(stockNumber));
+    }
+
+    /**
+     * A record of item 103098 for client 250 at location 001AK0100000, the item and location of
+     * {@link TestMovements#LINE}, with 5.000 on hand.
+     */
+    public static StockRecord stockRecord(int stockNumber) {
+        return stockRecordBuilder(stockNumber, "103098", "001AK0100000", "5.000")
+                .handlingUnitNumber("HU" + stockNumber)
+                .miscText1("Süd")
+                .build();
+    }
+
+    /**
+     * A record builder for client 250 with the given fields set.
+     */
+    public static StockRecord.StockRecordBuilder stockRecordBuilder(int stockNumber, String itemNumber, String location,
+                                                                    String quantity) {
+        return StockRecord.builder()
+                .sequenceNumber(stockNumber)
+                .itemNumber(itemNumber)
+                .client(250)
+                .location(location)
+                .quantityOnHand(new BigDecimal(quantity));
+    }
+}
@@ -0,0 +1,84 @@
+package com.app.history.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovementEventTest {
+    private static final String ALPHABET = "BEWGZULOSCHANIRMKVbewgzulosch _ıſ\t";
+
+    @Test
+    void shouldFindCodesIgnoringCaseAndWhitespace() {
+        assertThat(MovementEvent.fromCode(" bewgzu ")).isEqualTo(MovementEvent.MOVEMENT_IN);
+        assertThat(MovementEvent.fromCode("MgKoAb")).isEqualTo(MovementEvent.BATCH_CORRECTION_OUT);
+        assertThat(MovementEvent.fromCode("ınvzhl")).isEqualTo(MovementEvent.INVENTORY_COUNT);
+        assertThat(MovementEvent.fromCode("__________")).isNull();
+        assertThat(MovementEvent.fromCode("  ")).isNull();
+    }
+
+    @Test
+    void shouldDecodeByteRanges() {
+        byte[] line = "1,loesch,2".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(MovementEvent.fromCode(line, 2, 8)).isEqualTo(MovementEvent.DELETE);
+        assertThat(MovementEvent.fromCode(line, 2, 7)).isNull();
+        assertThat(MovementEvent.fromCode(line, 0, 10)).isNull();
+    }
+
+    @Test
+    void shouldBehaveLikeThePreviousLookup() {
+        List<String> inputs = new ArrayList<>();
+        for (MovementEvent event : MovementEvent.values()) {
+            inputs.add(event.code());
+            inputs.add(event.code().toLowerCase(Locale.ROOT));
+            inputs.add(event.code().substring(1));
+            inputs.add("X" + event.code());
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            inputs.add(value.toString());
+        }
+
+        for (String value : inputs) {
+            assertThat(outcome(value)).as("[%s]", value).isEqualTo(legacyOutcome(value));
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            MovementEvent event = MovementEvent.fromCode(bytes, 0, bytes.length);
+            if (event != null) {
+                assertThat(event.name()).as("[%s]", value).isEqualTo(legacyOutcome(value));
+            }
+        }
+    }
+
+    private static String outcome(String value) {
+        try {
+            return String.valueOf(MovementEvent.fromCode(value));
+        } catch (IllegalArgumentException e) {
+            return "invalid " + e.getMessage();
+        }
+    }
+
+    private static String legacyOutcome(String value) {
+        String normalized = value.trim();
+        if (normalized.isEmpty() || normalized.equals("_".repeat(20)) || normalized.equals("_".repeat(10))) {
+            return "null";
+        }
+        String upper = normalized.toUpperCase(Locale.ROOT);
+        for (MovementEvent event : MovementEvent.values()) {
+            if (event.code().equals(upper)) {
+                return event.name();
+            }
+        }
+        return "invalid " + normalized;
+    }
+}
@@ -4,6 +4,9 @@ import com.app.utils.Result;
 import com.app.utils.StockError;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDate;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class MovementRecordFactoryTest {
@@ -66,4 +69,40 @@ class MovementRecordFactoryTest {
         assertThat(error).isNotNull();
         assertThat(error.type()).isEqualTo(StockError.ErrorType.INVALID_EVENT);
     }
+
+    @Test
+    void shouldDecodeFieldsOutsideProjectionOnDemand() {
+        String csvLine = "1710707,11005744,4000046303,001AK0100000,103098,,R65127,____________________,1.000,1.000,1.200,250,BEWGZU,25,2026-02-19,16:45:17,\"KA,AC\",N,ELU0002984,38,____________________,__________";
+        MovementProjection projection = MovementProjection.of(MovementField.LOCATION, MovementField.QUANTITY_TOTAL);
+
+        Result<ProjectedMovement, StockError> result = MovementRecordFactory.project(csvLine, projection);
+
+        assertThat(result.isSuccessful()).isTrue();
+        MovementRecord movementRecord = result.getOrThrow().record();
+        assertThat(movementRecord.sequenceNumber()).isEqualTo(1710707);
+        assertThat(movementRecord.event()).isEqualTo(MovementEvent.MOVEMENT_IN);
+        assertThat(movementRecord.location()).isEqualTo("001AK0100000");
+        assertThat(movementRecord.quantityTotal()).isEqualByComparingTo("1.000");
+        assertThat(movementRecord.user()).isNull();
+        assertThat(movementRecord.date()).isNull();
+        MovementRecord decoded = result.getOrThrow().decoded();
+        assertThat(decoded.user()).isEqualTo("KA,AC");
+        assertThat(decoded.date()).isEqualTo(LocalDate.of(2026, 2, 19));
+        assertThat(decoded).isEqualTo(MovementRecordFactory.createFromCsv(csvLine).getOrThrow());
+    }
+
+    @Test
+    void shouldRejectMalformedFieldsOutsideProjection() {
+        String csvLine = "1710707,11005744,4000046303,001AK0100000,103098,,R65127,____________________,1.000,1.000,1.200,250,BEWGZU,25,2026-02-19,16:45:17,KAAC,N,ELU0002984,38,____________________,__________";
+        MovementProjection projection = MovementProjection.of(MovementField.LOCATION, MovementField.QUANTITY_TOTAL);
+
+        for (String malformed : List.of(csvLine.replace(",1.200,", ",abc,"), csvLine.replace(",25,", ",x,"),
+                csvLine.replace("2026-02-19", "2026-13-19"), csvLine.replace(",1.200,", ",\"1.2.0\","))) {
+            Result<MovementRecord, StockError> result = MovementRecordFactory.createFromCsv(malformed, projection);
+
+            assertThat(result.isFailure()).isTrue();
+            assertThat(result.error()).isEqualTo(MovementRecordFactory.createFromCsv(malformed).error());
+            assertThat(result.error().type()).isEqualTo(StockError.ErrorType.PARSE_ERROR);
+        }
+    }
 }
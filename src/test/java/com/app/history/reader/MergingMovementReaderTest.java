@@ -0,0 +1,83 @@
+package com.app.history.reader;
+
+import com.app.history.model.MovementRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.app.TestMovements.HEADER;
+import static com.app.TestMovements.movement;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MergingMovementReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldMergeShardsBySequenceNumberDescending() throws IOException {
+        Path first = write("day1.csv", HEADER, line(90), line(60), line(30));
+        Path second = write("day2.csv", line(100), line(70), line(20));
+        Path third = write("day3.csv", HEADER, line(80), line(60), line(10));
+
+        Result<MovementStream, StockError> result = new MergingMovementReader(
+                List.of(first.toString(), second.toString(), third.toString())).readMovements();
+
+        assertThat(result.isSuccessful()).isTrue();
+        try (MovementStream stream = result.getOrThrow()) {
+            List<Integer> sequenceNumbers = stream.stream()
+                    .map(Result::getOrThrow)
+                    .map(MovementRecord::sequenceNumber)
+                    .toList();
+            assertThat(sequenceNumbers).containsExactly(100, 90, 80, 70, 60, 30, 20, 10);
+        }
+    }
+
+    @Test
+    void shouldKeepLinesRepeatedWithinAShard() throws IOException {
+        Path first = write("day1.csv", line(90), line(60), line(60));
+        Path second = write("day2.csv", line(60), line(30), line(30));
+        Path third = write("day3.csv", line(60), line(60), line(60));
+
+        Result<MovementStream, StockError> result = new MergingMovementReader(
+                List.of(first.toString(), second.toString(), third.toString())).readMovements();
+
+        try (MovementStream stream = result.getOrThrow()) {
+            List<Integer> sequenceNumbers = stream.stream()
+                    .map(Result::getOrThrow)
+                    .map(MovementRecord::sequenceNumber)
+                    .toList();
+            assertThat(sequenceNumbers).containsExactly(90, 60, 60, 60, 30, 30);
+        }
+    }
+
+    @Test
+    void shouldFailWhenAShardIsMissing() throws IOException {
+        Path first = write("day1.csv", line(90));
+
+        Result<MovementStream, StockError> result = new MergingMovementReader(
+                List.of(first.toString(), tempDir.resolve("missing.csv").toString())).readMovements();
+
+        assertThat(result.isFailure()).isTrue();
+    }
+
+    @Test
+    void shouldSortUnreadableSequenceNumbersFirst() {
+        assertThat(MergingMovementReader.descendingSequenceKey(" 42 ,1")).isEqualTo(-42);
+        assertThat(MergingMovementReader.descendingSequenceKey("abc,1")).isEqualTo(Long.MIN_VALUE);
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(tempDir.resolve(name), List.of(lines));
+    }
+
+    private static String line(int sequenceNumber) {
+        return movement(sequenceNumber, 11005744, "BEWGZU", "1.000", "1.000", "2026-02-19");
+    }
+}
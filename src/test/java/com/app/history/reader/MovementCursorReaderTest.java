@@ -0,0 +1,77 @@
+package com.app.history.reader;
+
+import com.app.history.model.MovementCursor;
+import com.app.history.model.MovementEvent;
+import com.app.history.model.MovementRecordFactory;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.app.TestMovements.HEADER;
+import static com.app.TestMovements.LINE;
+import static com.app.TestMovements.source;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovementCursorReaderTest {
+
+    @Test
+    void shouldMoveCursorOverLinesAndReportErrorsToSink() {
+        String csv = HEADER + "\r\n" + LINE + "\r\n"
+                + LINE.replace("BEWGZU", "BADVAL") + "\n"
+                + LINE.replace("1710707", "1710706").replace("001AK0100000", "\"001,AK\"") + "\n"
+                + "1,2,3";
+        List<String> movements = new ArrayList<>();
+        List<StockError> errors = new ArrayList<>();
+
+        Result<Long, StockError> result = new MovementCursorReader(source(csv)).forEach(
+                cursor -> movements.add(describe(cursor)), errors::add);
+
+        assertThat(result.getOrThrow()).isEqualTo(4);
+        assertThat(movements).containsExactly(
+                "1710707/11005744/MOVEMENT_IN/2026-02-19/1.000/5.000/001AK0100000/4000046303",
+                "1710706/11005744/MOVEMENT_IN/2026-02-19/1.000/5.000/001,AK/4000046303");
+        assertThat(errors).extracting(StockError::type)
+                .containsExactly(StockError.ErrorType.INVALID_EVENT, StockError.ErrorType.INVALID_FIELD_COUNT);
+    }
+
+    @Test
+    void shouldReportMalformedFieldsTheReplayDoesNotRead() {
+        List<String> lines = List.of(LINE.replace(",1.200,", ",abc,"), LINE.replace(",BEWGZU,25,", ",BEWGZU,x,"),
+                LINE.replace(",BEWGZU,25,", ",BEWGZU,\"x\","));
+        List<StockError> errors = new ArrayList<>();
+
+        new MovementCursorReader(source(String.join("\n", lines))).forEach(cursor -> {
+            throw new AssertionError(cursor.line());
+        }, errors::add);
+
+        assertThat(errors).containsExactlyElementsOf(lines.stream()
+                .map(line -> MovementRecordFactory.createFromCsv(line).error())
+                .toList());
+    }
+
+    @Test
+    void shouldReturnPlaceholdersAsNull() {
+        List<String> batches = new ArrayList<>();
+
+        new MovementCursorReader(source(LINE)).forEach(cursor -> {
+            assertThat(cursor.event()).isEqualTo(MovementEvent.MOVEMENT_IN);
+            assertThat(cursor.serialNumber()).isNull();
+            assertThat(cursor.customerOrderNumber()).isNull();
+            assertThat(cursor.client()).isEqualTo(250);
+            batches.add(cursor.batch1());
+        }, error -> {
+            throw new AssertionError(error.message());
+        });
+
+        assertThat(batches).containsExactly("R65127");
+    }
+
+    private static String describe(MovementCursor cursor) {
+        return cursor.sequenceNumber() + "/" + cursor.stockNumber() + "/" + cursor.event() + "/" + cursor.date() + "/"
+                + cursor.quantityChange() + "/" + cursor.quantityTotal() + "/" + cursor.location() + "/"
+                + cursor.handlingUnitNumber();
+    }
+}
@@ -0,0 +1,61 @@
+package com.app.history.reader;
+
+import com.app.TestMovements;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.app.TestMovements.movement;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovementIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldSeekBeforeTheFirstMovementThatReachesTheStart() throws IOException {
+        Path history = Files.writeString(tempDir.resolve("history.csv"), TestMovements.HEADER + "\r\n"
+                + movement(10, 11005744, "2026-02-19") + "\r\n"
+                + movement(9, 11005744, "2026-02-19") + "\n"
+                + movement(8, 11005744, "2026-02-18") + "\n"
+                + movement(7, 11005744, "2026-02-18") + "\n"
+                + movement(6, 11005744, "2026-02-17") + "\n");
+
+        MovementIndex built = MovementIndex.build(history, 2).getOrThrow();
+        MovementIndex index = MovementIndex.load(history).orElseThrow();
+
+        assertThat(built.size()).isEqualTo(3);
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(sequenceNumbers(MovementIndex.seek(history.toString(), new MovementStart(7, null))))
+                .containsExactly(9, 8, 7, 6);
+        assertThat(sequenceNumbers(MovementIndex.seek(history.toString(), new MovementStart(null, LocalDate.of(2026, 2, 17)))))
+                .containsExactly(7, 6);
+        assertThat(index.offsetOf(new MovementStart(10, null))).isZero();
+    }
+
+    @Test
+    void shouldIgnoreIndexOfChangedHistory() throws IOException {
+        Path history = Files.writeString(tempDir.resolve("history.csv"), movement(2, 11005744, "2026-02-19") + "\n");
+        MovementIndex.build(history, 1).getOrThrow();
+
+        Files.setLastModifiedTime(history, FileTime.fromMillis(0));
+
+        assertThat(MovementIndex.load(history)).isEmpty();
+        assertThat(sequenceNumbers(MovementIndex.seek(history.toString(), new MovementStart(1, null)))).containsExactly(2);
+    }
+
+    private static List<Integer> sequenceNumbers(MovementSource source) {
+        List<Integer> sequenceNumbers = new ArrayList<>();
+        new MovementCursorReader(source).forEach(cursor -> sequenceNumbers.add(cursor.sequenceNumber()), error -> {
+        }).getOrThrow();
+        return sequenceNumbers;
+    }
+}
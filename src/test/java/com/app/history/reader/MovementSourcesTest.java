@@ -0,0 +1,34 @@
+package com.app.history.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovementSourcesTest {
+
+    @Test
+    void shouldLeaveStdinOpenWhenTheSourceIsClosed() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream stdin = System.in;
+        System.setIn(new ByteArrayInputStream("1,2\n".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+        try {
+            try (InputStream input = MovementSources.forPath(MovementSources.STDIN).openStream()) {
+                assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("1,2\n");
+            }
+            assertThat(closed.get()).isFalse();
+        } finally {
+            System.setIn(stdin);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.app.history.reader;
+
+import com.app.history.model.MovementRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static com.app.TestMovements.HEADER;
+import static com.app.TestMovements.movement;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortingMovementReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldSortHistoryLargerThanTheMemoryBudget() throws IOException {
+        List<Path> files = shuffledHistory(2_000);
+        Path runDirectory = Files.createDirectory(tempDir.resolve("runs"));
+        SortingMovementReader reader = new SortingMovementReader(paths(files),
+                new SortingMovementReader.Options(64 * 1024, 2, runDirectory, false));
+
+        assertThat(sequenceNumbers(reader.readMovements())).containsExactlyElementsOf(descending(2_000));
+        assertThat(runDirectory).isEmptyDirectory();
+    }
+
+    @Test
+    void shouldReuseCachedSortedHistory() throws IOException {
+        List<Path> files = shuffledHistory(100);
+        SortingMovementReader.Options options = new SortingMovementReader.Options(1 << 20, 1, tempDir, true);
+
+        assertThat(sequenceNumbers(new SortingMovementReader(paths(files), options).readMovements()))
+                .containsExactlyElementsOf(descending(100));
+        Path cacheFile = Path.of(files.getFirst() + ".sorted.csv");
+        assertThat(cacheFile).exists();
+
+        Files.write(cacheFile, List.of(line(7)));
+        assertThat(sequenceNumbers(new SortingMovementReader(paths(files), options).readMovements()))
+                .containsExactly(7);
+
+        Files.write(files.getLast(), List.of(line(101)), StandardOpenOption.APPEND);
+        assertThat(sequenceNumbers(new SortingMovementReader(paths(files), options).readMovements()))
+                .containsExactlyElementsOf(descending(101));
+    }
+
+    private List<Path> shuffledHistory(int size) throws IOException {
+        List<Integer> sequenceNumbers = new ArrayList<>(IntStream.rangeClosed(1, size).boxed().toList());
+        Collections.shuffle(sequenceNumbers, new Random(42));
+        List<String> first = new ArrayList<>(List.of(HEADER));
+        List<String> second = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            (i % 2 == 0 ? first : second).add(line(sequenceNumbers.get(i)));
+        }
+        return List.of(Files.write(tempDir.resolve("day1.csv"), first), Files.write(tempDir.resolve("day2.csv"), second));
+    }
+
+    private static List<String> paths(List<Path> files) {
+        return files.stream().map(Path::toString).toList();
+    }
+
+    private static List<Integer> descending(int size) {
+        return IntStream.iterate(size, i -> i > 0, i -> i - 1).boxed().toList();
+    }
+
+    private static List<Integer> sequenceNumbers(Result<MovementStream, StockError> result) {
+        assertThat(result.isSuccessful()).isTrue();
+        try (MovementStream stream = result.getOrThrow()) {
+            return stream.stream()
+                    .map(Result::getOrThrow)
+                    .map(MovementRecord::sequenceNumber)
+                    .toList();
+        }
+    }
+
+    private static String line(int sequenceNumber) {
+        return movement(sequenceNumber, 11005744, "BEWGZU", "1.000", "1.000", "2026-02-19");
+    }
+}
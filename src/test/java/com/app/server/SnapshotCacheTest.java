@@ -0,0 +1,66 @@
+package com.app.server;
+
+import com.app.stock.StockData;
+import com.app.stock.model.StockRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCacheTest {
+    private final List<String> loads = new ArrayList<>();
+
+    @Test
+    void shouldEvictTheLeastRecentlyUsedSnapshotAboveTheCapacity() {
+        SnapshotCache<String> cache = new SnapshotCache<>(25 * StockSnapshot.ESTIMATED_BYTES_PER_RECORD, this::load);
+
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.usedBytes()).isEqualTo(20 * StockSnapshot.ESTIMATED_BYTES_PER_RECORD);
+        cache.get("a");
+        cache.get("b");
+        assertThat(loads).containsExactly("a", "b", "c", "b");
+    }
+
+    @Test
+    void shouldKeepTheLatestSnapshotEvenAboveTheCapacity() {
+        SnapshotCache<String> cache = new SnapshotCache<>(1, this::load);
+
+        assertThat(cache.get("a").getOrThrow().size()).isEqualTo(10);
+        cache.get("a");
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(loads).containsExactly("a");
+    }
+
+    @Test
+    void shouldNotCacheFailures() {
+        SnapshotCache<String> cache = new SnapshotCache<>(Long.MAX_VALUE, key -> {
+            loads.add(key);
+            throw new IllegalStateException("broken");
+        });
+
+        assertThat(cache.get("a").isSuccessful()).isFalse();
+        assertThat(cache.get("a").isSuccessful()).isFalse();
+        assertThat(loads).containsExactly("a", "a");
+    }
+
+    private Result<StockSnapshot, StockError> load(String key) {
+        loads.add(key);
+        Map<Integer, StockRecord> stockRecords = new HashMap<>();
+        for (int stockNumber = 1; stockNumber <= 10; stockNumber++) {
+            stockRecords.put(stockNumber, StockRecord.builder().sequenceNumber(stockNumber).itemNumber(key).build());
+        }
+        return Result.success(StockSnapshot.of(new StockData(stockRecords, null)));
+    }
+}
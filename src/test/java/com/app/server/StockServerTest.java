@@ -0,0 +1,153 @@
+package com.app.server;
+
+import com.app.TestMovements;
+import com.app.TestStocks;
+import com.app.stock.reader.CsvStockIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestStocks.stock;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ConcurrentMap<LocalDate, AtomicInteger> reconstructions = new ConcurrentHashMap<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private StockServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        StringBuilder stocks = new StringBuilder(TestStocks.HEADER + "\n");
+        for (int stockNumber = 1; stockNumber <= 10; stockNumber++) {
+            stocks.append(stock(stockNumber).replaceFirst("100773", "ITEM" + stockNumber % 3)).append('\n');
+        }
+        Path stockFile = Files.writeString(tempDir.resolve("stock.csv"), stocks);
+        StringBuilder history = new StringBuilder(TestMovements.HEADER + "\n");
+        for (int sequenceNumber = 1; sequenceNumber <= 30; sequenceNumber++) {
+            history.append(movement(sequenceNumber, sequenceNumber % 10 + 1,
+                    sequenceNumber <= 20 ? "2026-02-01" : "2026-02-19")).append('\n');
+        }
+        Path historyFile = Files.writeString(tempDir.resolve("history.csv"), history);
+
+        server = new StockServer(
+                new StockServer.Inputs(stockFile.toString(), List.of(historyFile.toString()), StandardCharsets.UTF_8,
+                        null),
+                new StockServer.Options(0, 1L << 30),
+                cutoff -> {
+                    reconstructions.computeIfAbsent(cutoff == null ? LocalDate.MIN : cutoff,
+                            ignored -> new AtomicInteger()).incrementAndGet();
+                    return new CsvStockIO(stockFile.toString(), false).readStocks();
+                });
+        baseUrl = "http://localhost:" + server.start() + "/stocks";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    void shouldReturnASingleStock() throws Exception {
+        HttpResponse<String> json = get("/4");
+        assertThat(json.statusCode()).isEqualTo(200);
+        assertThat(json.body()).startsWith("{\"stockNumber\":4,\"itemNumber\":\"ITEM1\",\"client\":250,"
+                + "\"location\":\"001020200807\"");
+
+        HttpResponse<String> csv = get("/4?format=csv");
+        assertThat(csv.body()).startsWith("4,ITEM1,250,1908165,");
+        assertThat(get("/11").statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void shouldListStocksMatchingTheFilters() throws Exception {
+        assertThat(get("?format=csv").body().lines()).hasSize(10);
+        assertThat(get("?format=csv&item=ITEM1,ITEM2&stock-number=2,3,4").body().lines())
+                .extracting(line -> line.substring(0, line.indexOf(',')))
+                .containsExactly("2", "4");
+        assertThat(get("?format=csv&item=ITEM1,ITEM1").body().lines()).hasSize(4);
+        assertThat(get("?location=nowhere").body()).isEqualTo("[]\n");
+        assertThat(get("?client=250&item=ITEM0").body())
+                .startsWith("[\n{\"stockNumber\":3,")
+                .contains("\n{\"stockNumber\":6,", "\n{\"stockNumber\":9,")
+                .endsWith("}\n]\n");
+    }
+
+    @Test
+    void shouldListTheMovementsOfAStockBeforeTheCutoff() throws Exception {
+        assertThat(get("/3/movements?format=csv").body().lines())
+                .extracting(line -> line.substring(0, line.indexOf(',')))
+                .containsExactly("2", "12", "22");
+        assertThat(get("/3/movements?format=csv&date=2026-02-20").body().lines()).hasSize(3);
+        assertThat(get("/3/movements?format=csv&date=2026-02-19").body().lines())
+                .extracting(line -> line.substring(0, line.indexOf(',')))
+                .containsExactly("2", "12");
+        assertThat(get("/3/movements?format=csv&date=2026-02-10").body().lines()).hasSize(2);
+        assertThat(get("/3/movements?format=csv&date=2026-02-01").body().lines()).isEmpty();
+        assertThat(get("/3/movements").body())
+                .startsWith("[\n{\"sequenceNumber\":2,\"stockNumber\":3,\"event\":")
+                .contains("\"date\":\"2026-02-01\",\"quantityChange\":1.000");
+    }
+
+    @Test
+    void shouldIndexTheMovementsAgainWhenTheHistoryChanges() throws Exception {
+        assertThat(get("/3/movements?format=csv").body().lines()).hasSize(3);
+
+        Path historyFile = tempDir.resolve("history.csv");
+        Files.writeString(historyFile, "broken,line\r\n" + movement(40, 3) + "\r\n"
+                + Files.readString(historyFile));
+        Files.setLastModifiedTime(historyFile, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        assertThat(get("/3/movements?format=csv").body().lines())
+                .extracting(line -> line.substring(0, line.indexOf(',')))
+                .containsExactly("40", "2", "12", "22");
+        assertThat(get("/11/movements").body()).isEqualTo("[]\n");
+    }
+
+    @Test
+    void shouldReconstructEveryCutoffOnce() throws Exception {
+        get("/1");
+        get("/1?date=2026-02-10");
+        get("?date=2026-02-10");
+
+        assertThat(reconstructions.get(LocalDate.MIN)).hasValue(1);
+        assertThat(reconstructions.get(LocalDate.of(2026, 2, 10))).hasValue(1);
+    }
+
+    @Test
+    void shouldRejectInvalidRequests() throws Exception {
+        assertThat(get("/abc").statusCode()).isEqualTo(400);
+        assertThat(get("?date=yesterday").statusCode()).isEqualTo(400);
+        assertThat(get("?format=xml").statusCode()).isEqualTo(400);
+        assertThat(get("?color=red").statusCode()).isEqualTo(400);
+        assertThat(get("/1/2/3").statusCode()).isEqualTo(404);
+        assertThat(client.send(HttpRequest.newBuilder(URI.create(baseUrl)).DELETE().build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode()).isEqualTo(405);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,79 @@
+package com.app.stock;
+
+import com.app.history.reader.MovementCursorReader;
+import com.app.stock.model.StockRecord;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestMovements.source;
+import static com.app.TestStocks.stockRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapStockDataTest {
+    private static final String CSV = String.join("\n",
+            movement(9, 1, "BEWGZU", "1.000", "5.000", "2026-02-19"),
+            movement(8, 2, "BEWGAB", "-1.000", "3.000", "2026-02-18"),
+            movement(7, 3, "LOESCH", "-2.000", "0.000", "2026-02-18"),
+            movement(6, 1, "BEWGZU", "1.000", "9.000", "2026-02-17"),
+            movement(5, 2, "WAREIN", "4.000", "4.000", "2026-02-16"),
+            movement(6, 3, "BEWGAB", "-1.000", "2.000", "2026-02-15"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReplayLikeStockData() {
+        for (LocalDate stockDate : new LocalDate[]{null, LocalDate.of(2026, 2, 18)}) {
+            StockData expected = new StockData(List.of(stockRecord(1), stockRecord(2)), stockDate);
+            new MovementCursorReader(source(CSV)).forEach(expected::handleMovement, expected::handleMovementError);
+            expected.cleanUp();
+
+            try (OffHeapStockStore store = OffHeapStockStore.create()) {
+                store.putIfAbsent(stockRecord(1));
+                store.putIfAbsent(stockRecord(2));
+                OffHeapStockData data = new OffHeapStockData(store, stockDate);
+                new MovementCursorReader(source(CSV)).forEach(data::handleMovement, data::handleMovementError);
+                data.cleanUp();
+
+                assertThat(data.records().map(StockRecord::getSequenceNumber))
+                        .containsExactlyInAnyOrderElementsOf(expected.getStockRecords().keySet());
+                data.records().forEach(stockRecord -> {
+                    StockRecord expectedRecord = expected.getStockRecord(stockRecord.getSequenceNumber());
+                    assertThat(stockRecord.getQuantityOnHand()).isEqualByComparingTo(expectedRecord.getQuantityOnHand());
+                    assertThat(stockRecord.getLocation()).isEqualTo(expectedRecord.getLocation());
+                    assertThat(stockRecord.getHandlingUnitNumber()).isEqualTo(expectedRecord.getHandlingUnitNumber());
+                    assertThat(stockRecord.getItemNumber()).isEqualTo(expectedRecord.getItemNumber());
+                });
+                assertThat(data.getErrors()).extracting(StockError::message)
+                        .containsExactlyElementsOf(expected.getErrors().stream().map(StockError::message).toList());
+            }
+        }
+    }
+
+    @Test
+    void shouldReopenFileBackedStore() {
+        try (OffHeapStockStore store = OffHeapStockStore.create(tempDir)) {
+            store.putIfAbsent(stockRecord(1));
+            store.putIfAbsent(stockRecord(2));
+            store.remove(store.find(1));
+            store.flush();
+        }
+
+        try (OffHeapStockStore store = OffHeapStockStore.open(tempDir)) {
+            List<StockRecord> records = new ArrayList<>(store.records().toList());
+
+            assertThat(store.size()).isEqualTo(1);
+            assertThat(records).hasSize(1);
+            assertThat(records.getFirst().getSequenceNumber()).isEqualTo(2);
+            assertThat(records.getFirst().getMiscText1()).isEqualTo("Süd");
+            assertThat(records.getFirst().getQuantityOnHand()).isEqualByComparingTo("5");
+        }
+    }
+}
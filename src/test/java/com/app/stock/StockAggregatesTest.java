@@ -0,0 +1,70 @@
+package com.app.stock;
+
+import com.app.history.model.MovementEvent;
+import com.app.history.model.MovementRecord;
+import com.app.stock.model.StockRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.app.TestMovements.movementRecordBuilder;
+import static com.app.TestStocks.stockRecordBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockAggregatesTest {
+
+    @Test
+    void shouldMaintainTotalsWhileReplaying() {
+        StockData stockData = new StockData(new ArrayList<>(List.of(
+                stock(1, "100773", "001020200807", "R1", "5.000"),
+                stock(2, "100773", "001020200808", "R1", "2.000"),
+                stock(3, "102563", "001020200808", "R2", "1.000")
+        )));
+        StockAggregates aggregates = stockData.enableAggregates();
+
+        assertThat(aggregates.byItem().get("100773").quantity()).isEqualByComparingTo("7");
+        assertThat(aggregates.byLocation().get("001020200808").stocks()).isEqualTo(2);
+
+        stockData.handleMovement(movement(10, 1, MovementEvent.MOVEMENT_OUT, "001PP0100000", "-2.000", "5.000"));
+        stockData.handleMovement(movement(9, 3, MovementEvent.GOODS_RECEIPT, "001020200808", "1.000", "1.000"));
+        stockData.handleMovement(movement(8, 4, MovementEvent.DELETE, "001020200809", "0.000", "4.000"));
+
+        assertThat(aggregates.byItem().get("100773").quantity()).isEqualByComparingTo("9");
+        assertThat(aggregates.byItem().get("102563").quantity()).isEqualByComparingTo("4");
+        assertThat(aggregates.byLocation()).doesNotContainKey("001020200807");
+        assertThat(aggregates.byLocation().get("001PP0100000").quantity()).isEqualByComparingTo("7");
+        assertThat(aggregates.byLocation().get("001020200808").stocks()).isEqualTo(1);
+        assertThat(aggregates.byClientBatch().get(new StockAggregates.ClientBatch(250, "R1")).quantity()).isEqualByComparingTo("9");
+        assertThat(aggregates.byClientBatch()).doesNotContainKey(new StockAggregates.ClientBatch(250, "R2"));
+    }
+
+    @Test
+    void shouldDropCleanedUpStocksFromTotals() {
+        StockData stockData = new StockData(new ArrayList<>(List.of(
+                stock(1, "100773", "001020200807", "R1", "5.000"),
+                stock(2, "100773", "001020200808", "R1", "0.000")
+        )));
+        StockAggregates aggregates = stockData.enableAggregates();
+
+        stockData.cleanUp();
+
+        assertThat(aggregates.byItem().get("100773").stocks()).isEqualTo(1);
+        assertThat(aggregates.byLocation()).containsOnlyKeys("001020200807");
+    }
+
+    private static StockRecord stock(int sequenceNumber, String itemNumber, String location, String batch1, String quantity) {
+        return stockRecordBuilder(sequenceNumber, itemNumber, location, quantity).batch1(batch1).build();
+    }
+
+    private static Result<MovementRecord, StockError> movement(int sequenceNumber, int stockNumber, MovementEvent event,
+                                                               String location, String change, String total) {
+        return Result.success(movementRecordBuilder(sequenceNumber, stockNumber, event, change, total)
+                .itemNumber("102563")
+                .batch1("R3")
+                .location(location)
+                .build());
+    }
+}
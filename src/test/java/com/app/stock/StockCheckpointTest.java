@@ -0,0 +1,80 @@
+package com.app.stock;
+
+import com.app.TestStocks;
+import com.app.history.reader.MovementCursorReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestMovements.source;
+import static com.app.TestStocks.stockRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockCheckpointTest {
+    private static final LocalDate STOCK_DATE = LocalDate.of(2026, 2, 18);
+    private static final String BEFORE = String.join("\n",
+            movement(9, 1, "BEWGZU", "1.000", "5.000", "2026-02-19"),
+            movement(8, 2, "BEWGAB", "-1.000", "3.000", "2026-02-17"),
+            "8,broken",
+            movement(7, 3, "LOESCH", "-2.000", "0.000", "2026-02-18"));
+    private static final String AFTER = String.join("\n",
+            movement(6, 2, "BEWGZU", "1.000", "9.000", "2026-02-16"),
+            movement(7, 3, "BEWGAB", "-1.000", "2.000", "2026-02-18"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldContinueLikeTheUninterruptedReplay() throws IOException {
+        StockData expected = new StockData(List.of(stockRecord(1), stockRecord(2)), STOCK_DATE);
+        replay(expected, BEFORE);
+        Path file = tempDir.resolve("checkpoint.bin");
+
+        StockCheckpoint.publish(StockCheckpoint.write(file, "key", expected, 1234, 4, true), file);
+        StockCheckpoint checkpoint = StockCheckpoint.read(file, "key", STOCK_DATE).orElseThrow();
+        replay(expected, AFTER);
+        replay(checkpoint.data(), AFTER);
+
+        assertThat(checkpoint.offset()).isEqualTo(1234);
+        assertThat(checkpoint.lines()).isEqualTo(4);
+        assertThat(checkpoint.gateOpen()).isTrue();
+        assertThat(checkpoint.data().getStockRecords()).isEqualTo(expected.getStockRecords());
+        assertThat(checkpoint.data().getErrors()).isEqualTo(expected.getErrors()).hasSize(2);
+        assertThat(checkpoint.data().isCriticalErrors()).isTrue();
+    }
+
+    @Test
+    void shouldRestoreRecordsOfSeveralBlocks() throws IOException {
+        StockData expected = new StockData(IntStream.rangeClosed(1, 100_000).mapToObj(TestStocks::stockRecord).toList(),
+                STOCK_DATE);
+        Path file = tempDir.resolve("checkpoint.bin");
+
+        StockCheckpoint.publish(StockCheckpoint.write(file, "key", expected, 0, 0, false), file);
+
+        assertThat(Files.size(file)).isGreaterThan(4L << 20);
+        assertThat(StockCheckpoint.read(file, "key", STOCK_DATE).orElseThrow().data().getStockRecords())
+                .isEqualTo(expected.getStockRecords());
+        assertThat(tempDir.resolve("checkpoint.bin.tmp")).doesNotExist();
+    }
+
+    @Test
+    void shouldIgnoreCheckpointOfOtherInput() throws IOException {
+        Path file = tempDir.resolve("checkpoint.bin");
+        StockCheckpoint.publish(StockCheckpoint.write(file, "key", new StockData(List.of(stockRecord(1))), 0, 0, false),
+                file);
+
+        assertThat(StockCheckpoint.read(file, "other key", null)).isEmpty();
+        assertThat(StockCheckpoint.read(tempDir.resolve("missing.bin"), "key", null)).isEmpty();
+    }
+
+    private static void replay(StockData data, String csv) {
+        new MovementCursorReader(source(csv)).forEach(data::handleMovement, data::handleMovementError);
+    }
+}
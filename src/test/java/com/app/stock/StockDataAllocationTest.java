@@ -0,0 +1,70 @@
+package com.app.stock;
+
+import com.app.history.reader.MovementCursorReader;
+import com.app.stock.model.StockRecord;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.app.TestMovements.HEADER;
+import static com.app.TestMovements.source;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockDataAllocationTest {
+    private static final int STOCKS = 1_000;
+    private static final int MOVEMENTS = 200_000;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final double MAX_BYTES_PER_MOVEMENT = 50;
+
+    @Test
+    void shouldReplayCursorMovementsWithoutAllocatingPerMovement() {
+        byte[] history = history();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long allocated = 0;
+        for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+            StockData stockData = new StockData(stocks());
+            MovementCursorReader reader = new MovementCursorReader(source(history));
+            long before = threads.getCurrentThreadAllocatedBytes();
+            reader.forEach(stockData::handleMovement, stockData::handleMovementError);
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            assertThat(stockData.getErrors()).isEmpty();
+        }
+
+        assertThat((double) allocated / MOVEMENTS).isLessThan(MAX_BYTES_PER_MOVEMENT);
+    }
+
+    private static byte[] history() {
+        Random random = new Random(1);
+        StringBuilder csv = new StringBuilder(HEADER + "\n");
+        for (int i = 0; i < MOVEMENTS; i++) {
+            csv.append(2 * MOVEMENTS - i)
+                    .append(',').append(100_000 + random.nextInt(STOCKS))
+                    .append(",____________________,001AK01").append(10_000 + random.nextInt(200))
+                    .append(",103098,,R65127,____________________,")
+                    .append(random.nextBoolean() ? "-1.000" : "1.000")
+                    .append(",5.000,1.200,250,")
+                    .append(random.nextBoolean() ? "BEWGZU" : "BEWGAB")
+                    .append(",25,2026-02-19,16:45:17,KAAC,N,ELU0002984,38,____________________,__________\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<Integer, StockRecord> stocks() {
+        Map<Integer, StockRecord> stocks = new HashMap<>();
+        for (int i = 0; i < STOCKS; i++) {
+            stocks.put(100_000 + i, StockRecord.builder()
+                    .sequenceNumber(100_000 + i)
+                    .itemNumber("103098")
+                    .location("001AK0100000")
+                    .quantityOnHand(new BigDecimal("5.000"))
+                    .build());
+        }
+        return stocks;
+    }
+}
@@ -0,0 +1,94 @@
+package com.app.stock;
+
+import com.app.history.model.MovementEvent;
+import com.app.history.model.MovementRecord;
+import com.app.stock.model.StockRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.app.TestMovements.movementRecordBuilder;
+import static com.app.TestStocks.stockRecordBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockIndexesTest {
+
+    @Test
+    void shouldKeepIndexesCurrentWhileReplaying() {
+        StockData stockData = new StockData(new ArrayList<>(List.of(
+                stock(1, "100773", "001020200807", "HU1", "5.000"),
+                stock(2, "100773", "001020200808", "HU1", "2.000"),
+                stock(3, "102563", "001020200808", "HU3", "1.000"),
+                stock(6, "102563", "001020200810", "HU6", "0.000")
+        )));
+        StockIndexes indexes = stockData.enableIndexes();
+
+        assertThat(numbers(stockData.findByItemNumber("100773"))).containsExactly(1, 2);
+        assertThat(numbers(stockData.findByHandlingUnit("hu1"))).containsExactly(1, 2);
+
+        stockData.handleMovement(movement(10, 1, MovementEvent.MOVEMENT_OUT, "001PP0100000", "HU9", "-2.000", "5.000"));
+        stockData.handleMovement(movement(9, 3, MovementEvent.GOODS_RECEIPT, "001020200808", "HU3", "1.000", "1.000"));
+        stockData.handleMovement(movement(8, 4, MovementEvent.DELETE, "001020200809", "HU4", "0.000", "4.000"));
+
+        assertThat(numbers(stockData.findByHandlingUnit("HU3"))).isEmpty();
+        assertThat(numbers(stockData.findByLocation("001020200807"))).isEmpty();
+        assertThat(numbers(stockData.findByLocation("001PP0100000"))).containsExactly(1);
+        assertThat(numbers(stockData.findByHandlingUnit("HU9"))).containsExactly(1);
+        assertThat(numbers(stockData.findByHandlingUnit("HU1"))).containsExactly(2);
+        assertThat(numbers(stockData.findByItemNumber("102563"))).containsExactly(4, 6);
+        assertThat(numbers(stockData.findByPrefix(StockIndexes.Key.LOCATION, "00102020080"))).containsExactly(2, 4);
+        assertThat(numbers(stockData.findByPrefix(StockIndexes.Key.HANDLING_UNIT, "hu"))).containsExactly(1, 2, 4, 6);
+
+        stockData.cleanUp();
+
+        assertThat(numbers(stockData.findByHandlingUnit("HU6"))).isEmpty();
+        assertThat(numbers(stockData.findByItemNumber("102563"))).containsExactly(4);
+        assertThat(indexes.size(StockIndexes.Key.HANDLING_UNIT)).isEqualTo(3);
+    }
+
+    @Test
+    void shouldIndexExistingStocksWhenEnabledLater() {
+        StockData stockData = new StockData(new ArrayList<>(List.of(
+                stock(7, "100773", "001020200807", null, "1.000"),
+                stock(5, "100774", "001020200807", "HU5", "1.000")
+        )));
+
+        assertThat(numbers(stockData.findByLocation("001020200807"))).containsExactly(5, 7);
+        assertThat(numbers(stockData.findByPrefix(StockIndexes.Key.ITEM_NUMBER, ""))).containsExactly(5, 7);
+        assertThat(stockData.enableIndexes().size(StockIndexes.Key.HANDLING_UNIT)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFindNothingForNull() {
+        StockData stockData = new StockData(new ArrayList<>(List.of(stock(7, "100773", "001020200807", null, "1.000"))));
+
+        assertThat(stockData.findByHandlingUnit(null)).isEmpty();
+        assertThat(stockData.findByLocation(null)).isEmpty();
+        assertThat(stockData.findByItemNumber(null)).isEmpty();
+        assertThat(stockData.findByPrefix(StockIndexes.Key.HANDLING_UNIT, null)).isEmpty();
+    }
+
+    private static List<Integer> numbers(List<StockRecord> stockRecords) {
+        return stockRecords.stream().map(StockRecord::getSequenceNumber).toList();
+    }
+
+    private static StockRecord stock(int stockNumber, String itemNumber, String location, String handlingUnitNumber,
+                                     String quantity) {
+        return stockRecordBuilder(stockNumber, itemNumber, location, quantity)
+                .handlingUnitNumber(handlingUnitNumber)
+                .build();
+    }
+
+    private static Result<MovementRecord, StockError> movement(int sequenceNumber, int stockNumber, MovementEvent event,
+                                                               String location, String handlingUnitNumber,
+                                                               String change, String total) {
+        return Result.success(movementRecordBuilder(sequenceNumber, stockNumber, event, change, total)
+                .itemNumber("102563")
+                .location(location)
+                .handlingUnitNumber(handlingUnitNumber)
+                .build());
+    }
+}
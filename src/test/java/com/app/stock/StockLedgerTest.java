@@ -0,0 +1,93 @@
+package com.app.stock;
+
+import com.app.history.model.MovementEvent;
+import com.app.history.model.MovementRecord;
+import com.app.stock.model.StockRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.app.TestMovements.movementRecordBuilder;
+import static com.app.TestStocks.stockRecordBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldWriteAppliedMovementsOfExportedStocksGroupedByStock() throws IOException {
+        StockData stockData = new StockData(new ArrayList<>(List.of(stock(1, "5.000"), stock(2, "3.000"))));
+        Path ledgerFile;
+        // a budget of one byte sorts every row in a run of its own
+        try (StockLedger ledger = StockLedger.open(new StockLedger.Options(1, 1, tempDir.resolve("temp"))).getOrThrow()) {
+            stockData.addMovementListener(ledger);
+            stockData.handleMovement(movement(30, 1, MovementEvent.MOVEMENT_IN, "2.000", "5.000", null));
+            stockData.handleMovement(movement(20, 2, MovementEvent.MOVEMENT_OUT, "-1.000", "3.000", null));
+            stockData.handleMovement(movement(10, 1, MovementEvent.BATCH_CORRECTION_IN, "1.000", "3.000", null));
+            stockData.handleMovement(movement(5, 7, MovementEvent.MOVEMENT_IN, "2.000", "2.000", null));
+            stockData.handleMovement(movement(-3, 1, MovementEvent.MOVEMENT_IN, "1.000", "2.000", null));
+
+            assertThat(ledger.rowCount()).isEqualTo(5);
+            stockData.cleanUp();
+            ledgerFile = ledger.write(tempDir.resolve("output").toString(), StandardCharsets.UTF_8,
+                    stockData.getStockRecords()::containsKey).getOrThrow();
+        }
+
+        assertThat(stockData.getStockRecords()).doesNotContainKey(7);
+        assertThat(Files.readAllLines(ledgerFile)).containsExactly(
+                StockLedger.HEADER,
+                "1,-3,MOVEMENT_IN,1.000,2.000,001020200807",
+                "1,10,BATCH_CORRECTION_IN,1.000,3.000,001020200807",
+                "1,30,MOVEMENT_IN,2.000,5.000,001020200807",
+                "2,20,MOVEMENT_OUT,-1.000,3.000,001020200807");
+        assertThat(stockData.getStockRecord(1).getQuantityOnHand()).isEqualByComparingTo("1.000");
+        try (Stream<Path> temp = Files.list(tempDir.resolve("temp"))) {
+            assertThat(temp).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldLeaveOutMovementsSkippedByTheStockDate() throws IOException {
+        StockData stockData = new StockData(new ArrayList<>(List.of(stock(1, "5.000"))), LocalDate.of(2026, 1, 15));
+        Path ledgerFile;
+        try (StockLedger ledger = StockLedger.open(new StockLedger.Options(1 << 20, 1, tempDir)).getOrThrow()) {
+            stockData.addMovementListener(ledger);
+            stockData.handleMovement(movement(30, 1, MovementEvent.MOVEMENT_IN, "2.000", "5.000",
+                    LocalDate.of(2026, 1, 20)));
+            stockData.handleMovement(movement(20, 1, MovementEvent.MOVEMENT_IN, "1.000", "3.000",
+                    LocalDate.of(2026, 1, 10)));
+            ledgerFile = ledger.write(tempDir.resolve("output").toString(), StandardCharsets.UTF_8, number -> true)
+                    .getOrThrow();
+        }
+
+        assertThat(Files.readAllLines(ledgerFile)).containsExactly(
+                StockLedger.HEADER,
+                "1,30,MOVEMENT_IN,2.000,5.000,001020200807");
+    }
+
+    private static StockRecord stock(int stockNumber, String quantity) {
+        return stockRecordBuilder(stockNumber, "100773", "001020200807", quantity).build();
+    }
+
+    private static Result<MovementRecord, StockError> movement(int sequenceNumber, int stockNumber,
+                                                               MovementEvent event, String change, String total,
+                                                               LocalDate date) {
+        return Result.success(movementRecordBuilder(sequenceNumber, stockNumber, event, change, total)
+                .itemNumber("100773")
+                .location("001020200807")
+                .date(date)
+                .build());
+    }
+}
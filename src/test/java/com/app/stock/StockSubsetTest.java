@@ -0,0 +1,73 @@
+package com.app.stock;
+
+import com.app.history.reader.MovementCursorReader;
+import com.app.stock.model.StockRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.app.TestMovements.movement;
+import static com.app.TestMovements.source;
+import static com.app.TestStocks.stockRecordBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockSubsetTest {
+
+    @Test
+    void shouldReplayOnlyMovementsOfSelectedStocks() {
+        Map<Integer, StockRecord> snapshot = new HashMap<>();
+        snapshot.put(1, stock(1, 250));
+        snapshot.put(2, stock(2, 300));
+        StockSubset subset = StockSubset.select(snapshot, new StockFilter(Set.of(), Set.of(), Set.of(250), Set.of()));
+        String csv = String.join("\n",
+                movement(9, 1, 250, "BEWGZU", "1.000", "5.000"),
+                movement(8, 2, 300, "BEWGZU", "1.000", "5.000"),
+                "7,2,broken",
+                movement(6, 3, 250, "LOESCH", "-2.000", "0.000"),
+                movement(5, 4, 300, "LOESCH", "-2.000", "0.000"),
+                movement(4, 3, 250, "BEWGAB", "-1.000", "2.000"));
+        StockData data = new StockData(subset.stockRecords());
+
+        new MovementCursorReader(source(csv)).forEach(cursor -> {
+            if (subset.accepts(cursor)) {
+                data.handleMovement(cursor);
+            }
+        }, data::handleMovementError, subset::skips).getOrThrow();
+
+        assertThat(data.getStockRecords()).containsOnlyKeys(1, 3);
+        assertThat(data.getStockRecord(1).getQuantityOnHand()).isEqualByComparingTo("4");
+        assertThat(data.getStockRecord(3).getQuantityOnHand()).isEqualByComparingTo("3");
+        assertThat(data.getErrors()).isEmpty();
+        assertThat(subset.skips(2)).isTrue();
+        assertThat(subset.skips(4)).isTrue();
+        assertThat(subset.skips(3)).isFalse();
+    }
+
+    @Test
+    void shouldMatchTheLocationAfterTheReplay() {
+        Map<Integer, StockRecord> snapshot = new HashMap<>();
+        snapshot.put(1, stock(1, 250));
+        snapshot.put(2, stock(2, 250));
+        StockFilter filter = new StockFilter(Set.of(), Set.of("001BB0200000"), Set.of(250), Set.of());
+        StockSubset subset = StockSubset.select(snapshot, filter);
+        String csv = movement(9, 1, 250, "BEWGZU", "1.000", "5.000").replace("001AK0100000", "001BB0200000");
+        StockData data = new StockData(subset.stockRecords());
+
+        new MovementCursorReader(source(csv)).forEach(cursor -> {
+            if (subset.accepts(cursor)) {
+                data.handleMovement(cursor);
+            }
+        }, data::handleMovementError, subset::skips).getOrThrow();
+
+        assertThat(subset.skips(1)).isFalse();
+        assertThat(data.retainMatching(filter)).isEqualTo(1);
+        assertThat(data.getStockRecords()).containsOnlyKeys(1);
+        assertThat(data.getStockRecord(1).getLocation()).isEqualTo("001BB0200000");
+    }
+
+    private static StockRecord stock(int stockNumber, int client) {
+        return stockRecordBuilder(stockNumber, null, "001AK0100000", "5.000").client(client).build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.app.stock.diff;
+
+import com.app.TestStocks;
+import com.app.stock.StockData;
+import com.app.stock.model.StockRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.app.TestStocks.LINE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockDiffEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReportAddedRemovedAndChangedStocks() throws IOException {
+        StockData left = new StockData(List.of(
+                stock(1, "100773", "001020200807", "38280223", "5.000"),
+                stock(2, "100773", "001020200808", null, "2.000"),
+                stock(3, "102563", "001020200809", null, "1.000")
+        ));
+        StockData right = new StockData(List.of(
+                stock(1, "100773", "001020200807", "38280223", "5.000"),
+                stock(3, "102563", "001PP0100000", null, "4.000"),
+                stock(4, "102563", "001PP0100000", null, "3.000")
+        ));
+
+        Result<StockDiffSummary, StockError> result = new StockDiffEngine().diff(left, right, tempDir.toString());
+
+        assertThat(result.isSuccessful()).isTrue();
+        StockDiffSummary summary = result.getOrThrow();
+        assertThat(summary.added()).isEqualTo(1);
+        assertThat(summary.removed()).isEqualTo(1);
+        assertThat(summary.changed()).isEqualTo(1);
+        assertThat(summary.unchanged()).isEqualTo(1);
+        assertThat(Files.readAllLines(summary.diffFile())).containsExactly(
+                "SEQ,CHANGE,FIELD,LEFT,RIGHT",
+                "2,REMOVED,,2.000,",
+                "3,CHANGED,QUANTITY,1.000,4.000",
+                "3,CHANGED,LOCATION,001020200809,001PP0100000",
+                "4,ADDED,,,3.000"
+        );
+        assertThat(Files.readAllLines(summary.totalsFile())).containsExactly(
+                "ITEM_NUMBER,LOCATION,LEFT_QUANTITY,RIGHT_QUANTITY,DIFFERENCE",
+                "100773,001020200807,5.000,5.000,0.000",
+                "100773,001020200808,2.000,0,-2.000",
+                "102563,001020200809,1.000,0,-1.000",
+                "102563,001PP0100000,0,7.000,7.000"
+        );
+    }
+
+    @Test
+    void shouldSortUnsortedStockFiles() throws IOException {
+        Path left = tempDir.resolve("left.csv");
+        Path right = tempDir.resolve("right.csv");
+        Files.write(left, List.of(LINE, TestStocks.stock(9736)));
+        Files.write(right, List.of(TestStocks.stock(9738), LINE));
+
+        Result<StockDiffSummary, StockError> result = new StockDiffEngine().diff(left.toString(), right.toString(), tempDir.toString());
+
+        StockDiffSummary summary = result.getOrThrow();
+        assertThat(summary.removed()).isEqualTo(1);
+        assertThat(summary.added()).isEqualTo(1);
+        assertThat(summary.unchanged()).isEqualTo(1);
+        List<String> diffLines = Files.readAllLines(summary.diffFile());
+        assertThat(diffLines).hasSize(3);
+        assertThat(diffLines.get(1)).startsWith("9736,REMOVED,");
+        assertThat(diffLines.get(2)).startsWith("9738,ADDED,");
+    }
+
+    @Test
+    void shouldReadAndWriteTheConfiguredCharset() throws IOException {
+        Charset windows1252 = Charset.forName("windows-1252");
+        Path left = tempDir.resolve("left.csv");
+        Path right = tempDir.resolve("right.csv");
+        Files.write(left, List.of(LINE.replace("001020200807", "LAGER-SÜD")), windows1252);
+        Files.write(right, List.of(LINE.replace("001020200807", "LAGER-NORD")), windows1252);
+
+        StockDiffSummary summary = new StockDiffEngine(windows1252)
+                .diff(left.toString(), right.toString(), tempDir.toString()).getOrThrow();
+
+        assertThat(Files.readAllLines(summary.diffFile(), windows1252))
+                .contains("9737,CHANGED,LOCATION,LAGER-SÜD,LAGER-NORD");
+        assertThat(Files.readAllLines(summary.totalsFile(), windows1252))
+                .contains("100773,LAGER-SÜD,5.000,0,-5.000");
+    }
+
+    private static StockRecord stock(int sequenceNumber, String itemNumber, String location, String handlingUnit, String quantity) {
+        return StockRecord.builder()
+                .sequenceNumber(sequenceNumber)
+                .itemNumber(itemNumber)
+                .location(location)
+                .handlingUnitNumber(handlingUnit)
+                .quantityOnHand(new BigDecimal(quantity))
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.app.stock.reader;
+
+import com.app.stock.StockData;
+import com.app.utils.CsvCharsets;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.app.TestStocks.HEADER;
+import static com.app.TestStocks.LINE;
+import static com.app.TestStocks.stock;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvStockIOTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldKeepFirstDuplicateAcrossChunks() throws IOException {
+        List<String> lines = new ArrayList<>(List.of(HEADER));
+        for (int i = 0; i < 500; i++) {
+            lines.add(stockLine(i % 200, "LOC" + i));
+        }
+        Path csv = Files.write(tempDir.resolve("stock.csv"), lines);
+
+        StockData stockData = new CsvStockIO(csv.toString(), false, CsvCharsets.DEFAULT, 4, 4096).readStocks().getOrThrow();
+
+        assertThat(stockData.getStockRecords()).hasSize(200);
+        assertThat(stockData.getStockRecord(0).getLocation()).isEqualTo("LOC0");
+        assertThat(stockData.getStockRecord(199).getLocation()).isEqualTo("LOC199");
+        assertThat(stockData.getErrors()).isEmpty();
+    }
+
+    @Test
+    void shouldReportUnparsableLinesWithCounts() throws IOException {
+        Path csv = Files.writeString(tempDir.resolve("stock.csv"),
+                stockLine(1, "A") + "\r\n" + "broken,line\n" + stockLine(2, "B") + "\r" + "x" + LINE.substring(4) + "\n");
+
+        StockData stockData = new CsvStockIO(csv.toString(), true, CsvCharsets.DEFAULT, 2, 64).readStocks().getOrThrow();
+
+        assertThat(stockData.getStockRecords()).containsOnlyKeys(1, 2);
+        assertThat(stockData.getErrors()).extracting(StockError::type).containsExactly(
+                StockError.ErrorType.INVALID_FIELD_COUNT,
+                StockError.ErrorType.PARSE_ERROR,
+                StockError.ErrorType.PARSE_ERROR);
+        assertThat(stockData.getErrors().getLast().message())
+                .isEqualTo("Skipped 2 of 4 stock lines: INVALID_FIELD_COUNT=1, PARSE_ERROR=1");
+        assertThat(tempDir.resolve("stock.csv.bin")).doesNotExist();
+    }
+
+    @Test
+    void shouldReadAndWriteLegacyCharsets() throws IOException {
+        Charset windows1252 = CsvCharsets.forName("windows-1252");
+        Path csv = Files.write(tempDir.resolve("stock.csv"),
+                List.of(stockLine(1, "Lager Süd"), stockLine(2, "Preis €")), windows1252);
+        CsvStockIO stockIO = new CsvStockIO(csv.toString(), true, windows1252, 2, 256);
+
+        StockData stockData = stockIO.readStocks().getOrThrow();
+        assertThat(stockData.getStockRecord(1).getLocation()).isEqualTo("Lager Süd");
+        assertThat(stockData.getStockRecord(2).getLocation()).isEqualTo("Preis €");
+        assertThat(tempDir.resolve("stock.csv.windows-1252.bin")).exists();
+
+        Path output = tempDir.resolve("out");
+        assertThat(stockIO.writeStocks(stockData, output.toString()).isSuccessful()).isTrue();
+        try (Stream<Path> files = Files.list(output)) {
+            Path stockFile = files.filter(file -> file.getFileName().toString().startsWith("stocks_")).findFirst().orElseThrow();
+            assertThat(Files.readString(stockFile, windows1252)).contains("Lager Süd", "Preis €");
+        }
+    }
+
+    @Test
+    void shouldCleanUpWhileWriting() throws IOException {
+        Path csv = Files.write(tempDir.resolve("stock.csv"), List.of(stockLine(3, "A"),
+                stockLine(2, "B").replace(",5.000,0.000,__", ",0.000,0.000,__"), stockLine(1, "A")));
+        CsvStockIO stockIO = new CsvStockIO(csv.toString(), false);
+        StockData stockData = stockIO.readStocks().getOrThrow();
+        stockData.enableAggregates();
+
+        Path output = tempDir.resolve("out");
+        assertThat(stockIO.cleanUpAndWriteStocks(stockData, output.toString()).getOrThrow()).isEqualTo(1);
+
+        assertThat(stockData.getStockRecords()).containsOnlyKeys(1, 3);
+        assertThat(stockData.getAggregates().orElseThrow().byLocation()).containsOnlyKeys("A");
+        try (Stream<Path> files = Files.list(output)) {
+            Path stockFile = files.filter(file -> file.getFileName().toString().startsWith("stocks_")).findFirst().orElseThrow();
+            assertThat(Files.readAllLines(stockFile)).extracting(line -> line.substring(0, line.indexOf(',')))
+                    .containsExactly("1", "3");
+        }
+    }
+
+    private static String stockLine(int sequenceNumber, String location) {
+        return stock(sequenceNumber).replace("001020200807", location);
+    }
+}
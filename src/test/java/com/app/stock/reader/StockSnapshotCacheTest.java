@@ -0,0 +1,75 @@
+package com.app.stock.reader;
+
+import com.app.stock.StockData;
+import com.app.stock.model.StockRecord;
+import com.app.utils.Result;
+import com.app.utils.StockError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.app.TestStocks.HEADER;
+import static com.app.TestStocks.LINE;
+import static com.app.TestStocks.stock;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockSnapshotCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldWriteCacheOnFirstReadAndReuseIt() throws IOException {
+        Path csv = tempDir.resolve("stock.csv");
+        Files.write(csv, List.of(HEADER, LINE, stock(9738)));
+
+        Result<StockData, StockError> first = new CsvStockIO(csv.toString(), true).readStocks();
+        assertThat(first.isSuccessful()).isTrue();
+        assertThat(Files.exists(tempDir.resolve("stock.csv.bin"))).isTrue();
+
+        Result<StockData, StockError> second = new CsvStockIO(csv.toString(), true).readStocks();
+        assertThat(second.isSuccessful()).isTrue();
+        assertThat(second.getOrThrow().getStockRecords()).isEqualTo(first.getOrThrow().getStockRecords());
+
+        StockRecord cached = second.getOrThrow().getStockRecord(9737);
+        assertThat(cached.getLocation()).isEqualTo("001020200807");
+        assertThat(cached.getQuantityOnHand()).isEqualByComparingTo(BigDecimal.valueOf(5));
+        assertThat(cached.getInventoryDate()).isEqualTo(LocalDate.parse("2025-10-22"));
+        assertThat(cached.getBestBeforeDate()).isNull();
+    }
+
+    @Test
+    void shouldIgnoreStaleCache() throws IOException {
+        Path csv = tempDir.resolve("stock.csv");
+        Files.write(csv, List.of(LINE));
+        new CsvStockIO(csv.toString(), true).readStocks();
+
+        Files.write(csv, List.of(stock(9740)));
+        StockData reloaded = new CsvStockIO(csv.toString(), true).readStocks().getOrThrow();
+
+        assertThat(reloaded.getStockRecords()).containsOnlyKeys(9740);
+    }
+
+    @Test
+    void shouldRoundTripDecimalsThatDoNotFitIntoLong() throws IOException {
+        Path csv = tempDir.resolve("stock.csv");
+        Files.createFile(csv);
+        StockSnapshotCache cache = new StockSnapshotCache(csv);
+        StockSnapshotCache.SourceFingerprint fingerprint = cache.fingerprint();
+        BigDecimal huge = new BigDecimal("123456789012345678901234567890.125");
+        StockRecord stockRecord = StockRecord.builder().sequenceNumber(1).quantityOnHand(huge).build();
+
+        cache.store(fingerprint, new HashMap<>(Map.of(1, stockRecord)));
+
+        assertThat(cache.load(fingerprint)).hasValueSatisfying(records ->
+                assertThat(records.get(1).getQuantityOnHand()).isEqualTo(huge));
+    }
+}
@@ -0,0 +1,68 @@
+package com.app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteScannerTest {
+    private static final byte[] ALPHABET = {',', '"', '\n', '\r', 'a', '0', 0, (byte) 0xAC, (byte) 0x8A, (byte) 0xFF};
+
+    @Test
+    void shouldFindDelimitersAcrossWords() {
+        byte[] line = "12,\"a,b\",,xyz,2026-02-19,last".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(delimiters(line, 0, line.length)).containsExactly(2, 3, 5, 7, 8, 9, 13, 24);
+        assertThat(ByteScanner.indexOfLineBreak(line, 0, line.length)).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldMatchScalarScanning() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20_000; round++) {
+            byte[] buffer = new byte[random.nextInt(40) + 3];
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+            }
+            int from = random.nextInt(3);
+            int to = from + random.nextInt(buffer.length - from + 1);
+
+            List<Integer> expected = new ArrayList<>();
+            int lineBreak = -1;
+            int newline = -1;
+            boolean ascii = true;
+            for (int i = from; i < to; i++) {
+                byte b = buffer[i];
+                if (b == ',' || b == '"') {
+                    expected.add(i);
+                }
+                if (lineBreak < 0 && (b == '\n' || b == '\r')) {
+                    lineBreak = i;
+                }
+                if (newline < 0 && b == '\n') {
+                    newline = i;
+                }
+                ascii &= b >= 0;
+            }
+
+            assertThat(delimiters(buffer, from, to)).isEqualTo(expected);
+            assertThat(ByteScanner.indexOfLineBreak(buffer, from, to)).isEqualTo(lineBreak);
+            assertThat(ByteScanner.indexOfNewline(buffer, from, to)).isEqualTo(newline);
+            assertThat(ByteScanner.isAscii(buffer, from, to)).isEqualTo(ascii);
+        }
+    }
+
+    private static List<Integer> delimiters(byte[] buffer, int from, int to) {
+        List<Integer> positions = new ArrayList<>();
+        for (int offset = from; offset < to; offset += Long.BYTES) {
+            for (long mask = ByteScanner.delimiters(buffer, offset, to); mask != 0; mask &= mask - 1) {
+                positions.add(ByteScanner.next(mask, offset));
+            }
+        }
+        return positions;
+    }
+}
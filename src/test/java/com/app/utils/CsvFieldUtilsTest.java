@@ -0,0 +1,152 @@
+package com.app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvFieldUtilsTest {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String ALPHABET = "0123456789-+.eE _\t٣";
+
+    @Test
+    void shouldParseLikeThePreviousImplementation() {
+        for (String value : fuzzInputs()) {
+            assertSame(value, CsvFieldUtilsTest::legacyInt, CsvFieldUtils::parseInt);
+            assertSame(value, CsvFieldUtilsTest::legacyLong, CsvFieldUtils::parseLong);
+            assertSame(value, CsvFieldUtilsTest::legacyDecimal, CsvFieldUtils::parseBigDecimal);
+            assertSame(value, CsvFieldUtilsTest::legacyString, CsvFieldUtils::parseString);
+            assertSame(value, CsvFieldUtilsTest::legacyDate, CsvFieldUtils::parseDate);
+        }
+    }
+
+    @Test
+    void shouldParseByteRangesLikeStrings() {
+        for (String value : fuzzInputs()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int start = CsvFieldUtils.trimStart(bytes, 0, bytes.length);
+            int end = CsvFieldUtils.trimEnd(bytes, start, bytes.length);
+
+            long number = CsvFieldUtils.parseIntRange(bytes, start, end);
+            if (number != CsvFieldUtils.NOT_FAST) {
+                assertThat((int) number).as(value).isEqualTo(legacyInt(value));
+            }
+            long decimal = CsvFieldUtils.parseDecimalRange(bytes, start, end);
+            if (decimal != CsvFieldUtils.NOT_FAST) {
+                assertThat(CsvFieldUtils.decimalOf(decimal)).as(value).isEqualTo(legacyDecimal(value));
+            }
+            long epochDay = CsvFieldUtils.parseEpochDayRange(bytes, start, end);
+            if (epochDay != CsvFieldUtils.NOT_FAST) {
+                assertThat(epochDay).as(value).isEqualTo(legacyDate(value).toEpochDay());
+            }
+        }
+    }
+
+    @Test
+    void shouldKeepScaleOfDecimals() {
+        assertThat(CsvFieldUtils.parseBigDecimal(" 1.000 ")).isEqualTo(new BigDecimal("1.000"));
+        assertThat(CsvFieldUtils.parseBigDecimal("-0.50")).isEqualTo(new BigDecimal("-0.50"));
+        assertThat(CsvFieldUtils.parseBigDecimal("1E+3")).isEqualTo(new BigDecimal("1E+3"));
+    }
+
+    @Test
+    void shouldResolveInvalidDaysLikeTheFormatter() {
+        assertThat(CsvFieldUtils.parseDate("2023-02-30")).isEqualTo(LocalDate.of(2023, 2, 28));
+        assertThat(CsvFieldUtils.parseDate("2024-02-29")).isEqualTo(LocalDate.of(2024, 2, 29));
+    }
+
+    private static void assertSame(String value, Function<String, ?> legacy, Function<String, ?> parser) {
+        assertThat(outcome(parser, value)).as("[%s]", value).isEqualTo(outcome(legacy, value));
+    }
+
+    private static String outcome(Function<String, ?> parser, String value) {
+        try {
+            Object result = parser.apply(value);
+            if (result instanceof BigDecimal decimal) {
+                return decimal.unscaledValue() + "/" + decimal.scale();
+            }
+            return String.valueOf(result);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static List<String> fuzzInputs() {
+        List<String> inputs = new ArrayList<>(List.of("", " ", "_".repeat(10), "_".repeat(20), "2147483647",
+                "-2147483648", "2147483648", "9223372036854775807", "9223372036854775808", "1.000", ".5", "3.",
+                "-0.00", "+.5", ".", "-", "12345678901234567", "123456789012345678.5", "2024-02-29", "2023-02-29",
+                "0000-01-01", "9999-12-31", "2024-13-01", "2024-1-05", " 2024-01-05 "));
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(22);
+            for (int j = 0; j < length; j++) {
+                value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            inputs.add(value.toString());
+            inputs.add(String.format("%04d-%02d-%02d", random.nextInt(10_000), random.nextInt(14), random.nextInt(33)));
+        }
+        return inputs;
+    }
+
+    private static boolean isLegacyEmpty(String value) {
+        return value == null || value.trim().isEmpty() || value.trim().equals("_".repeat(20))
+                || value.trim().equals("_".repeat(10));
+    }
+
+    private static Integer legacyInt(String value) {
+        if (isLegacyEmpty(value)) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException _) {
+            throw new IllegalArgumentException("Invalid number format: " + value);
+        }
+    }
+
+    private static Long legacyLong(String value) {
+        if (isLegacyEmpty(value)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException _) {
+            throw new IllegalArgumentException("Invalid number format: " + value);
+        }
+    }
+
+    private static BigDecimal legacyDecimal(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException _) {
+            throw new IllegalArgumentException("Invalid decimal format: " + value);
+        }
+    }
+
+    private static String legacyString(String value) {
+        return isLegacyEmpty(value) ? null : value.trim();
+    }
+
+    private static LocalDate legacyDate(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim(), DATE_FORMATTER);
+        } catch (Exception _) {
+            throw new IllegalArgumentException("Invalid date format: " + value);
+        }
+    }
+}
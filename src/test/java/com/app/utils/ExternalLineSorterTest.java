@@ -0,0 +1,45 @@
+package com.app.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ExternalLineSorterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldSortLinesByKeyAcrossRuns() throws IOException {
+        ExternalLineSorter sorter = new ExternalLineSorter(4 * 1024, 2, tempDir, Long::parseLong);
+
+        try (Stream<String> sorted = sorter.sort(IntStream.range(0, 1_000).mapToObj(i -> String.valueOf(999 - i)))) {
+            assertThat(sorted.toList())
+                    .containsExactlyElementsOf(IntStream.range(0, 1_000).mapToObj(String::valueOf).toList());
+        }
+        assertThat(tempDir).isEmptyDirectory();
+    }
+
+    @Test
+    void shouldDeleteRunsInProgressWhenTheInputFails() {
+        ExternalLineSorter sorter = new ExternalLineSorter(64L << 20, 3, tempDir, String::length);
+        String padding = "x".repeat(4096);
+        Stream<String> lines = IntStream.range(0, 20_000).mapToObj(i -> {
+            if (i == 4_000) {
+                throw new IllegalStateException("Input failed");
+            }
+            return i + padding;
+        });
+
+        assertThatIllegalStateException().isThrownBy(() -> sorter.sort(lines));
+        assertThat(tempDir).isEmptyDirectory();
+    }
+}
@@ -0,0 +1,38 @@
+package com.app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class HyperLogLogTest {
+
+    @Test
+    void shouldCountSmallSetsExactly() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        assertThat(sketch.estimate()).isZero();
+
+        for (int value = 0; value < 10; value++) {
+            sketch.add(value);
+            sketch.add(value);
+        }
+
+        assertThat(sketch.estimate()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldEstimateLargeSetsWithinAFewPercent() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int value = 1_000_000; value < 1_200_000; value++) {
+            sketch.add(value);
+            sketch.add(value);
+        }
+
+        assertThat(sketch.estimate()).isBetween(194_000L, 206_000L);
+    }
+
+    @Test
+    void shouldRejectInvalidPrecision() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new HyperLogLog(2));
+    }
+}
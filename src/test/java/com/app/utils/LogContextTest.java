@@ -0,0 +1,33 @@
+package com.app.utils;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogContextTest {
+
+    @Test
+    void shouldRunThreadsWithTheContextOfTheCreatingThread() throws InterruptedException, ExecutionException {
+        final ThreadFactory factory;
+        MDC.put("job", "nightly");
+        try {
+            factory = LogContext.inheriting(Thread.ofPlatform().factory());
+        } finally {
+            MDC.remove("job");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(1, factory);
+        try {
+            assertThat(executor.submit(() -> MDC.get("job")).get()).isEqualTo("nightly");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(MDC.get("job")).isNull();
+    }
+}
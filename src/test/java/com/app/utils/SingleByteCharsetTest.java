@@ -0,0 +1,105 @@
+package com.app.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleByteCharsetTest {
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+    // bytes without a character in windows-1252
+    private static final String UNDEFINED = "\u0081\u008D\u008F\u0090\u009D";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReadTheSameLinesAsADecodingReader() throws IOException {
+        Random random = new Random(42);
+        SingleByteCharset charset = SingleByteCharset.of(WINDOWS_1252).orElseThrow();
+        for (int round = 0; round < 2_000; round++) {
+            byte[] bytes = new byte[random.nextInt(300)];
+            for (int i = 0; i < bytes.length; i++) {
+                int kind = random.nextInt(8);
+                bytes[i] = (byte) (kind == 0 ? '\n' : kind == 1 ? '\r' : random.nextInt(256));
+                while (UNDEFINED.indexOf(bytes[i] & 0xFF) >= 0) {
+                    bytes[i] = (byte) random.nextInt(256);
+                }
+            }
+
+            List<String> expected = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), WINDOWS_1252)).lines().toList();
+            List<String> actual = new SingleByteLineReader(new ByteArrayInputStream(bytes), charset).lines().toList();
+
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void shouldSkipAndReadFromTheSameBuffer() throws IOException {
+        SingleByteCharset charset = SingleByteCharset.of(WINDOWS_1252).orElseThrow();
+        BufferedReader reader = new SingleByteLineReader(
+                new ByteArrayInputStream("Lager\r\nSüd\n".getBytes(WINDOWS_1252)), charset);
+
+        assertThat(reader.readLine()).isEqualTo("Lager");
+        assertThat(reader.skip(1)).isEqualTo(1);
+        assertThat((char) reader.read()).isEqualTo('ü');
+        assertThat(reader.skip(10)).isEqualTo(2);
+        assertThat(reader.read()).isEqualTo(-1);
+        assertThat(reader.markSupported()).isFalse();
+        assertThatThrownBy(() -> reader.mark(1)).isInstanceOf(IOException.class);
+        assertThatThrownBy(reader::reset).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void shouldReportUndefinedBytes() throws IOException {
+        byte[] bytes = {'L', 'a', 'g', 'e', 'r', (byte) 0x81, '\n'};
+        Path file = Files.write(tempDir.resolve("stock.csv"), bytes);
+
+        assertThatThrownBy(() -> CsvCharsets.newReader(file, WINDOWS_1252).readLine())
+                .isInstanceOf(CharacterCodingException.class);
+        assertThatThrownBy(() -> CsvCharsets.newReader(new ByteArrayInputStream(bytes), WINDOWS_1252).readLine())
+                .isInstanceOf(CharacterCodingException.class);
+        assertThatThrownBy(() -> Files.newBufferedReader(file, WINDOWS_1252).readLine())
+                .isInstanceOf(CharacterCodingException.class);
+        assertThat(SingleByteCharset.of(WINDOWS_1252).orElseThrow().decode(bytes, 0, 6)).isEqualTo("Lager\uFFFD");
+    }
+
+    @Test
+    void shouldWriteThroughTheTable() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Writer writer = SingleByteCharset.of(WINDOWS_1252).orElseThrow().newWriter(output)) {
+            writer.write("Lager Süd, 5 €\n");
+        }
+
+        assertThat(output.toByteArray()).isEqualTo("Lager Süd, 5 €\n".getBytes(WINDOWS_1252));
+    }
+
+    @Test
+    void shouldRejectUnmappableCharacters() {
+        Writer writer = SingleByteCharset.of(StandardCharsets.ISO_8859_1).orElseThrow().newWriter(new ByteArrayOutputStream());
+
+        assertThatThrownBy(() -> writer.write("5 €")).isInstanceOf(UnmappableCharacterException.class);
+    }
+
+    @Test
+    void shouldOnlyAcceptAsciiCompatibleCharsets() {
+        assertThat(SingleByteCharset.of(StandardCharsets.UTF_8)).isEmpty();
+        assertThatThrownBy(() -> CsvCharsets.forName("UTF-16")).isInstanceOf(IllegalArgumentException.class);
+    }
+}